@@ -0,0 +1,69 @@
+/*
+ * Copyright (c) 2019 Baidu, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baidu.formula.benchmarks;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.File;
+
+/**
+ * Run the benchmarks once per thread count and write the results of each run as JSON,
+ * so that the results of two releases can be compared.
+ * <p>
+ * System properties:
+ * <ul>
+ * <li>formula.benchmark.include: regexp of the benchmarks to run, all by default</li>
+ * <li>formula.benchmark.threads: comma separated thread counts, 1,4 by default</li>
+ * <li>formula.benchmark.rule-counts: comma separated rule counts, overrides the ruleCount params</li>
+ * <li>formula.benchmark.result-dir: directory of the JSON results, target/jmh by default</li>
+ * </ul>
+ */
+public final class BenchmarkRunner {
+    private static final String DEFAULT_INCLUDE = BenchmarkRunner.class.getPackage().getName() + "\\..*Benchmark";
+
+    private static final String DEFAULT_THREADS = "1,4";
+
+    private static final String DEFAULT_RESULT_DIR = "target/jmh";
+
+    private BenchmarkRunner() {
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        String include = System.getProperty("formula.benchmark.include", DEFAULT_INCLUDE);
+        String ruleCounts = System.getProperty("formula.benchmark.rule-counts");
+        File resultDir = new File(System.getProperty("formula.benchmark.result-dir", DEFAULT_RESULT_DIR));
+        if (!resultDir.isDirectory() && !resultDir.mkdirs()) {
+            throw new IllegalStateException("can not create result directory: " + resultDir);
+        }
+
+        for (String threads : System.getProperty("formula.benchmark.threads", DEFAULT_THREADS).split(",")) {
+            int threadCount = Integer.parseInt(threads.trim());
+            ChainedOptionsBuilder options = new OptionsBuilder()
+                    .include(include)
+                    .threads(threadCount)
+                    .resultFormat(ResultFormatType.JSON)
+                    .result(new File(resultDir, "jmh-result-" + threadCount + "-threads.json").getPath());
+            if (ruleCounts != null && !ruleCounts.trim().isEmpty()) {
+                options.param("ruleCount", ruleCounts.trim().split("\\s*,\\s*"));
+            }
+            new Runner(options.build()).run();
+        }
+    }
+}
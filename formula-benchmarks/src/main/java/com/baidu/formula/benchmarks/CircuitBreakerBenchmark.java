@@ -0,0 +1,123 @@
+/*
+ * Copyright (c) 2019 Baidu, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baidu.formula.benchmarks;
+
+import com.baidu.formula.circuitbreaker.config.CircuitBreakerProperties;
+import com.baidu.formula.circuitbreaker.diagnostics.CallDiagnostics;
+import com.baidu.formula.circuitbreaker.fallback.FallbackMethodRegistry;
+import com.baidu.formula.circuitbreaker.impl.CircuitBreakerCore;
+import com.baidu.formula.circuitbreaker.impl.CircuitBreakerManager;
+import com.baidu.formula.circuitbreaker.impl.CircuitBreakerThreadPool;
+import com.baidu.formula.circuitbreaker.model.CircuitBreakerCoalition;
+import com.baidu.formula.circuitbreaker.model.CircuitBreakerRule;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rule lookup in {@link CircuitBreakerManager} and the overhead added by {@link CircuitBreakerCore#process}
+ * around a call which always succeeds, compared with invoking the call directly.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CircuitBreakerBenchmark {
+    private static final String HTTP_METHOD = "GET";
+
+    private static final Object[] NO_ARGS = new Object[0];
+
+    private static final Callable<Object> INVOCATION = () -> Boolean.TRUE;
+
+    @Param({"1", "10", "100"})
+    private int ruleCount;
+
+    private CircuitBreakerManager manager;
+
+    private CircuitBreakerCore core;
+
+    private String serviceName;
+
+    private String url;
+
+    @Setup
+    public void setUp() {
+        CircuitBreakerProperties properties = new CircuitBreakerProperties();
+        for (int i = 0; i < ruleCount; i++) {
+            CircuitBreakerRule rule = new CircuitBreakerRule();
+            rule.setRuleId((long) i);
+            rule.setEnabled(true);
+            rule.setEffectiveType(1);
+            rule.setServiceName("service" + i);
+            rule.setEffectivePattren(HTTP_METHOD);
+            rule.setEffectiveLocation("/api/v1/resource" + i);
+            rule.setFailureRateThreshold(CircuitBreakerRule.DEFAULT_FAILURE_RATE_THRESHOLD);
+            properties.getRules().add(rule);
+        }
+        manager = new CircuitBreakerManager(properties);
+        manager.init();
+        core = new CircuitBreakerCore(manager, new FallbackMethodRegistry(), new CallDiagnostics(),
+                CircuitBreakerThreadPool.create(properties.getExecutor()));
+        serviceName = "service" + (ruleCount - 1);
+        url = "/api/v1/resource" + (ruleCount - 1);
+    }
+
+    @TearDown
+    public void tearDown() {
+        core.shutdown();
+        manager.destroy();
+    }
+
+    @Benchmark
+    public CircuitBreakerCoalition lookupMatched() {
+        return manager.getCircuitBreakerCoalition(HTTP_METHOD, serviceName, url);
+    }
+
+    @Benchmark
+    public CircuitBreakerCoalition lookupMissed() {
+        // 未命中时会依次尝试全部四级规则名
+        return manager.getCircuitBreakerCoalition(HTTP_METHOD, "unknown", url);
+    }
+
+    @Benchmark
+    public Object invokeDirectly() throws Exception {
+        return INVOCATION.call();
+    }
+
+    @Benchmark
+    public Object processMatched() throws Exception {
+        return core.process(HTTP_METHOD, serviceName, url, null, this, NO_ARGS, INVOCATION, null);
+    }
+
+    @Benchmark
+    public Object processMissed() throws Exception {
+        return core.process(HTTP_METHOD, "unknown", url, null, this, NO_ARGS, INVOCATION, null);
+    }
+}
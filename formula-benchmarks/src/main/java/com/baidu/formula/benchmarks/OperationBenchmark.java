@@ -0,0 +1,80 @@
+/*
+ * Copyright (c) 2019 Baidu, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baidu.formula.benchmarks;
+
+import com.baidu.formula.engine.tag.Operation;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tag matching in {@link Operation}, used by every source and destination tag of the rate limiter,
+ * circuit breaker and route rules.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OperationBenchmark {
+
+    @Param({"1", "10", "100"})
+    private int valueCount;
+
+    @Param({"EQUAL", "IN", "NOT_IN"})
+    private Operation operation;
+
+    private List<String> values;
+
+    // 最后一个值, IN/NOT_IN需要遍历全部值
+    private String lastValue;
+
+    private String missedValue;
+
+    @Setup
+    public void setUp() {
+        values = new ArrayList<>(valueCount);
+        for (int i = 0; i < valueCount; i++) {
+            values.add("formula-value-" + i);
+        }
+        // 构造新的字符串, 避免equals走引用相等的捷径
+        lastValue = new String(values.get(valueCount - 1));
+        missedValue = "formula-value-" + valueCount;
+    }
+
+    @Benchmark
+    public boolean matchLast() {
+        return Operation.isOperationMatch(operation, values, lastValue);
+    }
+
+    @Benchmark
+    public boolean matchMissed() {
+        return Operation.isOperationMatch(operation, values, missedValue);
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright (c) 2019 Baidu, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baidu.formula.benchmarks;
+
+import com.baidu.formula.ratelimiter.spring.boot.autoconfigure.RateLimiterEffectiveFilter;
+import com.baidu.formula.ratelimiter.spring.boot.autoconfigure.config.RateLimiterProperties;
+import com.baidu.formula.ratelimiter.spring.boot.autoconfigure.config.entity.FormulaRateLimiterConfig;
+import com.baidu.formula.ratelimiter.spring.boot.autoconfigure.ratelimiter.LimiterType;
+import com.baidu.formula.ratelimiter.spring.boot.autoconfigure.ratelimiter.RateLimiterManager;
+import io.github.resilience4j.ratelimiter.RateLimiter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Uri rate limiting in {@link RateLimiterEffectiveFilter}: pattern lookup over all rules
+ * followed by the permit acquisition of the matched limiter.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RateLimiterBenchmark {
+    private static final FilterChain NOOP_CHAIN = (request, response) -> {
+    };
+
+    @Param({"1", "10", "100"})
+    private int ruleCount;
+
+    private RateLimiterManager manager;
+
+    private RateLimiterEffectiveFilter filter;
+
+    private String limiterName;
+
+    private MockHttpServletRequest matchedRequest;
+
+    private MockHttpServletRequest missedRequest;
+
+    private MockHttpServletResponse response;
+
+    @Setup
+    public void setUp() {
+        List<FormulaRateLimiterConfig> configs = new ArrayList<>(ruleCount);
+        for (int i = 0; i < ruleCount; i++) {
+            FormulaRateLimiterConfig config = new FormulaRateLimiterConfig();
+            config.setRuleId((long) i);
+            config.setEffectiveType(1);
+            config.setEffectiveLocation("/api/v1/resource" + i + "/{id}");
+            config.setHttpMethod("get");
+            config.setLimiterType(LimiterType.TokenBucket.getLimiterType());
+            config.setEnabled(true);
+            // 阈值足够大, 只测量获取许可的开销, 不会被限流
+            config.setThreshold(Integer.MAX_VALUE);
+            configs.add(config);
+        }
+        RateLimiterProperties properties = new RateLimiterProperties();
+        properties.setRatelimiters(configs);
+        manager = new RateLimiterManager(properties);
+        filter = new RateLimiterEffectiveFilter(manager);
+
+        FormulaRateLimiterConfig last = configs.get(ruleCount - 1);
+        limiterName = last.getLimiterName();
+        matchedRequest = new MockHttpServletRequest("GET", "/api/v1/resource" + (ruleCount - 1) + "/42");
+        missedRequest = new MockHttpServletRequest("GET", "/api/v2/unlimited/42");
+        response = new MockHttpServletResponse();
+    }
+
+    @Benchmark
+    public void filterMatched() throws ServletException, IOException {
+        filter.doFilter(matchedRequest, response, NOOP_CHAIN);
+    }
+
+    @Benchmark
+    public void filterMissed() throws ServletException, IOException {
+        filter.doFilter(missedRequest, response, NOOP_CHAIN);
+    }
+
+    @Benchmark
+    public RateLimiter acquire() {
+        RateLimiter rateLimiter = manager.getRateLimiterFromRegistry(limiterName);
+        manager.waitForPermit(rateLimiter);
+        return rateLimiter;
+    }
+}
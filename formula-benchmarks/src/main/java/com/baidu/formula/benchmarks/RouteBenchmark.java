@@ -0,0 +1,273 @@
+/*
+ * Copyright (c) 2019 Baidu, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baidu.formula.benchmarks;
+
+import com.baidu.formula.route.spring.boot.model.discovery.Instance;
+import com.baidu.formula.route.spring.boot.route.RouteMatcher;
+import com.baidu.formula.route.spring.boot.route.irule.PowerOfTwoChoicesRule;
+import com.baidu.formula.route.spring.boot.route.irule.WeightedRouteRule;
+import com.baidu.formula.route.spring.boot.route.loadbalancer.CustomIloadBalancer;
+import com.baidu.formula.route.spring.boot.route.metadata.FormulaServer;
+import com.baidu.formula.route.spring.boot.route.property.Destination;
+import com.baidu.formula.route.spring.boot.route.property.DestinationWrapper;
+import com.baidu.formula.route.spring.boot.route.property.FormulaRouteProperty;
+import com.baidu.formula.route.spring.boot.route.property.RouteProperties;
+import com.baidu.formula.route.spring.boot.route.property.Source;
+import com.baidu.formula.route.spring.boot.route.property.Tag;
+import com.netflix.client.config.DefaultClientConfigImpl;
+import com.netflix.loadbalancer.DummyPing;
+import com.netflix.loadbalancer.IRule;
+import com.netflix.loadbalancer.RoundRobinRule;
+import com.netflix.loadbalancer.Server;
+import com.netflix.loadbalancer.ServerList;
+import com.netflix.loadbalancer.ServerListUpdater;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static com.baidu.formula.route.spring.boot.config.RouteConstants.DESTINATION_TYPE_WEIGHT;
+import static com.baidu.formula.route.spring.boot.config.RouteConstants.FORMULA_DISCOVERY_CUSTOM_PLATFORM;
+import static com.baidu.formula.route.spring.boot.config.RouteConstants.TAG_EQUAL_OPERATOR;
+import static com.baidu.formula.route.spring.boot.config.RouteConstants.TAG_PLATFORM;
+
+/**
+ * Route selection in {@link CustomIloadBalancer#route}: weighted choice of the destination and filtering
+ * of the instance list, and a full server choice routed per list fetch or per request by
+ * {@link WeightedRouteRule}, or picking the least loaded of two by {@link PowerOfTwoChoicesRule}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RouteBenchmark {
+    // 本进程一定存在的环境变量, 只有最后一条规则用它匹配
+    private static final String MATCHED_ENV = "PATH";
+
+    private static final String MISSED_ENV = "FORMULA_BENCHMARK_UNDEFINED";
+
+    private static final String[] PLATFORMS = {"blue", "green"};
+
+    @Param({"1", "10", "100"})
+    private int ruleCount;
+
+    @Param({"10", "100"})
+    private int instanceCount;
+
+    // discovery: 天路注册中心的实例, 反射读取instance.customs; formula: FormulaServer直接读取元数据
+    @Param({"discovery", "formula"})
+    private String serverType;
+
+    private CustomIloadBalancer<Server> loadBalancer;
+
+    private CustomIloadBalancer<Server> weightedRouteLoadBalancer;
+
+    private CustomIloadBalancer<Server> leastLoadedLoadBalancer;
+
+    private List<Server> servers;
+
+    @Setup
+    public void setUp() {
+        servers = new ArrayList<>(instanceCount);
+        for (int i = 0; i < instanceCount; i++) {
+            String host = "10.0.0." + i;
+            String platform = PLATFORMS[i % PLATFORMS.length];
+            servers.add("formula".equals(serverType) ? new MetadataServer(host, 8080, platform)
+                    : new DiscoveryServer(host, 8080, platform));
+        }
+        List<FormulaRouteProperty> rules = new ArrayList<>(ruleCount);
+        for (int i = 0; i < ruleCount; i++) {
+            rules.add(rule(i, i == ruleCount - 1 ? MATCHED_ENV : MISSED_ENV));
+        }
+        RouteProperties routeProperties = new RouteProperties();
+        routeProperties.setRules(rules);
+
+        RouteMatcher routeMatcher = new RouteMatcher(routeProperties);
+        loadBalancer = createLoadBalancer(new RoundRobinRule(), routeMatcher, routeProperties);
+        weightedRouteLoadBalancer = createLoadBalancer(new WeightedRouteRule(), routeMatcher, routeProperties);
+        leastLoadedLoadBalancer = createLoadBalancer(new PowerOfTwoChoicesRule(), routeMatcher, routeProperties);
+    }
+
+    @TearDown
+    public void tearDown() {
+        loadBalancer.shutdown();
+        weightedRouteLoadBalancer.shutdown();
+        leastLoadedLoadBalancer.shutdown();
+    }
+
+    @Benchmark
+    public List<Server> route() {
+        return loadBalancer.route(servers);
+    }
+
+    @Benchmark
+    public Server chooseRoutedPerFetch() {
+        return loadBalancer.chooseServer(null);
+    }
+
+    @Benchmark
+    public Server chooseRoutedPerRequest() {
+        return weightedRouteLoadBalancer.chooseServer(null);
+    }
+
+    @Benchmark
+    public Server chooseLeastLoaded() {
+        return leastLoadedLoadBalancer.chooseServer(null);
+    }
+
+    private CustomIloadBalancer<Server> createLoadBalancer(IRule rule, RouteMatcher routeMatcher,
+                                                           RouteProperties routeProperties) {
+        DefaultClientConfigImpl config = DefaultClientConfigImpl.getClientConfigWithDefaultValues("benchmark");
+        CustomIloadBalancer<Server> balancer = new CustomIloadBalancer<>(config, rule, new DummyPing(),
+                new StaticServerList(servers), list -> list, new NoopServerListUpdater());
+        // 负载均衡器由spring注入这两个字段
+        ReflectionTestUtils.setField(balancer, "routeMatcher", routeMatcher);
+        ReflectionTestUtils.setField(balancer, "routeProperties", routeProperties);
+        return balancer;
+    }
+
+    private static FormulaRouteProperty rule(int ruleId, String envKey) {
+        Tag sourceTag = tag(envKey, System.getenv(envKey) == null ? "" : System.getenv(envKey));
+        Source source = new Source();
+        source.setTags(Collections.singletonList(sourceTag));
+
+        List<DestinationWrapper> destinations = new ArrayList<>();
+        for (String platform : PLATFORMS) {
+            Destination destination = new Destination();
+            destination.setTags(Collections.singletonList(tag(TAG_PLATFORM, platform)));
+            destination.setWeight(100 / PLATFORMS.length);
+            DestinationWrapper wrapper = new DestinationWrapper();
+            wrapper.setDestination(destination);
+            destinations.add(wrapper);
+        }
+
+        FormulaRouteProperty rule = new FormulaRouteProperty();
+        rule.setRoutingRuleId(ruleId);
+        rule.setSource(source);
+        rule.setDestType(DESTINATION_TYPE_WEIGHT);
+        rule.setDestinations(destinations);
+        return rule;
+    }
+
+    private static Tag tag(String key, String value) {
+        Tag tag = new Tag();
+        tag.setKey(key);
+        tag.setOp(TAG_EQUAL_OPERATOR);
+        tag.setValue(Collections.singletonList(value));
+        return tag;
+    }
+
+    /**
+     * Server registered with the platform in its custom metadata, as the discovery client provides it.
+     */
+    public static class DiscoveryServer extends Server {
+        private final Instance instance;
+
+        public DiscoveryServer(String host, int port, String platform) {
+            super(host, port);
+            instance = new Instance();
+            instance.setHost(host);
+            instance.setPort(port);
+            instance.getCustoms().put(FORMULA_DISCOVERY_CUSTOM_PLATFORM, platform);
+        }
+
+        public Instance getInstance() {
+            return instance;
+        }
+    }
+
+    /**
+     * Server exposing its metadata directly.
+     */
+    public static class MetadataServer extends Server implements FormulaServer {
+        private final Map<String, String> metadata;
+
+        public MetadataServer(String host, int port, String platform) {
+            super(host, port);
+            metadata = Collections.singletonMap(FORMULA_DISCOVERY_CUSTOM_PLATFORM, platform);
+        }
+
+        @Override
+        public Map<String, String> getMetadata() {
+            return metadata;
+        }
+    }
+
+    private static class StaticServerList implements ServerList<Server> {
+        private final List<Server> servers;
+
+        StaticServerList(List<Server> servers) {
+            this.servers = servers;
+        }
+
+        @Override
+        public List<Server> getInitialListOfServers() {
+            return servers;
+        }
+
+        @Override
+        public List<Server> getUpdatedListOfServers() {
+            return servers;
+        }
+    }
+
+    private static class NoopServerListUpdater implements ServerListUpdater {
+        @Override
+        public void start(UpdateAction updateAction) {
+        }
+
+        @Override
+        public void stop() {
+        }
+
+        @Override
+        public String getLastUpdate() {
+            return null;
+        }
+
+        @Override
+        public long getDurationSinceLastUpdateMs() {
+            return 0;
+        }
+
+        @Override
+        public int getNumberMissedCycles() {
+            return 0;
+        }
+
+        @Override
+        public int getCoreThreads() {
+            return 0;
+        }
+    }
+}
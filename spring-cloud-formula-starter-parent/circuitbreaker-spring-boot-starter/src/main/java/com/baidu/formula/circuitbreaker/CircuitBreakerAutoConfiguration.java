@@ -15,13 +15,30 @@
  */
 package com.baidu.formula.circuitbreaker;
 
+import com.baidu.formula.circuitbreaker.cluster.ClusterStateSynchronizer;
+import com.baidu.formula.circuitbreaker.cluster.ClusterStateTransport;
+import com.baidu.formula.circuitbreaker.cluster.InMemoryClusterStateTransport;
+import com.baidu.formula.circuitbreaker.collapser.RequestCollapserManager;
 import com.baidu.formula.circuitbreaker.config.CircuitBreakerProperties;
+import com.baidu.formula.circuitbreaker.diagnostics.CallDiagnostics;
+import com.baidu.formula.circuitbreaker.fallback.FallbackMethodPostProcessor;
+import com.baidu.formula.circuitbreaker.fallback.FallbackMethodRegistry;
 import com.baidu.formula.circuitbreaker.impl.CircuitBreakerAspect;
 import com.baidu.formula.circuitbreaker.impl.CircuitBreakerCore;
 import com.baidu.formula.circuitbreaker.impl.CircuitBreakerManager;
+import com.baidu.formula.circuitbreaker.impl.CircuitBreakerThreadPool;
+import com.baidu.formula.circuitbreaker.impl.RequestAttributesTaskDecorator;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.TaskDecorator;
+
+import java.util.Collections;
+import java.util.List;
 
 /**
  * @author Bowu Dong (tq02ksu@gmail.com)
@@ -34,13 +51,66 @@ public class CircuitBreakerAutoConfiguration {
         return new CircuitBreakerManager(properties);
     }
 
+    @Bean
+    public RequestCollapserManager requestCollapserManager(CircuitBreakerProperties properties) {
+        return new RequestCollapserManager(properties);
+    }
+
+    @Bean
+    @ConditionalOnMissingBean
+    @ConditionalOnProperty(prefix = CircuitBreakerProperties.PREFIX, name = "cluster.enabled", havingValue = "true")
+    public ClusterStateTransport clusterStateTransport() {
+        return new InMemoryClusterStateTransport(CircuitBreakerProperties.PREFIX);
+    }
+
+    @Bean
+    @ConditionalOnProperty(prefix = CircuitBreakerProperties.PREFIX, name = "cluster.enabled", havingValue = "true")
+    public ClusterStateSynchronizer clusterStateSynchronizer(CircuitBreakerManager manager,
+                                                             ClusterStateTransport transport,
+                                                             CircuitBreakerProperties properties) {
+        return new ClusterStateSynchronizer(manager, transport, properties.getCluster());
+    }
+
     @Bean
     public CircuitBreakerAspect circuitBreakerAspect(CircuitBreakerCore core) {
         return new CircuitBreakerAspect(core);
     }
 
     @Bean
-    public CircuitBreakerCore circuitBreakerCore(CircuitBreakerManager manager) {
-        return new CircuitBreakerCore(manager);
+    public CircuitBreakerCore circuitBreakerCore(CircuitBreakerManager manager,
+                                                 FallbackMethodRegistry fallbackMethodRegistry,
+                                                 CallDiagnostics callDiagnostics,
+                                                 CircuitBreakerProperties properties,
+                                                 ObjectProvider<List<TaskDecorator>> taskDecorators) {
+        CircuitBreakerCore core = new CircuitBreakerCore(manager, fallbackMethodRegistry, callDiagnostics,
+                CircuitBreakerThreadPool.create(properties.getExecutor()));
+        core.setTaskDecorators(taskDecorators.getIfAvailable(Collections::emptyList));
+        return core;
+    }
+
+    @Bean
+    public CallDiagnostics callDiagnostics(CircuitBreakerProperties properties) {
+        return new CallDiagnostics(properties.getDiagnostics().getExemplarInterval());
+    }
+
+    @Bean
+    public static FallbackMethodRegistry fallbackMethodRegistry() {
+        return new FallbackMethodRegistry();
+    }
+
+    @Bean
+    public static FallbackMethodPostProcessor fallbackMethodPostProcessor(
+            FallbackMethodRegistry fallbackMethodRegistry) {
+        return new FallbackMethodPostProcessor(fallbackMethodRegistry);
+    }
+
+    @Configuration
+    @ConditionalOnClass(name = "org.springframework.web.context.request.RequestContextHolder")
+    static class RequestAttributesConfiguration {
+
+        @Bean
+        public RequestAttributesTaskDecorator requestAttributesTaskDecorator() {
+            return new RequestAttributesTaskDecorator();
+        }
     }
 }
@@ -18,20 +18,21 @@
  */
 package com.baidu.formula.circuitbreaker.autoconfigure;
 
-import com.baidu.formula.circuitbreaker.exception.CircuitBreakerOpenException;
+import com.baidu.formula.circuitbreaker.classifier.HttpResponseAccessor;
 import com.baidu.formula.circuitbreaker.impl.CircuitBreakerCore;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.http.HttpRequest;
-import org.springframework.http.HttpStatus;
 import org.springframework.http.client.AsyncClientHttpRequestExecution;
 import org.springframework.http.client.AsyncClientHttpRequestInterceptor;
 import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.util.ReflectionUtils;
 import org.springframework.util.concurrent.ListenableFuture;
 
 import java.io.IOException;
 import java.lang.reflect.Method;
 import java.net.URI;
+import java.util.concurrent.ExecutionException;
 
 /**
  * Created by cuiweizheng on 19/4/20.
@@ -40,6 +41,31 @@ public class AsyncRestTemplateCircuitInterceptor implements AsyncClientHttpReque
 
     private static final Logger logger = LoggerFactory.getLogger(AsyncRestTemplateCircuitInterceptor.class);
 
+    // 降级方法解析使用, 只在类加载时查找一次
+    private static final Method DO_EXECUTE_ASYNC = ReflectionUtils.findMethod(
+            AsyncRestTemplateCircuitInterceptor.class, "doExecuteAsync",
+            AsyncClientHttpRequestExecution.class, HttpRequest.class, byte[].class);
+
+    // 等待响应返回后再分类
+    private static final HttpResponseAccessor<ListenableFuture<ClientHttpResponse>> RESPONSE_ACCESSOR =
+            new HttpResponseAccessor<ListenableFuture<ClientHttpResponse>>() {
+                @Override
+                public int getStatus(ListenableFuture<ClientHttpResponse> response) throws IOException {
+                    ClientHttpResponse clientHttpResponse = getResponse(response);
+                    return clientHttpResponse == null ? -1 : clientHttpResponse.getRawStatusCode();
+                }
+
+                @Override
+                public String getHeader(ListenableFuture<ClientHttpResponse> response, String name) {
+                    try {
+                        ClientHttpResponse clientHttpResponse = getResponse(response);
+                        return clientHttpResponse == null ? null : clientHttpResponse.getHeaders().getFirst(name);
+                    } catch (IOException e) {
+                        return null;
+                    }
+                }
+            };
+
     private CircuitBreakerCore circuitBreakerCore;
 
     public AsyncRestTemplateCircuitInterceptor(
@@ -56,28 +82,18 @@ public class AsyncRestTemplateCircuitInterceptor implements AsyncClientHttpReque
         String httpMethod = httpRequest.getMethod().toString();
         String serviceName = asUri.getHost();
         String url = asUri.getPath();
-        logger.info("http with serviceName:{}, menthod:{}, url:{}", serviceName, httpMethod, url);
+        logger.debug("http with serviceName:{}, menthod:{}, url:{}", serviceName, httpMethod, url);
         if (circuitBreakerCore.checkRulesExist(httpMethod, serviceName, url)) {
+            Object[] args = {execution, httpRequest, body};
             try {
-                Method wrappedMethod = AsyncRestTemplateCircuitInterceptor.class.getMethod(
-                        "doExecuteAsync",
-                        AsyncClientHttpRequestExecution.class,
-                        HttpRequest.class, byte[].class);
-                Object[] args = {httpRequest, body};
-                ListenableFuture<ClientHttpResponse> response =
-                        (ListenableFuture<ClientHttpResponse>) circuitBreakerCore.process(httpMethod,
-                                serviceName, url, wrappedMethod, this, args);
                 // todo 熔断返回null
-                return response;
+                return (ListenableFuture<ClientHttpResponse>) circuitBreakerCore.process(httpMethod,
+                        serviceName, url, DO_EXECUTE_ASYNC, this, args,
+                        () -> doExecuteAsync(execution, httpRequest, body), RESPONSE_ACCESSOR);
+            } catch (IOException | RuntimeException e) {
+                throw e;
             } catch (Exception e) {
-                logger.error(e.getMessage(), e);
-                if (e instanceof CircuitBreakerOpenException) {
-                    throw  new RuntimeException(e.getMessage());
-                } else if (e instanceof IOException) {
-                    throw  new IOException(e.getMessage());
-                } else {
-                    throw new RuntimeException(e.getMessage());
-                }
+                throw new IOException(e.getMessage(), e);
             }
         } else {
             return execution.executeAsync(httpRequest, body);
@@ -87,17 +103,21 @@ public class AsyncRestTemplateCircuitInterceptor implements AsyncClientHttpReque
     public ListenableFuture<ClientHttpResponse> doExecuteAsync(AsyncClientHttpRequestExecution execution,
                                                                HttpRequest httpRequest,
                                                                byte[] body) throws IOException {
+        return execution.executeAsync(httpRequest, body);
+    }
+
+    private static ClientHttpResponse getResponse(ListenableFuture<ClientHttpResponse> response)
+            throws IOException {
         try {
-            ListenableFuture<ClientHttpResponse> response = execution.executeAsync(httpRequest, body);
-            logger.info("http request response:" + response);
-            if (response == null || !HttpStatus.OK.equals(response.get().getStatusCode())) {
-                throw new IOException("response error");
-            }
-            return response;
-        } catch (Exception e) {
-            logger.error(e.getMessage(), e);
+            return response.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
             throw new IOException(e.getMessage(), e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException(e.getMessage(), e.getCause());
         }
-
     }
 }
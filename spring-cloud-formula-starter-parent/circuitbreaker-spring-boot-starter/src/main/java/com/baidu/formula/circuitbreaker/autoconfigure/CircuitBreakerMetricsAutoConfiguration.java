@@ -0,0 +1,71 @@
+/*
+ * Copyright (c) 2018 Baidu, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baidu.formula.circuitbreaker.autoconfigure;
+
+import com.baidu.formula.circuitbreaker.CircuitBreakerAutoConfiguration;
+import com.baidu.formula.circuitbreaker.config.CircuitBreakerProperties;
+import com.baidu.formula.circuitbreaker.diagnostics.CallDiagnostics;
+import com.baidu.formula.circuitbreaker.impl.CircuitBreakerCore;
+import com.baidu.formula.circuitbreaker.impl.CircuitBreakerManager;
+import com.baidu.formula.circuitbreaker.metrics.CircuitBreakerEndpoint;
+import com.baidu.formula.circuitbreaker.metrics.CircuitBreakerExecutorMetrics;
+import com.baidu.formula.circuitbreaker.metrics.CircuitBreakerMetrics;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.boot.actuate.autoconfigure.endpoint.condition.ConditionalOnEnabledEndpoint;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.autoconfigure.AutoConfigureAfter;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Micrometer meters and the actuator endpoint of the circuit breakers, enabled when they are on the classpath.
+ */
+@Configuration
+@AutoConfigureAfter(CircuitBreakerAutoConfiguration.class)
+public class CircuitBreakerMetricsAutoConfiguration {
+
+    @Configuration
+    @ConditionalOnClass(MeterBinder.class)
+    static class MetricsConfiguration {
+        @Bean
+        @ConditionalOnMissingBean
+        public CircuitBreakerMetrics circuitBreakerMetrics(CircuitBreakerManager manager,
+                                                           CallDiagnostics callDiagnostics,
+                                                           CircuitBreakerProperties properties) {
+            return new CircuitBreakerMetrics(manager, callDiagnostics, properties);
+        }
+
+        @Bean
+        @ConditionalOnMissingBean
+        public CircuitBreakerExecutorMetrics circuitBreakerExecutorMetrics(CircuitBreakerCore circuitBreakerCore) {
+            return new CircuitBreakerExecutorMetrics(circuitBreakerCore.getExecutorService());
+        }
+    }
+
+    @Configuration
+    @ConditionalOnClass({Endpoint.class, ConditionalOnEnabledEndpoint.class})
+    static class EndpointConfiguration {
+        @Bean
+        @ConditionalOnMissingBean
+        @ConditionalOnEnabledEndpoint
+        public CircuitBreakerEndpoint circuitBreakerEndpoint(CircuitBreakerManager manager,
+                                                             CallDiagnostics callDiagnostics) {
+            return new CircuitBreakerEndpoint(manager, callDiagnostics);
+        }
+    }
+}
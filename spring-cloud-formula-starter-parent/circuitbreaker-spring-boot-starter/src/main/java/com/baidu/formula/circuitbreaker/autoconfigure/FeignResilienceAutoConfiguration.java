@@ -31,6 +31,7 @@ import org.springframework.context.annotation.Scope;
 
 import com.baidu.formula.circuitbreaker.CircuitBreakerAutoConfiguration;
 import com.baidu.formula.circuitbreaker.autoconfigure.feign.Resilience4jFeign;
+import com.baidu.formula.circuitbreaker.collapser.RequestCollapserManager;
 import com.baidu.formula.circuitbreaker.impl.CircuitBreakerCore;
 
 import feign.Feign;
@@ -49,8 +50,9 @@ public class FeignResilienceAutoConfiguration {
     @Bean
     @Scope("prototype")
     @ConditionalOnMissingBean
-    public Feign.Builder feignBuilder(CircuitBreakerCore circuitBreakerCore) {
-        return Resilience4jFeign.builder(circuitBreakerCore);
+    public Feign.Builder feignBuilder(CircuitBreakerCore circuitBreakerCore,
+                                      RequestCollapserManager requestCollapserManager) {
+        return Resilience4jFeign.builder(circuitBreakerCore, requestCollapserManager);
     }
 
 }
@@ -76,7 +76,7 @@ public class RestTemplateCircuitBreakerAutoConfiguration {
                 //}
                 //logger.info("RestTemplate init2 Customizer end");
                 ClientHttpRequestInterceptor interceptor1 = new RestTemplateCircuitBreakerInterceptor
-                        (circuitBreakerCore);
+                        (circuitBreakerCore, restTemplate);
                 interceptors.add(0, interceptor1);
                 restTemplate.setInterceptors(interceptors);
                 logger.info("RestTemplate init2 end,add CircuitBreaker interceptor");
@@ -18,19 +18,30 @@
  */
 package com.baidu.formula.circuitbreaker.autoconfigure;
 
-import com.baidu.formula.circuitbreaker.exception.CircuitBreakerOpenException;
+import com.baidu.formula.circuitbreaker.cache.CachedResponse;
+import com.baidu.formula.circuitbreaker.cache.HttpRequestCacheKey;
+import com.baidu.formula.circuitbreaker.cache.StaleResponseCache;
+import com.baidu.formula.circuitbreaker.classifier.CacheableResponseAccessor;
 import com.baidu.formula.circuitbreaker.impl.CircuitBreakerCore;
+import com.baidu.formula.circuitbreaker.retry.Attempt;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpRequest;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.client.ClientHttpRequest;
 import org.springframework.http.client.ClientHttpRequestExecution;
 import org.springframework.http.client.ClientHttpRequestInterceptor;
 import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.util.ReflectionUtils;
+import org.springframework.util.StreamUtils;
+import org.springframework.web.client.RestTemplate;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.lang.reflect.Method;
 import java.net.URI;
+import java.util.LinkedHashMap;
 
 /**
  * Created by cuiweizheng on 19/4/20.
@@ -39,57 +50,168 @@ public class RestTemplateCircuitBreakerInterceptor implements ClientHttpRequestI
 
     private static final Logger logger = LoggerFactory.getLogger(RestTemplateCircuitBreakerInterceptor.class);
 
+    // 降级方法解析使用, 只在类加载时查找一次
+    private static final Method DO_EXECUTE = ReflectionUtils.findMethod(RestTemplateCircuitBreakerInterceptor.class,
+            "doExecute", ClientHttpRequestExecution.class, HttpRequest.class, byte[].class);
+
+    static final CacheableResponseAccessor<ClientHttpResponse> RESPONSE_ACCESSOR =
+            new CacheableResponseAccessor<ClientHttpResponse>() {
+                @Override
+                public int getStatus(ClientHttpResponse response) throws IOException {
+                    return response.getRawStatusCode();
+                }
+
+                @Override
+                public String getHeader(ClientHttpResponse response, String name) {
+                    return response.getHeaders().getFirst(name);
+                }
+
+                @Override
+                public Object getRequestKey(Object[] args, StaleResponseCache cache) {
+                    HttpRequest request = (HttpRequest) args[1];
+                    return HttpRequestCacheKey.of(request.getMethodValue(), request.getURI().toString(),
+                            cache.getKeyHeaders(), request.getHeaders()::get);
+                }
+
+                @Override
+                public CachedResponse snapshot(ClientHttpResponse response, StaleResponseCache cache)
+                        throws IOException {
+                    try {
+                        byte[] body = StreamUtils.copyToByteArray(response.getBody());
+                        return new CachedResponse(response.getRawStatusCode(), response.getStatusText(),
+                                new LinkedHashMap<>(response.getHeaders()), body, cache.isOffHeap(body.length));
+                    } finally {
+                        response.close();
+                    }
+                }
+
+                @Override
+                public ClientHttpResponse restore(CachedResponse cached) {
+                    return new CachedClientHttpResponse(cached);
+                }
+            };
+
+    // 重试和对冲请求重新经过后续的拦截器时, 跳过熔断
+    private static final ThreadLocal<Boolean> REPLAYING = new ThreadLocal<>();
+
     private CircuitBreakerCore circuitBreakerCore;
 
+    // 用于重新发送请求, 为null时不支持重试和对冲请求
+    private RestTemplate restTemplate;
+
     public RestTemplateCircuitBreakerInterceptor(
             CircuitBreakerCore circuitBreakerCore) {
+        this(circuitBreakerCore, null);
+    }
+
+    public RestTemplateCircuitBreakerInterceptor(CircuitBreakerCore circuitBreakerCore, RestTemplate restTemplate) {
         this.circuitBreakerCore = circuitBreakerCore;
+        this.restTemplate = restTemplate;
     }
 
     @Override
     public ClientHttpResponse intercept(HttpRequest httpRequest, byte[] bytes,
                                         ClientHttpRequestExecution clientHttpRequestExecution) throws IOException {
+        if (REPLAYING.get() != null) {
+            return clientHttpRequestExecution.execute(httpRequest, bytes);
+        }
         URI asUri = httpRequest.getURI();
         String httpMethod = httpRequest.getMethod().toString();
         String serviceName = asUri.getHost();
         String url = asUri.getPath();
-        logger.info("http with serviceName:{}, menthod:{}, url:{}", serviceName, httpMethod, url);
+        logger.debug("http with serviceName:{}, menthod:{}, url:{}", serviceName, httpMethod, url);
         if (circuitBreakerCore.checkRulesExist(httpMethod, serviceName, url)) {
+            Object[] args = {clientHttpRequestExecution, httpRequest, bytes};
             try {
-                Method wrappedMethod = RestTemplateCircuitBreakerInterceptor.class.getMethod(
-                        "doExecute", ClientHttpRequestExecution.class, HttpRequest.class, byte[].class);
-                Object[] args = {clientHttpRequestExecution, httpRequest, bytes};
-                ClientHttpResponse response = (ClientHttpResponse) circuitBreakerCore.process(httpMethod,
-                        serviceName, url, wrappedMethod, this, args);
                 // todo 熔断返回null
-                return response;
-            } catch (Exception e) {
-                logger.error(e.getMessage(), e);
-                if (e instanceof CircuitBreakerOpenException) {
-                    throw  new RuntimeException(e.getMessage());
-                } else if (e instanceof IOException) {
-                    throw  new IOException(e.getMessage());
-                } else {
-                    throw new RuntimeException(e.getMessage());
+                if (restTemplate == null) {
+                    return (ClientHttpResponse) circuitBreakerCore.process(httpMethod, serviceName, url,
+                            DO_EXECUTE, this, args, () -> doExecute(clientHttpRequestExecution, httpRequest, bytes),
+                            RESPONSE_ACCESSOR);
                 }
+                Attempt<ClientHttpResponse> attempt = i -> i == 0
+                        ? doExecute(clientHttpRequestExecution, httpRequest, bytes) : replay(httpRequest, bytes);
+                return (ClientHttpResponse) circuitBreakerCore.process(httpMethod, serviceName, url,
+                        DO_EXECUTE, this, args, attempt, RESPONSE_ACCESSOR);
+            } catch (IOException | RuntimeException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new IOException(e.getMessage(), e);
             }
         } else {
             return clientHttpRequestExecution.execute(httpRequest, bytes);
         }
     }
 
+    /**
+     * The execution can not be executed again, so the request is sent again by the request factory of the
+     * RestTemplate, and the load balancer chooses the instance again. That factory runs the whole interceptor
+     * chain, including the interceptors before this one, which therefore see the request once per attempt:
+     * headers they add to the already intercepted request may be added twice, and counters or logs in them
+     * record every attempt. This interceptor passes replayed requests straight on to the next interceptor.
+     * Hedged requests are replayed on the circuit breaker executor, with the thread context passed by the
+     * task decorators only.
+     */
+    private ClientHttpResponse replay(HttpRequest httpRequest, byte[] bytes) throws IOException {
+        REPLAYING.set(Boolean.TRUE);
+        try {
+            ClientHttpRequest request = restTemplate.getRequestFactory().createRequest(
+                    httpRequest.getURI(), httpRequest.getMethod());
+            request.getHeaders().putAll(httpRequest.getHeaders());
+            StreamUtils.copy(bytes, request.getBody());
+            return request.execute();
+        } finally {
+            REPLAYING.remove();
+        }
+    }
+
     public ClientHttpResponse doExecute(ClientHttpRequestExecution clientHttpRequestExecution,
                                         HttpRequest httpRequest, byte[] bytes) throws IOException {
-        try {
-            ClientHttpResponse response = clientHttpRequestExecution.execute(httpRequest, bytes);
-            logger.info("http request response:" + response);
-            if (response == null || !HttpStatus.OK.equals(response.getStatusCode())) {
-                throw new IOException("response error");
+        return clientHttpRequestExecution.execute(httpRequest, bytes);
+    }
+
+    private static class CachedClientHttpResponse implements ClientHttpResponse {
+        private final CachedResponse cached;
+
+        private final HttpHeaders headers = new HttpHeaders();
+
+        private InputStream body;
+
+        CachedClientHttpResponse(CachedResponse cached) {
+            this.cached = cached;
+            this.headers.putAll(cached.getHeaders());
+        }
+
+        @Override
+        public HttpStatus getStatusCode() {
+            return HttpStatus.valueOf(cached.getStatus());
+        }
+
+        @Override
+        public int getRawStatusCode() {
+            return cached.getStatus();
+        }
+
+        @Override
+        public String getStatusText() {
+            return cached.getReason();
+        }
+
+        @Override
+        public HttpHeaders getHeaders() {
+            return headers;
+        }
+
+        @Override
+        public InputStream getBody() {
+            if (body == null) {
+                body = cached.getBody();
             }
-            return response;
-        } catch (Exception e) {
-            logger.error(e.getMessage(), e);
-            throw new IOException(e.getMessage(), e);
+            return body;
+        }
+
+        @Override
+        public void close() {
         }
     }
 }
@@ -0,0 +1,53 @@
+/*
+ * Copyright (c) 2018 Baidu, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baidu.formula.circuitbreaker.autoconfigure;
+
+import com.baidu.formula.circuitbreaker.CircuitBreakerAutoConfiguration;
+import com.baidu.formula.circuitbreaker.autoconfigure.webclient.WebClientCircuitBreakerFilter;
+import com.baidu.formula.circuitbreaker.autoconfigure.webclient.WebClientFallback;
+import com.baidu.formula.circuitbreaker.impl.CircuitBreakerCore;
+import com.baidu.formula.circuitbreaker.impl.CircuitBreakerManager;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.AutoConfigureAfter;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.web.reactive.function.client.WebClientCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.reactive.function.client.WebClient;
+
+/**
+ * Adds the circuit breaker filter to the WebClient.Builder provided by spring boot,
+ * it runs before the filters added later such as the load balancer filter, so rules match the service name.
+ */
+@Configuration
+@ConditionalOnClass(WebClient.class)
+@AutoConfigureAfter(CircuitBreakerAutoConfiguration.class)
+public class WebClientCircuitBreakerAutoConfiguration {
+
+    @Bean
+    @ConditionalOnMissingBean
+    public WebClientCircuitBreakerFilter webClientCircuitBreakerFilter(CircuitBreakerManager manager,
+                                                                       CircuitBreakerCore circuitBreakerCore,
+                                                                       ObjectProvider<WebClientFallback> fallback) {
+        return new WebClientCircuitBreakerFilter(manager, circuitBreakerCore, fallback.getIfAvailable());
+    }
+
+    @Bean
+    public WebClientCustomizer circuitBreakerWebClientCustomizer(WebClientCircuitBreakerFilter filter) {
+        return builder -> builder.filter(filter);
+    }
+}
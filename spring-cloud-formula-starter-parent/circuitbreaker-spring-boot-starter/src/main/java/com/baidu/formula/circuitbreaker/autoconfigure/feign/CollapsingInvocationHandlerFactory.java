@@ -0,0 +1,111 @@
+/*
+ * Copyright (c) 2018 Baidu, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baidu.formula.circuitbreaker.autoconfigure.feign;
+
+import com.baidu.formula.circuitbreaker.collapser.CollapsedCall;
+import com.baidu.formula.circuitbreaker.collapser.RequestCollapser;
+import com.baidu.formula.circuitbreaker.collapser.RequestCollapserManager;
+import feign.InvocationHandlerFactory;
+import feign.RequestInterceptor;
+import feign.RequestTemplate;
+import feign.Target;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Collapse the calls of configured Feign methods before they reach the client,
+ * so the collapsed requests are counted as one call by the circuitBreaker.
+ * Only the calls whose request interceptors add the same headers are collapsed,
+ * so the response of one caller is never returned to a caller with other credentials.
+ */
+public class CollapsingInvocationHandlerFactory implements InvocationHandlerFactory {
+    private final InvocationHandlerFactory delegate;
+
+    private final RequestCollapserManager collapserManager;
+
+    // Feign客户端的请求拦截器, 用于获取调用方的请求头
+    private final List<RequestInterceptor> requestInterceptors;
+
+    public CollapsingInvocationHandlerFactory(InvocationHandlerFactory delegate,
+                                              RequestCollapserManager collapserManager) {
+        this(delegate, collapserManager, Collections.emptyList());
+    }
+
+    public CollapsingInvocationHandlerFactory(InvocationHandlerFactory delegate,
+                                              RequestCollapserManager collapserManager,
+                                              List<RequestInterceptor> requestInterceptors) {
+        this.delegate = delegate;
+        this.collapserManager = collapserManager;
+        this.requestInterceptors = requestInterceptors;
+    }
+
+    @Override
+    public InvocationHandler create(Target target, Map<Method, MethodHandler> dispatch) {
+        InvocationHandler handler = delegate.create(target, dispatch);
+        // 参数为集合的方法可以作为批量调用的方法
+        Map<String, Method> batchMethods = new HashMap<>();
+        for (Method method : dispatch.keySet()) {
+            if (method.getParameterCount() == 1 && Collection.class.isAssignableFrom(method.getParameterTypes()[0])) {
+                batchMethods.put(method.getName(), method);
+            }
+        }
+        return (proxy, method, args) -> {
+            RequestCollapser collapser = args == null || args.length == 0 ? null
+                    : collapserManager.getCollapser(method.getDeclaringClass().getName() + "#" + method.getName());
+            if (collapser == null) {
+                return handler.invoke(proxy, method, args);
+            }
+            CollapsedCall single = collapsedArgs -> handler.invoke(proxy, method, collapsedArgs);
+            Method batchMethod = collapser.getRule().getBatchMethod() == null ? null
+                    : batchMethods.get(collapser.getRule().getBatchMethod());
+            CollapsedCall batch = batchMethod == null ? null : keys -> handler.invoke(proxy, batchMethod,
+                    new Object[]{toParameter((List<?>) keys[0], batchMethod.getParameterTypes()[0])});
+            return collapser.execute(args, callerHeaders(), single, batch);
+        };
+    }
+
+    /**
+     * 在调用方线程中执行请求拦截器, 得到本次调用会携带的请求头(如Authorization、Cookie、租户和路由的请求头)
+     * @return 请求头相同的调用才会合并
+     */
+    private Map<String, List<String>> callerHeaders() {
+        if (requestInterceptors.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        RequestTemplate template = new RequestTemplate();
+        for (RequestInterceptor interceptor : requestInterceptors) {
+            interceptor.apply(template);
+        }
+        Map<String, List<String>> headers = new HashMap<>();
+        template.headers().forEach((name, values) -> headers.put(name, new ArrayList<>(values)));
+        return headers;
+    }
+
+    private Object toParameter(List<?> keys, Class<?> type) {
+        if (type.isAssignableFrom(List.class)) {
+            return keys;
+        }
+        return new LinkedHashSet<>(keys);
+    }
+}
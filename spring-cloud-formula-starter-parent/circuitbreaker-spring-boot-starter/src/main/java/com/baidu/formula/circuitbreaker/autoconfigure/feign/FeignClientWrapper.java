@@ -15,17 +15,28 @@
  */
 package com.baidu.formula.circuitbreaker.autoconfigure.feign;
 
-import com.baidu.formula.circuitbreaker.exception.CircuitBreakerOpenException;
+import com.baidu.formula.circuitbreaker.cache.CachedResponse;
+import com.baidu.formula.circuitbreaker.cache.HttpRequestCacheKey;
+import com.baidu.formula.circuitbreaker.cache.StaleResponseCache;
+import com.baidu.formula.circuitbreaker.classifier.CacheableResponseAccessor;
 import com.baidu.formula.circuitbreaker.impl.CircuitBreakerCore;
+import com.baidu.formula.circuitbreaker.retry.Attempt;
 import feign.Client;
 import feign.Request;
 import feign.Response;
+import feign.Util;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.util.ReflectionUtils;
 
 import java.io.IOException;
 import java.lang.reflect.Method;
 import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 /**
  * 对feign请求进行包装，插入熔断功能
@@ -36,6 +47,62 @@ public class FeignClientWrapper implements Client {
 
     private static final Logger logger = LoggerFactory.getLogger(FeignClientWrapper.class);
 
+    // 降级方法解析使用, 只在类加载时查找一次
+    private static final Method DO_EXECUTE = ReflectionUtils.findMethod(FeignClientWrapper.class, "doExecute",
+            Client.class, Request.class, Request.Options.class);
+
+    static final CacheableResponseAccessor<Response> RESPONSE_ACCESSOR = new CacheableResponseAccessor<Response>() {
+        @Override
+        public int getStatus(Response response) {
+            return response.status();
+        }
+
+        @Override
+        public String getHeader(Response response, String name) {
+            Collection<String> values = response.headers().get(name);
+            return values == null || values.isEmpty() ? null : values.iterator().next();
+        }
+
+        @Override
+        public Object getRequestKey(Object[] args, StaleResponseCache cache) {
+            Request request = (Request) args[1];
+            return HttpRequestCacheKey.of(request.method(), request.url(), cache.getKeyHeaders(),
+                    name -> getHeaders(request.headers(), name));
+        }
+
+        @Override
+        public CachedResponse snapshot(Response response, StaleResponseCache cache) throws IOException {
+            try {
+                byte[] body = response.body() == null ? new byte[0] : Util.toByteArray(response.body().asInputStream());
+                Map<String, List<String>> headers = new LinkedHashMap<>();
+                response.headers().forEach((key, values) -> headers.put(key, new ArrayList<>(values)));
+                return new CachedResponse(response.status(), response.reason(), headers, body,
+                        cache.isOffHeap(body.length));
+            } finally {
+                response.close();
+            }
+        }
+
+        @Override
+        public Response restore(CachedResponse cached) {
+            Map<String, Collection<String>> headers = new LinkedHashMap<>(cached.getHeaders());
+            return Response.builder().status(cached.getStatus()).reason(cached.getReason()).headers(headers)
+                    .body(cached.getBody(), cached.getBodyLength()).build();
+        }
+    };
+
+    /**
+     * Feign keeps the request headers in a case sensitive map.
+     */
+    private static Collection<String> getHeaders(Map<String, Collection<String>> headers, String name) {
+        for (Map.Entry<String, Collection<String>> entry : headers.entrySet()) {
+            if (name.equalsIgnoreCase(entry.getKey())) {
+                return entry.getValue();
+            }
+        }
+        return null;
+    }
+
     private Client client;
 
     private CircuitBreakerCore circuitBreakerCore;
@@ -52,25 +119,18 @@ public class FeignClientWrapper implements Client {
         URI asUri = URI.create(request.url());
         String serviceName = asUri.getHost();
         String url = asUri.getPath();
-        logger.info("wrapper Client,serviceName:{},menthod:{},url:{}", serviceName, method, url);
+        logger.debug("wrapper Client,serviceName:{},menthod:{},url:{}", serviceName, method, url);
         if (circuitBreakerCore.checkRulesExist(method, serviceName, url)) {
+            Object[] wrappedArgs = {client, request, options};
             try {
-                Method wrappedMethod = FeignClientWrapper.class.getMethod("doExecute",
-                        Client.class, Request.class, Request.Options.class);
-                Object[] wrappedArgs = {client, request, options};
-                Response response = (Response) circuitBreakerCore.process(method,
-                        serviceName, url, wrappedMethod, this, wrappedArgs);
                 // todo 返回值为null
-                return response;
+                return (Response) circuitBreakerCore.process(method, serviceName, url, DO_EXECUTE, this,
+                        wrappedArgs, (Attempt<Response>) attempt -> doExecute(client, request, options),
+                        RESPONSE_ACCESSOR);
+            } catch (IOException | RuntimeException e) {
+                throw e;
             } catch (Exception e) {
-                logger.error(e.getMessage(), e);
-                if (e instanceof CircuitBreakerOpenException) {
-                    throw  new RuntimeException(e.getMessage());
-                } else if (e instanceof IOException) {
-                    throw  new IOException(e.getMessage());
-                } else {
-                    throw new RuntimeException(e.getMessage());
-                }
+                throw new IOException(e.getMessage(), e);
             }
         } else {
             return client.execute(request, options);
@@ -78,15 +138,6 @@ public class FeignClientWrapper implements Client {
     }
 
     public Response doExecute(Client client, Request request, Request.Options options) throws IOException {
-        try {
-            Response response = client.execute(request, options);
-            if (response == null || response.status() != 200) {
-                throw new IOException("response error");
-            }
-            return response;
-        } catch (Exception e) {
-            logger.error(e.getMessage(), e);
-            throw new IOException(e.getMessage());
-        }
+        return client.execute(request, options);
     }
 }
@@ -18,12 +18,17 @@
  */
 package com.baidu.formula.circuitbreaker.autoconfigure.feign;
 
+import com.baidu.formula.circuitbreaker.collapser.RequestCollapserManager;
 import com.baidu.formula.circuitbreaker.impl.CircuitBreakerCore;
 import feign.Client;
 import feign.Feign;
+import feign.InvocationHandlerFactory;
+import feign.RequestInterceptor;
 
 import javax.net.ssl.HostnameVerifier;
 import javax.net.ssl.SSLSocketFactory;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * 支持Resilience4jFeign
@@ -34,16 +39,31 @@ public final class Resilience4jFeign {
         return new Builder(circuitBreakerCore);
     }
 
+    public static Builder builder(CircuitBreakerCore circuitBreakerCore, RequestCollapserManager collapserManager) {
+        return new Builder(circuitBreakerCore, collapserManager);
+    }
+
     public static final class Builder extends Feign.Builder {
 
         CircuitBreakerCore circuitBreakerCore;
 
+        RequestCollapserManager collapserManager;
+
+        // 合并请求时按请求拦截器添加的请求头区分调用方
+        private final List<RequestInterceptor> requestInterceptors = new ArrayList<>();
+
         // wrapper之前的
         private Client client = new feign.Client.Default((SSLSocketFactory) null, (HostnameVerifier) null);
 
         public Builder(CircuitBreakerCore circuitBreakerCore) {
+            this(circuitBreakerCore, null);
+        }
+
+        public Builder(CircuitBreakerCore circuitBreakerCore, RequestCollapserManager collapserManager) {
             this.circuitBreakerCore = circuitBreakerCore;
+            this.collapserManager = collapserManager;
             this.client(new FeignClientWrapper(client, circuitBreakerCore));
+            this.invocationHandlerFactory(new InvocationHandlerFactory.Default());
         }
 
         /**
@@ -71,6 +91,33 @@ public final class Resilience4jFeign {
             return this;
         }
 
+        @Override
+        public Feign.Builder requestInterceptor(RequestInterceptor requestInterceptor) {
+            requestInterceptors.add(requestInterceptor);
+            return super.requestInterceptor(requestInterceptor);
+        }
+
+        @Override
+        public Feign.Builder requestInterceptors(Iterable<RequestInterceptor> requestInterceptors) {
+            this.requestInterceptors.clear();
+            for (RequestInterceptor requestInterceptor : requestInterceptors) {
+                this.requestInterceptors.add(requestInterceptor);
+            }
+            return super.requestInterceptors(requestInterceptors);
+        }
+
+        /**
+         * Collapse the requests of configured methods before the invocation handler.
+         */
+        @Override
+        public Feign.Builder invocationHandlerFactory(InvocationHandlerFactory invocationHandlerFactory) {
+            if (collapserManager == null || invocationHandlerFactory instanceof CollapsingInvocationHandlerFactory) {
+                return super.invocationHandlerFactory(invocationHandlerFactory);
+            }
+            return super.invocationHandlerFactory(new CollapsingInvocationHandlerFactory(invocationHandlerFactory,
+                    collapserManager, requestInterceptors));
+        }
+
         @Override
         public Feign build() {
             return super.build();
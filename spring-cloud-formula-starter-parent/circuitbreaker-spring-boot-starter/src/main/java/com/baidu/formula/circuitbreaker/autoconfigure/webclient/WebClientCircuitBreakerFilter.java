@@ -0,0 +1,288 @@
+/*
+ * Copyright (c) 2018 Baidu, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baidu.formula.circuitbreaker.autoconfigure.webclient;
+
+import com.baidu.formula.circuitbreaker.cache.CachedResponse;
+import com.baidu.formula.circuitbreaker.cache.HttpRequestCacheKey;
+import com.baidu.formula.circuitbreaker.cache.StaleResponseCache;
+import com.baidu.formula.circuitbreaker.classifier.CallOutcome;
+import com.baidu.formula.circuitbreaker.classifier.HttpResponseAccessor;
+import com.baidu.formula.circuitbreaker.classifier.ResponseClassifier;
+import com.baidu.formula.circuitbreaker.diagnostics.DiagnosticEvent;
+import com.baidu.formula.circuitbreaker.enumeration.FallbackTypeEnum;
+import com.baidu.formula.circuitbreaker.exception.BulkheadFullException;
+import com.baidu.formula.circuitbreaker.exception.CircuitBreakerOpenException;
+import com.baidu.formula.circuitbreaker.exception.FallBackNotFoundException;
+import com.baidu.formula.circuitbreaker.impl.CircuitBreakerCore;
+import com.baidu.formula.circuitbreaker.impl.CircuitBreakerManager;
+import com.baidu.formula.circuitbreaker.model.BulkheadCoalition;
+import com.baidu.formula.circuitbreaker.model.CircuitBreakerCoalition;
+import com.baidu.formula.circuitbreaker.model.CircuitBreakerRule;
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.util.StreamUtils;
+import org.springframework.web.reactive.function.BodyExtractors;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.ExchangeFilterFunction;
+import org.springframework.web.reactive.function.client.ExchangeFunction;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Applies the circuit breaker rules matched by host, method and path to WebClient requests.
+ * Outcomes are recorded on the completion signals of the exchange, and when timeLimiterEnabled is set
+ * the timeoutDuration of the rule is applied by the timeout operator, so no thread is blocked or used
+ * by the circuit breaker.
+ * Semaphore bulkheads are applied, thread pool bulkheads, retries and hedges are not.
+ */
+public class WebClientCircuitBreakerFilter implements ExchangeFilterFunction {
+    private static final Logger logger = LoggerFactory.getLogger(WebClientCircuitBreakerFilter.class);
+
+    private static final DefaultDataBufferFactory BUFFER_FACTORY = new DefaultDataBufferFactory();
+
+    static final HttpResponseAccessor<ClientResponse> RESPONSE_ACCESSOR = new HttpResponseAccessor<ClientResponse>() {
+        @Override
+        public int getStatus(ClientResponse response) {
+            return response.statusCode().value();
+        }
+
+        @Override
+        public String getHeader(ClientResponse response, String name) {
+            return response.headers().asHttpHeaders().getFirst(name);
+        }
+    };
+
+    private final CircuitBreakerManager manager;
+
+    private final CircuitBreakerCore circuitBreakerCore;
+
+    // FUNCTION类型的降级, 可以为null
+    private final WebClientFallback fallback;
+
+    public WebClientCircuitBreakerFilter(CircuitBreakerManager manager, CircuitBreakerCore circuitBreakerCore,
+                                         WebClientFallback fallback) {
+        this.manager = manager;
+        this.circuitBreakerCore = circuitBreakerCore;
+        this.fallback = fallback;
+    }
+
+    @Override
+    public Mono<ClientResponse> filter(ClientRequest request, ExchangeFunction next) {
+        URI uri = request.url();
+        CircuitBreakerCoalition coalition = manager.getCircuitBreakerCoalition(
+                request.method().name(), uri.getHost(), uri.getPath());
+        if (coalition == null || coalition.getRule() == null) {
+            return next.exchange(request);
+        }
+        return Mono.defer(() -> exchange(request, next, coalition));
+    }
+
+    private Mono<ClientResponse> exchange(ClientRequest request, ExchangeFunction next,
+                                          CircuitBreakerCoalition coalition) {
+        CircuitBreaker circuitBreaker = coalition.getCircuitBreaker();
+        CircuitBreakerRule rule = coalition.getRule();
+        String name = rule.getRuleName();
+        StaleResponseCache staleCache = coalition.getStaleResponseCache();
+        HttpRequestCacheKey cacheKey = staleCache == null ? null : HttpRequestCacheKey.of(request.method().name(),
+                request.url().toString(), staleCache.getKeyHeaders(), request.headers()::get);
+        if (!circuitBreaker.isCallPermitted()) {
+            circuitBreakerCore.getDiagnostics().exemplar(name, DiagnosticEvent.NOT_PERMITTED,
+                    "CircuitBreaker is open, go to fallback invocation");
+            return fallback(coalition, request, null, cacheKey);
+        }
+
+        // 舱壁隔离, 响应式调用不占用线程, 只支持信号量方式
+        BulkheadCoalition bulkheadCoalition = manager.getBulkheadCoalition(name);
+        Bulkhead bulkhead = bulkheadCoalition == null ? null : bulkheadCoalition.getBulkhead();
+        if (bulkhead != null && !bulkhead.isCallPermitted()) {
+            circuitBreakerCore.getDiagnostics().exemplar(name, DiagnosticEvent.BULKHEAD_FULL,
+                    "Bulkhead is full, go to fallback invocation");
+            return fallback(coalition, request,
+                    new BulkheadFullException(String.format("Bulkhead[%s] is full", name)), cacheKey);
+        }
+
+        Mono<ClientResponse> call = next.exchange(request);
+        Duration timeout = rule.getTimeoutDuration();
+        if (Boolean.TRUE.equals(rule.getEnabled()) && Boolean.TRUE.equals(rule.getTimeLimiterEnabled())
+                && timeout != null && !timeout.isNegative() && !timeout.isZero()) {
+            call = call.timeout(timeout);
+        }
+        circuitBreakerCore.getDiagnostics().record(name, DiagnosticEvent.CALLED);
+        long start = System.nanoTime();
+        AtomicBoolean recorded = new AtomicBoolean();
+        Mono<ClientResponse> result = call
+                .flatMap(response -> onResponse(coalition, request, response, start, recorded, cacheKey))
+                .onErrorResume(e -> onError(coalition, request, e, start, recorded, cacheKey));
+        return bulkhead == null ? result : result.doFinally(signal -> bulkhead.onComplete());
+    }
+
+    private Mono<ClientResponse> onResponse(CircuitBreakerCoalition coalition, ClientRequest request,
+                                            ClientResponse response, long start, AtomicBoolean recorded,
+                                            HttpRequestCacheKey cacheKey) {
+        CallOutcome outcome;
+        try {
+            outcome = getResponseClassifier(coalition).classify(response, RESPONSE_ACCESSOR);
+        } catch (IOException | RuntimeException e) {
+            return Mono.error(e);
+        }
+        recorded.set(true);
+        circuitBreakerCore.onCallFinished(coalition, System.nanoTime() - start, outcome, null);
+        if (CallOutcome.FAILURE.equals(outcome)) {
+            circuitBreakerCore.getDiagnostics().record(coalition.getRule().getRuleName(), DiagnosticEvent.FAILED);
+        }
+        StaleResponseCache staleCache = coalition.getStaleResponseCache();
+        if (cacheKey != null && staleCache != null) {
+            if (CallOutcome.SUCCESS.equals(outcome)) {
+                return cacheResponse(staleCache, cacheKey, response);
+            }
+            Object stale = CallOutcome.FAILURE.equals(outcome) ? staleCache.get(cacheKey) : null;
+            if (stale != null) {
+                // 丢弃失败的响应并释放响应体
+                return response.bodyToMono(Void.class).then(Mono.fromSupplier(() -> restore((CachedResponse) stale)));
+            }
+        }
+        if (CallOutcome.FAILURE.equals(outcome) && hasFailureResponseFallback(coalition.getRule())) {
+            // 与阻塞客户端一致, 按失败分类的响应按降级类型降级, 不创建异常
+            return response.bodyToMono(Void.class).then(Mono.defer(() -> fallback(coalition, request, null, null)));
+        }
+        return Mono.just(response);
+    }
+
+    /**
+     * 降级类型为抛出异常(或缓存中没有响应)或未配置降级时, 失败的响应原样返回
+     */
+    private boolean hasFailureResponseFallback(CircuitBreakerRule rule) {
+        FallbackTypeEnum type = FallbackTypeEnum.getById(rule.getFallbackType());
+        if (FallbackTypeEnum.EXCEPTION.equals(type) || FallbackTypeEnum.STALE_CACHE.equals(type)) {
+            return false;
+        }
+        return type != null || rule.getFallbackResult() != null || fallback != null;
+    }
+
+    private Mono<ClientResponse> onError(CircuitBreakerCoalition coalition, ClientRequest request, Throwable e,
+                                         long start, AtomicBoolean recorded, HttpRequestCacheKey cacheKey) {
+        // 响应已统计, 错误来自读取缓存的响应体
+        if (!recorded.compareAndSet(false, true)) {
+            return Mono.error(e);
+        }
+        CallOutcome outcome = getResponseClassifier(coalition).classify(e);
+        circuitBreakerCore.onCallFinished(coalition, System.nanoTime() - start, outcome, e);
+        if (CallOutcome.IGNORED.equals(outcome)) {
+            return Mono.error(e);
+        }
+        circuitBreakerCore.getDiagnostics().exemplar(coalition.getRule().getRuleName(), DiagnosticEvent.FAILED,
+                "Request[{} {}] failed due to [{}:{}], executing fallback...",
+                request.method(), request.url(), e.getClass(), e.getMessage());
+        return fallback(coalition, request, e, cacheKey);
+    }
+
+    /**
+     * Same fallback types as the blocking clients, the fallbackResult is returned as a json body,
+     * FUNCTION calls the {@link WebClientFallback}.
+     */
+    private Mono<ClientResponse> fallback(CircuitBreakerCoalition coalition, ClientRequest request,
+                                          Throwable t, HttpRequestCacheKey cacheKey) {
+        CircuitBreakerRule rule = coalition.getRule();
+        FallbackTypeEnum type = FallbackTypeEnum.getById(rule.getFallbackType());
+        if (FallbackTypeEnum.STALE_CACHE.equals(type) && cacheKey != null
+                && coalition.getStaleResponseCache() != null) {
+            Object stale = coalition.getStaleResponseCache().get(cacheKey);
+            if (stale != null) {
+                logger.debug("fallback value is stale response.");
+                circuitBreakerCore.getDiagnostics().record(rule.getRuleName(), DiagnosticEvent.FALLBACK);
+                return Mono.fromSupplier(() -> restore((CachedResponse) stale));
+            }
+        }
+        if (FallbackTypeEnum.EXCEPTION.equals(type) || FallbackTypeEnum.STALE_CACHE.equals(type)) {
+            return Mono.error(t != null ? t : new CircuitBreakerOpenException("CircuitBreaker is open"));
+        }
+        circuitBreakerCore.getDiagnostics().record(rule.getRuleName(), DiagnosticEvent.FALLBACK);
+        if (FallbackTypeEnum.NULL.equals(type)) {
+            return Mono.empty();
+        }
+
+        if (rule.getFallbackResult() != null) {
+            return Mono.just(ClientResponse.create(HttpStatus.OK)
+                    .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_UTF8_VALUE)
+                    .body(rule.getFallbackResult())
+                    .build());
+        }
+        if (fallback == null) {
+            return Mono.error(new FallBackNotFoundException(
+                    String.format("CircuitBreaker[%s]'s fallback function not configured.", rule)));
+        }
+        return fallback.fallback(request, t);
+    }
+
+    /**
+     * Read the body of the successful response into the stale response cache,
+     * and return a new response reading the cached body.
+     */
+    private Mono<ClientResponse> cacheResponse(StaleResponseCache cache, HttpRequestCacheKey cacheKey,
+                                               ClientResponse response) {
+        return DataBufferUtils.join(response.body(BodyExtractors.toDataBuffers()))
+                .map(buffer -> {
+                    byte[] body = new byte[buffer.readableByteCount()];
+                    buffer.read(body);
+                    DataBufferUtils.release(buffer);
+                    return body;
+                })
+                .defaultIfEmpty(new byte[0])
+                .map(body -> {
+                    CachedResponse cached = new CachedResponse(response.statusCode().value(),
+                            response.statusCode().getReasonPhrase(),
+                            new LinkedHashMap<>(response.headers().asHttpHeaders()), body,
+                            cache.isOffHeap(body.length));
+                    cache.put(cacheKey, cached);
+                    return restore(cached);
+                });
+    }
+
+    private ClientResponse restore(CachedResponse cached) {
+        byte[] body;
+        try {
+            body = StreamUtils.copyToByteArray(cached.getBody());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        Flux<DataBuffer> buffers = body.length == 0 ? Flux.empty() : Flux.just(BUFFER_FACTORY.wrap(body));
+        return ClientResponse.create(HttpStatus.valueOf(cached.getStatus()))
+                .headers(headers -> headers.putAll(cached.getHeaders()))
+                .body(buffers)
+                .build();
+    }
+
+    private ResponseClassifier getResponseClassifier(CircuitBreakerCoalition coalition) {
+        ResponseClassifier classifier = coalition.getResponseClassifier();
+        return classifier == null ? ResponseClassifier.DEFAULT : classifier;
+    }
+}
@@ -0,0 +1,35 @@
+/*
+ * Copyright (c) 2018 Baidu, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baidu.formula.circuitbreaker.autoconfigure.webclient;
+
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import reactor.core.publisher.Mono;
+
+/**
+ * Fallback of WebClient requests whose rule has the FUNCTION fallback type,
+ * provide a bean of it to be used by {@link WebClientCircuitBreakerFilter}.
+ */
+@FunctionalInterface
+public interface WebClientFallback {
+
+    /**
+     * @param request
+     * @param t       the failure of the request, null if the circuitBreaker is open
+     * @return
+     */
+    Mono<ClientResponse> fallback(ClientRequest request, Throwable t);
+}
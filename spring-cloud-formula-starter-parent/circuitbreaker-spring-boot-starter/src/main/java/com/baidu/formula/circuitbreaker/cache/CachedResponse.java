@@ -0,0 +1,116 @@
+/*
+ * Copyright (c) 2018 Baidu, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baidu.formula.circuitbreaker.cache;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Status, headers and body of a successful http response kept by the stale response cache.
+ * Large bodies can be stored off-heap.
+ */
+public class CachedResponse {
+    private final int status;
+
+    private final String reason;
+
+    private final Map<String, List<String>> headers;
+
+    private final byte[] body;
+
+    private final ByteBuffer offHeapBody;
+
+    public CachedResponse(int status, String reason, Map<String, List<String>> headers, byte[] body,
+                          boolean offHeap) {
+        this.status = status;
+        this.reason = reason;
+        this.headers = Collections.unmodifiableMap(headers);
+        if (offHeap && body != null) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(body.length);
+            buffer.put(body).flip();
+            this.offHeapBody = buffer.asReadOnlyBuffer();
+            this.body = null;
+        } else {
+            this.offHeapBody = null;
+            this.body = body;
+        }
+    }
+
+    public int getStatus() {
+        return status;
+    }
+
+    public String getReason() {
+        return reason;
+    }
+
+    public Map<String, List<String>> getHeaders() {
+        return headers;
+    }
+
+    public int getBodyLength() {
+        if (offHeapBody != null) {
+            return offHeapBody.remaining();
+        }
+        return body == null ? 0 : body.length;
+    }
+
+    public boolean isOffHeap() {
+        return offHeapBody != null;
+    }
+
+    public InputStream getBody() {
+        if (offHeapBody != null) {
+            return new ByteBufferInputStream(offHeapBody.duplicate());
+        }
+        return new ByteArrayInputStream(body == null ? new byte[0] : body);
+    }
+
+    private static class ByteBufferInputStream extends InputStream {
+        private final ByteBuffer buffer;
+
+        ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (len == 0) {
+                return 0;
+            }
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            int n = Math.min(len, buffer.remaining());
+            buffer.get(b, off, n);
+            return n;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+    }
+}
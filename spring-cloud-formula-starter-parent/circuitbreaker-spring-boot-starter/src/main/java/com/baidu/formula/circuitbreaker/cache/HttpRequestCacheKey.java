@@ -0,0 +1,95 @@
+/*
+ * Copyright (c) 2018 Baidu, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baidu.formula.circuitbreaker.cache;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Request key of an http call, the method, the full url and the request headers which select the response.
+ * Only safe methods are cached, responses of other methods depend on the request body and the server state.
+ */
+public class HttpRequestCacheKey {
+    private static final Set<String> CACHEABLE_METHODS = Collections.unmodifiableSet(new HashSet<>(
+            Arrays.asList("GET", "HEAD")));
+
+    private final String method;
+
+    private final String url;
+
+    // 按keyHeaders的顺序保存请求头的值
+    private final List<Collection<String>> headers;
+
+    private final int hashCode;
+
+    private HttpRequestCacheKey(String method, String url, List<Collection<String>> headers) {
+        this.method = method;
+        this.url = url;
+        this.headers = headers;
+        this.hashCode = 31 * (31 * method.hashCode() + url.hashCode()) + headers.hashCode();
+    }
+
+    /**
+     * @param method     http method of the request
+     * @param url        full url of the request
+     * @param keyHeaders names of the request headers included in the key
+     * @param headers    read the values of a request header, the name is case insensitive
+     * @return null if the response of the request is not cacheable
+     */
+    public static HttpRequestCacheKey of(String method, String url, List<String> keyHeaders,
+                                         Function<String, ? extends Collection<String>> headers) {
+        if (method == null || url == null || !CACHEABLE_METHODS.contains(method.toUpperCase(Locale.ROOT))) {
+            return null;
+        }
+        List<Collection<String>> values = new ArrayList<>(keyHeaders.size());
+        for (String name : keyHeaders) {
+            Collection<String> value = headers.apply(name);
+            values.add(value == null || value.isEmpty()
+                    ? Collections.emptyList() : Collections.unmodifiableList(new ArrayList<>(value)));
+        }
+        return new HttpRequestCacheKey(method.toUpperCase(Locale.ROOT), url, values);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof HttpRequestCacheKey)) {
+            return false;
+        }
+        HttpRequestCacheKey that = (HttpRequestCacheKey) o;
+        return hashCode == that.hashCode && method.equals(that.method) && url.equals(that.url)
+                && headers.equals(that.headers);
+    }
+
+    @Override
+    public int hashCode() {
+        return hashCode;
+    }
+
+    @Override
+    public String toString() {
+        return method + " " + url;
+    }
+}
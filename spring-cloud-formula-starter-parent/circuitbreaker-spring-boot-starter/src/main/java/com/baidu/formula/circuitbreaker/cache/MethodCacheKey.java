@@ -0,0 +1,54 @@
+/*
+ * Copyright (c) 2018 Baidu, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baidu.formula.circuitbreaker.cache;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+
+/**
+ * Request key of a protected method, the method and its arguments.
+ */
+public class MethodCacheKey {
+    private final Method method;
+
+    private final Object[] args;
+
+    private final int hashCode;
+
+    public MethodCacheKey(Method method, Object[] args) {
+        this.method = method;
+        this.args = args == null ? new Object[0] : args.clone();
+        this.hashCode = 31 * (method == null ? 0 : method.hashCode()) + Arrays.deepHashCode(this.args);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof MethodCacheKey)) {
+            return false;
+        }
+        MethodCacheKey that = (MethodCacheKey) o;
+        return hashCode == that.hashCode && (method == null ? that.method == null : method.equals(that.method))
+                && Arrays.deepEquals(args, that.args);
+    }
+
+    @Override
+    public int hashCode() {
+        return hashCode;
+    }
+}
@@ -0,0 +1,215 @@
+/*
+ * Copyright (c) 2018 Baidu, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baidu.formula.circuitbreaker.cache;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The last successful response of each request key of a rule, in least recently used order.
+ * It is served by the STALE_CACHE fallback when the circuitBreaker is open or the call fails.
+ * The least recently used entries are evicted when the entry count or the total body size of the
+ * cached http responses exceeds the limits, and bodies larger than the per-entry limit are not cached.
+ */
+public class StaleResponseCache {
+    // 开启堆外存储时, 超过该大小的响应体存储在堆外
+    public static final int OFF_HEAP_THRESHOLD = 4096;
+
+    // 决定响应内容的请求头, 始终作为缓存key的一部分, 避免将一个调用方的响应返回给其他调用方
+    public static final List<String> DEFAULT_KEY_HEADERS = Collections.unmodifiableList(Arrays.asList(
+            "Authorization", "Cookie", "Accept", "Accept-Encoding", "Accept-Language"));
+
+    private final int maxSize;
+
+    private final long maxBytes;
+
+    private final int maxEntryBytes;
+
+    private final long maxStalenessNanos;
+
+    private final boolean offHeap;
+
+    private final List<String> keyHeaders;
+
+    private final Map<Object, Entry> entries;
+
+    // 缓存的响应体总大小, 在entries的锁内更新
+    private long totalBytes;
+
+    private final LongAdder hitCount = new LongAdder();
+
+    private final LongAdder missCount = new LongAdder();
+
+    public StaleResponseCache(int maxSize, long maxStalenessMillis, boolean offHeap) {
+        this(maxSize, maxStalenessMillis, offHeap, Collections.emptyList());
+    }
+
+    public StaleResponseCache(int maxSize, long maxStalenessMillis, boolean offHeap, List<String> extraKeyHeaders) {
+        this(maxSize, maxStalenessMillis, offHeap, extraKeyHeaders, Long.MAX_VALUE, Integer.MAX_VALUE);
+    }
+
+    /**
+     * @param extraKeyHeaders request headers included in the request key besides the default ones
+     * @param maxBytes        max total body size of the cached http responses
+     * @param maxEntryBytes   max body size of a cached http response
+     */
+    public StaleResponseCache(int maxSize, long maxStalenessMillis, boolean offHeap, List<String> extraKeyHeaders,
+                              long maxBytes, int maxEntryBytes) {
+        Set<String> names = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+        names.addAll(DEFAULT_KEY_HEADERS);
+        names.addAll(extraKeyHeaders);
+        this.keyHeaders = Collections.unmodifiableList(new ArrayList<>(names));
+        this.maxSize = Math.max(maxSize, 1);
+        this.maxStalenessNanos = TimeUnit.MILLISECONDS.toNanos(maxStalenessMillis);
+        this.offHeap = offHeap;
+        this.maxBytes = Math.max(maxBytes, 0);
+        this.maxEntryBytes = (int) Math.min(Math.max(maxEntryBytes, 0), this.maxBytes);
+        this.entries = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    /**
+     * A response whose body exceeds the per-entry limit is not cached, and the previous response of the key
+     * is removed so that an older response is not served in its place.
+     */
+    public void put(Object key, Object value) {
+        if (key == null || value == null) {
+            return;
+        }
+        Entry entry = new Entry(value, System.nanoTime());
+        synchronized (entries) {
+            remove(key);
+            if (entry.bytes > maxEntryBytes) {
+                return;
+            }
+            entries.put(key, entry);
+            totalBytes += entry.bytes;
+            // 按最近最少使用的顺序淘汰, 直到响应数和响应体总大小都不超过限制
+            Iterator<Entry> eldest = entries.values().iterator();
+            while (entries.size() > maxSize || totalBytes > maxBytes) {
+                totalBytes -= eldest.next().bytes;
+                eldest.remove();
+            }
+        }
+    }
+
+    private void remove(Object key) {
+        Entry removed = entries.remove(key);
+        if (removed != null) {
+            totalBytes -= removed.bytes;
+        }
+    }
+
+    /**
+     * @param key
+     * @return null if not cached or staler than the max staleness
+     */
+    public Object get(Object key) {
+        Entry entry;
+        synchronized (entries) {
+            entry = entries.get(key);
+            if (entry != null && maxStalenessNanos > 0 && System.nanoTime() - entry.createdNanos > maxStalenessNanos) {
+                remove(key);
+                entry = null;
+            }
+        }
+        if (entry == null) {
+            missCount.increment();
+            return null;
+        }
+        hitCount.increment();
+        return entry.value;
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    /**
+     * @return total body size of the cached http responses
+     */
+    public long getTotalBytes() {
+        synchronized (entries) {
+            return totalBytes;
+        }
+    }
+
+    public long getHitCount() {
+        return hitCount.sum();
+    }
+
+    public long getMissCount() {
+        return missCount.sum();
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    public int getMaxEntryBytes() {
+        return maxEntryBytes;
+    }
+
+    public long getMaxStalenessNanos() {
+        return maxStalenessNanos;
+    }
+
+    /**
+     * @return names of the request headers included in the request key of http calls
+     */
+    public List<String> getKeyHeaders() {
+        return keyHeaders;
+    }
+
+    public boolean isOffHeap() {
+        return offHeap;
+    }
+
+    /**
+     * @return false for bodies larger than the per-entry limit, which are not cached
+     */
+    public boolean isOffHeap(int bodyLength) {
+        return offHeap && bodyLength >= OFF_HEAP_THRESHOLD && bodyLength <= maxEntryBytes;
+    }
+
+    private static class Entry {
+        private final Object value;
+
+        private final long createdNanos;
+
+        private final int bytes;
+
+        Entry(Object value, long createdNanos) {
+            this.value = value;
+            this.createdNanos = createdNanos;
+            this.bytes = value instanceof CachedResponse ? ((CachedResponse) value).getBodyLength() : 0;
+        }
+    }
+}
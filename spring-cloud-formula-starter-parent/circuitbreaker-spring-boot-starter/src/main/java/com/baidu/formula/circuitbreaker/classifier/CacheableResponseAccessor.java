@@ -0,0 +1,52 @@
+/*
+ * Copyright (c) 2018 Baidu, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baidu.formula.circuitbreaker.classifier;
+
+import com.baidu.formula.circuitbreaker.cache.CachedResponse;
+import com.baidu.formula.circuitbreaker.cache.StaleResponseCache;
+
+import java.io.IOException;
+
+/**
+ * Response accessor of the http clients whose responses can be kept in the stale response cache.
+ *
+ * @param <R> response type
+ */
+public interface CacheableResponseAccessor<R> extends HttpResponseAccessor<R> {
+
+    /**
+     * @param args  arguments of the intercepted method
+     * @param cache the stale response cache of the rule, provides the request headers included in the key
+     * @return key of the request in the stale response cache, null if the response is not cacheable
+     */
+    Object getRequestKey(Object[] args, StaleResponseCache cache);
+
+    /**
+     * Read the whole response into the cache, the response is consumed and closed.
+     *
+     * @param response
+     * @param cache
+     * @return
+     * @throws IOException
+     */
+    CachedResponse snapshot(R response, StaleResponseCache cache) throws IOException;
+
+    /**
+     * @param cached
+     * @return a new response which reads the cached body
+     */
+    R restore(CachedResponse cached);
+}
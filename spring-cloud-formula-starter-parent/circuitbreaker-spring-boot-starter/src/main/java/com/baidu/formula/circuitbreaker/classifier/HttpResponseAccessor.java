@@ -0,0 +1,48 @@
+/*
+ * Copyright (c) 2018 Baidu, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baidu.formula.circuitbreaker.classifier;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Reads the status and headers of the response type of an http client.
+ *
+ * @param <R> response type
+ */
+public interface HttpResponseAccessor<R> {
+
+    /**
+     * @param response
+     * @return http status, or -1 if there is no response
+     * @throws IOException
+     */
+    int getStatus(R response) throws IOException;
+
+    String getHeader(R response, String name);
+
+    /**
+     * Release the response which is discarded by retries or hedges.
+     *
+     * @param response
+     * @throws IOException
+     */
+    default void close(R response) throws IOException {
+        if (response instanceof Closeable) {
+            ((Closeable) response).close();
+        }
+    }
+}
@@ -0,0 +1,183 @@
+/*
+ * Copyright (c) 2018 Baidu, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baidu.formula.circuitbreaker.classifier;
+
+import com.baidu.formula.circuitbreaker.model.CircuitBreakerRule;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.util.ClassUtils;
+import org.springframework.util.CollectionUtils;
+import org.springframework.util.StringUtils;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Classify responses and exceptions of a circuit breaker rule into call outcomes.
+ * The configuration is compiled once when the rule is created, so classification does not allocate.
+ * By default 5xx responses and all exceptions are failures, other responses pass through as success.
+ */
+public class ResponseClassifier {
+    private static final Logger logger = LoggerFactory.getLogger(ResponseClassifier.class);
+
+    public static final String DEFAULT_FAILURE_STATUS_CODES = "500-599";
+
+    public static final ResponseClassifier DEFAULT = new ResponseClassifier(new int[]{500}, new int[]{599},
+            new String[0], new String[0], new Class<?>[0], new Class<?>[0]);
+
+    private final int[] failureStatusFrom;
+
+    private final int[] failureStatusTo;
+
+    private final String[] failureHeaderNames;
+
+    private final String[] failureHeaderValues;
+
+    private final Class<?>[] recordExceptions;
+
+    private final Class<?>[] ignoreExceptions;
+
+    private ResponseClassifier(int[] failureStatusFrom, int[] failureStatusTo,
+                               String[] failureHeaderNames, String[] failureHeaderValues,
+                               Class<?>[] recordExceptions, Class<?>[] ignoreExceptions) {
+        this.failureStatusFrom = failureStatusFrom;
+        this.failureStatusTo = failureStatusTo;
+        this.failureHeaderNames = failureHeaderNames;
+        this.failureHeaderValues = failureHeaderValues;
+        this.recordExceptions = recordExceptions;
+        this.ignoreExceptions = ignoreExceptions;
+    }
+
+    public static ResponseClassifier of(CircuitBreakerRule rule) {
+        if (CollectionUtils.isEmpty(rule.getFailureStatusCodes()) && CollectionUtils.isEmpty(rule.getFailureHeaders())
+                && CollectionUtils.isEmpty(rule.getRecordExceptions())
+                && CollectionUtils.isEmpty(rule.getIgnoreExceptions())) {
+            return DEFAULT;
+        }
+
+        List<String> statusCodes = CollectionUtils.isEmpty(rule.getFailureStatusCodes())
+                ? Collections.singletonList(DEFAULT_FAILURE_STATUS_CODES) : rule.getFailureStatusCodes();
+        List<int[]> ranges = new ArrayList<>();
+        for (String statusCode : statusCodes) {
+            int[] range = parseStatusRange(statusCode);
+            if (range != null) {
+                ranges.add(range);
+            } else {
+                logger.warn("illegal failure status code:{} of circuitBreaker rule:{}", statusCode, rule.getRuleId());
+            }
+        }
+        int[] from = new int[ranges.size()];
+        int[] to = new int[ranges.size()];
+        for (int i = 0; i < ranges.size(); i++) {
+            from[i] = ranges.get(i)[0];
+            to[i] = ranges.get(i)[1];
+        }
+
+        Map<String, String> headers = rule.getFailureHeaders();
+        int headerCount = headers == null ? 0 : headers.size();
+        String[] headerNames = new String[headerCount];
+        String[] headerValues = new String[headerCount];
+        if (headers != null) {
+            int i = 0;
+            for (Map.Entry<String, String> entry : headers.entrySet()) {
+                headerNames[i] = entry.getKey();
+                headerValues[i] = StringUtils.hasText(entry.getValue()) ? entry.getValue() : null;
+                i++;
+            }
+        }
+
+        return new ResponseClassifier(from, to, headerNames, headerValues,
+                resolveClasses(rule.getRecordExceptions()), resolveClasses(rule.getIgnoreExceptions()));
+    }
+
+    /**
+     * Support "500-599", "503" and "5xx".
+     */
+    private static int[] parseStatusRange(String statusCode) {
+        if (!StringUtils.hasText(statusCode)) {
+            return null;
+        }
+        String code = statusCode.trim().toLowerCase();
+        try {
+            if (code.endsWith("xx") && code.length() == 3) {
+                int hundred = Integer.parseInt(code.substring(0, 1)) * 100;
+                return new int[]{hundred, hundred + 99};
+            }
+            int index = code.indexOf('-');
+            if (index > 0) {
+                return new int[]{Integer.parseInt(code.substring(0, index).trim()),
+                        Integer.parseInt(code.substring(index + 1).trim())};
+            }
+            int value = Integer.parseInt(code);
+            return new int[]{value, value};
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static Class<?>[] resolveClasses(List<String> classNames) {
+        List<Class<?>> classes = new ArrayList<>();
+        if (classNames != null) {
+            for (String className : classNames) {
+                try {
+                    classes.add(ClassUtils.forName(className.trim(), ResponseClassifier.class.getClassLoader()));
+                } catch (ClassNotFoundException | LinkageError e) {
+                    logger.warn("exception class:{} of circuitBreaker rule not found", className);
+                }
+            }
+        }
+        return classes.toArray(new Class<?>[0]);
+    }
+
+    public <R> CallOutcome classify(R response, HttpResponseAccessor<R> accessor) throws IOException {
+        int status = response == null ? -1 : accessor.getStatus(response);
+        if (status < 0) {
+            return CallOutcome.FAILURE;
+        }
+        for (int i = 0; i < failureStatusFrom.length; i++) {
+            if (status >= failureStatusFrom[i] && status <= failureStatusTo[i]) {
+                return CallOutcome.FAILURE;
+            }
+        }
+        for (int i = 0; i < failureHeaderNames.length; i++) {
+            String value = accessor.getHeader(response, failureHeaderNames[i]);
+            if (value != null && (failureHeaderValues[i] == null || failureHeaderValues[i].equals(value))) {
+                return CallOutcome.FAILURE;
+            }
+        }
+        return CallOutcome.SUCCESS;
+    }
+
+    public CallOutcome classify(Throwable t) {
+        for (Class<?> ignoreException : ignoreExceptions) {
+            if (ignoreException.isInstance(t)) {
+                return CallOutcome.IGNORED;
+            }
+        }
+        if (recordExceptions.length == 0) {
+            return CallOutcome.FAILURE;
+        }
+        for (Class<?> recordException : recordExceptions) {
+            if (recordException.isInstance(t)) {
+                return CallOutcome.FAILURE;
+            }
+        }
+        return CallOutcome.IGNORED;
+    }
+}
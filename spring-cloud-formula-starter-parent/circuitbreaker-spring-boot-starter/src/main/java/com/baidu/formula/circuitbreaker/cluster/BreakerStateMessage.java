@@ -0,0 +1,46 @@
+/*
+ * Copyright (c) 2018 Baidu, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baidu.formula.circuitbreaker.cluster;
+
+import lombok.Data;
+
+/**
+ * The state and the failure summary of a circuit breaker gossiped to the other instances.
+ */
+@Data
+public class BreakerStateMessage {
+
+    // 发送消息的实例
+    private String instanceId;
+
+    // 熔断规则名称, 各实例相同的规则名称相同
+    private String ruleName;
+
+    // 熔断器状态, CircuitBreaker.State的名称
+    private String state;
+
+    // 是否因其他实例的状态而打开, 不参与其他实例的计算, 避免相互传播
+    private boolean induced;
+
+    // 窗口内的调用数
+    private int bufferedCalls;
+
+    // 窗口内的失败调用数
+    private int failedCalls;
+
+    // 发送时间, 毫秒
+    private long timestamp;
+}
@@ -0,0 +1,266 @@
+/*
+ * Copyright (c) 2018 Baidu, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baidu.formula.circuitbreaker.cluster;
+
+import com.baidu.formula.circuitbreaker.config.ClusterStateProperties;
+import com.baidu.formula.circuitbreaker.impl.CircuitBreakerManager;
+import com.baidu.formula.circuitbreaker.model.CircuitBreakerCoalition;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
+import io.github.resilience4j.circuitbreaker.event.CircuitBreakerOnStateTransitionEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.util.StringUtils;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Gossip the circuit breaker states of the rules in {@link CircuitBreakerManager} to the other instances,
+ * and open the local circuit breaker before its own ring buffer is filled with failures
+ * when enough instances have opened it, or the failure rate summed over the cluster exceeds the threshold.
+ * Transitions are sent right away, states and failure counts are sent every gossipInterval.
+ */
+public class ClusterStateSynchronizer {
+    private static final Logger logger = LoggerFactory.getLogger(ClusterStateSynchronizer.class);
+
+    private final CircuitBreakerManager manager;
+
+    private final ClusterStateTransport transport;
+
+    private final ClusterStateProperties properties;
+
+    private final String instanceId;
+
+    // 其他实例最近一次上报的状态, 规则名称 -> 实例标识 -> 状态
+    private final Map<String, Map<String, PeerState>> peerStates = new ConcurrentHashMap<>();
+
+    // 已监听状态转换的熔断器, 规则更新后替换的熔断器会被回收
+    private final Map<CircuitBreaker, Boolean> listened = Collections.synchronizedMap(new WeakHashMap<>());
+
+    // 因其他实例的状态而打开的熔断规则
+    private final Set<String> inducedRules = ConcurrentHashMap.newKeySet();
+
+    private ScheduledExecutorService executor;
+
+    public ClusterStateSynchronizer(CircuitBreakerManager manager, ClusterStateTransport transport,
+                                    ClusterStateProperties properties) {
+        this.manager = manager;
+        this.transport = transport;
+        this.properties = properties;
+        this.instanceId = StringUtils.hasText(properties.getInstanceId())
+                ? properties.getInstanceId() : ManagementFactory.getRuntimeMXBean().getName();
+    }
+
+    @PostConstruct
+    public void start() {
+        transport.subscribe(this::onMessage);
+        gossip();
+        CustomizableThreadFactory factory = new CustomizableThreadFactory();
+        factory.setDaemon(true);
+        factory.setThreadNamePrefix("circuit-breaker-cluster-");
+        executor = Executors.newSingleThreadScheduledExecutor(factory);
+        long interval = getGossipIntervalMillis();
+        executor.scheduleWithFixedDelay(this::gossip, interval, interval, TimeUnit.MILLISECONDS);
+        logger.info("share circuit breaker states as instance:{} by transport:{}",
+                instanceId, transport.getClass().getSimpleName());
+        if (transport instanceof InMemoryClusterStateTransport) {
+            // 默认的传输方式不跨进程, 开启集群模式后各实例仍然各自熔断
+            logger.warn("circuit breaker cluster is enabled with the in-memory transport, states are shared "
+                    + "in this jvm only, provide a ClusterStateTransport bean to share them across instances");
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+        transport.close();
+    }
+
+    /**
+     * Send the states of all the circuit breakers, and drop the expired states of the other instances.
+     */
+    public void gossip() {
+        try {
+            for (CircuitBreakerCoalition coalition : manager.getCircuitBreakerCoalitions()) {
+                CircuitBreaker circuitBreaker = coalition.getCircuitBreaker();
+                listen(circuitBreaker);
+                publish(circuitBreaker, isInduced(circuitBreaker));
+            }
+            long now = System.nanoTime();
+            long ttl = getPeerStateTtlNanos();
+            for (Map<String, PeerState> peers : peerStates.values()) {
+                peers.values().removeIf(peer -> now - peer.receivedAt > ttl);
+            }
+        } catch (RuntimeException e) {
+            logger.warn("failed to gossip circuit breaker states", e);
+        }
+    }
+
+    /**
+     * Record the state of the other instance and check whether the local circuit breaker should be opened.
+     *
+     * @param message
+     */
+    public void onMessage(BreakerStateMessage message) {
+        if (message == null || message.getRuleName() == null || instanceId.equals(message.getInstanceId())) {
+            return;
+        }
+        PeerState state = new PeerState(message, System.nanoTime());
+        peerStates.computeIfAbsent(message.getRuleName(), key -> new ConcurrentHashMap<>())
+                .merge(message.getInstanceId(), state,
+                        (exist, current) -> exist.message.getTimestamp() > current.message.getTimestamp()
+                                ? exist : current);
+        evaluate(message.getRuleName());
+    }
+
+    public String getInstanceId() {
+        return instanceId;
+    }
+
+    private void evaluate(String ruleName) {
+        CircuitBreakerCoalition coalition = manager.getCircuitBreakerCoalition(ruleName);
+        Map<String, PeerState> peers = peerStates.get(ruleName);
+        if (coalition == null || peers == null) {
+            return;
+        }
+        CircuitBreaker circuitBreaker = coalition.getCircuitBreaker();
+        if (!CircuitBreaker.State.CLOSED.equals(circuitBreaker.getState())) {
+            return;
+        }
+
+        CircuitBreaker.Metrics metrics = circuitBreaker.getMetrics();
+        long bufferedCalls = metrics.getNumberOfBufferedCalls();
+        long failedCalls = metrics.getNumberOfFailedCalls();
+        int openedPeers = 0;
+        long now = System.nanoTime();
+        long ttl = getPeerStateTtlNanos();
+        for (PeerState peer : peers.values()) {
+            BreakerStateMessage message = peer.message;
+            // 因其他实例而打开的状态不参与计算
+            if (now - peer.receivedAt > ttl || message.isInduced()) {
+                continue;
+            }
+            if (CircuitBreaker.State.OPEN.name().equals(message.getState())) {
+                openedPeers++;
+            } else if (CircuitBreaker.State.CLOSED.name().equals(message.getState())) {
+                bufferedCalls += message.getBufferedCalls();
+                failedCalls += message.getFailedCalls();
+            }
+        }
+
+        CircuitBreakerConfig config = circuitBreaker.getCircuitBreakerConfig();
+        int quorum = properties.getOpenQuorum() != null && properties.getOpenQuorum() > 0
+                ? properties.getOpenQuorum() : ClusterStateProperties.DEFAULT_OPEN_QUORUM;
+        boolean quorumOpened = openedPeers >= quorum;
+        boolean failureRateExceeded = bufferedCalls >= config.getRingBufferSizeInClosedState()
+                && failedCalls * 100f / bufferedCalls >= config.getFailureRateThreshold();
+        if (!quorumOpened && !failureRateExceeded) {
+            return;
+        }
+        listen(circuitBreaker);
+        synchronized (circuitBreaker) {
+            if (!CircuitBreaker.State.CLOSED.equals(circuitBreaker.getState())) {
+                return;
+            }
+            inducedRules.add(ruleName);
+            try {
+                circuitBreaker.transitionToOpenState();
+            } catch (IllegalStateException e) {
+                // 熔断器已自行打开
+                inducedRules.remove(ruleName);
+                return;
+            }
+        }
+        logger.warn("CircuitBreaker[{}] is opened by cluster, opened instances:{}, failed calls:{}/{}",
+                ruleName, openedPeers, failedCalls, bufferedCalls);
+    }
+
+    private void listen(CircuitBreaker circuitBreaker) {
+        if (listened.putIfAbsent(circuitBreaker, Boolean.TRUE) == null) {
+            circuitBreaker.getEventPublisher().onStateTransition(
+                    event -> onStateTransition(circuitBreaker, event));
+        }
+    }
+
+    private void onStateTransition(CircuitBreaker circuitBreaker, CircuitBreakerOnStateTransitionEvent event) {
+        boolean induced = false;
+        if (CircuitBreaker.State.OPEN.equals(event.getStateTransition().getToState())) {
+            induced = inducedRules.contains(circuitBreaker.getName());
+        } else {
+            inducedRules.remove(circuitBreaker.getName());
+        }
+        try {
+            publish(circuitBreaker, induced);
+        } catch (RuntimeException e) {
+            logger.warn("failed to publish state of CircuitBreaker[{}]", circuitBreaker.getName(), e);
+        }
+    }
+
+    private boolean isInduced(CircuitBreaker circuitBreaker) {
+        return CircuitBreaker.State.OPEN.equals(circuitBreaker.getState())
+                && inducedRules.contains(circuitBreaker.getName());
+    }
+
+    private void publish(CircuitBreaker circuitBreaker, boolean induced) {
+        CircuitBreaker.Metrics metrics = circuitBreaker.getMetrics();
+        BreakerStateMessage message = new BreakerStateMessage();
+        message.setInstanceId(instanceId);
+        message.setRuleName(circuitBreaker.getName());
+        message.setState(circuitBreaker.getState().name());
+        message.setInduced(induced);
+        message.setBufferedCalls(metrics.getNumberOfBufferedCalls());
+        message.setFailedCalls(metrics.getNumberOfFailedCalls());
+        message.setTimestamp(System.currentTimeMillis());
+        transport.publish(message);
+    }
+
+    private long getGossipIntervalMillis() {
+        return properties.getGossipInterval() != null && properties.getGossipInterval().toMillis() > 0
+                ? properties.getGossipInterval().toMillis()
+                : ClusterStateProperties.DEFAULT_GOSSIP_INTERVAL.toMillis();
+    }
+
+    private long getPeerStateTtlNanos() {
+        return properties.getPeerStateTtl() != null && properties.getPeerStateTtl().toNanos() > 0
+                ? properties.getPeerStateTtl().toNanos()
+                : ClusterStateProperties.DEFAULT_PEER_STATE_TTL.toNanos();
+    }
+
+    private static class PeerState {
+        private final BreakerStateMessage message;
+
+        // 收到消息的时间, 不依赖其他实例的时钟
+        private final long receivedAt;
+
+        PeerState(BreakerStateMessage message, long receivedAt) {
+            this.message = message;
+            this.receivedAt = receivedAt;
+        }
+    }
+}
@@ -0,0 +1,47 @@
+/*
+ * Copyright (c) 2018 Baidu, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baidu.formula.circuitbreaker.cluster;
+
+import java.util.function.Consumer;
+
+/**
+ * Delivers circuit breaker states between the instances of the cluster,
+ * provide a bean of it to replace the in memory transport.
+ * Messages may be lost, duplicated or reordered, the latest state of an instance is sent periodically.
+ * Publishing happens on the calling thread of a state transition, so it should not block.
+ */
+public interface ClusterStateTransport {
+
+    /**
+     * Send the message to all the instances, the sender may receive it as well.
+     *
+     * @param message
+     */
+    void publish(BreakerStateMessage message);
+
+    /**
+     * Register the listener of messages from the instances.
+     *
+     * @param listener
+     */
+    void subscribe(Consumer<BreakerStateMessage> listener);
+
+    /**
+     * Stop sending and receiving messages.
+     */
+    default void close() {
+    }
+}
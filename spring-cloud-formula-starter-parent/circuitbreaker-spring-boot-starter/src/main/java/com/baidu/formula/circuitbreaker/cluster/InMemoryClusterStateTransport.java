@@ -0,0 +1,76 @@
+/*
+ * Copyright (c) 2018 Baidu, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baidu.formula.circuitbreaker.cluster;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Delivers messages between the transports of the same group in this jvm,
+ * used in tests or as a stand-in when no transport is provided.
+ */
+public class InMemoryClusterStateTransport implements ClusterStateTransport {
+    private static final Logger logger = LoggerFactory.getLogger(InMemoryClusterStateTransport.class);
+
+    private static final Map<String, Set<InMemoryClusterStateTransport>> GROUPS = new ConcurrentHashMap<>();
+
+    private final String group;
+
+    private final List<Consumer<BreakerStateMessage>> listeners = new CopyOnWriteArrayList<>();
+
+    public InMemoryClusterStateTransport(String group) {
+        this.group = group;
+        GROUPS.computeIfAbsent(group, key -> ConcurrentHashMap.newKeySet()).add(this);
+    }
+
+    @Override
+    public void publish(BreakerStateMessage message) {
+        Set<InMemoryClusterStateTransport> members = GROUPS.get(group);
+        if (members == null) {
+            return;
+        }
+        for (InMemoryClusterStateTransport member : members) {
+            for (Consumer<BreakerStateMessage> listener : member.listeners) {
+                try {
+                    listener.accept(message);
+                } catch (RuntimeException e) {
+                    logger.warn("failed to deliver circuit breaker state of rule:{}", message.getRuleName(), e);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void subscribe(Consumer<BreakerStateMessage> listener) {
+        listeners.add(listener);
+    }
+
+    @Override
+    public void close() {
+        listeners.clear();
+        GROUPS.computeIfPresent(group, (key, members) -> {
+            members.remove(this);
+            return members.isEmpty() ? null : members;
+        });
+    }
+}
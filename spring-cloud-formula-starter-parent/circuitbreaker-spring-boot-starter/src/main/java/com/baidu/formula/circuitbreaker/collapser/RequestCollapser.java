@@ -0,0 +1,189 @@
+/*
+ * Copyright (c) 2018 Baidu, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baidu.formula.circuitbreaker.collapser;
+
+import com.baidu.formula.circuitbreaker.cache.MethodCacheKey;
+import com.baidu.formula.circuitbreaker.model.RequestCollapserRule;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Identical in-flight requests share one call, and distinct single key requests
+ * arriving within the batch window are sent as one batch call.
+ * The first request of a batch waits for the window and makes the batch call,
+ * so no extra thread is used.
+ * Requests of different scopes, such as the request headers of different callers,
+ * are never collapsed into one call.
+ */
+public class RequestCollapser {
+    private final RequestCollapserRule rule;
+
+    private final long batchWindowNanos;
+
+    private final int batchMaxSize;
+
+    private final Map<Object, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+
+    private final Object lock = new Object();
+
+    // 每个scope当前等待的批量调用
+    private final Map<Object, Batch> current = new HashMap<>();
+
+    private final LongAdder requestCount = new LongAdder();
+
+    private final LongAdder callCount = new LongAdder();
+
+    public RequestCollapser(RequestCollapserRule rule) {
+        this.rule = rule;
+        this.batchWindowNanos = rule.getBatchWindow() != null
+                ? rule.getBatchWindow().toNanos() : RequestCollapserRule.DEFAULT_BATCH_WINDOW.toNanos();
+        this.batchMaxSize = rule.getBatchMaxSize() != null && rule.getBatchMaxSize() > 0
+                ? rule.getBatchMaxSize() : RequestCollapserRule.DEFAULT_BATCH_MAX_SIZE;
+    }
+
+    public Object execute(Object[] args, CollapsedCall single, CollapsedCall batch) throws Throwable {
+        return execute(args, null, single, batch);
+    }
+
+    /**
+     * @param args
+     * @param scope  only requests of equal scopes are collapsed, null if all requests share one scope
+     * @param single call with the arguments of the request
+     * @param batch  call with a list of keys, null if requests are not batched
+     * @return
+     * @throws Throwable
+     */
+    public Object execute(Object[] args, Object scope, CollapsedCall single, CollapsedCall batch) throws Throwable {
+        requestCount.increment();
+        Object batchScope = scope == null ? Collections.emptyMap() : scope;
+        Object key = Arrays.asList(batchScope, new MethodCacheKey(null, args));
+        CompletableFuture<Object> future = new CompletableFuture<>();
+        CompletableFuture<Object> exist = inFlight.putIfAbsent(key, future);
+        if (exist != null) {
+            return join(exist);
+        }
+
+        try {
+            Object result;
+            if (batch != null && args.length == 1) {
+                result = executeBatched(batchScope, args[0], batch);
+            } else {
+                callCount.increment();
+                result = single.call(args);
+            }
+            future.complete(result);
+            return result;
+        } catch (Throwable t) {
+            future.completeExceptionally(t);
+            throw t;
+        } finally {
+            inFlight.remove(key, future);
+        }
+    }
+
+    private Object executeBatched(Object scope, Object key, CollapsedCall batchCall) throws Throwable {
+        Batch batch;
+        boolean leader = false;
+        synchronized (lock) {
+            batch = current.get(scope);
+            if (batch == null) {
+                batch = new Batch();
+                current.put(scope, batch);
+                leader = true;
+            }
+            batch.keys.add(key);
+            if (batch.keys.size() >= batchMaxSize) {
+                current.remove(scope);
+                lock.notifyAll();
+            }
+        }
+
+        if (leader) {
+            synchronized (lock) {
+                long deadline = System.nanoTime() + batchWindowNanos;
+                long remaining = batchWindowNanos;
+                while (current.get(scope) == batch && remaining > 0) {
+                    TimeUnit.NANOSECONDS.timedWait(lock, remaining);
+                    remaining = deadline - System.nanoTime();
+                }
+                current.remove(scope, batch);
+            }
+            try {
+                callCount.increment();
+                List<Object> keys = new ArrayList<>(batch.keys);
+                batch.results.complete(toResults(keys, batchCall.call(new Object[]{keys})));
+            } catch (Throwable t) {
+                batch.results.completeExceptionally(t);
+            }
+        }
+        return ((Map<?, ?>) join(batch.results)).get(key);
+    }
+
+    private Map<Object, Object> toResults(List<Object> keys, Object result) {
+        if (result instanceof Map) {
+            return new HashMap<>((Map<?, ?>) result);
+        }
+        if (result instanceof List && ((List<?>) result).size() == keys.size()) {
+            List<?> values = (List<?>) result;
+            Map<Object, Object> results = new HashMap<>();
+            for (int i = 0; i < keys.size(); i++) {
+                results.put(keys.get(i), values.get(i));
+            }
+            return results;
+        }
+        throw new IllegalStateException(String.format(
+                "batch method of %s should return a Map or a List of the same size as the keys", rule.getMethod()));
+    }
+
+    private Object join(CompletableFuture<?> future) throws Throwable {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            throw e.getCause();
+        }
+    }
+
+    public RequestCollapserRule getRule() {
+        return rule;
+    }
+
+    public long getRequestCount() {
+        return requestCount.sum();
+    }
+
+    /**
+     * @return number of downstream calls made for the requests
+     */
+    public long getCallCount() {
+        return callCount.sum();
+    }
+
+    private static class Batch {
+        private final List<Object> keys = new ArrayList<>();
+
+        private final CompletableFuture<Map<Object, Object>> results = new CompletableFuture<>();
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright (c) 2018 Baidu, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baidu.formula.circuitbreaker.collapser;
+
+import com.baidu.formula.circuitbreaker.config.CircuitBreakerProperties;
+import com.baidu.formula.circuitbreaker.model.RequestCollapserRule;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.cloud.context.environment.EnvironmentChangeEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.util.CollectionUtils;
+import org.springframework.util.StringUtils;
+
+import javax.annotation.PostConstruct;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Initialization and update of the request collapsers of Feign methods.
+ */
+public class RequestCollapserManager {
+    private static final Logger logger = LoggerFactory.getLogger(RequestCollapserManager.class);
+
+    private static final String REFRESH_KEY = CircuitBreakerProperties.PREFIX + ".collapsers";
+
+    private final CircuitBreakerProperties properties;
+
+    private volatile Map<String, RequestCollapser> collapsers = new HashMap<>();
+
+    public RequestCollapserManager(CircuitBreakerProperties properties) {
+        this.properties = properties;
+    }
+
+    @PostConstruct
+    public void init() {
+        refresh();
+    }
+
+    @EventListener
+    public void collapserConfigRefresh(EnvironmentChangeEvent changeEvent) {
+        Set<String> refreshKeys = changeEvent.getKeys();
+        if (CollectionUtils.isEmpty(refreshKeys) || !refreshKeys.toString().contains(REFRESH_KEY)) {
+            return;
+        }
+        refresh();
+    }
+
+    /**
+     * Rebuild the collapsers, those with unchanged rules are kept.
+     */
+    private synchronized void refresh() {
+        Map<String, RequestCollapser> exist = collapsers;
+        Map<String, RequestCollapser> refreshed = new HashMap<>();
+        if (properties.getCollapsers() != null) {
+            for (RequestCollapserRule rule : properties.getCollapsers()) {
+                if (!Boolean.TRUE.equals(rule.getEnabled()) || !StringUtils.hasText(rule.getMethod())) {
+                    continue;
+                }
+                RequestCollapser collapser = exist.get(rule.getMethod());
+                if (collapser == null || !collapser.getRule().equals(rule)) {
+                    logger.info("update request collapser of method:{}", rule.getMethod());
+                    collapser = new RequestCollapser(rule);
+                }
+                refreshed.put(rule.getMethod(), collapser);
+            }
+        }
+        collapsers = refreshed;
+    }
+
+    /**
+     * @param name Feign method, formatted as interface#method
+     * @return null if the method is not collapsed
+     */
+    public RequestCollapser getCollapser(String name) {
+        return collapsers.get(name);
+    }
+}
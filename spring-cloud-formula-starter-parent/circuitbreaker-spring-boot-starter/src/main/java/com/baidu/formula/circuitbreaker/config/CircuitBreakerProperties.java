@@ -16,6 +16,7 @@
 package com.baidu.formula.circuitbreaker.config;
 
 import com.baidu.formula.circuitbreaker.model.CircuitBreakerRule;
+import com.baidu.formula.circuitbreaker.model.RequestCollapserRule;
 import lombok.Data;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 
@@ -33,4 +34,12 @@ public class CircuitBreakerProperties {
     public static final String PREFIX = "formula.circuit-breaker";
 
     private List<CircuitBreakerRule> rules = new ArrayList<>();
+
+    private List<RequestCollapserRule> collapsers = new ArrayList<>();
+
+    private ClusterStateProperties cluster = new ClusterStateProperties();
+
+    private DiagnosticsProperties diagnostics = new DiagnosticsProperties();
+
+    private ExecutorProperties executor = new ExecutorProperties();
 }
@@ -0,0 +1,47 @@
+/*
+ * Copyright (c) 2018 Baidu, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baidu.formula.circuitbreaker.config;
+
+import lombok.Data;
+
+import java.time.Duration;
+
+/**
+ * Settings of sharing circuit breaker states between the instances of the cluster.
+ */
+@Data
+public class ClusterStateProperties {
+    public static final Duration DEFAULT_GOSSIP_INTERVAL = Duration.ofSeconds(1);
+
+    public static final Duration DEFAULT_PEER_STATE_TTL = Duration.ofSeconds(5);
+
+    public static final int DEFAULT_OPEN_QUORUM = 2;
+
+    // 是否与其他实例共享熔断器状态
+    private Boolean enabled = false;
+
+    // 当前实例的标识, 不配置时使用 pid@hostname
+    private String instanceId;
+
+    // 定时广播熔断器状态和失败率的间隔
+    private Duration gossipInterval = DEFAULT_GOSSIP_INTERVAL;
+
+    // 超过该时间未更新的其他实例状态不再参与计算
+    private Duration peerStateTtl = DEFAULT_PEER_STATE_TTL;
+
+    // 至少有多少个其他实例的熔断器自行打开时, 提前打开本实例的熔断器
+    private Integer openQuorum = DEFAULT_OPEN_QUORUM;
+}
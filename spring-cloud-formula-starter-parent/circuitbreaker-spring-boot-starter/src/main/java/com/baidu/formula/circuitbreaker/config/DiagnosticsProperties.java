@@ -0,0 +1,31 @@
+/*
+ * Copyright (c) 2018 Baidu, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baidu.formula.circuitbreaker.config;
+
+import lombok.Data;
+
+import java.time.Duration;
+
+/**
+ * Settings of the per rule diagnostics of the circuit breaker calls.
+ */
+@Data
+public class DiagnosticsProperties {
+    public static final Duration DEFAULT_EXEMPLAR_INTERVAL = Duration.ofSeconds(10);
+
+    // 同一规则的同一类事件, 每个间隔内最多打印一条样例日志, 其余只计数
+    private Duration exemplarInterval = DEFAULT_EXEMPLAR_INTERVAL;
+}
@@ -0,0 +1,48 @@
+/*
+ * Copyright (c) 2018 Baidu, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baidu.formula.circuitbreaker.config;
+
+import com.baidu.formula.circuitbreaker.enumeration.ExecutorTypeEnum;
+import lombok.Data;
+
+import java.time.Duration;
+
+/**
+ * Settings of the executor running the timed out calls and the hedged requests of the circuit breakers.
+ */
+@Data
+public class ExecutorProperties {
+    public static final int DEFAULT_CORE_SIZE = 10;
+
+    public static final int DEFAULT_MAX_SIZE = 200;
+
+    public static final Duration DEFAULT_KEEP_ALIVE = Duration.ofSeconds(60);
+
+    // 线程池类型, 1:有界线程池 2:虚拟线程, 需要JDK21以上 3:无界线程池
+    private Integer type = ExecutorTypeEnum.BOUNDED.getId();
+
+    // 有界线程池的核心线程数
+    private Integer coreSize = DEFAULT_CORE_SIZE;
+
+    // 有界线程池的最大线程数, 线程和队列都已满的调用直接降级
+    private Integer maxSize = DEFAULT_MAX_SIZE;
+
+    // 有界线程池的等待队列长度, 0表示不排队
+    private Integer queueCapacity = 0;
+
+    // 空闲线程的存活时间
+    private Duration keepAlive = DEFAULT_KEEP_ALIVE;
+}
@@ -0,0 +1,154 @@
+/*
+ * Copyright (c) 2018 Baidu, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baidu.formula.circuitbreaker.diagnostics;
+
+import com.baidu.formula.circuitbreaker.config.DiagnosticsProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Per rule counters of the calls, with rate limited exemplar logging instead of logging every call.
+ * <p>
+ * Every event is counted, for each rule and event at most one exemplar is logged per interval,
+ * the exemplar carries the number of the events suppressed since the previous one.
+ */
+public class CallDiagnostics {
+    private static final Logger logger = LoggerFactory.getLogger(CallDiagnostics.class);
+
+    private final long exemplarIntervalNanos;
+
+    private final Map<String, RuleCounters> counters = new ConcurrentHashMap<>();
+
+    public CallDiagnostics() {
+        this(DiagnosticsProperties.DEFAULT_EXEMPLAR_INTERVAL);
+    }
+
+    public CallDiagnostics(Duration exemplarInterval) {
+        this.exemplarIntervalNanos = exemplarInterval.toNanos();
+    }
+
+    /**
+     * Count the event without logging.
+     */
+    public void record(String ruleName, DiagnosticEvent event) {
+        getCounters(ruleName).counters.get(event).adder.increment();
+    }
+
+    /**
+     * Count the event, and log it if no exemplar of the rule and event is logged in the interval.
+     *
+     * @param ruleName
+     * @param event
+     * @param format   slf4j format of the exemplar, the last argument may be a throwable
+     * @param args
+     */
+    public void exemplar(String ruleName, DiagnosticEvent event, String format, Object... args) {
+        EventCounter counter = getCounters(ruleName).counters.get(event);
+        counter.adder.increment();
+        if (event.isWarn() ? !logger.isWarnEnabled() : !logger.isInfoEnabled()) {
+            return;
+        }
+        long now = System.nanoTime();
+        long next = counter.nextExemplarNanos.get();
+        if (now - next < 0 || !counter.nextExemplarNanos.compareAndSet(next, now + exemplarIntervalNanos)) {
+            return;
+        }
+        long count = counter.adder.sum();
+        long suppressed = count - counter.lastExemplarCount.getAndSet(count) - 1;
+        String message = "[" + ruleName + "][" + event + "] " + format
+                + (suppressed > 0 ? " (" + suppressed + " more suppressed)" : "");
+        if (event.isWarn()) {
+            logger.warn(message, args);
+        } else {
+            logger.info(message, args);
+        }
+    }
+
+    /**
+     * Count the duration of a finished call.
+     */
+    public void recordDuration(String ruleName, long durationNanos) {
+        RuleCounters ruleCounters = getCounters(ruleName);
+        ruleCounters.durations.increment();
+        ruleCounters.totalDurationNanos.add(durationNanos);
+    }
+
+    /**
+     * Total count of the event of the rule since start.
+     */
+    public long getCount(String ruleName, DiagnosticEvent event) {
+        RuleCounters ruleCounters = counters.get(ruleName);
+        return ruleCounters == null ? 0 : ruleCounters.counters.get(event).adder.sum();
+    }
+
+    /**
+     * Number of the finished calls with duration recorded.
+     */
+    public long getDurationCount(String ruleName) {
+        RuleCounters ruleCounters = counters.get(ruleName);
+        return ruleCounters == null ? 0 : ruleCounters.durations.sum();
+    }
+
+    public long getTotalDurationNanos(String ruleName) {
+        RuleCounters ruleCounters = counters.get(ruleName);
+        return ruleCounters == null ? 0 : ruleCounters.totalDurationNanos.sum();
+    }
+
+    public Set<String> getRuleNames() {
+        return Collections.unmodifiableSet(counters.keySet());
+    }
+
+    private RuleCounters getCounters(String ruleName) {
+        RuleCounters ruleCounters = counters.get(ruleName);
+        if (ruleCounters == null) {
+            ruleCounters = counters.computeIfAbsent(ruleName, name -> new RuleCounters());
+        }
+        return ruleCounters;
+    }
+
+    private static class RuleCounters {
+        private final Map<DiagnosticEvent, EventCounter> counters = new EnumMap<>(DiagnosticEvent.class);
+
+        private final LongAdder durations = new LongAdder();
+
+        private final LongAdder totalDurationNanos = new LongAdder();
+
+        RuleCounters() {
+            for (DiagnosticEvent event : DiagnosticEvent.values()) {
+                counters.put(event, new EventCounter());
+            }
+        }
+    }
+
+    private static class EventCounter {
+        private final LongAdder adder = new LongAdder();
+
+        // 下一条样例日志最早的打印时间
+        private final AtomicLong nextExemplarNanos = new AtomicLong(System.nanoTime());
+
+        // 上一条样例日志打印时的计数
+        private final AtomicLong lastExemplarCount = new AtomicLong();
+    }
+}
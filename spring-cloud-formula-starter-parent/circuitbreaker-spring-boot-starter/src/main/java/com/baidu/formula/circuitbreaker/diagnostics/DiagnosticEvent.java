@@ -0,0 +1,53 @@
+/*
+ * Copyright (c) 2018 Baidu, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baidu.formula.circuitbreaker.diagnostics;
+
+/**
+ * Events of the calls matching a circuit breaker rule, counted per rule.
+ */
+public enum DiagnosticEvent {
+
+    // 命中规则的调用
+    CALLED(false),
+
+    // 调用失败, 包括按失败分类的响应
+    FAILED(true),
+
+    // 熔断器打开, 调用未执行
+    NOT_PERMITTED(false),
+
+    // 舱壁已满, 调用未执行
+    BULKHEAD_FULL(false),
+
+    // 熔断器线程池已满, 调用未执行
+    REJECTED(false),
+
+    // 降级返回了结果, 不包括降级后抛出的异常
+    FALLBACK(false);
+
+    private final boolean warn;
+
+    DiagnosticEvent(boolean warn) {
+        this.warn = warn;
+    }
+
+    /**
+     * Whether the exemplar of the event is logged at WARN instead of INFO.
+     */
+    public boolean isWarn() {
+        return warn;
+    }
+}
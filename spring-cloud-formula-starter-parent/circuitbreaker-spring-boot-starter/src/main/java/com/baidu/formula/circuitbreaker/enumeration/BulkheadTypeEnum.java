@@ -0,0 +1,64 @@
+/*
+ * Copyright (c) 2018 Baidu, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baidu.formula.circuitbreaker.enumeration;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 舱壁隔离类型
+ */
+public enum BulkheadTypeEnum {
+
+    SEMAPHORE(1, "信号量隔离"),
+    THREADPOOL(2, "线程池隔离");
+
+    private static final Map<Integer, BulkheadTypeEnum> map = new HashMap<Integer, BulkheadTypeEnum>();
+
+    static {
+        for (BulkheadTypeEnum mode : BulkheadTypeEnum.values()) {
+            map.put(mode.id, mode);
+        }
+    }
+
+    private Integer id;
+    private String name;
+
+    private BulkheadTypeEnum(Integer id, String name) {
+        this.id = id;
+        this.name = name;
+    }
+
+    public static BulkheadTypeEnum getById(Number id) {
+        if (id == null) {
+            return null;
+        }
+        return map.get(id.intValue());
+    }
+
+    public static Map<Integer, BulkheadTypeEnum> map() {
+        return Collections.unmodifiableMap(map);
+    }
+
+    public Integer getId() {
+        return this.id;
+    }
+
+    public String getName() {
+        return this.name;
+    }
+}
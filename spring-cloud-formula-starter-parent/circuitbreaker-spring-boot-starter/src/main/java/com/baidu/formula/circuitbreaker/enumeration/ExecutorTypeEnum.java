@@ -0,0 +1,65 @@
+/*
+ * Copyright (c) 2018 Baidu, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baidu.formula.circuitbreaker.enumeration;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 熔断器执行超时和对冲请求的线程池类型
+ */
+public enum ExecutorTypeEnum {
+
+    BOUNDED(1, "有界线程池"),
+    VIRTUAL(2, "虚拟线程"),
+    CACHED(3, "无界线程池");
+
+    private static final Map<Integer, ExecutorTypeEnum> map = new HashMap<Integer, ExecutorTypeEnum>();
+
+    static {
+        for (ExecutorTypeEnum mode : ExecutorTypeEnum.values()) {
+            map.put(mode.id, mode);
+        }
+    }
+
+    private Integer id;
+    private String name;
+
+    private ExecutorTypeEnum(Integer id, String name) {
+        this.id = id;
+        this.name = name;
+    }
+
+    public static ExecutorTypeEnum getById(Number id) {
+        if (id == null) {
+            return null;
+        }
+        return map.get(id.intValue());
+    }
+
+    public static Map<Integer, ExecutorTypeEnum> map() {
+        return Collections.unmodifiableMap(map);
+    }
+
+    public Integer getId() {
+        return this.id;
+    }
+
+    public String getName() {
+        return this.name;
+    }
+}
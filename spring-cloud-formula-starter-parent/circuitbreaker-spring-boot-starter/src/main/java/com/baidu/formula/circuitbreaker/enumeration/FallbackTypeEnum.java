@@ -30,7 +30,8 @@ public enum FallbackTypeEnum {
     EXCEPTION(1, "抛出异常"),
     NULL(2, "返回null"),
     VALUE(3, "返回值"),
-    FUNCTION(4, "调用方法");
+    FUNCTION(4, "调用方法"),
+    STALE_CACHE(5, "返回缓存的响应");
 
     private static final Map<Integer, FallbackTypeEnum> map = new HashMap<Integer, FallbackTypeEnum>();
 
@@ -0,0 +1,64 @@
+/*
+ * Copyright (c) 2018 Baidu, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baidu.formula.circuitbreaker.enumeration;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 熔断统计窗口类型
+ */
+public enum SlidingWindowTypeEnum {
+
+    COUNT_BASED(1, "按调用次数统计"),
+    TIME_BASED(2, "按时间统计");
+
+    private static final Map<Integer, SlidingWindowTypeEnum> map = new HashMap<Integer, SlidingWindowTypeEnum>();
+
+    static {
+        for (SlidingWindowTypeEnum mode : SlidingWindowTypeEnum.values()) {
+            map.put(mode.id, mode);
+        }
+    }
+
+    private Integer id;
+    private String name;
+
+    private SlidingWindowTypeEnum(Integer id, String name) {
+        this.id = id;
+        this.name = name;
+    }
+
+    public static SlidingWindowTypeEnum getById(Number id) {
+        if (id == null) {
+            return null;
+        }
+        return map.get(id.intValue());
+    }
+
+    public static Map<Integer, SlidingWindowTypeEnum> map() {
+        return Collections.unmodifiableMap(map);
+    }
+
+    public Integer getId() {
+        return this.id;
+    }
+
+    public String getName() {
+        return this.name;
+    }
+}
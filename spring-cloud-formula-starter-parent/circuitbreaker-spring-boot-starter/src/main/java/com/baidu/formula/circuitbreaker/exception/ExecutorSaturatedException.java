@@ -0,0 +1,30 @@
+/*
+ * Copyright (c) 2018 Baidu, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baidu.formula.circuitbreaker.exception;
+
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Thrown when the bounded executor of the circuit breakers is saturated and the call can not be submitted.
+ */
+public class ExecutorSaturatedException extends RejectedExecutionException {
+    public ExecutorSaturatedException() {
+    }
+
+    public ExecutorSaturatedException(String message) {
+        super(message);
+    }
+}
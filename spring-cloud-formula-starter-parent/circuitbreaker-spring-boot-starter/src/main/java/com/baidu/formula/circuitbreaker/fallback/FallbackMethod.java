@@ -0,0 +1,90 @@
+/*
+ * Copyright (c) 2018 Baidu, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baidu.formula.circuitbreaker.fallback;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Arrays;
+
+/**
+ * A fallback method resolved to a {@link MethodHandle}.
+ */
+public class FallbackMethod {
+    private static final MethodType INVOKER_TYPE = MethodType.methodType(Object.class, Object.class, Object[].class);
+
+    private final Method method;
+
+    // (Object target, Object[] args)Object
+    private final MethodHandle invoker;
+
+    // 最后一个参数为异常
+    private final Class<?> throwableType;
+
+    public FallbackMethod(Method method, Class<?> throwableType) throws IllegalAccessException {
+        this.method = method;
+        this.throwableType = throwableType;
+        method.setAccessible(true);
+        MethodHandle handle = MethodHandles.lookup().unreflect(method);
+        if (Modifier.isStatic(method.getModifiers())) {
+            handle = MethodHandles.dropArguments(handle, 0, Object.class);
+        }
+        this.invoker = handle.asSpreader(Object[].class, method.getParameterCount()).asType(INVOKER_TYPE);
+    }
+
+    public Method getMethod() {
+        return method;
+    }
+
+    public Class<?> getThrowableType() {
+        return throwableType;
+    }
+
+    public boolean acceptThrowable() {
+        return throwableType != null;
+    }
+
+    /**
+     * @param args arguments of the protected method
+     * @param t
+     * @return arguments of the fallback method
+     */
+    public Object[] buildArgs(Object[] args, Throwable t) {
+        if (throwableType == null) {
+            return args;
+        }
+        Object[] fallbackArgs = Arrays.copyOf(args, args.length + 1);
+        fallbackArgs[args.length] = t;
+        return fallbackArgs;
+    }
+
+    public Object invoke(Object target, Object[] fallbackArgs) throws Exception {
+        try {
+            return (Object) invoker.invokeExact(target, fallbackArgs);
+        } catch (Exception | Error e) {
+            throw e;
+        } catch (Throwable t) {
+            throw new Exception(t.getMessage(), t);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "FallbackMethod{" + method + '}';
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright (c) 2018 Baidu, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baidu.formula.circuitbreaker.fallback;
+
+import com.baidu.formula.circuitbreaker.annotation.CircuitBreaker;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.annotation.AnnotationUtils;
+import org.springframework.util.ReflectionUtils;
+import org.springframework.util.StringUtils;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Resolve the fallback methods of {@link CircuitBreaker} annotated methods once,
+ * beans are registered at post-processing and others on the first fallback.
+ */
+public class FallbackMethodRegistry {
+    private static final Logger logger = LoggerFactory.getLogger(FallbackMethodRegistry.class);
+
+    private static final FallbackMethods NONE = new FallbackMethods(null, Collections.emptyList());
+
+    private final Map<Class<?>, Map<Method, FallbackMethods>> registry = new ConcurrentHashMap<>();
+
+    /**
+     * Resolve the fallback methods of all annotated methods of the class.
+     *
+     * @param targetClass
+     */
+    public void register(Class<?> targetClass) {
+        boolean annotatedType = AnnotationUtils.findAnnotation(targetClass, CircuitBreaker.class) != null;
+        ReflectionUtils.doWithMethods(targetClass, method -> getFallbackMethods(method, targetClass),
+                method -> annotatedType || AnnotationUtils.findAnnotation(method, CircuitBreaker.class) != null);
+    }
+
+    /**
+     * @param method      the protected method
+     * @param targetClass
+     * @return null if no fallback method is configured or found
+     */
+    public FallbackMethods getFallbackMethods(Method method, Class<?> targetClass) {
+        Map<Method, FallbackMethods> methods = registry.get(targetClass);
+        if (methods == null) {
+            methods = registry.computeIfAbsent(targetClass, key -> new ConcurrentHashMap<>());
+        }
+        FallbackMethods fallbackMethods = methods.get(method);
+        if (fallbackMethods == null) {
+            fallbackMethods = methods.computeIfAbsent(method, key -> resolve(key, targetClass));
+        }
+        return fallbackMethods == NONE ? null : fallbackMethods;
+    }
+
+    private FallbackMethods resolve(Method method, Class<?> targetClass) {
+        CircuitBreaker annotation = AnnotationUtils.findAnnotation(method, CircuitBreaker.class);
+        if (annotation == null) {
+            annotation = AnnotationUtils.findAnnotation(targetClass, CircuitBreaker.class);
+        }
+        if (annotation == null || !StringUtils.hasText(annotation.fallback())) {
+            return NONE;
+        }
+
+        Class<?>[] parameterTypes = method.getParameterTypes();
+        FallbackMethod plain = null;
+        List<FallbackMethod> withThrowable = new ArrayList<>();
+        for (Method candidate : ReflectionUtils.getAllDeclaredMethods(targetClass)) {
+            if (!candidate.getName().equals(annotation.fallback()) || candidate.isBridge()) {
+                continue;
+            }
+            Class<?>[] candidateTypes = candidate.getParameterTypes();
+            try {
+                if (Arrays.equals(parameterTypes, candidateTypes)) {
+                    if (plain == null) {
+                        plain = new FallbackMethod(candidate, null);
+                    }
+                } else if (candidateTypes.length == parameterTypes.length + 1
+                        && Throwable.class.isAssignableFrom(candidateTypes[parameterTypes.length])
+                        && Arrays.equals(parameterTypes, Arrays.copyOf(candidateTypes, parameterTypes.length))
+                        && withThrowable.stream().noneMatch(
+                                m -> m.getThrowableType().equals(candidateTypes[parameterTypes.length]))) {
+                    withThrowable.add(new FallbackMethod(candidate, candidateTypes[parameterTypes.length]));
+                }
+            } catch (IllegalAccessException e) {
+                logger.warn("fallback method:{} is not accessible", candidate, e);
+            }
+        }
+
+        FallbackMethods fallbackMethods = new FallbackMethods(plain, withThrowable);
+        if (fallbackMethods.isEmpty()) {
+            logger.warn("fallback method:{} of {} not found", annotation.fallback(), method);
+            return NONE;
+        }
+        return fallbackMethods;
+    }
+}
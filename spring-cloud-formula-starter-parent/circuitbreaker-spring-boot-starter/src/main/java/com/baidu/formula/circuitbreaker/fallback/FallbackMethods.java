@@ -0,0 +1,88 @@
+/*
+ * Copyright (c) 2018 Baidu, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baidu.formula.circuitbreaker.fallback;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Candidate fallback methods of a protected method, the candidate is chosen by the exception type.
+ */
+public class FallbackMethods {
+
+    // 参数与原方法相同的降级方法
+    private final FallbackMethod plain;
+
+    // 最后一个参数为异常的降级方法, 子类在前
+    private final FallbackMethod[] withThrowable;
+
+    private final Map<Class<?>, Optional<FallbackMethod>> resolved = new ConcurrentHashMap<>();
+
+    public FallbackMethods(FallbackMethod plain, List<FallbackMethod> withThrowable) {
+        this.plain = plain;
+        List<FallbackMethod> sorted = new ArrayList<>();
+        for (FallbackMethod candidate : withThrowable) {
+            int index = sorted.size();
+            for (int i = 0; i < sorted.size(); i++) {
+                if (sorted.get(i).getThrowableType().isAssignableFrom(candidate.getThrowableType())) {
+                    index = i;
+                    break;
+                }
+            }
+            sorted.add(index, candidate);
+        }
+        this.withThrowable = sorted.toArray(new FallbackMethod[0]);
+    }
+
+    public boolean isEmpty() {
+        return plain == null && withThrowable.length == 0;
+    }
+
+    /**
+     * Choose the fallback method for the exception.
+     * Without an exception, as the circuitBreaker is open,
+     * the plain one is preferred and then the most general one accepting an exception.
+     *
+     * @param throwableClass null if there is no exception
+     * @return null if not found
+     */
+    public FallbackMethod resolve(Class<? extends Throwable> throwableClass) {
+        if (throwableClass == null) {
+            if (plain != null || withThrowable.length == 0) {
+                return plain;
+            }
+            return withThrowable[withThrowable.length - 1];
+        }
+        Optional<FallbackMethod> fallbackMethod = resolved.get(throwableClass);
+        if (fallbackMethod == null) {
+            fallbackMethod = Optional.ofNullable(resolveInternal(throwableClass));
+            resolved.putIfAbsent(throwableClass, fallbackMethod);
+        }
+        return fallbackMethod.orElse(null);
+    }
+
+    private FallbackMethod resolveInternal(Class<? extends Throwable> throwableClass) {
+        for (FallbackMethod candidate : withThrowable) {
+            if (candidate.getThrowableType().isAssignableFrom(throwableClass)) {
+                return candidate;
+            }
+        }
+        return plain;
+    }
+}
@@ -16,13 +16,19 @@
 package com.baidu.formula.circuitbreaker.fallback;
 
 import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
 import java.lang.reflect.Method;
 import java.lang.reflect.Type;
+import java.math.BigDecimal;
+import java.math.BigInteger;
 import java.util.concurrent.Callable;
 
 /**
+ * Deserialize the fallbackResult once and return the cached value.
+ * Mutable values are copied from the parsed json tree on every call unless copyOnRead is false.
+ *
  * @author Bowu Dong (tq02ksu@gmail.com)
  */
 public class ObjectMapperCallable implements Callable<Object> {
@@ -30,23 +36,54 @@ public class ObjectMapperCallable implements Callable<Object> {
 
     private final String result;
 
-    private final Method method;
+    private final Type type;
+
+    private final JavaType javaType;
+
+    private final boolean copyOnRead;
+
+    private volatile JsonNode tree;
+
+    private volatile Object value;
 
     public ObjectMapperCallable(String result, Method method) {
+        this(result, method, null);
+    }
+
+    /**
+     * @param result     json of the fallback value
+     * @param method     the return type of which is the type of the fallback value
+     * @param copyOnRead null to copy only mutable types
+     */
+    public ObjectMapperCallable(String result, Method method, Boolean copyOnRead) {
         this.result = result;
-        this.method = method;
+        this.type = method.getGenericReturnType();
+        this.javaType = objectMapper.constructType(type);
+        this.copyOnRead = copyOnRead != null ? copyOnRead : !isImmutable(method.getReturnType());
     }
 
     @Override
     public Object call() throws Exception {
-        Type type = method.getGenericReturnType();
+        JsonNode node = tree;
+        if (node == null) {
+            node = objectMapper.readTree(result);
+            value = objectMapper.readerFor(javaType).readValue(node);
+            tree = node;
+        }
+        if (copyOnRead) {
+            return objectMapper.readerFor(javaType).readValue(node);
+        }
+        return value;
+    }
 
-        JavaType t = objectMapper.constructType(type);
-        return objectMapper.readValue(result, t);
+    private static boolean isImmutable(Class<?> type) {
+        return type.isPrimitive() || type.isEnum() || type == String.class || type == Boolean.class
+                || type == Character.class || type == BigDecimal.class || type == BigInteger.class
+                || Number.class.isAssignableFrom(type) && type.getPackage() == Integer.class.getPackage();
     }
 
     @Override
     public String toString() {
-        return super.toString() + "{" + "result='" + result + '\'' + ", type=" + method.getGenericReturnType() + '}';
+        return super.toString() + "{" + "result='" + result + '\'' + ", type=" + type + '}';
     }
 }
@@ -15,44 +15,54 @@
  */
 package com.baidu.formula.circuitbreaker.impl;
 
+import com.baidu.formula.circuitbreaker.cache.CachedResponse;
+import com.baidu.formula.circuitbreaker.cache.MethodCacheKey;
+import com.baidu.formula.circuitbreaker.cache.StaleResponseCache;
+import com.baidu.formula.circuitbreaker.classifier.CacheableResponseAccessor;
+import com.baidu.formula.circuitbreaker.classifier.CallOutcome;
+import com.baidu.formula.circuitbreaker.classifier.HttpResponseAccessor;
+import com.baidu.formula.circuitbreaker.classifier.ResponseClassifier;
+import com.baidu.formula.circuitbreaker.config.ExecutorProperties;
+import com.baidu.formula.circuitbreaker.diagnostics.CallDiagnostics;
+import com.baidu.formula.circuitbreaker.diagnostics.DiagnosticEvent;
 import com.baidu.formula.circuitbreaker.enumeration.FallbackTypeEnum;
+import com.baidu.formula.circuitbreaker.exception.BulkheadFullException;
 import com.baidu.formula.circuitbreaker.exception.CircuitBreakerOpenException;
+import com.baidu.formula.circuitbreaker.exception.ExecutorSaturatedException;
 import com.baidu.formula.circuitbreaker.exception.FallBackNotFoundException;
+import com.baidu.formula.circuitbreaker.fallback.FallbackMethod;
+import com.baidu.formula.circuitbreaker.fallback.FallbackMethodRegistry;
+import com.baidu.formula.circuitbreaker.fallback.FallbackMethods;
 import com.baidu.formula.circuitbreaker.fallback.ObjectMapperCallable;
+import com.baidu.formula.circuitbreaker.model.BulkheadCoalition;
 import com.baidu.formula.circuitbreaker.model.CircuitBreakerCoalition;
 import com.baidu.formula.circuitbreaker.model.CircuitBreakerRule;
 import com.baidu.formula.circuitbreaker.model.TimeLimiterCoalition;
+import com.baidu.formula.circuitbreaker.retry.Attempt;
+import com.baidu.formula.circuitbreaker.retry.RetryExecutor;
+import com.baidu.formula.circuitbreaker.retry.RetryPolicy;
+import com.baidu.formula.circuitbreaker.window.SlidingWindowPolicy;
+import io.github.resilience4j.bulkhead.Bulkhead;
 import io.github.resilience4j.circuitbreaker.CircuitBreaker;
 import io.github.resilience4j.timelimiter.TimeLimiter;
-import lombok.AllArgsConstructor;
-import lombok.Builder;
-import lombok.EqualsAndHashCode;
-import lombok.Getter;
-import lombok.RequiredArgsConstructor;
-import lombok.Setter;
-import lombok.ToString;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.core.annotation.AnnotationUtils;
-import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
-import org.springframework.util.ReflectionUtils;
+import org.springframework.core.task.TaskDecorator;
 
+import java.io.IOException;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.Comparator;
+import java.time.Duration;
 import java.util.List;
-import java.util.Optional;
-import java.util.TreeMap;
 import java.util.concurrent.Callable;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.function.Supplier;
-import java.util.stream.Stream;
 
 /**
  * @author Bowu Dong (tq02ksu@gmail.com)
@@ -60,18 +70,48 @@ import java.util.stream.Stream;
 public class CircuitBreakerCore {
     private static final Logger logger = LoggerFactory.getLogger(CircuitBreakerCore.class);
 
-    private static final ConcurrentHashMap<MethodKey, Optional<Method>> fallbackMethodCache = new ConcurrentHashMap<>();
+    // 半开状态下的慢调用按失败记录
+    private static final Throwable SLOW_CALL = new TimeoutException("call exceeds slowCallDurationThreshold");
+
+    // 按失败分类的响应, 记录时复用同一个异常, 不再为每个响应创建异常
+    private static final Throwable FAILURE_RESPONSE = new IOException("response is classified as failure");
 
     private final ExecutorService executorService;
 
     private final CircuitBreakerManager manager;
 
+    private final FallbackMethodRegistry fallbackMethodRegistry;
+
+    private final RetryExecutor retryExecutor;
+
+    private final CallDiagnostics diagnostics;
+
+    private volatile TaskDecorator taskDecorator;
+
     public CircuitBreakerCore(CircuitBreakerManager manager) {
+        this(manager, new FallbackMethodRegistry());
+    }
+
+    public CircuitBreakerCore(CircuitBreakerManager manager, FallbackMethodRegistry fallbackMethodRegistry) {
+        this(manager, fallbackMethodRegistry, new CallDiagnostics());
+    }
+
+    public CircuitBreakerCore(CircuitBreakerManager manager, FallbackMethodRegistry fallbackMethodRegistry,
+                              CallDiagnostics diagnostics) {
+        this(manager, fallbackMethodRegistry, diagnostics, CircuitBreakerThreadPool.create(new ExecutorProperties()));
+    }
+
+    /**
+     * @param executorService runs the calls limited by timeoutDuration and the hedged requests,
+     *                        shut down with the core
+     */
+    public CircuitBreakerCore(CircuitBreakerManager manager, FallbackMethodRegistry fallbackMethodRegistry,
+                              CallDiagnostics diagnostics, ExecutorService executorService) {
         this.manager = manager;
-        CustomizableThreadFactory factory = new CustomizableThreadFactory();
-        factory.setDaemon(true);
-        factory.setThreadNamePrefix("circuit-breaker-");
-        executorService = Executors.newCachedThreadPool(factory);
+        this.fallbackMethodRegistry = fallbackMethodRegistry;
+        this.diagnostics = diagnostics;
+        this.executorService = executorService;
+        retryExecutor = new RetryExecutor(executorService);
     }
 
     public Object process(Method method, Object target, Object[] args) throws Exception {
@@ -81,6 +121,64 @@ public class CircuitBreakerCore {
 
     public Object process(String httpMethod, String serviceName, String url,
                           Method method, Object target, Object[] args) throws Exception {
+        Callable<Object> invocation = () -> {
+            try {
+                method.setAccessible(true);
+                return method.invoke(target, args);
+            } catch (InvocationTargetException e) {
+                throw deduceCauseException(e);
+            }
+        };
+        return process(httpMethod, serviceName, url, method, target, args, invocation, null);
+    }
+
+    /**
+     * Process an http call, the response is classified by the rule instead of by exceptions thrown,
+     * failure responses are recorded on the circuitBreaker and go to the configured fallback,
+     * they are returned unchanged if the fallback type is EXCEPTION or no fallback is configured.
+     *
+     * @param httpMethod
+     * @param serviceName
+     * @param url
+     * @param method     the intercepted method, used to resolve the fallback
+     * @param target
+     * @param args
+     * @param invocation invoke the call directly without reflection
+     * @param accessor   read the status and headers of the response, null if the result is not a response
+     * @return
+     * @throws Exception
+     */
+    public <R> Object process(String httpMethod, String serviceName, String url,
+                              Method method, Object target, Object[] args,
+                              Callable<Object> invocation, HttpResponseAccessor<R> accessor) throws Exception {
+        return process(httpMethod, serviceName, url, method, target, args, invocation, null, accessor);
+    }
+
+    /**
+     * Process an http call which can be sent again, it is retried or hedged by the retry policy of the rule
+     * and only the final response is recorded on the circuitBreaker.
+     *
+     * @param httpMethod
+     * @param serviceName
+     * @param url
+     * @param method   the intercepted method, used to resolve the fallback
+     * @param target
+     * @param args
+     * @param attempt  send one attempt of the call
+     * @param accessor read the status and headers of the response
+     * @return
+     * @throws Exception
+     */
+    public <R> Object process(String httpMethod, String serviceName, String url,
+                              Method method, Object target, Object[] args,
+                              Attempt<R> attempt, HttpResponseAccessor<R> accessor) throws Exception {
+        return process(httpMethod, serviceName, url, method, target, args, null, attempt, accessor);
+    }
+
+    private <R> Object process(String httpMethod, String serviceName, String url,
+                               Method method, Object target, Object[] args,
+                               Callable<Object> invocation, Attempt<R> attempt,
+                               HttpResponseAccessor<R> accessor) throws Exception {
         // 先获取最符合要求的熔断规则
         CircuitBreakerCoalition circuitBreakerCoalition =
                 manager.getCircuitBreakerCoalition(httpMethod, serviceName, url);
@@ -93,25 +191,29 @@ public class CircuitBreakerCore {
             name = rule.getRuleName();
         }
 
-        // 超时后续可能支持
-        TimeLimiterCoalition timeLimiterCoalition =
-                manager.getTimeLimiterCoalition(httpMethod, serviceName, url);
-        TimeLimiter timeLimiter = null;
-        Callable<Object> callable =
-                () -> {
-                    try {
-                        method.setAccessible(true);
-                        return method.invoke(target, args);
-                    } catch (InvocationTargetException e) {
-                        throw deduceCauseException(e);
-                    }
-                };
+        // 超时控制, 线程池隔离时由舱壁按timeoutDuration限定等待时间
+        BulkheadCoalition bulkheadCoalition = manager.getBulkheadCoalition(name);
+        TimeLimiterCoalition timeLimiterCoalition = manager.getTimeLimiterCoalition(name);
+        TimeLimiter timeLimiter = timeLimiterCoalition == null
+                || bulkheadCoalition != null && bulkheadCoalition.getExecutor() != null
+                ? null : timeLimiterCoalition.getTimeLimiter();
+        Callable<Object> callable = invocation;
+        if (attempt != null) {
+            RetryPolicy retryPolicy = circuitBreakerCoalition == null ? null
+                    : circuitBreakerCoalition.getRetryPolicy();
+            if (retryPolicy != null && retryPolicy.isRetryable(httpMethod)) {
+                ResponseClassifier classifier = getResponseClassifier(circuitBreakerCoalition);
+                callable = () -> retryExecutor.execute(retryPolicy, attempt, accessor, classifier);
+            } else {
+                callable = () -> attempt.execute(0);
+            }
+        }
 
         if (timeLimiter != null) {
             Callable<Object> finalCallable = callable;
             callable = () -> {
-                Supplier<Future<Object>> futureSupplier = () -> executorService.submit(finalCallable);
-                // Wrap your call to BackendService.doSomething() in a future provided by your executor
+                // 在熔断器的线程池中执行调用, 调用方最多等待timeoutDuration
+                Supplier<Future<Object>> futureSupplier = () -> submit(executorService, finalCallable);
                 Callable<Object> result = TimeLimiter.decorateFutureSupplier(timeLimiter, futureSupplier);
                 try {
                     return result.call();
@@ -123,40 +225,299 @@ public class CircuitBreakerCore {
 
         if (circuitBreaker == null) {
             return callable.call();
-        } else if (!circuitBreaker.isCallPermitted()) {
-            logger.info("CircuitBreaker[{}] is open, go to fallback invocation", name);
+        }
+
+        StaleResponseCache staleCache = circuitBreakerCoalition.getStaleResponseCache();
+        Object cacheKey = staleCache == null ? null : getRequestKey(method, args, accessor, staleCache);
+        if (!circuitBreaker.isCallPermitted()) {
+            diagnostics.exemplar(name, DiagnosticEvent.NOT_PERMITTED,
+                    "CircuitBreaker is open, go to fallback invocation");
             Callable<Object> fallbackCall = null;
             if (rule != null) {
-                fallbackCall = getFallback(rule, method, rule.getFallbackResult(), target, args, null);
+                fallbackCall = getFallback(circuitBreakerCoalition, method, target, args, null,
+                        cacheKey, accessor);
             }
             if (fallbackCall != null) {
-                return fallbackCall.call();
+                Object value = fallbackCall.call();
+                diagnostics.record(name, DiagnosticEvent.FALLBACK);
+                return value;
             } else {
                 throw new CircuitBreakerOpenException("CircuitBreaker is open");
             }
         }
 
+        // 舱壁隔离, 拒绝的调用不计入熔断统计, 直接降级
+        Bulkhead bulkhead = null;
+        if (bulkheadCoalition != null && bulkheadCoalition.getBulkhead() != null) {
+            bulkhead = bulkheadCoalition.getBulkhead();
+            if (!bulkhead.isCallPermitted()) {
+                return bulkheadFallback(circuitBreakerCoalition, method, target, args, name, cacheKey, accessor);
+            }
+        } else if (bulkheadCoalition != null && bulkheadCoalition.getExecutor() != null) {
+            Future<Object> future;
+            try {
+                future = submit(bulkheadCoalition.getExecutor(), callable);
+            } catch (RejectedExecutionException e) {
+                return bulkheadFallback(circuitBreakerCoalition, method, target, args, name, cacheKey, accessor);
+            }
+            // 调用方最多等待timeoutDuration, 超时后取消调用, 避免慢依赖阻塞调用方线程
+            long timeoutNanos = getBulkheadTimeout(rule).toNanos();
+            boolean cancelRunning = !Boolean.FALSE.equals(rule.getCancelRunningFuture());
+            String bulkheadName = name;
+            callable = () -> {
+                try {
+                    return future.get(timeoutNanos, TimeUnit.NANOSECONDS);
+                } catch (ExecutionException e) {
+                    throw deduceCauseException(e);
+                } catch (TimeoutException e) {
+                    future.cancel(cancelRunning);
+                    throw new TimeoutException(String.format("Bulkhead[%s] call timed out after %dms",
+                            bulkheadName, TimeUnit.NANOSECONDS.toMillis(timeoutNanos)));
+                } catch (InterruptedException e) {
+                    future.cancel(true);
+                    throw e;
+                }
+            };
+        }
+
         // 命中熔断规则，但熔断器不处于open状态
+        long start = System.nanoTime();
+        boolean recorded = false;
         try {
-            logger.info("CircuitBreaker[{}] is match", name);
-            return circuitBreaker.executeCallable(callable);
+            diagnostics.record(name, DiagnosticEvent.CALLED);
+            Object result = callable.call();
+            long duration = System.nanoTime() - start;
+            CallOutcome outcome = accessor == null ? CallOutcome.SUCCESS
+                    : getResponseClassifier(circuitBreakerCoalition).classify((R) result, accessor);
+            onCallFinished(circuitBreakerCoalition, duration, outcome, null);
+            recorded = true;
+            if (CallOutcome.FAILURE.equals(outcome)) {
+                diagnostics.record(name, DiagnosticEvent.FAILED);
+            }
+            if (cacheKey != null && CallOutcome.SUCCESS.equals(outcome)) {
+                return cacheResponse(staleCache, cacheKey, (R) result, accessor);
+            } else if (cacheKey != null && CallOutcome.FAILURE.equals(outcome)) {
+                Object stale = getStaleResponse(staleCache, cacheKey, accessor);
+                if (stale != null) {
+                    accessor.close((R) result);
+                    return stale;
+                }
+            }
+            if (CallOutcome.FAILURE.equals(outcome)) {
+                Callable<Object> fallbackCall = getFailureResponseFallback(circuitBreakerCoalition, method, target,
+                        args, cacheKey, accessor);
+                if (fallbackCall != null) {
+                    accessor.close((R) result);
+                    Object value = fallbackCall.call();
+                    diagnostics.record(name, DiagnosticEvent.FALLBACK);
+                    return value;
+                }
+            }
+            return result;
         } catch (Throwable e) {
-            logger.warn("Method[{}#{}] invocation failed due to [{}:{}], executing fallback...",
+            if (recorded) {
+                throw getException(e);
+            }
+            // 线程池已满, 调用未执行, 不计入熔断统计, 直接降级
+            if (e instanceof ExecutorSaturatedException) {
+                diagnostics.exemplar(name, DiagnosticEvent.REJECTED,
+                        "Executor is saturated, go to fallback invocation");
+                return rejectedFallback(circuitBreakerCoalition, method, target, args, name,
+                        (ExecutorSaturatedException) e, cacheKey, accessor);
+            }
+            CallOutcome outcome = getResponseClassifier(circuitBreakerCoalition).classify(e);
+            onCallFinished(circuitBreakerCoalition, System.nanoTime() - start, outcome, e);
+            if (CallOutcome.IGNORED.equals(outcome)) {
+                throw getException(e);
+            }
+            diagnostics.exemplar(name, DiagnosticEvent.FAILED,
+                    "Method[{}#{}] invocation failed due to [{}:{}], executing fallback...",
                     method.getDeclaringClass().getSimpleName(), method.getName(),
                     e.getClass(), e.getMessage(), e);
             Callable<Object> fallbackCall = null;
             if (rule != null) {
-                fallbackCall = getFallback(rule, method, rule.getFallbackResult(), target, args, e);
+                fallbackCall = getFallback(circuitBreakerCoalition, method, target, args, e, cacheKey, accessor);
             }
             if (fallbackCall != null) {
-                return fallbackCall.call();
+                Object value = fallbackCall.call();
+                diagnostics.record(name, DiagnosticEvent.FALLBACK);
+                return value;
             } else {
                 throw getException(e);
             }
+        } finally {
+            if (bulkhead != null) {
+                bulkhead.onComplete();
+            }
         }
 
     }
 
+    /**
+     * Decorate the tasks submitted to the executors, used to carry the thread bound context
+     * (request attributes, route context, etc.) to the threads running the calls.
+     *
+     * @param taskDecorators applied in order, the first one is the innermost
+     */
+    public void setTaskDecorators(List<TaskDecorator> taskDecorators) {
+        TaskDecorator composed = null;
+        for (TaskDecorator decorator : taskDecorators) {
+            TaskDecorator inner = composed;
+            composed = inner == null ? decorator : runnable -> decorator.decorate(inner.decorate(runnable));
+        }
+        this.taskDecorator = composed;
+        retryExecutor.setTaskDecorator(composed);
+    }
+
+    /**
+     * Submit the callable to the executor through the task decorators.
+     */
+    <T> Future<T> submit(ExecutorService executor, Callable<T> callable) {
+        TaskDecorator decorator = taskDecorator;
+        if (decorator == null) {
+            return executor.submit(callable);
+        }
+        FutureTask<T> task = new FutureTask<>(callable);
+        executor.execute(decorator.decorate(task));
+        return task;
+    }
+
+    public CallDiagnostics getDiagnostics() {
+        return diagnostics;
+    }
+
+    public ExecutorService getExecutorService() {
+        return executorService;
+    }
+
+    /**
+     * Shut down the executor, the submitted calls continue to complete.
+     */
+    public void shutdown() {
+        executorService.shutdown();
+    }
+
+    /**
+     * Record the outcome on the circuitBreaker and the sliding window of the rule,
+     * also used by non-blocking clients which record the outcome on completion signals.
+     *
+     * @param coalition
+     * @param durationNanos
+     * @param outcome
+     * @param t null if the call returned
+     */
+    public void onCallFinished(CircuitBreakerCoalition coalition, long durationNanos, CallOutcome outcome,
+                                Throwable t) {
+        CircuitBreaker circuitBreaker = coalition.getCircuitBreaker();
+        diagnostics.recordDuration(circuitBreaker.getName(), durationNanos);
+        if (CallOutcome.IGNORED.equals(outcome)) {
+            return;
+        }
+        SlidingWindowPolicy policy = coalition.getSlidingWindowPolicy();
+        CircuitBreaker.State state = circuitBreaker.getState();
+        boolean failure = CallOutcome.FAILURE.equals(outcome);
+        if (failure) {
+            circuitBreaker.onError(durationNanos, t != null ? t : FAILURE_RESPONSE);
+        } else if (policy != null && CircuitBreaker.State.HALF_OPEN.equals(state)
+                && policy.isSlowCall(durationNanos)) {
+            circuitBreaker.onError(durationNanos, SLOW_CALL);
+        } else {
+            circuitBreaker.onSuccess(durationNanos);
+        }
+
+        if (policy == null) {
+            return;
+        }
+        if (!CircuitBreaker.State.CLOSED.equals(state)) {
+            policy.markStale();
+        } else if (policy.onCall(durationNanos, failure)
+                && CircuitBreaker.State.CLOSED.equals(circuitBreaker.getState())) {
+            logger.warn("CircuitBreaker[{}] is opened by slow call rate or time based failure rate",
+                    circuitBreaker.getName());
+            try {
+                circuitBreaker.transitionToOpenState();
+            } catch (IllegalStateException e) {
+                // opened by another call concurrently
+            }
+            policy.markStale();
+        }
+    }
+
+    /**
+     * @return null if the response is not cacheable, a cached key implies the accessor is cacheable
+     */
+    private <R> Object getRequestKey(Method method, Object[] args, HttpResponseAccessor<R> accessor,
+                                     StaleResponseCache cache) {
+        if (accessor == null) {
+            return new MethodCacheKey(method, args);
+        }
+        if (accessor instanceof CacheableResponseAccessor) {
+            return ((CacheableResponseAccessor<R>) accessor).getRequestKey(args, cache);
+        }
+        return null;
+    }
+
+    /**
+     * Keep the successful response in the stale response cache,
+     * http responses are read into the cache and a new response reading the cached body is returned.
+     */
+    private <R> Object cacheResponse(StaleResponseCache cache, Object cacheKey, R result,
+                                     HttpResponseAccessor<R> accessor) throws IOException {
+        if (accessor == null) {
+            cache.put(cacheKey, result);
+            return result;
+        }
+        if (result == null) {
+            return null;
+        }
+        CacheableResponseAccessor<R> cacheable = (CacheableResponseAccessor<R>) accessor;
+        CachedResponse cached = cacheable.snapshot(result, cache);
+        cache.put(cacheKey, cached);
+        return cacheable.restore(cached);
+    }
+
+    private <R> Object getStaleResponse(StaleResponseCache cache, Object cacheKey, HttpResponseAccessor<R> accessor) {
+        Object cached = cache == null ? null : cache.get(cacheKey);
+        if (cached == null || accessor == null) {
+            return cached;
+        }
+        return ((CacheableResponseAccessor<R>) accessor).restore((CachedResponse) cached);
+    }
+
+    private Duration getBulkheadTimeout(CircuitBreakerRule rule) {
+        Duration timeout = rule.getTimeoutDuration();
+        if (timeout == null || timeout.isNegative() || timeout.isZero()) {
+            return CircuitBreakerRule.DEFAULT_THREAD_POOL_BULKHEAD_TIMEOUT;
+        }
+        return timeout;
+    }
+
+    private ResponseClassifier getResponseClassifier(CircuitBreakerCoalition coalition) {
+        ResponseClassifier classifier = coalition.getResponseClassifier();
+        return classifier == null ? ResponseClassifier.DEFAULT : classifier;
+    }
+
+    private <R> Object bulkheadFallback(CircuitBreakerCoalition coalition, Method method, Object target,
+                                        Object[] args, String name, Object cacheKey,
+                                        HttpResponseAccessor<R> accessor) throws Exception {
+        diagnostics.exemplar(name, DiagnosticEvent.BULKHEAD_FULL, "Bulkhead is full, go to fallback invocation");
+        BulkheadFullException exception = new BulkheadFullException(
+                String.format("Bulkhead[%s] is full", name));
+        return rejectedFallback(coalition, method, target, args, name, exception, cacheKey, accessor);
+    }
+
+    private <R> Object rejectedFallback(CircuitBreakerCoalition coalition, Method method, Object target,
+                                        Object[] args, String name, RuntimeException exception, Object cacheKey,
+                                        HttpResponseAccessor<R> accessor) throws Exception {
+        Callable<Object> fallbackCall = getFallback(coalition, method, target, args, exception, cacheKey, accessor);
+        if (fallbackCall != null) {
+            Object value = fallbackCall.call();
+            diagnostics.record(name, DiagnosticEvent.FALLBACK);
+            return value;
+        }
+        throw exception;
+    }
+
     private Exception getException(Throwable e) {
         if (e instanceof Exception) {
             return (Exception) e;
@@ -177,130 +538,96 @@ public class CircuitBreakerCore {
      * 当前只支持返回熔断异常
      * 后续预计支持null和url级别
      *
-     * @param rule
+     * @param coalition
      * @param method
-     * @param fallbackResult
      * @param target
      * @param args
      * @param t
+     * @param cacheKey key of the stale response cache, null if responses are not cached
+     * @param accessor
      * @return
      */
-    private Callable<Object> getFallback(CircuitBreakerRule rule, Method method, String fallbackResult,
-                                         Object target, Object[] args, Throwable t) {
+    private <R> Callable<Object> getFallback(CircuitBreakerCoalition coalition, Method method,
+                                             Object target, Object[] args, Throwable t,
+                                             Object cacheKey, HttpResponseAccessor<R> accessor) {
+        CircuitBreakerRule rule = coalition == null ? null : coalition.getRule();
         if (rule == null) {
             return null;
         }
 
         Integer fallbackType = rule.getFallbackType();
         if (fallbackType != null) {
-            if (FallbackTypeEnum.EXCEPTION.equals(FallbackTypeEnum.getById(fallbackType))) {
+            FallbackTypeEnum type = FallbackTypeEnum.getById(fallbackType);
+            if (FallbackTypeEnum.STALE_CACHE.equals(type) && cacheKey != null) {
+                Object stale = getStaleResponse(coalition.getStaleResponseCache(), cacheKey, accessor);
+                if (stale != null) {
+                    logger.debug("fallback value is stale response.");
+                    return () -> stale;
+                }
+            }
+            if (FallbackTypeEnum.EXCEPTION.equals(type) || FallbackTypeEnum.STALE_CACHE.equals(type)) {
                 return () -> {
                     if (t == null) {
-                        logger.info("fallback value is CircuitBreakerOpenException.");
+                        logger.debug("fallback value is CircuitBreakerOpenException.");
                         throw new CircuitBreakerOpenException("CircuitBreaker is open");
                     } else {
                         throw getException(t);
                     }
                 };
-            } else if (FallbackTypeEnum.NULL.equals(FallbackTypeEnum.getById(fallbackType))) {
+            } else if (FallbackTypeEnum.NULL.equals(type)) {
                 return () -> {
-                    logger.info("fallback value is null.");
+                    logger.debug("fallback value is null.");
                     return null;
                 };
             }
         }
 
         if (rule.getFallbackResult() != null) {
-            return new ObjectMapperCallable(rule.getFallbackResult(), method);
+            return coalition.getFallbackResultCache().computeIfAbsent(method.getGenericReturnType(),
+                    type -> new ObjectMapperCallable(rule.getFallbackResult(), method,
+                            rule.getFallbackResultCopyOnRead()));
         }
-        com.baidu.formula.circuitbreaker.annotation.CircuitBreaker annotation =
-                AnnotationUtils.findAnnotation(method,
-                        com.baidu.formula.circuitbreaker.annotation.CircuitBreaker.class);
-        if (annotation == null || annotation.fallback().isEmpty()) {
+        FallbackMethods fallbackMethods = fallbackMethodRegistry.getFallbackMethods(method, target.getClass());
+        if (fallbackMethods == null) {
             return () -> {
                 throw new FallBackNotFoundException(
                         String.format("CircuitBreaker[%s]'s fallback method not configured.", rule));
             };
         }
 
-        Method fallbackMethod = findFallbackMethod(method, fallbackResult, target.getClass(),
-                t == null ? null : t.getClass(), annotation);
-
+        FallbackMethod fallbackMethod = fallbackMethods.resolve(t == null ? null : t.getClass());
         if (fallbackMethod == null) {
-            return () -> new FallBackNotFoundException(
-                    String.format("CircuitBreaker[%s](%s)'s fallback method not found.",
-                            rule, annotation));
-        }
-
-        if (fallbackMethod.getParameterCount() - method.getParameterCount() == 1) {
-            List<Object> argList = new ArrayList<>(Arrays.asList(args));
-            argList.add(t);
-            args = argList.toArray();
+            return () -> {
+                throw new FallBackNotFoundException(
+                        String.format("CircuitBreaker[%s](%s)'s fallback method not found.", rule, method));
+            };
         }
 
-        Object[] finalArgs = args;
-        return () -> process(fallbackMethod, target, finalArgs);
+        Object[] fallbackArgs = fallbackMethod.buildArgs(args, t);
+        Method m = fallbackMethod.getMethod();
+        return () -> process("", getName(m), "", m, target, fallbackArgs,
+                () -> fallbackMethod.invoke(target, fallbackArgs), null);
     }
 
-    public Method findFallbackMethod(Method method, String fallbackResult,
-                                     Class<?> targetClass, Class<? extends Throwable> throwableClass,
-                                     com.baidu.formula.circuitbreaker.annotation.CircuitBreaker annotation) {
-        MethodKey key = MethodKey.builder()
-                .method(method)
-                .fallBackResult(fallbackResult)
-                .targetClass(targetClass)
-                .throwableClass(throwableClass)
-                .fallbackMethodName(annotation.fallback()).build();
-        if (!fallbackMethodCache.containsKey(key)) {
-            Method m = findFallbackMethodInternal(method, targetClass, throwableClass, annotation);
-
-            if (m == null) {
-                // find a recent fallback method
-                TreeMap<MethodKey, Optional<Method>> treeMap = new TreeMap<>(
-                        Comparator.comparing(MethodKey::getTimestamp).reversed());
-                fallbackMethodCache.forEach((k, v) -> v.ifPresent(val -> treeMap.put(k, v)));
-
-                m = treeMap.entrySet().stream()
-                        .filter(entry -> entry.getKey().getMethod().equals(method))
-                        .filter(entry -> entry.getKey().getTargetClass().equals(targetClass))
-                        .map(entry -> entry.getValue().orElse(null))
-                        .findFirst().orElse(null);
-            }
-
-            fallbackMethodCache.putIfAbsent(key, Optional.ofNullable(m));
+    /**
+     * 按失败分类的响应与抛出异常的调用一样降级, 但不为响应创建异常
+     * 降级类型为抛出异常(或缓存中没有响应)时返回原响应, 由客户端自身处理错误响应, 如RestTemplate的ResponseErrorHandler
+     *
+     * @return null if the failure response is returned unchanged
+     */
+    private <R> Callable<Object> getFailureResponseFallback(CircuitBreakerCoalition coalition, Method method,
+                                                            Object target, Object[] args, Object cacheKey,
+                                                            HttpResponseAccessor<R> accessor) {
+        CircuitBreakerRule rule = coalition.getRule();
+        FallbackTypeEnum type = FallbackTypeEnum.getById(rule.getFallbackType());
+        if (FallbackTypeEnum.EXCEPTION.equals(type) || FallbackTypeEnum.STALE_CACHE.equals(type)) {
+            return null;
         }
-        return fallbackMethodCache.get(key).orElse(null);
-    }
-
-    public Method findFallbackMethodInternal(Method method, Class<?> targetClass,
-                                             Class<? extends Throwable> throwableClass,
-                                             com.baidu.formula.circuitbreaker.annotation.CircuitBreaker annotation) {
-        for (; throwableClass != null && Throwable.class.isAssignableFrom(throwableClass);
-             throwableClass = (Class<? extends Throwable>) throwableClass.getSuperclass()) {
-            Class<?>[] parameterTypes = Stream.concat(
-                    Arrays.stream(method.getParameterTypes()),
-                    Stream.of(throwableClass)).toArray(Class<?>[]::new);
-            Method fallbackMethod = ReflectionUtils.findMethod(targetClass, annotation.fallback(), parameterTypes);
-
-            if (fallbackMethod != null) {
-                return fallbackMethod;
-            }
-
-            Class<?>[] interfaces = Arrays.stream(throwableClass.getInterfaces())
-                    .filter(Throwable.class::isAssignableFrom)
-                    .toArray(Class[]::new);
-            for (Class<?> i : interfaces) {
-                parameterTypes = Stream.concat(
-                        Arrays.stream(method.getParameterTypes()),
-                        Stream.of(i)).toArray(Class<?>[]::new);
-                fallbackMethod = ReflectionUtils.findMethod(targetClass, annotation.fallback(), parameterTypes);
-                if (fallbackMethod != null) {
-                    return fallbackMethod;
-                }
-            }
+        if (type == null && rule.getFallbackResult() == null && (method == null || target == null
+                || fallbackMethodRegistry.getFallbackMethods(method, target.getClass()) == null)) {
+            return null;
         }
-
-        return ReflectionUtils.findMethod(targetClass, annotation.fallback(), method.getParameterTypes());
+        return getFallback(coalition, method, target, args, null, cacheKey, accessor);
     }
 
     public String getName(Method m) {
@@ -325,22 +652,4 @@ public class CircuitBreakerCore {
             return true;
         }
     }
-
-    @Builder
-    @ToString
-    @Getter
-    @Setter
-    @RequiredArgsConstructor
-    @EqualsAndHashCode(exclude = "timestamp")
-    @AllArgsConstructor
-    private static class MethodKey {
-        private String fallBackResult;
-        private Method method;
-        private Class<?> targetClass;
-        private Class<? extends Throwable> throwableClass;
-        private String fallbackMethodName;
-
-        @Builder.Default
-        private long timestamp = System.currentTimeMillis();
-    }
 }
@@ -15,13 +15,29 @@
  */
 package com.baidu.formula.circuitbreaker.impl;
 
+import com.baidu.formula.circuitbreaker.cache.StaleResponseCache;
+import com.baidu.formula.circuitbreaker.classifier.ResponseClassifier;
 import com.baidu.formula.circuitbreaker.config.CircuitBreakerProperties;
+import com.baidu.formula.circuitbreaker.enumeration.BulkheadTypeEnum;
+import com.baidu.formula.circuitbreaker.enumeration.FallbackTypeEnum;
+import com.baidu.formula.circuitbreaker.enumeration.SlidingWindowTypeEnum;
+import com.baidu.formula.circuitbreaker.model.BulkheadCoalition;
 import com.baidu.formula.circuitbreaker.model.CircuitBreakerCoalition;
 import com.baidu.formula.circuitbreaker.model.CircuitBreakerRule;
+import com.baidu.formula.circuitbreaker.model.StateTransitionRecord;
 import com.baidu.formula.circuitbreaker.model.TimeLimiterCoalition;
+import com.baidu.formula.circuitbreaker.retry.LatencyHistogram;
+import com.baidu.formula.circuitbreaker.retry.RetryBudget;
+import com.baidu.formula.circuitbreaker.retry.RetryPolicy;
+import com.baidu.formula.circuitbreaker.window.CountBasedSlidingWindow;
+import com.baidu.formula.circuitbreaker.window.SlidingWindow;
+import com.baidu.formula.circuitbreaker.window.SlidingWindowPolicy;
+import com.baidu.formula.circuitbreaker.window.TimeBasedSlidingWindow;
 import com.baidu.formula.engine.tag.FormulaSource;
 import com.baidu.formula.engine.tag.FormulaTag;
 import com.baidu.formula.engine.tag.Operation;
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.bulkhead.BulkheadConfig;
 import io.github.resilience4j.circuitbreaker.CircuitBreaker;
 import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
 import io.github.resilience4j.timelimiter.TimeLimiter;
@@ -31,15 +47,27 @@ import org.slf4j.LoggerFactory;
 import org.springframework.cloud.context.environment.EnvironmentChangeEvent;
 import org.springframework.context.event.EventListener;
 import org.springframework.core.annotation.Order;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 import org.springframework.util.CollectionUtils;
 
 import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import java.time.Duration;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 /**
@@ -55,6 +83,16 @@ public class CircuitBreakerManager {
 
     private static final String PREFIX = "formula.circuitBreaker";
 
+    private static final String RELAXED_PREFIX = CircuitBreakerProperties.PREFIX;
+
+    // 迁移窗口数据时记录的失败调用
+    private static final Throwable REPLAYED_FAILURE = new Exception("replayed failure of replaced circuitBreaker");
+
+    // 计算对冲延迟的响应时间窗口, 毫秒
+    private static final long HISTOGRAM_WINDOW = 10000;
+
+    private static final int MAX_TRANSITIONS = 100;
+
     private static Integer HTTP = 1;
 
     private static Integer RPC = 2;
@@ -73,6 +111,11 @@ public class CircuitBreakerManager {
 
     private ConcurrentHashMap<String, CircuitBreakerCoalition> circuitBreakerMap = new ConcurrentHashMap<>();
 
+    private ConcurrentHashMap<String, BulkheadCoalition> bulkheadMap = new ConcurrentHashMap<>();
+
+    // 最近的熔断器状态转换, 最多保留MAX_TRANSITIONS条
+    private final Deque<StateTransitionRecord> transitions = new ArrayDeque<>();
+
     public CircuitBreakerManager(CircuitBreakerProperties properties) {
         this.properties = properties;
     }
@@ -85,6 +128,7 @@ public class CircuitBreakerManager {
                 CircuitBreakerCoalition circuitBreakerCoalition = createCircuitBreaker(ruleName, rule);
                 if (circuitBreakerCoalition != null &&
                         circuitBreakerCoalition.getCircuitBreaker() != null) {
+                    listenTransitions(circuitBreakerCoalition.getCircuitBreaker());
                     circuitBreakerMap.putIfAbsent(ruleName, circuitBreakerCoalition);
                 }
                 TimeLimiterCoalition timeLimiterCoalition = createTimeLimiter(ruleName, rule);
@@ -92,10 +136,22 @@ public class CircuitBreakerManager {
                         timeLimiterCoalition.getTimeLimiter() != null) {
                     timeLimiterMap.putIfAbsent(ruleName, timeLimiterCoalition);
                 }
+                BulkheadCoalition bulkheadCoalition = createBulkhead(ruleName, rule);
+                if (bulkheadCoalition != null) {
+                    bulkheadMap.putIfAbsent(ruleName, bulkheadCoalition);
+                }
             }
         }
     }
 
+    @PreDestroy
+    public void destroy() {
+        for (BulkheadCoalition coalition : bulkheadMap.values()) {
+            shutdownBulkhead(coalition);
+        }
+        bulkheadMap.clear();
+    }
+
     private CircuitBreakerCoalition createCircuitBreaker(String ruleName, CircuitBreakerRule rule) {
         if (rule == null) {
             return null;
@@ -115,6 +171,10 @@ public class CircuitBreakerManager {
                 }
                 CircuitBreakerCoalition circuitBreakerCoalition = new CircuitBreakerCoalition(
                         circuitBreaker, rule);
+                circuitBreakerCoalition.setSlidingWindowPolicy(createSlidingWindowPolicy(rule, null));
+                circuitBreakerCoalition.setResponseClassifier(ResponseClassifier.of(rule));
+                circuitBreakerCoalition.setRetryPolicy(createRetryPolicy(rule, null));
+                circuitBreakerCoalition.setStaleResponseCache(createStaleResponseCache(rule, null));
                 return circuitBreakerCoalition;
             } catch (Throwable e) {
                 logger.error("failed to create circuitBreaker,name:{},id{}",
@@ -125,13 +185,129 @@ public class CircuitBreakerManager {
         return null;
     }
 
+    /**
+     * Create the stale response cache if the fallback type of the rule is STALE_CACHE,
+     * the cache of the replaced rule is kept if its settings are unchanged.
+     *
+     * @param rule
+     * @param exist
+     * @return
+     */
+    private StaleResponseCache createStaleResponseCache(CircuitBreakerRule rule, StaleResponseCache exist) {
+        if (!FallbackTypeEnum.STALE_CACHE.equals(FallbackTypeEnum.getById(rule.getFallbackType()))) {
+            return null;
+        }
+        int maxSize = rule.getStaleCacheMaxSize() != null
+                ? rule.getStaleCacheMaxSize() : CircuitBreakerRule.DEFAULT_STALE_CACHE_MAX_SIZE;
+        Duration maxStaleness = rule.getStaleCacheMaxStaleness() != null
+                ? rule.getStaleCacheMaxStaleness() : CircuitBreakerRule.DEFAULT_STALE_CACHE_MAX_STALENESS;
+        boolean offHeap = Boolean.TRUE.equals(rule.getStaleCacheOffHeap());
+        List<String> keyHeaders = rule.getStaleCacheKeyHeaders() != null
+                ? rule.getStaleCacheKeyHeaders() : Collections.emptyList();
+        long maxBytes = rule.getStaleCacheMaxBytes() != null
+                ? rule.getStaleCacheMaxBytes() : CircuitBreakerRule.DEFAULT_STALE_CACHE_MAX_BYTES;
+        int maxEntryBytes = rule.getStaleCacheMaxEntryBytes() != null
+                ? rule.getStaleCacheMaxEntryBytes() : CircuitBreakerRule.DEFAULT_STALE_CACHE_MAX_ENTRY_BYTES;
+        StaleResponseCache cache = new StaleResponseCache(maxSize, maxStaleness.toMillis(), offHeap, keyHeaders,
+                maxBytes, maxEntryBytes);
+        if (exist != null && exist.getMaxSize() == maxSize && exist.getMaxStalenessNanos() == maxStaleness.toNanos()
+                && exist.isOffHeap() == offHeap && exist.getKeyHeaders().equals(cache.getKeyHeaders())
+                && exist.getMaxBytes() == cache.getMaxBytes() && exist.getMaxEntryBytes() == cache.getMaxEntryBytes()) {
+            return exist;
+        }
+        return cache;
+    }
+
+    /**
+     * Create the retry and hedge policy of the rule, return null if neither of them is configured.
+     * The retry budget and the response times of the replaced rule are kept.
+     *
+     * @param rule
+     * @param exist
+     * @return
+     */
+    private RetryPolicy createRetryPolicy(CircuitBreakerRule rule, RetryPolicy exist) {
+        boolean hedgeEnabled = Boolean.TRUE.equals(rule.getHedgeEnabled());
+        int maxAttempts = rule.getRetryMaxAttempts() != null ? rule.getRetryMaxAttempts()
+                : hedgeEnabled ? CircuitBreakerRule.DEFAULT_HEDGE_MAX_ATTEMPTS : 1;
+        if (maxAttempts <= 1) {
+            return null;
+        }
+        int percent = rule.getRetryBudgetPercent() != null
+                ? rule.getRetryBudgetPercent() : CircuitBreakerRule.DEFAULT_RETRY_BUDGET_PERCENT;
+        RetryBudget budget = exist != null ? exist.getBudget() : null;
+        if (budget == null || budget.getPercent() != percent) {
+            budget = new RetryBudget(percent, CircuitBreakerRule.DEFAULT_RETRY_BUDGET_MAX_TOKENS);
+        }
+        LatencyHistogram histogram = exist != null ? exist.getHistogram() : new LatencyHistogram(HISTOGRAM_WINDOW);
+        Duration interval = rule.getRetryInterval();
+        Duration hedgeDelay = rule.getHedgeDelay();
+        int percentile = rule.getHedgeDelayPercentile() != null
+                ? rule.getHedgeDelayPercentile() : CircuitBreakerRule.DEFAULT_HEDGE_DELAY_PERCENTILE;
+        return new RetryPolicy(maxAttempts, interval != null ? interval.toNanos() : 0, hedgeEnabled,
+                hedgeDelay != null ? hedgeDelay.toNanos() : 0, percentile, budget, histogram,
+                Boolean.TRUE.equals(rule.getRetryNonIdempotent()));
+    }
+
+    /**
+     * Create the slow call and time based window of the rule,
+     * return null if neither of them is configured.
+     * The window of the replaced rule is reused if its type and size are unchanged.
+     *
+     * @param rule
+     * @param exist
+     * @return
+     */
+    private SlidingWindowPolicy createSlidingWindowPolicy(CircuitBreakerRule rule, SlidingWindow exist) {
+        boolean timeBased = SlidingWindowTypeEnum.TIME_BASED.equals(
+                SlidingWindowTypeEnum.getById(rule.getSlidingWindowType()));
+        Duration slowCallDuration = rule.getSlowCallDurationThreshold();
+        boolean slowCallEnabled = slowCallDuration != null && !slowCallDuration.isNegative()
+                && !slowCallDuration.isZero() && rule.getSlowCallRateThreshold() != null
+                && rule.getSlowCallRateThreshold() > 0;
+        if (!timeBased && !slowCallEnabled) {
+            return null;
+        }
+
+        Integer windowSize = rule.getSlidingWindowSize();
+        SlidingWindow window;
+        if (timeBased) {
+            int size = windowSize != null && windowSize > 0
+                    ? windowSize : CircuitBreakerRule.DEFAULT_TIME_BASED_SLIDING_WINDOW_SIZE;
+            window = exist instanceof TimeBasedSlidingWindow && ((TimeBasedSlidingWindow) exist).getSize() == size
+                    ? exist : new TimeBasedSlidingWindow(size);
+        } else {
+            int size = windowSize != null && windowSize > 0 ? windowSize : rule.getRingBufferSizeInClosedState();
+            window = exist instanceof CountBasedSlidingWindow && ((CountBasedSlidingWindow) exist).getSize() == size
+                    ? exist : new CountBasedSlidingWindow(size);
+        }
+
+        int minimumNumberOfCalls;
+        if (rule.getMinimumNumberOfCalls() != null) {
+            minimumNumberOfCalls = rule.getMinimumNumberOfCalls();
+        } else if (timeBased) {
+            minimumNumberOfCalls = CircuitBreakerRule.DEFAULT_MINIMUM_NUMBER_OF_CALLS;
+        } else {
+            minimumNumberOfCalls = ((CountBasedSlidingWindow) window).getSize();
+        }
+        return new SlidingWindowPolicy(window, minimumNumberOfCalls,
+                timeBased ? rule.getFailureRateThreshold() : 0,
+                slowCallEnabled ? slowCallDuration.toNanos() : 0,
+                slowCallEnabled ? rule.getSlowCallRateThreshold() : 0);
+    }
+
+    private SlidingWindow getSlidingWindow(CircuitBreakerCoalition coalition) {
+        SlidingWindowPolicy policy = coalition == null ? null : coalition.getSlidingWindowPolicy();
+        return policy == null ? null : policy.getWindow();
+    }
+
     private TimeLimiterCoalition createTimeLimiter(String ruleName, CircuitBreakerRule rule) {
         if (rule == null) {
             return null;
         }
         Duration timeout = rule.getTimeoutDuration();
-        if (rule.getEnabled() != null && rule.getEnabled() &&
-                timeout != null && !timeout.isNegative() && !timeout.isZero()) {
+        if (rule.getEnabled() != null && rule.getEnabled() && Boolean.TRUE.equals(rule.getTimeLimiterEnabled())
+                && timeout != null && !timeout.isNegative() && !timeout.isZero()) {
             try {
                 TimeLimiterConfig timeLimiterConfig = TimeLimiterConfig.custom()
                         .timeoutDuration(rule.getTimeoutDuration())
@@ -150,6 +326,59 @@ public class CircuitBreakerManager {
         return null;
     }
 
+    /**
+     * Create semaphore bulkhead or dedicated bounded thread pool for the rule,
+     * return null if bulkhead of the rule is not configured.
+     *
+     * @param ruleName
+     * @param rule
+     * @return
+     */
+    private BulkheadCoalition createBulkhead(String ruleName, CircuitBreakerRule rule) {
+        if (rule == null || rule.getEnabled() == null || !rule.getEnabled()) {
+            return null;
+        }
+        BulkheadTypeEnum type = BulkheadTypeEnum.getById(rule.getBulkheadType());
+        Integer maxConcurrentCalls = rule.getBulkheadMaxConcurrentCalls();
+        if (type == null || maxConcurrentCalls == null || maxConcurrentCalls <= 0) {
+            return null;
+        }
+        try {
+            if (BulkheadTypeEnum.SEMAPHORE.equals(type)) {
+                return new BulkheadCoalition(Bulkhead.of(ruleName, getBulkheadConfig(rule)), rule);
+            }
+            int queueCapacity = rule.getBulkheadQueueCapacity() == null ? 0 : rule.getBulkheadQueueCapacity();
+            BlockingQueue<Runnable> queue = queueCapacity > 0
+                    ? new ArrayBlockingQueue<>(queueCapacity) : new SynchronousQueue<>();
+            CustomizableThreadFactory factory = new CustomizableThreadFactory();
+            factory.setDaemon(true);
+            factory.setThreadNamePrefix("circuit-breaker-bulkhead-" + ruleName + "-");
+            ThreadPoolExecutor executor = new ThreadPoolExecutor(maxConcurrentCalls, maxConcurrentCalls,
+                    60L, TimeUnit.SECONDS, queue, factory, new ThreadPoolExecutor.AbortPolicy());
+            executor.allowCoreThreadTimeOut(true);
+            return new BulkheadCoalition(executor, rule);
+        } catch (Exception e) {
+            logger.error("failed to create bulkhead,name:{},id{}",
+                    ruleName, rule.getRuleId(), e);
+            return null;
+        }
+    }
+
+    private BulkheadConfig getBulkheadConfig(CircuitBreakerRule rule) {
+        Duration maxWait = rule.getBulkheadMaxWaitDuration();
+        return BulkheadConfig.custom()
+                .maxConcurrentCalls(rule.getBulkheadMaxConcurrentCalls())
+                .maxWaitTime(maxWait == null || maxWait.isNegative() ? 0 : maxWait.toMillis())
+                .build();
+    }
+
+    private void shutdownBulkhead(BulkheadCoalition coalition) {
+        if (coalition != null && coalition.getExecutor() != null) {
+            // 已提交的调用继续执行完成
+            coalition.getExecutor().shutdown();
+        }
+    }
+
     /**
      * Rule name must be unique
      *
@@ -184,8 +413,8 @@ public class CircuitBreakerManager {
      * 刷新时更改配置
      * CircuitBreaker和CircuitBreakerConfig都暂未提供修改配置的功能.
      * 配置项修改后,只能新创建一个CircuitBreaker替换原来的.
-     * 带来的影响是原CircuitBreaker的数据都消失了.比如原来已经打开了,修改后都要重新计算.
-     * 需要根据修改,精确刷新
+     * 替换时会将原CircuitBreaker的状态和窗口内的调用结果迁移到新的CircuitBreaker中,
+     * 避免已打开的熔断器因配置修改而全部关闭.
      *
      * @param changeEvent
      */
@@ -198,7 +427,7 @@ public class CircuitBreakerManager {
         }
 
         if (refreshKeys != null && refreshKeys.size() > 0
-                && refreshKeys.toString().contains(PREFIX)) {
+                && (refreshKeys.toString().contains(PREFIX) || refreshKeys.toString().contains(RELAXED_PREFIX))) {
             List<CircuitBreakerRule> rules = properties.getRules();
             if (rules == null) {
                 rules = new ArrayList<>();
@@ -218,6 +447,12 @@ public class CircuitBreakerManager {
                     circuitBreakerMap.remove(entry.getKey());
                 }
             }
+            for (Map.Entry<String, BulkheadCoalition> entry : bulkheadMap.entrySet()) {
+                if (!newNames.contains(entry.getKey())) {
+                    logger.info("remove bulkheadRule--ruleName:{}", entry.getKey());
+                    shutdownBulkhead(bulkheadMap.remove(entry.getKey()));
+                }
+            }
 
             for (CircuitBreakerRule rule : rules) {
                 // 维持不变的  添加更改
@@ -243,6 +478,7 @@ public class CircuitBreakerManager {
             CircuitBreakerRule existRule = coalition == null ? null : coalition.getRule();
             refreshCircuitBreaker(ruleName, rule, existRule);
             refreshTimeLimiter(ruleName, rule, existRule);
+            refreshBulkhead(ruleName, rule);
         } catch (Exception e) {
             logger.info("refresh rule:ruleId:{}, ruleName:{} fail with exception", rule.getRuleId(), ruleName, e);
         }
@@ -256,23 +492,102 @@ public class CircuitBreakerManager {
             CircuitBreakerCoalition coalitionrNew = createCircuitBreaker(name, rule);
             if (coalitionrNew != null) {
                 logger.info("add new circuitBreakerRule, id:{}, name:{}", rule.getRuleId(), name);
+                listenTransitions(coalitionrNew.getCircuitBreaker());
                 circuitBreakerMap.put(name, coalitionrNew);
             }
         } else if (rule != null && existRule != null) {
+            CircuitBreakerCoalition exist = circuitBreakerMap.get(name);
             if (isCircuitBreakerConfigChanged(rule, existRule)) {
-                // update rule ,replace it with the new one.
-                circuitBreakerMap.remove(name);
+                // update rule ,replace it with the new one and keep the state of the old one.
                 CircuitBreakerCoalition coalitionNew = createCircuitBreaker(name, rule);
                 if (coalitionNew != null) {
-                    logger.info("update circuitBreaker id:{}, name:{}", rule.getRuleId(), name);
+                    if (exist != null) {
+                        migrateCircuitBreaker(exist.getCircuitBreaker(), coalitionNew.getCircuitBreaker());
+                        coalitionNew.setRetryPolicy(createRetryPolicy(rule, exist.getRetryPolicy()));
+                        coalitionNew.setStaleResponseCache(
+                                createStaleResponseCache(rule, exist.getStaleResponseCache()));
+                        if (coalitionNew.getSlidingWindowPolicy() != null) {
+                            coalitionNew.setSlidingWindowPolicy(
+                                    createSlidingWindowPolicy(rule, getSlidingWindow(exist)));
+                        }
+                    }
+                    logger.info("update circuitBreaker id:{}, name:{}, state:{}", rule.getRuleId(), name,
+                            coalitionNew.getCircuitBreaker().getState());
+                    listenTransitions(coalitionNew.getCircuitBreaker());
                     circuitBreakerMap.put(name, coalitionNew);
+                } else {
+                    circuitBreakerMap.remove(name);
                 }
+            } else if (exist != null) {
+                // 熔断器配置未变, 只更新降级和统计窗口等其他配置
+                exist.setSlidingWindowPolicy(createSlidingWindowPolicy(rule, getSlidingWindow(exist)));
+                exist.setResponseClassifier(ResponseClassifier.of(rule));
+                exist.setRetryPolicy(createRetryPolicy(rule, exist.getRetryPolicy()));
+                exist.setStaleResponseCache(createStaleResponseCache(rule, exist.getStaleResponseCache()));
+                exist.setRule(rule);
+                exist.getFallbackResultCache().clear();
             }
         } else if (rule == null && existRule == null) {
             logger.info("no rule and  circuitBreaker name:{}", name);
         }
     }
 
+    /**
+     * Migrate the state and the buffered outcomes of the replaced circuitBreaker.
+     * Outcomes are replayed into the new ring buffer, scaled down if it is smaller,
+     * so the failure rate is evaluated against the new threshold right away.
+     * An OPEN circuitBreaker stays OPEN and waits the new waitDurationInOpenState from now on.
+     * Forced and disabled states follow the new rule instead.
+     *
+     * @param from
+     * @param to
+     */
+    private void migrateCircuitBreaker(CircuitBreaker from, CircuitBreaker to) {
+        if (from == null || to == null) {
+            return;
+        }
+        CircuitBreaker.State state = from.getState();
+        if (CircuitBreaker.State.FORCED_OPEN.equals(state) || CircuitBreaker.State.DISABLED.equals(state)
+                || CircuitBreaker.State.FORCED_OPEN.equals(to.getState())) {
+            return;
+        }
+        CircuitBreakerConfig config = to.getCircuitBreakerConfig();
+        CircuitBreaker.Metrics metrics = from.getMetrics();
+        if (CircuitBreaker.State.HALF_OPEN.equals(state)) {
+            to.transitionToOpenState();
+            to.transitionToHalfOpenState();
+            replayOutcomes(to, metrics, config.getRingBufferSizeInHalfOpenState());
+            return;
+        }
+
+        replayOutcomes(to, metrics, config.getRingBufferSizeInClosedState());
+        if (CircuitBreaker.State.OPEN.equals(state) && CircuitBreaker.State.CLOSED.equals(to.getState())) {
+            to.transitionToOpenState();
+        }
+    }
+
+    private void replayOutcomes(CircuitBreaker to, CircuitBreaker.Metrics metrics, int capacity) {
+        int buffered = metrics.getNumberOfBufferedCalls();
+        int failed = metrics.getNumberOfFailedCalls();
+        if (buffered <= 0) {
+            return;
+        }
+        if (buffered > capacity) {
+            failed = Math.round((float) failed * capacity / buffered);
+            buffered = capacity;
+        }
+        // 失败和成功交替回放, 避免在回放过程中因失败集中而误触发状态转换
+        int replayedFailed = 0;
+        for (int i = 1; i <= buffered; i++) {
+            if ((long) failed * i / buffered > replayedFailed) {
+                replayedFailed++;
+                to.onError(0, REPLAYED_FAILURE);
+            } else {
+                to.onSuccess(0);
+            }
+        }
+    }
+
     /**
      * Compare the configuration of rule with the exist one;
      *
@@ -288,34 +603,27 @@ public class CircuitBreakerManager {
         if (isSourceChange(newSource, exitSource)) {
             return true;
         }
-        Boolean state = existRule.getForceOpen();
 
-        if (newRule.getEnabled() != existRule.getEnabled()) {
+        if (!Objects.equals(newRule.getEnabled(), existRule.getEnabled())) {
             return true;
         }
 
-        if (newRule.getForceOpen() != null && newRule.getForceOpen()) {
-            if (state != null && newRule.getForceOpen().equals(state)) {
-                return false;
-            } else {
-                return true;
-            }
-        } else {
-            if (state != null && CircuitBreaker.State.FORCED_OPEN.equals(state)) {
-                return true;
-            }
+        if (!Objects.equals(Boolean.TRUE.equals(newRule.getForceOpen()),
+                Boolean.TRUE.equals(existRule.getForceOpen()))) {
+            return true;
         }
         // 比较熔断器配置
-        if (!newRule.getFailureRateThreshold().equals(existRule.getFailureRateThreshold())) {
+        if (!Objects.equals(newRule.getFailureRateThreshold(), existRule.getFailureRateThreshold())) {
             return true;
         }
-        if (!newRule.getWaitDurationInOpenState().equals(existRule.getWaitDurationInOpenState())) {
+        if (!Objects.equals(newRule.getWaitDurationInOpenState(), existRule.getWaitDurationInOpenState())) {
             return true;
         }
-        if (!newRule.getRingBufferSizeInClosedState().equals(existRule.getRingBufferSizeInClosedState())) {
+        if (!Objects.equals(newRule.getRingBufferSizeInClosedState(), existRule.getRingBufferSizeInClosedState())) {
             return true;
         }
-        if (!newRule.getRingBufferSizeInHalfOpenState().equals(existRule.getRingBufferSizeInHalfOpenState())) {
+        if (!Objects.equals(newRule.getRingBufferSizeInHalfOpenState(),
+                existRule.getRingBufferSizeInHalfOpenState())) {
             return true;
         }
         return false;
@@ -355,11 +663,12 @@ public class CircuitBreakerManager {
             }
         } else if (rule != null && existRule != null) {
             if (isTimeLimiterConfigChanged(rule, existRule)) {
-                timeLimiterMap.remove(name);
                 TimeLimiterCoalition coalitionNew = createTimeLimiter(name, rule);
                 if (coalitionNew != null) {
                     logger.info("update timeLimiter id:{}, name:{}", rule.getRuleId(), name);
                     timeLimiterMap.put(name, coalitionNew);
+                } else {
+                    timeLimiterMap.remove(name);
                 }
             }
         } else if (rule == null && existRule == null) {
@@ -368,8 +677,58 @@ public class CircuitBreakerManager {
     }
 
     /**
+     * Semaphore bulkhead is changed in place, so permits held by running calls are kept;
+     * thread pool is resized in place unless the queue capacity or bulkhead type changed.
      *
-     * TimeLimiterConfigs changes are not support now;
+     * @param name
+     * @param rule
+     */
+    private void refreshBulkhead(String name, CircuitBreakerRule rule) {
+        BulkheadCoalition exist = bulkheadMap.get(name);
+        CircuitBreakerRule existRule = exist == null ? null : exist.getRule();
+        if (exist != null && isBulkheadTypeUnchanged(rule, existRule) && rule.getEnabled() != null
+                && rule.getEnabled() && rule.getBulkheadMaxConcurrentCalls() != null
+                && rule.getBulkheadMaxConcurrentCalls() > 0) {
+            if (exist.getBulkhead() != null) {
+                exist.getBulkhead().changeConfig(getBulkheadConfig(rule));
+                exist.setRule(rule);
+                logger.info("update bulkhead id:{}, name:{}", rule.getRuleId(), name);
+                return;
+            }
+            if (Objects.equals(rule.getBulkheadQueueCapacity(), existRule.getBulkheadQueueCapacity())) {
+                ThreadPoolExecutor executor = exist.getExecutor();
+                int size = rule.getBulkheadMaxConcurrentCalls();
+                if (size >= executor.getCorePoolSize()) {
+                    executor.setMaximumPoolSize(size);
+                    executor.setCorePoolSize(size);
+                } else {
+                    executor.setCorePoolSize(size);
+                    executor.setMaximumPoolSize(size);
+                }
+                exist.setRule(rule);
+                logger.info("update bulkhead id:{}, name:{}", rule.getRuleId(), name);
+                return;
+            }
+        }
+
+        BulkheadCoalition coalitionNew = createBulkhead(name, rule);
+        if (coalitionNew != null) {
+            logger.info("add bulkhead id:{}, name:{}", rule.getRuleId(), name);
+            shutdownBulkhead(bulkheadMap.put(name, coalitionNew));
+        } else if (exist != null) {
+            logger.info("remove bulkhead id:{}, name:{}", rule.getRuleId(), name);
+            shutdownBulkhead(bulkheadMap.remove(name));
+        }
+    }
+
+    private boolean isBulkheadTypeUnchanged(CircuitBreakerRule rule, CircuitBreakerRule existRule) {
+        return existRule != null && BulkheadTypeEnum.getById(rule.getBulkheadType()) != null
+                && Objects.equals(BulkheadTypeEnum.getById(rule.getBulkheadType()),
+                BulkheadTypeEnum.getById(existRule.getBulkheadType()));
+    }
+
+    /**
+     * Compare the timeLimiter configuration of rule with the exist one;
      *
      * @param rule
      * @param existRule
@@ -377,7 +736,10 @@ public class CircuitBreakerManager {
      */
     private boolean isTimeLimiterConfigChanged(CircuitBreakerRule rule,
                                                CircuitBreakerRule existRule) {
-        return true;
+        return !Objects.equals(rule.getEnabled(), existRule.getEnabled())
+                || !Objects.equals(rule.getTimeLimiterEnabled(), existRule.getTimeLimiterEnabled())
+                || !Objects.equals(rule.getTimeoutDuration(), existRule.getTimeoutDuration())
+                || !Objects.equals(rule.getCancelRunningFuture(), existRule.getCancelRunningFuture());
     }
 
     /**
@@ -453,15 +815,78 @@ public class CircuitBreakerManager {
     }
 
     /**
-     * timiter Waiting for subsequent support
-     *googlefa
+     * All the circuit breakers created from the rules, including those not matching the current instance.
+     *
+     * @return
+     */
+    public Collection<CircuitBreakerCoalition> getCircuitBreakerCoalitions() {
+        return Collections.unmodifiableCollection(circuitBreakerMap.values());
+    }
+
+    /**
+     * The recent state transitions of the circuit breakers, the oldest first.
+     *
+     * @return
+     */
+    public List<StateTransitionRecord> getRecentTransitions() {
+        synchronized (transitions) {
+            return new ArrayList<>(transitions);
+        }
+    }
+
+    /**
+     * Keep the state transitions of the circuitBreaker, registered after the state is migrated
+     * so the transitions replaying the replaced circuitBreaker are not kept.
+     *
+     * @param circuitBreaker
+     */
+    private void listenTransitions(CircuitBreaker circuitBreaker) {
+        circuitBreaker.getEventPublisher().onStateTransition(event -> {
+            StateTransitionRecord record = new StateTransitionRecord();
+            record.setRuleName(event.getCircuitBreakerName());
+            record.setFromState(event.getStateTransition().getFromState().name());
+            record.setToState(event.getStateTransition().getToState().name());
+            record.setTimestamp(System.currentTimeMillis());
+            synchronized (transitions) {
+                if (transitions.size() >= MAX_TRANSITIONS) {
+                    transitions.removeFirst();
+                }
+                transitions.addLast(record);
+            }
+        });
+    }
+
+    /**
+     * Obtain the bulkhead of the matched circuit breaker rule.
+     *
+     * @param ruleName
+     * @return null if the rule has no bulkhead
+     */
+    public BulkheadCoalition getBulkheadCoalition(String ruleName) {
+        return ruleName == null ? null : bulkheadMap.get(ruleName);
+    }
+
+    /**
+     * Obtain the timeLimiter of the matched circuit breaker rule.
+     *
      * @param httpMethod
      * @param serviceName
      * @param url
-     * @return
+     * @return null if no rule matches, the rule has no timeoutDuration or timeLimiterEnabled is not set
      */
     public TimeLimiterCoalition getTimeLimiterCoalition(String httpMethod,
                                                         String serviceName, String url) {
-        return null;
+        CircuitBreakerCoalition coalition = getCircuitBreakerCoalition(httpMethod, serviceName, url);
+        return coalition == null ? null : getTimeLimiterCoalition(coalition.getRule().getRuleName());
+    }
+
+    /**
+     * Obtain the timeLimiter of the circuit breaker rule.
+     *
+     * @param ruleName
+     * @return null if the rule has no timeoutDuration or timeLimiterEnabled is not set
+     */
+    public TimeLimiterCoalition getTimeLimiterCoalition(String ruleName) {
+        return ruleName == null ? null : timeLimiterMap.get(ruleName);
     }
 }
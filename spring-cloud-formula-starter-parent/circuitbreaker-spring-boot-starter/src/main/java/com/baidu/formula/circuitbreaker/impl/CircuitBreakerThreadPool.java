@@ -0,0 +1,111 @@
+/*
+ * Copyright (c) 2018 Baidu, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baidu.formula.circuitbreaker.impl;
+
+import com.baidu.formula.circuitbreaker.config.ExecutorProperties;
+import com.baidu.formula.circuitbreaker.enumeration.ExecutorTypeEnum;
+import com.baidu.formula.circuitbreaker.exception.ExecutorSaturatedException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded thread pool of {@link CircuitBreakerCore}, tasks are rejected once the threads and the queue are full,
+ * the rejected calls are not recorded on the circuit breaker and go to the fallback.
+ */
+public class CircuitBreakerThreadPool extends ThreadPoolExecutor {
+    private static final Logger logger = LoggerFactory.getLogger(CircuitBreakerThreadPool.class);
+
+    private static final String THREAD_NAME_PREFIX = "circuit-breaker-";
+
+    private final LongAdder rejected = new LongAdder();
+
+    public CircuitBreakerThreadPool(int coreSize, int maxSize, long keepAliveMillis, int queueCapacity) {
+        super(coreSize, maxSize, keepAliveMillis, TimeUnit.MILLISECONDS, createQueue(queueCapacity),
+                createThreadFactory());
+        setRejectedExecutionHandler((r, executor) -> {
+            rejected.increment();
+            throw new ExecutorSaturatedException("circuit breaker executor is saturated, max size:"
+                    + executor.getMaximumPoolSize() + ", queued:" + executor.getQueue().size());
+        });
+        allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Number of the tasks rejected since start.
+     */
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    /**
+     * Create the executor by type, the virtual thread executor falls back to the bounded thread pool
+     * if it is not supported by the running JDK.
+     *
+     * @param properties
+     * @return
+     */
+    public static ExecutorService create(ExecutorProperties properties) {
+        ExecutorTypeEnum type = ExecutorTypeEnum.getById(properties.getType());
+        if (ExecutorTypeEnum.CACHED.equals(type)) {
+            return Executors.newCachedThreadPool(createThreadFactory());
+        } else if (ExecutorTypeEnum.VIRTUAL.equals(type)) {
+            ExecutorService executor = createVirtualThreadExecutor();
+            if (executor != null) {
+                return executor;
+            }
+            logger.warn("virtual threads are not supported by the JDK, use bounded thread pool instead");
+        }
+        int maxSize = properties.getMaxSize() == null || properties.getMaxSize() <= 0
+                ? ExecutorProperties.DEFAULT_MAX_SIZE : properties.getMaxSize();
+        int coreSize = properties.getCoreSize() == null || properties.getCoreSize() < 0
+                ? ExecutorProperties.DEFAULT_CORE_SIZE : Math.min(properties.getCoreSize(), maxSize);
+        long keepAlive = properties.getKeepAlive() == null
+                ? ExecutorProperties.DEFAULT_KEEP_ALIVE.toMillis() : properties.getKeepAlive().toMillis();
+        int queueCapacity = properties.getQueueCapacity() == null ? 0 : properties.getQueueCapacity();
+        return new CircuitBreakerThreadPool(coreSize, maxSize, keepAlive, queueCapacity);
+    }
+
+    private static ExecutorService createVirtualThreadExecutor() {
+        try {
+            Method method = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) method.invoke(null);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    private static BlockingQueue<Runnable> createQueue(int queueCapacity) {
+        return queueCapacity > 0 ? new ArrayBlockingQueue<>(queueCapacity) : new SynchronousQueue<>();
+    }
+
+    private static CustomizableThreadFactory createThreadFactory() {
+        CustomizableThreadFactory factory = new CustomizableThreadFactory();
+        factory.setDaemon(true);
+        factory.setThreadNamePrefix(THREAD_NAME_PREFIX);
+        return factory;
+    }
+}
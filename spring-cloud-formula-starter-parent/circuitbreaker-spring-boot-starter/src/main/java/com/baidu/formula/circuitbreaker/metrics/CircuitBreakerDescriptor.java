@@ -0,0 +1,53 @@
+/*
+ * Copyright (c) 2018 Baidu, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baidu.formula.circuitbreaker.metrics;
+
+import lombok.Data;
+
+import java.util.Map;
+
+/**
+ * A circuit breaker rule and the current state of its circuit breaker, listed by {@link CircuitBreakerEndpoint}.
+ */
+@Data
+public class CircuitBreakerDescriptor {
+
+    private Long ruleId;
+
+    // 熔断规则名称
+    private String name;
+
+    // 规则是否对当前实例生效
+    private boolean matched;
+
+    // 熔断器状态, CircuitBreaker.State的名称
+    private String state;
+
+    // 失败率百分比, 窗口内调用数不足时为-1
+    private float failureRate;
+
+    // 窗口内的调用数
+    private int bufferedCalls;
+
+    // 窗口内的失败调用数
+    private int failedCalls;
+
+    // 窗口的最大调用数
+    private int maxBufferedCalls;
+
+    // 启动以来按事件统计的调用数
+    private Map<String, Long> calls;
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright (c) 2018 Baidu, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baidu.formula.circuitbreaker.metrics;
+
+import com.baidu.formula.circuitbreaker.diagnostics.CallDiagnostics;
+import com.baidu.formula.circuitbreaker.diagnostics.DiagnosticEvent;
+import com.baidu.formula.circuitbreaker.impl.CircuitBreakerManager;
+import com.baidu.formula.circuitbreaker.model.CircuitBreakerCoalition;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Lists the circuit breaker rules with the current states, the buffered calls and the recent state transitions.
+ */
+@Endpoint(id = "circuitbreakers")
+public class CircuitBreakerEndpoint {
+
+    private final CircuitBreakerManager manager;
+
+    private final CallDiagnostics diagnostics;
+
+    public CircuitBreakerEndpoint(CircuitBreakerManager manager, CallDiagnostics diagnostics) {
+        this.manager = manager;
+        this.diagnostics = diagnostics;
+    }
+
+    @ReadOperation
+    public Map<String, Object> circuitBreakers() {
+        List<CircuitBreakerDescriptor> rules = manager.getCircuitBreakerCoalitions().stream()
+                .map(this::describe)
+                .sorted(Comparator.comparing(CircuitBreakerDescriptor::getName))
+                .collect(Collectors.toList());
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("rules", rules);
+        result.put("transitions", manager.getRecentTransitions());
+        return result;
+    }
+
+    private CircuitBreakerDescriptor describe(CircuitBreakerCoalition coalition) {
+        CircuitBreaker circuitBreaker = coalition.getCircuitBreaker();
+        CircuitBreaker.Metrics metrics = circuitBreaker.getMetrics();
+        String name = circuitBreaker.getName();
+        CircuitBreakerDescriptor descriptor = new CircuitBreakerDescriptor();
+        descriptor.setRuleId(coalition.getRule().getRuleId());
+        descriptor.setName(name);
+        descriptor.setMatched(manager.getCircuitBreakerCoalition(name) == coalition);
+        descriptor.setState(circuitBreaker.getState().name());
+        descriptor.setFailureRate(metrics.getFailureRate());
+        descriptor.setBufferedCalls(metrics.getNumberOfBufferedCalls());
+        descriptor.setFailedCalls(metrics.getNumberOfFailedCalls());
+        descriptor.setMaxBufferedCalls(metrics.getMaxNumberOfBufferedCalls());
+        Map<String, Long> calls = new LinkedHashMap<>();
+        for (DiagnosticEvent event : DiagnosticEvent.values()) {
+            calls.put(event.name().toLowerCase(Locale.ROOT), diagnostics.getCount(name, event));
+        }
+        descriptor.setCalls(calls);
+        return descriptor;
+    }
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright (c) 2018 Baidu, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baidu.formula.circuitbreaker.metrics;
+
+import com.baidu.formula.circuitbreaker.impl.CircuitBreakerThreadPool;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+
+/**
+ * Saturation of the bounded executor of the circuit breakers, nothing is bound for the other executors.
+ */
+public class CircuitBreakerExecutorMetrics implements MeterBinder {
+    private static final String PREFIX = CircuitBreakerMetrics.PREFIX + ".executor";
+
+    private final ExecutorService executorService;
+
+    public CircuitBreakerExecutorMetrics(ExecutorService executorService) {
+        this.executorService = executorService;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        if (!(executorService instanceof ThreadPoolExecutor)) {
+            return;
+        }
+        ThreadPoolExecutor executor = (ThreadPoolExecutor) executorService;
+        Gauge.builder(PREFIX + ".active", executor, ThreadPoolExecutor::getActiveCount)
+                .description("number of the threads running calls")
+                .register(registry);
+        Gauge.builder(PREFIX + ".pool.size", executor, ThreadPoolExecutor::getPoolSize)
+                .description("number of the threads in the pool")
+                .register(registry);
+        Gauge.builder(PREFIX + ".pool.max", executor, ThreadPoolExecutor::getMaximumPoolSize)
+                .description("max number of the threads in the pool")
+                .register(registry);
+        Gauge.builder(PREFIX + ".queued", executor, e -> e.getQueue().size())
+                .description("number of the calls waiting in the queue")
+                .register(registry);
+        Gauge.builder(PREFIX + ".queue.remaining", executor, e -> e.getQueue().remainingCapacity())
+                .description("remaining capacity of the queue")
+                .register(registry);
+        if (executor instanceof CircuitBreakerThreadPool) {
+            FunctionCounter.builder(PREFIX + ".rejected", (CircuitBreakerThreadPool) executor,
+                    CircuitBreakerThreadPool::getRejectedCount)
+                    .description("number of the calls rejected since the executor is saturated")
+                    .register(registry);
+        }
+    }
+}
@@ -0,0 +1,163 @@
+/*
+ * Copyright (c) 2018 Baidu, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baidu.formula.circuitbreaker.metrics;
+
+import com.baidu.formula.circuitbreaker.cache.StaleResponseCache;
+import com.baidu.formula.circuitbreaker.config.CircuitBreakerProperties;
+import com.baidu.formula.circuitbreaker.diagnostics.CallDiagnostics;
+import com.baidu.formula.circuitbreaker.diagnostics.DiagnosticEvent;
+import com.baidu.formula.circuitbreaker.impl.CircuitBreakerManager;
+import com.baidu.formula.circuitbreaker.model.CircuitBreakerCoalition;
+import com.baidu.formula.circuitbreaker.model.CircuitBreakerRule;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.cloud.context.environment.EnvironmentChangeEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.util.CollectionUtils;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Meters of the circuit breakers per rule name.
+ * <p>
+ * Gauges read the circuit breaker of the rule when they are published, counters and timers read the
+ * {@link CallDiagnostics}, so the calls only update the lock-free counters.
+ * Meters of the rules added by refreshing are registered on refresh,
+ * meters of the removed rules stay and report NaN.
+ */
+public class CircuitBreakerMetrics implements MeterBinder {
+    public static final String PREFIX = "formula.circuitbreaker";
+
+    private static final String REFRESH_KEY = "formula.circuit";
+
+    private final CircuitBreakerManager manager;
+
+    private final CallDiagnostics diagnostics;
+
+    private final CircuitBreakerProperties properties;
+
+    private final List<MeterRegistry> registries = new CopyOnWriteArrayList<>();
+
+    public CircuitBreakerMetrics(CircuitBreakerManager manager, CallDiagnostics diagnostics,
+                                 CircuitBreakerProperties properties) {
+        this.manager = manager;
+        this.diagnostics = diagnostics;
+        this.properties = properties;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        registries.add(registry);
+        bindRules(registry);
+    }
+
+    @Order
+    @EventListener
+    public void metricsRefresh(EnvironmentChangeEvent changeEvent) {
+        Set<String> refreshKeys = changeEvent.getKeys();
+        if (CollectionUtils.isEmpty(refreshKeys) || !refreshKeys.toString().contains(REFRESH_KEY)) {
+            return;
+        }
+        // 已注册的指标重复注册时返回原指标
+        for (MeterRegistry registry : registries) {
+            bindRules(registry);
+        }
+    }
+
+    private void bindRules(MeterRegistry registry) {
+        if (properties.getRules() == null) {
+            return;
+        }
+        for (CircuitBreakerRule rule : properties.getRules()) {
+            if (Boolean.TRUE.equals(rule.getEnabled())) {
+                bindRule(registry, rule.getRuleName());
+            }
+        }
+    }
+
+    private void bindRule(MeterRegistry registry, String name) {
+        Tags tags = Tags.of("name", name);
+        for (CircuitBreaker.State state : CircuitBreaker.State.values()) {
+            Gauge.builder(PREFIX + ".state", manager,
+                    circuitBreaker(name, c -> state.equals(c.getState()) ? 1 : 0))
+                    .description("1 if the circuit breaker is in the state")
+                    .tags(tags).tag("state", state.name().toLowerCase(Locale.ROOT))
+                    .register(registry);
+        }
+        Gauge.builder(PREFIX + ".failure.rate", manager,
+                circuitBreaker(name, c -> c.getMetrics().getFailureRate()))
+                .description("failure rate in percentage, -1 if the buffered calls are not enough")
+                .tags(tags).register(registry);
+        Gauge.builder(PREFIX + ".buffered.calls", manager,
+                circuitBreaker(name, c -> c.getMetrics().getNumberOfBufferedCalls()))
+                .description("number of the calls in the ring buffer")
+                .tags(tags).register(registry);
+        Gauge.builder(PREFIX + ".failed.calls", manager,
+                circuitBreaker(name, c -> c.getMetrics().getNumberOfFailedCalls()))
+                .description("number of the failed calls in the ring buffer")
+                .tags(tags).register(registry);
+
+        for (DiagnosticEvent event : DiagnosticEvent.values()) {
+            FunctionCounter.builder(PREFIX + ".calls", diagnostics, d -> d.getCount(name, event))
+                    .description("number of the calls matching the rule by event")
+                    .tags(tags).tag("kind", event.name().toLowerCase(Locale.ROOT))
+                    .register(registry);
+        }
+        FunctionTimer.builder(PREFIX + ".call.duration", diagnostics,
+                d -> d.getDurationCount(name), d -> d.getTotalDurationNanos(name), TimeUnit.NANOSECONDS)
+                .description("duration of the calls recorded on the circuit breaker")
+                .tags(tags).register(registry);
+
+        FunctionCounter.builder(PREFIX + ".stale.cache.requests", manager,
+                staleCache(name, StaleResponseCache::getHitCount))
+                .tags(tags).tag("result", "hit").register(registry);
+        FunctionCounter.builder(PREFIX + ".stale.cache.requests", manager,
+                staleCache(name, StaleResponseCache::getMissCount))
+                .tags(tags).tag("result", "miss").register(registry);
+        Gauge.builder(PREFIX + ".stale.cache.size", manager, staleCache(name, StaleResponseCache::size))
+                .tags(tags).register(registry);
+        Gauge.builder(PREFIX + ".stale.cache.bytes", manager, staleCache(name, StaleResponseCache::getTotalBytes))
+                .baseUnit("bytes").tags(tags).register(registry);
+    }
+
+    private static ToDoubleFunction<CircuitBreakerManager> circuitBreaker(String name,
+                                                                          ToDoubleFunction<CircuitBreaker> f) {
+        return manager -> {
+            CircuitBreakerCoalition coalition = manager.getCircuitBreakerCoalition(name);
+            return coalition == null ? Double.NaN : f.applyAsDouble(coalition.getCircuitBreaker());
+        };
+    }
+
+    private static ToDoubleFunction<CircuitBreakerManager> staleCache(String name,
+                                                                      ToDoubleFunction<StaleResponseCache> f) {
+        return manager -> {
+            CircuitBreakerCoalition coalition = manager.getCircuitBreakerCoalition(name);
+            StaleResponseCache cache = coalition == null ? null : coalition.getStaleResponseCache();
+            return cache == null ? Double.NaN : f.applyAsDouble(cache);
+        };
+    }
+}
@@ -0,0 +1,45 @@
+/*
+ * Copyright (c) 2018 Baidu, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baidu.formula.circuitbreaker.model;
+
+import io.github.resilience4j.bulkhead.Bulkhead;
+import lombok.Data;
+
+import java.util.concurrent.ThreadPoolExecutor;
+
+/**
+ * Semaphore bulkhead or dedicated bounded thread pool of a circuit breaker rule,
+ * only one of them is present.
+ */
+@Data
+public class BulkheadCoalition {
+
+    private Bulkhead bulkhead;
+
+    private ThreadPoolExecutor executor;
+
+    private CircuitBreakerRule rule;
+
+    public BulkheadCoalition(Bulkhead bulkhead, CircuitBreakerRule rule) {
+        this.bulkhead = bulkhead;
+        this.rule = rule;
+    }
+
+    public BulkheadCoalition(ThreadPoolExecutor executor, CircuitBreakerRule rule) {
+        this.executor = executor;
+        this.rule = rule;
+    }
+}
@@ -15,9 +15,18 @@
  */
 package com.baidu.formula.circuitbreaker.model;
 
+import com.baidu.formula.circuitbreaker.cache.StaleResponseCache;
+import com.baidu.formula.circuitbreaker.classifier.ResponseClassifier;
+import com.baidu.formula.circuitbreaker.retry.RetryPolicy;
+import com.baidu.formula.circuitbreaker.window.SlidingWindowPolicy;
 import io.github.resilience4j.circuitbreaker.CircuitBreaker;
 import lombok.Data;
 
+import java.lang.reflect.Type;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+
 /**
  * @author guobolin
  */
@@ -28,6 +37,21 @@ public class CircuitBreakerCoalition {
 
     private CircuitBreakerRule rule;
 
+    // 慢调用和按时间统计的窗口, 未配置时为null
+    private volatile SlidingWindowPolicy slidingWindowPolicy;
+
+    // 响应和异常的分类规则
+    private volatile ResponseClassifier responseClassifier = ResponseClassifier.DEFAULT;
+
+    // 重试和对冲请求, 未配置时为null
+    private volatile RetryPolicy retryPolicy;
+
+    // 降级类型为STALE_CACHE时缓存的响应, 其他降级类型为null
+    private volatile StaleResponseCache staleResponseCache;
+
+    // 按返回类型缓存反序列化后的fallbackResult, 规则更新时清空
+    private final Map<Type, Callable<Object>> fallbackResultCache = new ConcurrentHashMap<>();
+
     public CircuitBreakerCoalition(CircuitBreaker circuitBreaker, CircuitBreakerRule rule) {
         this.circuitBreaker = circuitBreaker;
         this.rule = rule;
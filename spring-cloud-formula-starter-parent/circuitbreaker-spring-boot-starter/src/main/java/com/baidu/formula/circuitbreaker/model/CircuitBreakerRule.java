@@ -19,6 +19,8 @@ import com.baidu.formula.engine.tag.FormulaSource;
 import lombok.Data;
 
 import java.time.Duration;
+import java.util.List;
+import java.util.Map;
 
 /**
  * @author Bowu Dong (tq02ksu@gmail.com)
@@ -30,7 +32,22 @@ public class CircuitBreakerRule {
     public static final int DEFAULT_RING_BUFFER_SIZE_IN_CLOSED_STATE = 20;
     public static final Duration DEFAULT_WAIT_DURATION_IN_OPEN_STATE = Duration.ofSeconds(60);
     public static final boolean DEFAULT_CANCEL_RUNNING_FUTURE = true;
+    public static final int HTTP_CIRCUITBREAKER = 1;
     public static final int MENTHOD_CIRCUITBREAKER = 3;
+    public static final Duration DEFAULT_BULKHEAD_MAX_WAIT_DURATION = Duration.ZERO;
+    public static final int DEFAULT_BULKHEAD_QUEUE_CAPACITY = 0;
+    public static final Duration DEFAULT_THREAD_POOL_BULKHEAD_TIMEOUT = Duration.ofSeconds(1);
+    public static final int DEFAULT_SLIDING_WINDOW_TYPE = 1;
+    public static final int DEFAULT_TIME_BASED_SLIDING_WINDOW_SIZE = 10;
+    public static final int DEFAULT_MINIMUM_NUMBER_OF_CALLS = 10;
+    public static final int DEFAULT_RETRY_BUDGET_PERCENT = 20;
+    public static final int DEFAULT_RETRY_BUDGET_MAX_TOKENS = 10;
+    public static final int DEFAULT_HEDGE_MAX_ATTEMPTS = 2;
+    public static final int DEFAULT_HEDGE_DELAY_PERCENTILE = 95;
+    public static final int DEFAULT_STALE_CACHE_MAX_SIZE = 1000;
+    public static final Duration DEFAULT_STALE_CACHE_MAX_STALENESS = Duration.ofMinutes(5);
+    public static final long DEFAULT_STALE_CACHE_MAX_BYTES = 64L * 1024 * 1024;
+    public static final int DEFAULT_STALE_CACHE_MAX_ENTRY_BYTES = 1024 * 1024;
 
     private Long ruleId;
 
@@ -60,14 +77,100 @@ public class CircuitBreakerRule {
 
     private Duration waitDurationInOpenState = DEFAULT_WAIT_DURATION_IN_OPEN_STATE;
 
+    // 统计窗口类型 1:按调用次数 2:按时间
+    private Integer slidingWindowType = DEFAULT_SLIDING_WINDOW_TYPE;
+
+    // 统计窗口大小, 按调用次数统计时默认为ringBufferSizeInClosedState, 按时间统计时为秒数
+    private Integer slidingWindowSize;
+
+    // 统计窗口内计算失败率和慢调用比例前的最小调用次数
+    private Integer minimumNumberOfCalls;
+
+    // 慢调用时间阈值
+    private Duration slowCallDurationThreshold;
+
+    // 慢调用比例阈值
+    private Integer slowCallRateThreshold;
+
+    // 记为失败的响应状态码, 支持 500-599, 503, 5xx 三种写法, 默认 500-599
+    private List<String> failureStatusCodes;
+
+    // 记为失败的响应头, 值为空时只要存在该响应头即记为失败
+    private Map<String, String> failureHeaders;
+
+    // 记为失败的异常类型, 为空时记录所有异常
+    private List<String> recordExceptions;
+
+    // 忽略的异常类型, 不计入熔断统计, 也不走降级
+    private List<String> ignoreExceptions;
+
+    // 最大尝试次数, 包括首次请求和对冲请求, 不配置或为1时不重试
+    private Integer retryMaxAttempts;
+
+    // 重试间隔
+    private Duration retryInterval;
+
+    // 重试和对冲请求占请求数的最大百分比
+    private Integer retryBudgetPercent = DEFAULT_RETRY_BUDGET_PERCENT;
+
+    // 是否重试和对冲非幂等的请求(如POST、PATCH), 默认只重试GET、HEAD、OPTIONS、TRACE、PUT和DELETE
+    private Boolean retryNonIdempotent;
+
+    // 是否开启对冲请求
+    private Boolean hedgeEnabled;
+
+    // 对冲延迟, 不配置时按响应时间的hedgeDelayPercentile分位数计算
+    private Duration hedgeDelay;
+
+    // 计算对冲延迟的响应时间分位数
+    private Integer hedgeDelayPercentile = DEFAULT_HEDGE_DELAY_PERCENTILE;
+
     private Integer fallbackType;
 
     private String fallbackResult;
 
+    // 每次降级是否复制fallbackResult的值, 不配置时只复制可变类型
+    private Boolean fallbackResultCopyOnRead;
+
+    // 降级类型为5时, 每个规则缓存的最大响应数
+    private Integer staleCacheMaxSize = DEFAULT_STALE_CACHE_MAX_SIZE;
+
+    // 缓存响应的最大过期时间
+    private Duration staleCacheMaxStaleness = DEFAULT_STALE_CACHE_MAX_STALENESS;
+
+    // 每个规则缓存的响应体总大小(字节), 超过时淘汰最近最少使用的响应
+    private Long staleCacheMaxBytes = DEFAULT_STALE_CACHE_MAX_BYTES;
+
+    // 单个响应体的最大大小(字节), 超过时不缓存
+    private Integer staleCacheMaxEntryBytes = DEFAULT_STALE_CACHE_MAX_ENTRY_BYTES;
+
+    // 较大的响应体是否存储在堆外
+    private Boolean staleCacheOffHeap;
+
+    // 除Authorization、Cookie、Accept等默认请求头外, 作为缓存key的请求头(如租户标识)
+    private List<String> staleCacheKeyHeaders;
+
+    // 一次请求的限定时间, 线程池隔离时不配置则为1秒
     private Duration timeoutDuration;
 
+    // 未开启线程池隔离时, 是否按timeoutDuration限定请求时间, 默认不限定
+    private Boolean timeLimiterEnabled;
+
+    // 请求超时后是否中断本次请求
     private Boolean cancelRunningFuture = DEFAULT_CANCEL_RUNNING_FUTURE;
 
+    // 舱壁隔离类型 1:信号量 2:线程池, 为空时不开启
+    private Integer bulkheadType;
+
+    // 最大并发调用数, 线程池隔离时为线程池大小
+    private Integer bulkheadMaxConcurrentCalls;
+
+    // 信号量隔离时获取许可的最大等待时间
+    private Duration bulkheadMaxWaitDuration = DEFAULT_BULKHEAD_MAX_WAIT_DURATION;
+
+    // 线程池隔离时的等待队列长度
+    private Integer bulkheadQueueCapacity = DEFAULT_BULKHEAD_QUEUE_CAPACITY;
+
     public String getRuleName() {
         if (this.effectiveType == MENTHOD_CIRCUITBREAKER) {
             return this.method;
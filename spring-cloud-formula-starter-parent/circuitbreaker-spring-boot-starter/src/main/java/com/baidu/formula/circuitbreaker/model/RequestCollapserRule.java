@@ -0,0 +1,43 @@
+/*
+ * Copyright (c) 2018 Baidu, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baidu.formula.circuitbreaker.model;
+
+import lombok.Data;
+
+import java.time.Duration;
+
+/**
+ * Collapse the calls of a Feign client method.
+ */
+@Data
+public class RequestCollapserRule {
+    public static final Duration DEFAULT_BATCH_WINDOW = Duration.ofMillis(10);
+    public static final int DEFAULT_BATCH_MAX_SIZE = 100;
+
+    private Boolean enabled;
+
+    // Feign接口方法, 格式为 接口全名#方法名
+    private String method;
+
+    // 批量调用的方法名, 参数为集合, 返回值为Map或与参数顺序一致的List, 不配置时只合并相同的请求
+    private String batchMethod;
+
+    // 等待合并为一次批量调用的时间
+    private Duration batchWindow = DEFAULT_BATCH_WINDOW;
+
+    // 一次批量调用的最大请求数
+    private Integer batchMaxSize = DEFAULT_BATCH_MAX_SIZE;
+}
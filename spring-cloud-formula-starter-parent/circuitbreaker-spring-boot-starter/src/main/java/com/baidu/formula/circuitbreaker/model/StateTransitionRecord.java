@@ -0,0 +1,37 @@
+/*
+ * Copyright (c) 2018 Baidu, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baidu.formula.circuitbreaker.model;
+
+import lombok.Data;
+
+/**
+ * A state transition of a circuit breaker, kept for diagnosis.
+ */
+@Data
+public class StateTransitionRecord {
+
+    // 熔断规则名称
+    private String ruleName;
+
+    // 转换前的状态, CircuitBreaker.State的名称
+    private String fromState;
+
+    // 转换后的状态
+    private String toState;
+
+    // 转换时间, 毫秒
+    private long timestamp;
+}
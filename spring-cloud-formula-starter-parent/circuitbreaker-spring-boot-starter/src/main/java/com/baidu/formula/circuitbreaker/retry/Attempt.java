@@ -0,0 +1,32 @@
+/*
+ * Copyright (c) 2018 Baidu, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baidu.formula.circuitbreaker.retry;
+
+/**
+ * One attempt of a call which can be sent again.
+ *
+ * @param <R> response type
+ */
+@FunctionalInterface
+public interface Attempt<R> {
+
+    /**
+     * @param attempt 0 for the first attempt, retries and hedges start from 1
+     * @return
+     * @throws Exception
+     */
+    R execute(int attempt) throws Exception;
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) 2018 Baidu, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baidu.formula.circuitbreaker.retry;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Log-linear histogram of response times in microseconds,
+ * about 12% relative error, used to derive the hedge delay from a percentile.
+ * Only the current and the previous window are kept.
+ */
+public class LatencyHistogram {
+    // 每个2的幂区间再分为8个桶
+    private static final int SUB_BUCKET_BITS = 3;
+
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    private static final int LINEAR_BUCKETS = 2 * SUB_BUCKETS;
+
+    private static final int MAX_EXPONENT = 40;
+
+    private static final int BUCKETS = LINEAR_BUCKETS + (MAX_EXPONENT - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    private final long windowNanos;
+
+    private volatile AtomicLongArray current = new AtomicLongArray(BUCKETS);
+
+    private volatile AtomicLongArray previous = new AtomicLongArray(BUCKETS);
+
+    private volatile long windowStart = System.nanoTime();
+
+    public LatencyHistogram(long windowMillis) {
+        this.windowNanos = TimeUnit.MILLISECONDS.toNanos(windowMillis);
+    }
+
+    public void record(long durationNanos) {
+        rotateIfNecessary();
+        current.incrementAndGet(indexOf(TimeUnit.NANOSECONDS.toMicros(durationNanos)));
+    }
+
+    /**
+     * @param percentile 1-100
+     * @param minimumSamples
+     * @return upper bound of the percentile in nanos, or -1 if there are not enough samples
+     */
+    public long getPercentileNanos(int percentile, int minimumSamples) {
+        rotateIfNecessary();
+        AtomicLongArray cur = current;
+        AtomicLongArray prev = previous;
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            total += cur.get(i) + prev.get(i);
+        }
+        if (total == 0 || total < minimumSamples) {
+            return -1;
+        }
+        long rank = (long) Math.ceil(total * Math.min(Math.max(percentile, 1), 100) / 100d);
+        long count = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            count += cur.get(i) + prev.get(i);
+            if (count >= rank) {
+                return TimeUnit.MICROSECONDS.toNanos(upperBoundOf(i));
+            }
+        }
+        return TimeUnit.MICROSECONDS.toNanos(upperBoundOf(BUCKETS - 1));
+    }
+
+    private void rotateIfNecessary() {
+        long start = windowStart;
+        long now = System.nanoTime();
+        if (now - start < windowNanos) {
+            return;
+        }
+        synchronized (this) {
+            if (windowStart != start) {
+                return;
+            }
+            // 超过两个窗口没有调用时, 上一个窗口的数据也已过期
+            previous = now - start < 2 * windowNanos ? current : new AtomicLongArray(BUCKETS);
+            current = new AtomicLongArray(BUCKETS);
+            windowStart = now;
+        }
+    }
+
+    static int indexOf(long micros) {
+        if (micros < LINEAR_BUCKETS) {
+            return (int) Math.max(micros, 0);
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(micros);
+        if (exponent >= MAX_EXPONENT) {
+            return BUCKETS - 1;
+        }
+        int sub = (int) (micros >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return LINEAR_BUCKETS + (exponent - SUB_BUCKET_BITS - 1) * SUB_BUCKETS + sub;
+    }
+
+    static long upperBoundOf(int index) {
+        if (index < LINEAR_BUCKETS) {
+            return index;
+        }
+        int exponent = (index - LINEAR_BUCKETS) / SUB_BUCKETS + SUB_BUCKET_BITS + 1;
+        int sub = (index - LINEAR_BUCKETS) % SUB_BUCKETS;
+        long width = 1L << (exponent - SUB_BUCKET_BITS);
+        return (1L << exponent) + (sub + 1) * width - 1;
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright (c) 2018 Baidu, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baidu.formula.circuitbreaker.retry;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Token bucket which caps retries and hedges to a percentage of the calls.
+ * Every call deposits percent/100 of a token, every retry withdraws a whole token.
+ * The bucket starts full, so a few retries are allowed with little traffic.
+ */
+public class RetryBudget {
+    private static final long TOKEN = 100;
+
+    private final int percent;
+
+    private final long deposit;
+
+    private final long capacity;
+
+    private final AtomicLong balance;
+
+    public RetryBudget(int percent, int maxTokens) {
+        this.percent = percent;
+        this.deposit = Math.max(percent, 0);
+        this.capacity = Math.max(maxTokens, 1) * TOKEN;
+        this.balance = new AtomicLong(capacity);
+    }
+
+    public void deposit() {
+        long current;
+        do {
+            current = balance.get();
+            if (current >= capacity) {
+                return;
+            }
+        } while (!balance.compareAndSet(current, Math.min(current + deposit, capacity)));
+    }
+
+    public boolean tryWithdraw() {
+        long current;
+        do {
+            current = balance.get();
+            if (current < TOKEN) {
+                return false;
+            }
+        } while (!balance.compareAndSet(current, current - TOKEN));
+        return true;
+    }
+
+    public int getPercent() {
+        return percent;
+    }
+
+    public double getAvailableTokens() {
+        return balance.get() / (double) TOKEN;
+    }
+}
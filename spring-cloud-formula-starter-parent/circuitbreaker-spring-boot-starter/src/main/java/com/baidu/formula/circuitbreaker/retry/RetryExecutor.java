@@ -0,0 +1,255 @@
+/*
+ * Copyright (c) 2018 Baidu, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baidu.formula.circuitbreaker.retry;
+
+import com.baidu.formula.circuitbreaker.classifier.CallOutcome;
+import com.baidu.formula.circuitbreaker.classifier.HttpResponseAccessor;
+import com.baidu.formula.circuitbreaker.classifier.ResponseClassifier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.task.TaskDecorator;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Execute the attempts of a call by the retry policy of the rule.
+ * Only the final response or exception is returned and recorded on the circuitBreaker,
+ * so retried and hedged attempts are not counted as separate calls.
+ */
+public class RetryExecutor {
+    private static final Logger logger = LoggerFactory.getLogger(RetryExecutor.class);
+
+    // 响应时间样本不足时的对冲延迟
+    private static final long DEFAULT_HEDGE_DELAY_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private final ExecutorService executorService;
+
+    private volatile TaskDecorator taskDecorator;
+
+    public RetryExecutor(ExecutorService executorService) {
+        this.executorService = executorService;
+    }
+
+    /**
+     * Decorate the hedged attempts, used to carry the context of the caller to the attempts.
+     */
+    public void setTaskDecorator(TaskDecorator taskDecorator) {
+        this.taskDecorator = taskDecorator;
+    }
+
+    public <R> R execute(RetryPolicy policy, Attempt<R> attempt, HttpResponseAccessor<R> accessor,
+                         ResponseClassifier classifier) throws Exception {
+        policy.getBudget().deposit();
+        if (policy.isHedgeEnabled()) {
+            return executeHedged(policy, attempt, accessor, classifier);
+        }
+
+        for (int i = 0; ; i++) {
+            long start = System.nanoTime();
+            R response;
+            try {
+                response = attempt.execute(i);
+            } catch (Exception e) {
+                if (!CallOutcome.FAILURE.equals(classifier.classify(e)) || !canRetry(policy, i)) {
+                    throw e;
+                }
+                logger.debug("attempt {} failed with {}, retrying", i, e.toString());
+                sleep(policy.getIntervalNanos());
+                continue;
+            }
+            if (!CallOutcome.FAILURE.equals(classifier.classify(response, accessor))) {
+                policy.getHistogram().record(System.nanoTime() - start);
+                return response;
+            }
+            if (!canRetry(policy, i)) {
+                return response;
+            }
+            accessor.close(response);
+            sleep(policy.getIntervalNanos());
+        }
+    }
+
+    /**
+     * Send the next attempt if no response arrives within the hedge delay, or once all sent ones failed.
+     * The first successful response is kept and the others are closed.
+     */
+    private <R> R executeHedged(RetryPolicy policy, Attempt<R> attempt, HttpResponseAccessor<R> accessor,
+                                ResponseClassifier classifier) throws Exception {
+        HedgedCall<R> call = new HedgedCall<>(accessor);
+        List<Future<?>> futures = new ArrayList<>(policy.getMaxAttempts());
+        Result<R> lastFailure = null;
+        try {
+            futures.add(submit(call, attempt, 0));
+            int sent = 1;
+            int pending = 1;
+            while (true) {
+                Result<R> result;
+                if (sent < policy.getMaxAttempts()) {
+                    result = call.results.poll(policy.getHedgeDelayNanos(DEFAULT_HEDGE_DELAY_NANOS),
+                            TimeUnit.NANOSECONDS);
+                } else {
+                    result = call.results.take();
+                }
+
+                if (result == null) {
+                    // 对冲延迟内没有响应
+                    if (policy.getBudget().tryWithdraw()) {
+                        futures.add(submit(call, attempt, sent++));
+                        pending++;
+                    } else {
+                        sent = policy.getMaxAttempts();
+                    }
+                    continue;
+                }
+
+                pending--;
+                CallOutcome outcome = result.exception != null ? classifier.classify(result.exception)
+                        : classifier.classify(result.response, accessor);
+                if (!CallOutcome.FAILURE.equals(outcome)) {
+                    if (result.exception == null) {
+                        policy.getHistogram().record(result.durationNanos);
+                    }
+                    return take(result, lastFailure, accessor);
+                }
+                closeQuietly(lastFailure, accessor);
+                lastFailure = result;
+                if (pending == 0) {
+                    if (sent < policy.getMaxAttempts() && policy.getBudget().tryWithdraw()) {
+                        futures.add(submit(call, attempt, sent++));
+                        pending++;
+                    } else {
+                        return take(result, null, accessor);
+                    }
+                }
+            }
+        } finally {
+            // 未返回的响应在到达时关闭
+            for (Result<R> result : call.finish()) {
+                if (result != lastFailure) {
+                    closeQuietly(result, accessor);
+                }
+            }
+            for (Future<?> future : futures) {
+                if (future != null) {
+                    future.cancel(true);
+                }
+            }
+        }
+    }
+
+    private <R> Future<?> submit(HedgedCall<R> call, Attempt<R> attempt, int i) {
+        Runnable task = () -> {
+            long start = System.nanoTime();
+            Result<R> result = new Result<>();
+            try {
+                result.response = attempt.execute(i);
+            } catch (Exception e) {
+                result.exception = e;
+            }
+            result.durationNanos = System.nanoTime() - start;
+            call.offer(result);
+        };
+        TaskDecorator decorator = taskDecorator;
+        try {
+            return executorService.submit(decorator == null ? task : decorator.decorate(task));
+        } catch (RejectedExecutionException e) {
+            Result<R> result = new Result<>();
+            result.exception = e;
+            call.offer(result);
+            return null;
+        }
+    }
+
+    private <R> R take(Result<R> result, Result<R> other, HttpResponseAccessor<R> accessor) throws Exception {
+        closeQuietly(other, accessor);
+        if (result.exception != null) {
+            throw result.exception;
+        }
+        return result.response;
+    }
+
+    private <R> void closeQuietly(Result<R> result, HttpResponseAccessor<R> accessor) {
+        if (result != null && result.response != null) {
+            try {
+                accessor.close(result.response);
+            } catch (Exception e) {
+                logger.debug("failed to close response", e);
+            }
+        }
+    }
+
+    private boolean canRetry(RetryPolicy policy, int attempt) {
+        return attempt + 1 < policy.getMaxAttempts() && policy.getBudget().tryWithdraw();
+    }
+
+    private void sleep(long nanos) throws InterruptedException {
+        if (nanos > 0) {
+            TimeUnit.NANOSECONDS.sleep(nanos);
+        }
+    }
+
+    private static class Result<R> {
+        private R response;
+
+        private Exception exception;
+
+        private long durationNanos;
+    }
+
+    /**
+     * Results of the attempts of a hedged call, those arriving after the call finished are closed.
+     */
+    private static class HedgedCall<R> {
+        private final LinkedBlockingQueue<Result<R>> results = new LinkedBlockingQueue<>();
+
+        private final HttpResponseAccessor<R> accessor;
+
+        private boolean finished;
+
+        HedgedCall(HttpResponseAccessor<R> accessor) {
+            this.accessor = accessor;
+        }
+
+        void offer(Result<R> result) {
+            synchronized (this) {
+                if (!finished) {
+                    results.offer(result);
+                    return;
+                }
+            }
+            if (result.response != null) {
+                try {
+                    accessor.close(result.response);
+                } catch (Exception e) {
+                    logger.debug("failed to close response of hedged attempt", e);
+                }
+            }
+        }
+
+        synchronized List<Result<R>> finish() {
+            finished = true;
+            List<Result<R>> rest = new ArrayList<>();
+            results.drainTo(rest);
+            return rest;
+        }
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright (c) 2018 Baidu, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baidu.formula.circuitbreaker.retry;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Retry and hedge settings of a circuit breaker rule, with the retry budget
+ * and the response time histogram shared by the calls of the rule.
+ */
+public class RetryPolicy {
+    // 样本不足时使用固定的对冲延迟
+    static final int MINIMUM_HEDGE_SAMPLES = 20;
+
+    // RFC 7231定义的幂等方法, 重复发送不会改变服务端状态
+    private static final Set<String> IDEMPOTENT_METHODS = Collections.unmodifiableSet(new HashSet<>(
+            Arrays.asList("GET", "HEAD", "OPTIONS", "TRACE", "PUT", "DELETE")));
+
+    private final int maxAttempts;
+
+    private final long intervalNanos;
+
+    private final boolean hedgeEnabled;
+
+    // 大于0时使用固定的对冲延迟
+    private final long hedgeDelayNanos;
+
+    private final int hedgeDelayPercentile;
+
+    private final RetryBudget budget;
+
+    private final LatencyHistogram histogram;
+
+    private final boolean nonIdempotentEnabled;
+
+    public RetryPolicy(int maxAttempts, long intervalNanos, boolean hedgeEnabled, long hedgeDelayNanos,
+                       int hedgeDelayPercentile, RetryBudget budget, LatencyHistogram histogram) {
+        this(maxAttempts, intervalNanos, hedgeEnabled, hedgeDelayNanos, hedgeDelayPercentile, budget, histogram,
+                false);
+    }
+
+    /**
+     * @param nonIdempotentEnabled whether requests of non-idempotent methods are retried and hedged as well
+     */
+    public RetryPolicy(int maxAttempts, long intervalNanos, boolean hedgeEnabled, long hedgeDelayNanos,
+                       int hedgeDelayPercentile, RetryBudget budget, LatencyHistogram histogram,
+                       boolean nonIdempotentEnabled) {
+        this.maxAttempts = maxAttempts;
+        this.intervalNanos = intervalNanos;
+        this.hedgeEnabled = hedgeEnabled;
+        this.hedgeDelayNanos = hedgeDelayNanos;
+        this.hedgeDelayPercentile = hedgeDelayPercentile;
+        this.budget = budget;
+        this.histogram = histogram;
+        this.nonIdempotentEnabled = nonIdempotentEnabled;
+    }
+
+    /**
+     * Whether the request of the http method can be sent again, a request which reached the server
+     * may be processed twice, so only idempotent methods are retried unless enabled explicitly.
+     *
+     * @param httpMethod
+     * @return
+     */
+    public boolean isRetryable(String httpMethod) {
+        return nonIdempotentEnabled
+                || httpMethod != null && IDEMPOTENT_METHODS.contains(httpMethod.toUpperCase(Locale.ROOT));
+    }
+
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    public long getIntervalNanos() {
+        return intervalNanos;
+    }
+
+    public boolean isHedgeEnabled() {
+        return hedgeEnabled;
+    }
+
+    /**
+     * @param defaultDelayNanos used before enough responses are recorded
+     * @return delay before the next hedged attempt is sent
+     */
+    public long getHedgeDelayNanos(long defaultDelayNanos) {
+        if (hedgeDelayNanos > 0) {
+            return hedgeDelayNanos;
+        }
+        long delay = histogram.getPercentileNanos(hedgeDelayPercentile, MINIMUM_HEDGE_SAMPLES);
+        return delay > 0 ? delay : defaultDelayNanos;
+    }
+
+    public RetryBudget getBudget() {
+        return budget;
+    }
+
+    public LatencyHistogram getHistogram() {
+        return histogram;
+    }
+}
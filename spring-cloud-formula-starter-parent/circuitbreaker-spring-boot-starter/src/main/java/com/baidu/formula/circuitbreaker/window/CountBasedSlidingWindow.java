@@ -0,0 +1,105 @@
+/*
+ * Copyright (c) 2018 Baidu, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baidu.formula.circuitbreaker.window;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Ring buffer of the last N call outcomes.
+ */
+public class CountBasedSlidingWindow implements SlidingWindow {
+    private static final int RECORDED = 1;
+
+    private static final int FAILED = 1 << 1;
+
+    private static final int SLOW = 1 << 2;
+
+    private final int size;
+
+    private final AtomicIntegerArray outcomes;
+
+    private final AtomicLong cursor = new AtomicLong();
+
+    private final AtomicInteger calls = new AtomicInteger();
+
+    private final AtomicInteger failedCalls = new AtomicInteger();
+
+    private final AtomicInteger slowCalls = new AtomicInteger();
+
+    public CountBasedSlidingWindow(int size) {
+        if (size <= 0) {
+            throw new IllegalArgumentException("size of sliding window must be greater than 0");
+        }
+        this.size = size;
+        this.outcomes = new AtomicIntegerArray(size);
+    }
+
+    @Override
+    public void record(boolean failure, boolean slow) {
+        int outcome = RECORDED | (failure ? FAILED : 0) | (slow ? SLOW : 0);
+        int index = (int) (cursor.getAndIncrement() % size);
+        int old = outcomes.getAndSet(index, outcome);
+
+        if ((old & RECORDED) == 0) {
+            calls.incrementAndGet();
+        }
+        adjust(failedCalls, old, outcome, FAILED);
+        adjust(slowCalls, old, outcome, SLOW);
+    }
+
+    private static void adjust(AtomicInteger counter, int old, int outcome, int flag) {
+        if ((old & flag) != (outcome & flag)) {
+            if ((outcome & flag) != 0) {
+                counter.incrementAndGet();
+            } else {
+                counter.decrementAndGet();
+            }
+        }
+    }
+
+    @Override
+    public int getNumberOfCalls() {
+        return calls.get();
+    }
+
+    @Override
+    public int getNumberOfFailedCalls() {
+        return failedCalls.get();
+    }
+
+    @Override
+    public int getNumberOfSlowCalls() {
+        return slowCalls.get();
+    }
+
+    @Override
+    public void reset() {
+        for (int i = 0; i < size; i++) {
+            int old = outcomes.getAndSet(i, 0);
+            if ((old & RECORDED) != 0) {
+                calls.decrementAndGet();
+            }
+            adjust(failedCalls, old, 0, FAILED);
+            adjust(slowCalls, old, 0, SLOW);
+        }
+    }
+
+    public int getSize() {
+        return size;
+    }
+}
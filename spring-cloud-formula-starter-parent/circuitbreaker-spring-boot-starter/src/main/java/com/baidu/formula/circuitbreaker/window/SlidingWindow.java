@@ -0,0 +1,33 @@
+/*
+ * Copyright (c) 2018 Baidu, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baidu.formula.circuitbreaker.window;
+
+/**
+ * Outcomes of the recent calls, recorded and aggregated without allocation.
+ * Counters are updated lock-free and may be slightly inaccurate under contention.
+ */
+public interface SlidingWindow {
+
+    void record(boolean failure, boolean slow);
+
+    int getNumberOfCalls();
+
+    int getNumberOfFailedCalls();
+
+    int getNumberOfSlowCalls();
+
+    void reset();
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright (c) 2018 Baidu, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baidu.formula.circuitbreaker.window;
+
+/**
+ * Evaluates the slow call rate, and the failure rate of time based windows,
+ * in addition to the ring buffer of the resilience4j circuitBreaker.
+ */
+public class SlidingWindowPolicy {
+
+    private final SlidingWindow window;
+
+    private final int minimumNumberOfCalls;
+
+    // 小于等于0时不按失败率判断, 按次数统计的失败率由resilience4j的ringBuffer判断
+    private final float failureRateThreshold;
+
+    // 小于等于0时不统计慢调用
+    private final long slowCallDurationThresholdNanos;
+
+    private final float slowCallRateThreshold;
+
+    private volatile boolean stale;
+
+    public SlidingWindowPolicy(SlidingWindow window, int minimumNumberOfCalls, float failureRateThreshold,
+                               long slowCallDurationThresholdNanos, float slowCallRateThreshold) {
+        this.window = window;
+        this.minimumNumberOfCalls = Math.max(minimumNumberOfCalls, 1);
+        this.failureRateThreshold = failureRateThreshold;
+        this.slowCallDurationThresholdNanos = slowCallDurationThresholdNanos;
+        this.slowCallRateThreshold = slowCallRateThreshold;
+    }
+
+    public boolean isSlowCall(long durationNanos) {
+        return slowCallDurationThresholdNanos > 0 && durationNanos >= slowCallDurationThresholdNanos;
+    }
+
+    /**
+     * Record the outcome of a call made in CLOSED state.
+     *
+     * @param durationNanos
+     * @param failure
+     * @return true if the circuitBreaker should be opened
+     */
+    public boolean onCall(long durationNanos, boolean failure) {
+        if (stale) {
+            stale = false;
+            window.reset();
+        }
+        window.record(failure, isSlowCall(durationNanos));
+        return isThresholdExceeded();
+    }
+
+    /**
+     * Outcomes recorded before the circuitBreaker left CLOSED state
+     * are dropped once it is closed again.
+     */
+    public void markStale() {
+        stale = true;
+    }
+
+    public boolean isThresholdExceeded() {
+        int calls = window.getNumberOfCalls();
+        if (calls < minimumNumberOfCalls) {
+            return false;
+        }
+        if (failureRateThreshold > 0 && window.getNumberOfFailedCalls() * 100f / calls >= failureRateThreshold) {
+            return true;
+        }
+        return slowCallRateThreshold > 0 && window.getNumberOfSlowCalls() * 100f / calls >= slowCallRateThreshold;
+    }
+
+    public SlidingWindow getWindow() {
+        return window;
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright (c) 2018 Baidu, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baidu.formula.circuitbreaker.window;
+
+import java.time.Clock;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Call outcomes of the last N seconds, aggregated in one-second buckets.
+ * A bucket is lazily reset by the first call that lands in it in a new second.
+ */
+public class TimeBasedSlidingWindow implements SlidingWindow {
+    private static final long BUCKET_MILLIS = 1000L;
+
+    private final int size;
+
+    private final Clock clock;
+
+    private final AtomicLongArray bucketEpochs;
+
+    private final AtomicLongArray calls;
+
+    private final AtomicLongArray failedCalls;
+
+    private final AtomicLongArray slowCalls;
+
+    public TimeBasedSlidingWindow(int windowSizeInSeconds) {
+        this(windowSizeInSeconds, Clock.systemUTC());
+    }
+
+    public TimeBasedSlidingWindow(int windowSizeInSeconds, Clock clock) {
+        if (windowSizeInSeconds <= 0) {
+            throw new IllegalArgumentException("size of sliding window must be greater than 0");
+        }
+        this.size = windowSizeInSeconds;
+        this.clock = clock;
+        this.bucketEpochs = new AtomicLongArray(size);
+        this.calls = new AtomicLongArray(size);
+        this.failedCalls = new AtomicLongArray(size);
+        this.slowCalls = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            bucketEpochs.set(i, -1L);
+        }
+    }
+
+    @Override
+    public void record(boolean failure, boolean slow) {
+        long epoch = clock.millis() / BUCKET_MILLIS;
+        int index = (int) (epoch % size);
+        long bucketEpoch = bucketEpochs.get(index);
+        if (bucketEpoch != epoch && bucketEpochs.compareAndSet(index, bucketEpoch, epoch)) {
+            calls.set(index, 0);
+            failedCalls.set(index, 0);
+            slowCalls.set(index, 0);
+        }
+        calls.incrementAndGet(index);
+        if (failure) {
+            failedCalls.incrementAndGet(index);
+        }
+        if (slow) {
+            slowCalls.incrementAndGet(index);
+        }
+    }
+
+    @Override
+    public int getNumberOfCalls() {
+        return sum(calls);
+    }
+
+    @Override
+    public int getNumberOfFailedCalls() {
+        return sum(failedCalls);
+    }
+
+    @Override
+    public int getNumberOfSlowCalls() {
+        return sum(slowCalls);
+    }
+
+    private int sum(AtomicLongArray counters) {
+        long epoch = clock.millis() / BUCKET_MILLIS;
+        long total = 0;
+        for (int i = 0; i < size; i++) {
+            long bucketEpoch = bucketEpochs.get(i);
+            if (bucketEpoch >= 0 && epoch - bucketEpoch < size) {
+                total += counters.get(i);
+            }
+        }
+        return (int) total;
+    }
+
+    @Override
+    public void reset() {
+        for (int i = 0; i < size; i++) {
+            bucketEpochs.set(i, -1L);
+        }
+    }
+
+    public int getSize() {
+        return size;
+    }
+}
@@ -0,0 +1,169 @@
+/*
+ * Copyright (c) 2018 Baidu, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baidu.formula.test.bulkhead;
+
+import com.baidu.formula.circuitbreaker.config.CircuitBreakerProperties;
+import com.baidu.formula.circuitbreaker.exception.BulkheadFullException;
+import com.baidu.formula.circuitbreaker.impl.CircuitBreakerCore;
+import com.baidu.formula.circuitbreaker.impl.CircuitBreakerManager;
+import com.baidu.formula.circuitbreaker.model.CircuitBreakerRule;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import org.junit.After;
+import org.junit.Test;
+
+import java.lang.reflect.Method;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class BulkheadTest {
+    private static final ThreadLocal<String> CONTEXT = new ThreadLocal<>();
+
+    private final CountDownLatch interrupted = new CountDownLatch(1);
+
+    private final CountDownLatch entered = new CountDownLatch(1);
+
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    private final ExecutorService callers = Executors.newFixedThreadPool(2);
+
+    private CircuitBreakerManager manager;
+
+    @After
+    public void destroy() {
+        release.countDown();
+        callers.shutdownNow();
+        manager.destroy();
+    }
+
+    @Test
+    public void testSemaphoreBulkheadRejection() throws Exception {
+        assertRejectedWhileSaturated(1);
+    }
+
+    @Test
+    public void testThreadPoolBulkheadRejection() throws Exception {
+        assertRejectedWhileSaturated(2);
+    }
+
+    @Test
+    public void testThreadPoolBulkheadTimeout() throws Exception {
+        Method method = BulkheadTest.class.getMethod("slowCall");
+        CircuitBreakerCore core = createCore(method, 2, Duration.ofMillis(100));
+
+        long start = System.nanoTime();
+        try {
+            core.process(method, this, new Object[0]);
+            fail("call should time out");
+        } catch (TimeoutException e) {
+            // expected
+        }
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(2));
+        // 超时的调用被中断, 线程池可以继续接收调用
+        assertTrue(interrupted.await(5, TimeUnit.SECONDS));
+        assertEquals(1, manager.getCircuitBreakerCoalition(core.getName(method))
+                .getCircuitBreaker().getMetrics().getNumberOfFailedCalls());
+    }
+
+    @Test
+    public void testThreadPoolBulkheadCarriesContext() throws Exception {
+        Method method = BulkheadTest.class.getMethod("contextCall");
+        CircuitBreakerCore core = createCore(method, 2, Duration.ofSeconds(5));
+        core.setTaskDecorators(Collections.singletonList(runnable -> {
+            String value = CONTEXT.get();
+            return () -> {
+                CONTEXT.set(value);
+                try {
+                    runnable.run();
+                } finally {
+                    CONTEXT.remove();
+                }
+            };
+        }));
+
+        CONTEXT.set("caller");
+        try {
+            assertEquals("caller", core.process(method, this, new Object[0]));
+        } finally {
+            CONTEXT.remove();
+        }
+    }
+
+    private void assertRejectedWhileSaturated(int bulkheadType) throws Exception {
+        Method method = BulkheadTest.class.getMethod("slowCall");
+        CircuitBreakerCore core = createCore(method, bulkheadType, Duration.ofSeconds(5));
+
+        Future<Object> first = callers.submit(() -> core.process(method, this, new Object[0]));
+        entered.await(5, TimeUnit.SECONDS);
+        try {
+            core.process(method, this, new Object[0]);
+            fail("call should be rejected by bulkhead");
+        } catch (BulkheadFullException e) {
+            // expected
+        }
+
+        release.countDown();
+        assertEquals("ok", first.get(5, TimeUnit.SECONDS));
+        assertEquals(CircuitBreaker.State.CLOSED, manager.getCircuitBreakerCoalition(
+                core.getName(method)).getCircuitBreaker().getState());
+        assertEquals(1, manager.getCircuitBreakerCoalition(core.getName(method))
+                .getCircuitBreaker().getMetrics().getNumberOfBufferedCalls());
+    }
+
+    private CircuitBreakerCore createCore(Method method, int bulkheadType, Duration timeout) {
+        CircuitBreakerRule rule = new CircuitBreakerRule();
+        rule.setRuleId(1L);
+        rule.setEnabled(true);
+        rule.setEffectiveType(CircuitBreakerRule.MENTHOD_CIRCUITBREAKER);
+        rule.setMethod(BulkheadTest.class.getName() + "#" + method.getName());
+        rule.setFailureRateThreshold(50);
+        rule.setFallbackType(1);
+        rule.setBulkheadType(bulkheadType);
+        rule.setBulkheadMaxConcurrentCalls(1);
+        rule.setBulkheadMaxWaitDuration(Duration.ZERO);
+        rule.setTimeoutDuration(timeout);
+
+        CircuitBreakerProperties properties = new CircuitBreakerProperties();
+        properties.getRules().add(rule);
+        manager = new CircuitBreakerManager(properties);
+        manager.init();
+        return new CircuitBreakerCore(manager);
+    }
+
+    public String slowCall() throws InterruptedException {
+        entered.countDown();
+        try {
+            release.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            interrupted.countDown();
+            throw e;
+        }
+        return "ok";
+    }
+
+    public String contextCall() {
+        return CONTEXT.get();
+    }
+}
@@ -0,0 +1,229 @@
+/*
+ * Copyright (c) 2018 Baidu, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baidu.formula.test.cache;
+
+import com.baidu.formula.circuitbreaker.cache.CachedResponse;
+import com.baidu.formula.circuitbreaker.cache.HttpRequestCacheKey;
+import com.baidu.formula.circuitbreaker.cache.StaleResponseCache;
+import com.baidu.formula.circuitbreaker.classifier.CacheableResponseAccessor;
+import com.baidu.formula.circuitbreaker.config.CircuitBreakerProperties;
+import com.baidu.formula.circuitbreaker.enumeration.FallbackTypeEnum;
+import com.baidu.formula.circuitbreaker.impl.CircuitBreakerCore;
+import com.baidu.formula.circuitbreaker.impl.CircuitBreakerManager;
+import com.baidu.formula.circuitbreaker.model.CircuitBreakerRule;
+import com.baidu.formula.circuitbreaker.retry.Attempt;
+import org.junit.Test;
+import org.springframework.util.StreamUtils;
+
+import java.lang.reflect.Method;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class StaleResponseCacheTest {
+
+    @Test
+    public void testStaleResponseServedWhenCallFails() throws Exception {
+        CircuitBreakerRule rule = new CircuitBreakerRule();
+        rule.setRuleId(1L);
+        rule.setEnabled(true);
+        rule.setEffectiveType(CircuitBreakerRule.MENTHOD_CIRCUITBREAKER);
+        rule.setMethod(Service.class.getName() + "#get");
+        rule.setFailureRateThreshold(50);
+        rule.setFallbackType(FallbackTypeEnum.STALE_CACHE.getId());
+        CircuitBreakerProperties properties = new CircuitBreakerProperties();
+        properties.getRules().add(rule);
+        CircuitBreakerManager manager = new CircuitBreakerManager(properties);
+        manager.init();
+        CircuitBreakerCore core = new CircuitBreakerCore(manager);
+        Method get = Service.class.getMethod("get", String.class);
+        Service service = new Service();
+
+        assertEquals("a1", core.process(get, service, new Object[]{"a"}));
+        service.down = true;
+        assertEquals("a1", core.process(get, service, new Object[]{"a"}));
+        try {
+            core.process(get, service, new Object[]{"b"});
+            fail();
+        } catch (IllegalStateException e) {
+            // 没有缓存时按抛出异常降级
+        }
+
+        StaleResponseCache cache = manager.getCircuitBreakerCoalition(rule.getMethod()).getStaleResponseCache();
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+    }
+
+    @Test
+    public void testHttpResponsesCachedPerCallerAndSafeMethod() throws Exception {
+        CircuitBreakerRule rule = new CircuitBreakerRule();
+        rule.setRuleId(1L);
+        rule.setEnabled(true);
+        rule.setEffectiveType(CircuitBreakerRule.HTTP_CIRCUITBREAKER);
+        rule.setServiceName("demo");
+        rule.setEffectivePattren("*ALL_WAY*");
+        rule.setEffectiveLocation("*ALL*");
+        rule.setFailureRateThreshold(50);
+        rule.setFallbackType(FallbackTypeEnum.STALE_CACHE.getId());
+        CircuitBreakerProperties properties = new CircuitBreakerProperties();
+        properties.getRules().add(rule);
+        CircuitBreakerManager manager = new CircuitBreakerManager(properties);
+        manager.init();
+        CircuitBreakerCore core = new CircuitBreakerCore(manager);
+        AtomicInteger status = new AtomicInteger(200);
+
+        assertEquals(200, call(core, "GET", "alice", status));
+        assertEquals(200, call(core, "POST", "alice", status));
+        status.set(503);
+        // 失败时只返回同一调用方的GET响应
+        assertEquals(200, call(core, "GET", "alice", status));
+        assertEquals(503, call(core, "GET", "bob", status));
+        assertEquals(503, call(core, "POST", "alice", status));
+        assertEquals(1, manager.getCircuitBreakerCoalition(rule.getRuleName()).getStaleResponseCache().size());
+    }
+
+    @Test
+    public void testHttpRequestCacheKey() {
+        StaleResponseCache cache = new StaleResponseCache(10, 1000, false, Collections.singletonList("X-Tenant"));
+        Map<String, List<String>> headers = new HashMap<>();
+        headers.put("Authorization", Collections.singletonList("alice"));
+        headers.put("X-Tenant", Collections.singletonList("t1"));
+        Object key = HttpRequestCacheKey.of("GET", "http://demo/a", cache.getKeyHeaders(), headers::get);
+
+        assertEquals(key, HttpRequestCacheKey.of("get", "http://demo/a", cache.getKeyHeaders(), headers::get));
+        assertNull(HttpRequestCacheKey.of("PUT", "http://demo/a", cache.getKeyHeaders(), headers::get));
+        headers.put("X-Tenant", Collections.singletonList("t2"));
+        assertNotEquals(key, HttpRequestCacheKey.of("GET", "http://demo/a", cache.getKeyHeaders(), headers::get));
+    }
+
+    @Test
+    public void testSizeCapAndStaleness() throws Exception {
+        StaleResponseCache cache = new StaleResponseCache(2, 50, false);
+        cache.put("a", 1);
+        cache.put("b", 2);
+        cache.get("a");
+        cache.put("c", 3);
+        assertEquals(2, cache.size());
+        assertNull(cache.get("b"));
+        assertEquals(1, cache.get("a"));
+
+        Thread.sleep(60);
+        assertNull(cache.get("c"));
+    }
+
+    @Test
+    public void testByteBudget() {
+        StaleResponseCache cache = new StaleResponseCache(10, 0, false, Collections.emptyList(), 100, 60);
+        cache.put("a", response(40));
+        cache.put("b", response(40));
+        cache.get("a");
+        // 超过响应体总大小时淘汰最近最少使用的响应
+        cache.put("c", response(40));
+        assertEquals(2, cache.size());
+        assertEquals(80, cache.getTotalBytes());
+        assertNull(cache.get("b"));
+
+        // 替换同一请求的响应时按新的响应体计算
+        cache.put("a", response(10));
+        assertEquals(50, cache.getTotalBytes());
+
+        // 超过单个响应体大小的响应不缓存, 并移除该请求此前的响应
+        cache.put("c", response(61));
+        assertNull(cache.get("c"));
+        assertEquals(1, cache.size());
+        assertEquals(10, cache.getTotalBytes());
+        assertNotNull(cache.get("a"));
+    }
+
+    @Test
+    public void testOffHeapBody() throws Exception {
+        StaleResponseCache cache = new StaleResponseCache(10, 0, true);
+        byte[] body = new byte[StaleResponseCache.OFF_HEAP_THRESHOLD * 2];
+        body[body.length - 1] = 7;
+        CachedResponse cached = new CachedResponse(200, "OK", Collections.emptyMap(), body,
+                cache.isOffHeap(body.length));
+
+        assertTrue(cached.isOffHeap());
+        assertArrayEquals(body, StreamUtils.copyToByteArray(cached.getBody()));
+        assertArrayEquals(body, StreamUtils.copyToByteArray(cached.getBody()));
+    }
+
+    private static CachedResponse response(int bodyLength) {
+        return new CachedResponse(200, "OK", Collections.emptyMap(), new byte[bodyLength], false);
+    }
+
+    /**
+     * 响应为状态码, 参数为http方法和Authorization请求头
+     */
+    private Object call(CircuitBreakerCore core, String method, String user, AtomicInteger status)
+            throws Exception {
+        Object[] args = {method, user};
+        return core.process(method, "demo", "/a", null, this, args, (Attempt<Integer>) i -> status.get(),
+                ACCESSOR);
+    }
+
+    private static final CacheableResponseAccessor<Integer> ACCESSOR = new CacheableResponseAccessor<Integer>() {
+        @Override
+        public int getStatus(Integer response) {
+            return response;
+        }
+
+        @Override
+        public String getHeader(Integer response, String name) {
+            return null;
+        }
+
+        @Override
+        public Object getRequestKey(Object[] args, StaleResponseCache cache) {
+            return HttpRequestCacheKey.of((String) args[0], "http://demo/a", cache.getKeyHeaders(),
+                    name -> "Authorization".equalsIgnoreCase(name) ? Collections.singletonList((String) args[1])
+                            : null);
+        }
+
+        @Override
+        public CachedResponse snapshot(Integer response, StaleResponseCache cache) {
+            return new CachedResponse(response, "", Collections.emptyMap(), new byte[0], false);
+        }
+
+        @Override
+        public Integer restore(CachedResponse cached) {
+            return cached.getStatus();
+        }
+    };
+
+    public static class Service {
+        private volatile boolean down;
+
+        private int version;
+
+        public String get(String key) {
+            if (down) {
+                throw new IllegalStateException("down");
+            }
+            return key + (++version);
+        }
+    }
+}
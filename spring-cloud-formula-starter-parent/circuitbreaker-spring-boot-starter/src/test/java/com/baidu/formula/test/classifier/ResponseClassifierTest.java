@@ -0,0 +1,164 @@
+/*
+ * Copyright (c) 2018 Baidu, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baidu.formula.test.classifier;
+
+import com.baidu.formula.circuitbreaker.classifier.CallOutcome;
+import com.baidu.formula.circuitbreaker.classifier.HttpResponseAccessor;
+import com.baidu.formula.circuitbreaker.classifier.ResponseClassifier;
+import com.baidu.formula.circuitbreaker.config.CircuitBreakerProperties;
+import com.baidu.formula.circuitbreaker.enumeration.FallbackTypeEnum;
+import com.baidu.formula.circuitbreaker.impl.CircuitBreakerCore;
+import com.baidu.formula.circuitbreaker.impl.CircuitBreakerManager;
+import com.baidu.formula.circuitbreaker.model.CircuitBreakerRule;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class ResponseClassifierTest {
+    private static final String NAME = "com.baidu.Demo#call";
+
+    private static final HttpResponseAccessor<Integer> STATUS_ACCESSOR = new HttpResponseAccessor<Integer>() {
+        @Override
+        public int getStatus(Integer response) {
+            return response;
+        }
+
+        @Override
+        public String getHeader(Integer response, String name) {
+            return response == 200 && "X-Degraded".equals(name) ? "true" : null;
+        }
+    };
+
+    private CircuitBreakerManager manager;
+
+    private CircuitBreakerCore core;
+
+    @Before
+    public void init() {
+        CircuitBreakerProperties properties = new CircuitBreakerProperties();
+        properties.getRules().add(rule());
+        manager = new CircuitBreakerManager(properties);
+        manager.init();
+        core = new CircuitBreakerCore(manager);
+    }
+
+    @Test
+    public void testDefaultClassifier() throws Exception {
+        ResponseClassifier classifier = ResponseClassifier.DEFAULT;
+        assertEquals(CallOutcome.SUCCESS, classifier.classify(200, STATUS_ACCESSOR));
+        assertEquals(CallOutcome.SUCCESS, classifier.classify(404, STATUS_ACCESSOR));
+        assertEquals(CallOutcome.FAILURE, classifier.classify(503, STATUS_ACCESSOR));
+        assertEquals(CallOutcome.FAILURE, classifier.classify(null, STATUS_ACCESSOR));
+        assertEquals(CallOutcome.FAILURE, classifier.classify(new IllegalStateException()));
+    }
+
+    @Test
+    public void testConfiguredClassifier() throws Exception {
+        CircuitBreakerRule rule = rule();
+        rule.setFailureStatusCodes(Arrays.asList("429", "502-504"));
+        rule.setFailureHeaders(Collections.singletonMap("X-Degraded", ""));
+        rule.setIgnoreExceptions(Collections.singletonList(IllegalArgumentException.class.getName()));
+        ResponseClassifier classifier = ResponseClassifier.of(rule);
+
+        assertEquals(CallOutcome.FAILURE, classifier.classify(429, STATUS_ACCESSOR));
+        assertEquals(CallOutcome.FAILURE, classifier.classify(503, STATUS_ACCESSOR));
+        assertEquals(CallOutcome.SUCCESS, classifier.classify(500, STATUS_ACCESSOR));
+        assertEquals(CallOutcome.FAILURE, classifier.classify(200, STATUS_ACCESSOR));
+        assertEquals(CallOutcome.IGNORED, classifier.classify(new NumberFormatException()));
+        assertEquals(CallOutcome.FAILURE, classifier.classify(new IllegalStateException()));
+    }
+
+    @Test
+    public void testFailureResponseRecordedAndReturned() throws Exception {
+        Integer serverError = 503;
+        Object result = core.process("", NAME, "", null, this, new Object[0], () -> serverError, STATUS_ACCESSOR);
+        assertSame(serverError, result);
+        core.process("", NAME, "", null, this, new Object[0], () -> 404, STATUS_ACCESSOR);
+
+        CircuitBreaker.Metrics metrics = manager.getCircuitBreakerCoalition(NAME).getCircuitBreaker().getMetrics();
+        assertEquals(2, metrics.getNumberOfBufferedCalls());
+        assertEquals(1, metrics.getNumberOfFailedCalls());
+    }
+
+    @Test
+    public void testFailureResponseGoesToFallback() throws Exception {
+        CircuitBreakerRule rule = rule();
+        rule.setFallbackType(FallbackTypeEnum.NULL.getId());
+        CircuitBreakerProperties properties = new CircuitBreakerProperties();
+        properties.getRules().add(rule);
+        CircuitBreakerManager nullFallbackManager = new CircuitBreakerManager(properties);
+        nullFallbackManager.init();
+        CircuitBreakerCore nullFallbackCore = new CircuitBreakerCore(nullFallbackManager);
+        AtomicInteger closed = new AtomicInteger();
+        HttpResponseAccessor<Integer> accessor = new HttpResponseAccessor<Integer>() {
+            @Override
+            public int getStatus(Integer response) {
+                return response;
+            }
+
+            @Override
+            public String getHeader(Integer response, String name) {
+                return null;
+            }
+
+            @Override
+            public void close(Integer response) {
+                closed.incrementAndGet();
+            }
+        };
+
+        assertNull(nullFallbackCore.process("", NAME, "", null, this, new Object[0], () -> 503, accessor));
+        assertEquals(1, closed.get());
+        assertEquals(404, nullFallbackCore.process("", NAME, "", null, this, new Object[0], () -> 404, accessor));
+        assertEquals(1, closed.get());
+        CircuitBreaker.Metrics metrics = nullFallbackManager.getCircuitBreakerCoalition(NAME).getCircuitBreaker()
+                .getMetrics();
+        assertEquals(1, metrics.getNumberOfFailedCalls());
+    }
+
+    @Test
+    public void testFailureResponseReturnedForExceptionFallback() throws Exception {
+        CircuitBreakerRule rule = rule();
+        rule.setFallbackType(FallbackTypeEnum.EXCEPTION.getId());
+        CircuitBreakerProperties properties = new CircuitBreakerProperties();
+        properties.getRules().add(rule);
+        CircuitBreakerManager exceptionManager = new CircuitBreakerManager(properties);
+        exceptionManager.init();
+        Integer serverError = 503;
+
+        // 由客户端自身的错误处理抛出异常
+        assertSame(serverError, new CircuitBreakerCore(exceptionManager).process("", NAME, "", null, this,
+                new Object[0], () -> serverError, STATUS_ACCESSOR));
+    }
+
+    private CircuitBreakerRule rule() {
+        CircuitBreakerRule rule = new CircuitBreakerRule();
+        rule.setRuleId(1L);
+        rule.setEnabled(true);
+        rule.setEffectiveType(CircuitBreakerRule.MENTHOD_CIRCUITBREAKER);
+        rule.setMethod(NAME);
+        rule.setFailureRateThreshold(50);
+        return rule;
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright (c) 2018 Baidu, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baidu.formula.test.cluster;
+
+import com.baidu.formula.circuitbreaker.cluster.ClusterStateSynchronizer;
+import com.baidu.formula.circuitbreaker.cluster.InMemoryClusterStateTransport;
+import com.baidu.formula.circuitbreaker.config.CircuitBreakerProperties;
+import com.baidu.formula.circuitbreaker.impl.CircuitBreakerManager;
+import com.baidu.formula.circuitbreaker.model.CircuitBreakerRule;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.springframework.boot.test.rule.OutputCapture;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThat;
+
+public class ClusterStateTest {
+    private static final String NAME = "com.baidu.Demo#call";
+
+    @Rule
+    public OutputCapture output = new OutputCapture();
+
+    private final List<ClusterStateSynchronizer> synchronizers = new ArrayList<>();
+
+    @After
+    public void destroy() {
+        synchronizers.forEach(ClusterStateSynchronizer::stop);
+    }
+
+    @Test
+    public void testOpenedByQuorumOfInstances() {
+        CircuitBreakerManager a = instance("quorum", "a");
+        CircuitBreakerManager b = instance("quorum", "b");
+        CircuitBreakerManager c = instance("quorum", "c");
+
+        record(circuitBreaker(a), 20, 20);
+        assertEquals(CircuitBreaker.State.OPEN, circuitBreaker(a).getState());
+        assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker(c).getState());
+
+        record(circuitBreaker(b), 20, 20);
+        assertEquals(CircuitBreaker.State.OPEN, circuitBreaker(c).getState());
+    }
+
+    @Test
+    public void testOpenedByFailureRateOfCluster() {
+        CircuitBreakerManager a = instance("failure-rate", "a");
+        CircuitBreakerManager b = instance("failure-rate", "b");
+        CircuitBreakerManager c = instance("failure-rate", "c");
+
+        // 单个实例的调用数不足以计算失败率
+        record(circuitBreaker(a), 8, 6);
+        record(circuitBreaker(b), 8, 6);
+        record(circuitBreaker(c), 8, 0);
+        synchronizers.get(0).gossip();
+        assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker(c).getState());
+
+        synchronizers.get(1).gossip();
+        assertEquals(CircuitBreaker.State.OPEN, circuitBreaker(c).getState());
+        assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker(b).getState());
+    }
+
+    @Test
+    public void testWarnsWithInMemoryTransport() {
+        instance("in-memory", "a");
+        assertThat(output.toString(), containsString("states are shared in this jvm only"));
+    }
+
+    private CircuitBreakerManager instance(String group, String instanceId) {
+        CircuitBreakerProperties properties = new CircuitBreakerProperties();
+        properties.getRules().add(rule());
+        properties.getCluster().setEnabled(true);
+        properties.getCluster().setInstanceId(instanceId);
+        properties.getCluster().setGossipInterval(Duration.ofHours(1));
+        CircuitBreakerManager manager = new CircuitBreakerManager(properties);
+        manager.init();
+        ClusterStateSynchronizer synchronizer = new ClusterStateSynchronizer(manager,
+                new InMemoryClusterStateTransport(getClass().getName() + group), properties.getCluster());
+        synchronizer.start();
+        synchronizers.add(synchronizer);
+        return manager;
+    }
+
+    private void record(CircuitBreaker circuitBreaker, int calls, int failed) {
+        for (int i = 0; i < calls; i++) {
+            if (i < failed) {
+                circuitBreaker.onError(0, new RuntimeException());
+            } else {
+                circuitBreaker.onSuccess(0);
+            }
+        }
+    }
+
+    private CircuitBreaker circuitBreaker(CircuitBreakerManager manager) {
+        return manager.getCircuitBreakerCoalition(NAME).getCircuitBreaker();
+    }
+
+    private CircuitBreakerRule rule() {
+        CircuitBreakerRule rule = new CircuitBreakerRule();
+        rule.setRuleId(1L);
+        rule.setEnabled(true);
+        rule.setEffectiveType(CircuitBreakerRule.MENTHOD_CIRCUITBREAKER);
+        rule.setMethod(NAME);
+        rule.setFailureRateThreshold(50);
+        return rule;
+    }
+}
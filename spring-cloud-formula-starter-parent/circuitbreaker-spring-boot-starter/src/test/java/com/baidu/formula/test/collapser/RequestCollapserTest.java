@@ -0,0 +1,168 @@
+/*
+ * Copyright (c) 2018 Baidu, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baidu.formula.test.collapser;
+
+import com.baidu.formula.circuitbreaker.autoconfigure.feign.CollapsingInvocationHandlerFactory;
+import com.baidu.formula.circuitbreaker.collapser.RequestCollapser;
+import com.baidu.formula.circuitbreaker.collapser.RequestCollapserManager;
+import com.baidu.formula.circuitbreaker.config.CircuitBreakerProperties;
+import com.baidu.formula.circuitbreaker.model.RequestCollapserRule;
+import feign.InvocationHandlerFactory;
+import feign.RequestInterceptor;
+import feign.Target;
+import org.junit.Test;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+
+public class RequestCollapserTest {
+
+    @Test
+    public void testIdenticalRequestsShareOneCall() throws Exception {
+        RequestCollapser collapser = new RequestCollapser(rule(null));
+        AtomicInteger calls = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        List<Future<Object>> futures = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            futures.add(executor.submit(() -> {
+                try {
+                    return collapser.execute(new Object[]{"a"}, args -> {
+                        calls.incrementAndGet();
+                        release.await(5, TimeUnit.SECONDS);
+                        return "value-" + args[0];
+                    }, null);
+                } catch (Throwable t) {
+                    throw new IllegalStateException(t);
+                }
+            }));
+        }
+        while (collapser.getRequestCount() < 4) {
+            Thread.sleep(1);
+        }
+        release.countDown();
+        for (Future<Object> future : futures) {
+            assertEquals("value-a", future.get());
+        }
+        assertEquals(1, calls.get());
+        executor.shutdown();
+    }
+
+    @Test
+    public void testDistinctKeysBatched() throws Exception {
+        RequestCollapser collapser = new RequestCollapser(rule("getAll"));
+        AtomicInteger batches = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        List<Future<Object>> futures = new ArrayList<>();
+        for (String key : new String[]{"a", "b", "c"}) {
+            futures.add(executor.submit(() -> {
+                try {
+                    return collapser.execute(new Object[]{key}, args -> "single-" + args[0], keys -> {
+                        batches.incrementAndGet();
+                        return ((List<?>) keys[0]).stream().map(k -> "batch-" + k).collect(Collectors.toList());
+                    });
+                } catch (Throwable t) {
+                    throw new IllegalStateException(t);
+                }
+            }));
+        }
+        assertEquals("batch-a", futures.get(0).get());
+        assertEquals("batch-b", futures.get(1).get());
+        assertEquals("batch-c", futures.get(2).get());
+        assertEquals(1, batches.get());
+        executor.shutdown();
+    }
+
+    @Test
+    public void testCallersWithDifferentHeadersNotCollapsed() throws Exception {
+        CircuitBreakerProperties properties = new CircuitBreakerProperties();
+        properties.setCollapsers(Collections.singletonList(rule(null)));
+        properties.getCollapsers().get(0).setMethod(DemoClient.class.getName() + "#get");
+        RequestCollapserManager manager = new RequestCollapserManager(properties);
+        manager.init();
+        ThreadLocal<String> token = new ThreadLocal<>();
+        RequestInterceptor interceptor = template -> template.header("Authorization", token.get());
+
+        AtomicInteger calls = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        Method get = DemoClient.class.getMethod("get", String.class);
+        InvocationHandlerFactory.MethodHandler methodHandler = args -> {
+            calls.incrementAndGet();
+            release.await(5, TimeUnit.SECONDS);
+            // 实际请求中拦截器在调用方线程中添加请求头
+            return token.get() + "-" + args[0];
+        };
+        InvocationHandler handler = new CollapsingInvocationHandlerFactory(new InvocationHandlerFactory.Default(),
+                manager, Collections.singletonList(interceptor)).create(
+                new Target.HardCodedTarget<>(DemoClient.class, "http://demo"),
+                Collections.singletonMap(get, methodHandler));
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        Map<String, List<Future<Object>>> futures = new HashMap<>();
+        for (String user : new String[]{"alice", "bob", "alice", "bob"}) {
+            futures.computeIfAbsent(user, u -> new ArrayList<>()).add(executor.submit(() -> {
+                token.set(user);
+                try {
+                    return handler.invoke(null, get, new Object[]{"1"});
+                } catch (Throwable t) {
+                    throw new IllegalStateException(t);
+                }
+            }));
+        }
+        RequestCollapser collapser = manager.getCollapser(DemoClient.class.getName() + "#get");
+        while (collapser.getRequestCount() < 4) {
+            Thread.sleep(1);
+        }
+        release.countDown();
+        for (Map.Entry<String, List<Future<Object>>> entry : futures.entrySet()) {
+            for (Future<Object> future : entry.getValue()) {
+                assertEquals(entry.getKey() + "-1", future.get());
+            }
+        }
+        // 相同请求头的调用仍然合并
+        assertEquals(2, calls.get());
+        executor.shutdown();
+    }
+
+    private RequestCollapserRule rule(String batchMethod) {
+        RequestCollapserRule rule = new RequestCollapserRule();
+        rule.setEnabled(true);
+        rule.setMethod("com.baidu.DemoClient#get");
+        rule.setBatchMethod(batchMethod);
+        rule.setBatchWindow(Duration.ofMillis(200));
+        rule.setBatchMaxSize(3);
+        return rule;
+    }
+
+    public interface DemoClient {
+        String get(String id);
+    }
+}
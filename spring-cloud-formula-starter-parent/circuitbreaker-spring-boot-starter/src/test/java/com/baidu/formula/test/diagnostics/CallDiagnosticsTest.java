@@ -0,0 +1,79 @@
+/*
+ * Copyright (c) 2018 Baidu, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baidu.formula.test.diagnostics;
+
+import com.baidu.formula.circuitbreaker.config.CircuitBreakerProperties;
+import com.baidu.formula.circuitbreaker.diagnostics.CallDiagnostics;
+import com.baidu.formula.circuitbreaker.diagnostics.DiagnosticEvent;
+import com.baidu.formula.circuitbreaker.enumeration.FallbackTypeEnum;
+import com.baidu.formula.circuitbreaker.fallback.FallbackMethodRegistry;
+import com.baidu.formula.circuitbreaker.impl.CircuitBreakerCore;
+import com.baidu.formula.circuitbreaker.impl.CircuitBreakerManager;
+import com.baidu.formula.circuitbreaker.model.CircuitBreakerRule;
+import org.junit.Test;
+
+import java.lang.reflect.Method;
+import java.time.Duration;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class CallDiagnosticsTest {
+
+    @Test
+    public void testEventsCountedPerRule() throws Exception {
+        Method method = CallDiagnosticsTest.class.getMethod("failedCall");
+        CircuitBreakerRule rule = new CircuitBreakerRule();
+        rule.setRuleId(1L);
+        rule.setEnabled(true);
+        rule.setEffectiveType(CircuitBreakerRule.MENTHOD_CIRCUITBREAKER);
+        rule.setMethod(CallDiagnosticsTest.class.getName() + "#failedCall");
+        rule.setFailureRateThreshold(50);
+        rule.setRingBufferSizeInClosedState(4);
+        rule.setFallbackType(FallbackTypeEnum.NULL.getId());
+        CircuitBreakerProperties properties = new CircuitBreakerProperties();
+        properties.getRules().add(rule);
+        CircuitBreakerManager manager = new CircuitBreakerManager(properties);
+        manager.init();
+        CallDiagnostics diagnostics = new CallDiagnostics(Duration.ofHours(1));
+        CircuitBreakerCore core = new CircuitBreakerCore(manager, new FallbackMethodRegistry(), diagnostics);
+
+        for (int i = 0; i < 6; i++) {
+            assertNull(core.process(method, this, new Object[0]));
+        }
+
+        String name = rule.getRuleName();
+        assertEquals(4, diagnostics.getCount(name, DiagnosticEvent.CALLED));
+        assertEquals(4, diagnostics.getCount(name, DiagnosticEvent.FAILED));
+        assertEquals(2, diagnostics.getCount(name, DiagnosticEvent.NOT_PERMITTED));
+        assertEquals(6, diagnostics.getCount(name, DiagnosticEvent.FALLBACK));
+        assertEquals(0, diagnostics.getCount(name, DiagnosticEvent.BULKHEAD_FULL));
+    }
+
+    @Test
+    public void testExemplarsAreCountedWhenSuppressed() {
+        CallDiagnostics diagnostics = new CallDiagnostics(Duration.ofHours(1));
+        for (int i = 0; i < 100; i++) {
+            diagnostics.exemplar("rule", DiagnosticEvent.FAILED, "call {} failed", i);
+        }
+        assertEquals(100, diagnostics.getCount("rule", DiagnosticEvent.FAILED));
+        assertEquals(0, diagnostics.getCount("other", DiagnosticEvent.FAILED));
+    }
+
+    public String failedCall() {
+        throw new IllegalStateException("failed");
+    }
+}
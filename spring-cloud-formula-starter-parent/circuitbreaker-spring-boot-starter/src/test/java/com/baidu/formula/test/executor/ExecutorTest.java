@@ -0,0 +1,153 @@
+/*
+ * Copyright (c) 2018 Baidu, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baidu.formula.test.executor;
+
+import com.baidu.formula.circuitbreaker.classifier.HttpResponseAccessor;
+import com.baidu.formula.circuitbreaker.config.CircuitBreakerProperties;
+import com.baidu.formula.circuitbreaker.config.ExecutorProperties;
+import com.baidu.formula.circuitbreaker.diagnostics.CallDiagnostics;
+import com.baidu.formula.circuitbreaker.diagnostics.DiagnosticEvent;
+import com.baidu.formula.circuitbreaker.enumeration.ExecutorTypeEnum;
+import com.baidu.formula.circuitbreaker.enumeration.FallbackTypeEnum;
+import com.baidu.formula.circuitbreaker.exception.ExecutorSaturatedException;
+import com.baidu.formula.circuitbreaker.fallback.FallbackMethodRegistry;
+import com.baidu.formula.circuitbreaker.impl.CircuitBreakerCore;
+import com.baidu.formula.circuitbreaker.impl.CircuitBreakerManager;
+import com.baidu.formula.circuitbreaker.impl.CircuitBreakerThreadPool;
+import com.baidu.formula.circuitbreaker.model.CircuitBreakerRule;
+import com.baidu.formula.circuitbreaker.retry.Attempt;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ExecutorTest {
+    private static final String NAME = "com.baidu.Demo#call";
+
+    private static final HttpResponseAccessor<Integer> ACCESSOR = new HttpResponseAccessor<Integer>() {
+        @Override
+        public int getStatus(Integer response) {
+            return response;
+        }
+
+        @Override
+        public String getHeader(Integer response, String name) {
+            return null;
+        }
+
+        @Override
+        public void close(Integer response) {
+        }
+    };
+
+    @Test
+    public void testBoundedPoolRejects() throws Exception {
+        ExecutorProperties properties = new ExecutorProperties();
+        properties.setCoreSize(1);
+        properties.setMaxSize(1);
+        CircuitBreakerThreadPool executor = (CircuitBreakerThreadPool) CircuitBreakerThreadPool.create(properties);
+        CountDownLatch latch = new CountDownLatch(1);
+        try {
+            executor.submit(() -> latch.await(1, TimeUnit.MINUTES));
+            try {
+                executor.submit(() -> 1);
+                fail();
+            } catch (ExecutorSaturatedException e) {
+                // expected
+            }
+            assertEquals(1, executor.getRejectedCount());
+        } finally {
+            latch.countDown();
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testVirtualThreadsFallBackToBoundedPool() {
+        ExecutorProperties properties = new ExecutorProperties();
+        properties.setType(ExecutorTypeEnum.VIRTUAL.getId());
+        ExecutorService executor = CircuitBreakerThreadPool.create(properties);
+        try {
+            if (isVirtualThreadSupported()) {
+                assertTrue(!(executor instanceof ThreadPoolExecutor));
+            } else {
+                assertTrue(executor instanceof CircuitBreakerThreadPool);
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testSaturatedExecutorGoesToFallback() throws Exception {
+        CircuitBreakerRule rule = new CircuitBreakerRule();
+        rule.setRuleId(1L);
+        rule.setEnabled(true);
+        rule.setEffectiveType(CircuitBreakerRule.MENTHOD_CIRCUITBREAKER);
+        rule.setMethod(NAME);
+        rule.setFailureRateThreshold(50);
+        rule.setHedgeEnabled(true);
+        rule.setHedgeDelay(Duration.ofMillis(20));
+        // 方法规则的调用没有http方法, 需显式开启对冲
+        rule.setRetryNonIdempotent(true);
+        rule.setFallbackType(FallbackTypeEnum.NULL.getId());
+        CircuitBreakerProperties properties = new CircuitBreakerProperties();
+        properties.getRules().add(rule);
+        CircuitBreakerManager manager = new CircuitBreakerManager(properties);
+        manager.init();
+        ExecutorProperties executorProperties = new ExecutorProperties();
+        executorProperties.setCoreSize(1);
+        executorProperties.setMaxSize(1);
+        ExecutorService executor = CircuitBreakerThreadPool.create(executorProperties);
+        CallDiagnostics diagnostics = new CallDiagnostics();
+        CircuitBreakerCore core = new CircuitBreakerCore(manager, new FallbackMethodRegistry(), diagnostics,
+                executor);
+        CountDownLatch latch = new CountDownLatch(1);
+        try {
+            executor.submit(() -> latch.await(1, TimeUnit.MINUTES));
+
+            Object response = core.process("", NAME, "", null, this, new Object[0],
+                    (Attempt<Integer>) i -> 200, ACCESSOR);
+
+            assertNull(response);
+            assertEquals(1, diagnostics.getCount(NAME, DiagnosticEvent.REJECTED));
+            CircuitBreaker.Metrics metrics = manager.getCircuitBreakerCoalition(NAME).getCircuitBreaker()
+                    .getMetrics();
+            assertEquals(0, metrics.getNumberOfBufferedCalls());
+        } finally {
+            latch.countDown();
+            core.shutdown();
+        }
+    }
+
+    private boolean isVirtualThreadSupported() {
+        try {
+            java.util.concurrent.Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return true;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+}
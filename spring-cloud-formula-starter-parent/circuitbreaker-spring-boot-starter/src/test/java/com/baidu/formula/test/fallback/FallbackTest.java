@@ -0,0 +1,114 @@
+/*
+ * Copyright (c) 2018 Baidu, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baidu.formula.test.fallback;
+
+import com.baidu.formula.circuitbreaker.annotation.CircuitBreaker;
+import com.baidu.formula.circuitbreaker.config.CircuitBreakerProperties;
+import com.baidu.formula.circuitbreaker.impl.CircuitBreakerCore;
+import com.baidu.formula.circuitbreaker.impl.CircuitBreakerManager;
+import com.baidu.formula.circuitbreaker.model.CircuitBreakerRule;
+import org.junit.Test;
+
+import java.lang.reflect.Method;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+public class FallbackTest {
+
+    @Test
+    public void testFallbackMethodChosenByException() throws Exception {
+        CircuitBreakerCore core = core(rule("call"));
+        Method call = Service.class.getMethod("call", String.class, RuntimeException.class);
+        Service service = new Service();
+
+        assertEquals("state:a", core.process(call, service, new Object[]{"a", new IllegalStateException()}));
+        assertEquals("runtime:b", core.process(call, service, new Object[]{"b", new IllegalArgumentException()}));
+    }
+
+    @Test
+    public void testPlainFallbackMethodWhenOpen() throws Exception {
+        CircuitBreakerRule rule = rule("call");
+        rule.setForceOpen(true);
+        CircuitBreakerCore core = core(rule);
+        Method call = Service.class.getMethod("call", String.class, RuntimeException.class);
+
+        assertEquals("plain:c", core.process(call, new Service(), new Object[]{"c", null}));
+    }
+
+    @Test
+    public void testFallbackResultCached() throws Exception {
+        CircuitBreakerRule rule = rule("list");
+        rule.setForceOpen(true);
+        rule.setFallbackResult("[\"a\",\"b\"]");
+        CircuitBreakerCore core = core(rule);
+        Method list = Service.class.getMethod("list");
+        Service service = new Service();
+
+        Object first = core.process(list, service, new Object[0]);
+        Object second = core.process(list, service, new Object[0]);
+        assertEquals(first, second);
+        assertNotSame(first, second);
+
+        rule.setFallbackResultCopyOnRead(false);
+        core = core(rule);
+        assertSame(core.process(list, service, new Object[0]), core.process(list, service, new Object[0]));
+    }
+
+    private CircuitBreakerCore core(CircuitBreakerRule rule) {
+        CircuitBreakerProperties properties = new CircuitBreakerProperties();
+        properties.getRules().add(rule);
+        CircuitBreakerManager manager = new CircuitBreakerManager(properties);
+        manager.init();
+        return new CircuitBreakerCore(manager);
+    }
+
+    private CircuitBreakerRule rule(String method) {
+        CircuitBreakerRule rule = new CircuitBreakerRule();
+        rule.setRuleId(1L);
+        rule.setEnabled(true);
+        rule.setEffectiveType(CircuitBreakerRule.MENTHOD_CIRCUITBREAKER);
+        rule.setMethod(Service.class.getName() + "#" + method);
+        rule.setFailureRateThreshold(50);
+        return rule;
+    }
+
+    public static class Service {
+        @CircuitBreaker(fallback = "fallback")
+        public String call(String value, RuntimeException e) {
+            throw e;
+        }
+
+        @CircuitBreaker
+        public List<String> list() {
+            throw new IllegalStateException();
+        }
+
+        private String fallback(String value, RuntimeException e) {
+            return "plain:" + value;
+        }
+
+        private String fallback(String value, RuntimeException e, IllegalStateException t) {
+            return "state:" + value;
+        }
+
+        private String fallback(String value, RuntimeException e, RuntimeException t) {
+            return "runtime:" + value;
+        }
+    }
+}
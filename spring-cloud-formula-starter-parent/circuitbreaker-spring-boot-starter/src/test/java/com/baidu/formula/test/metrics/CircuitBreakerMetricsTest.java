@@ -0,0 +1,126 @@
+/*
+ * Copyright (c) 2018 Baidu, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baidu.formula.test.metrics;
+
+import com.baidu.formula.circuitbreaker.config.CircuitBreakerProperties;
+import com.baidu.formula.circuitbreaker.diagnostics.CallDiagnostics;
+import com.baidu.formula.circuitbreaker.enumeration.FallbackTypeEnum;
+import com.baidu.formula.circuitbreaker.fallback.FallbackMethodRegistry;
+import com.baidu.formula.circuitbreaker.impl.CircuitBreakerCore;
+import com.baidu.formula.circuitbreaker.impl.CircuitBreakerManager;
+import com.baidu.formula.circuitbreaker.metrics.CircuitBreakerDescriptor;
+import com.baidu.formula.circuitbreaker.metrics.CircuitBreakerEndpoint;
+import com.baidu.formula.circuitbreaker.metrics.CircuitBreakerMetrics;
+import com.baidu.formula.circuitbreaker.model.CircuitBreakerRule;
+import com.baidu.formula.circuitbreaker.model.StateTransitionRecord;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+
+public class CircuitBreakerMetricsTest {
+    private static final String NAME = CircuitBreakerMetricsTest.class.getName() + "#failedCall";
+
+    private CircuitBreakerManager manager;
+
+    private CallDiagnostics diagnostics;
+
+    private CircuitBreakerCore core;
+
+    private MeterRegistry registry;
+
+    @Before
+    public void init() {
+        CircuitBreakerRule rule = new CircuitBreakerRule();
+        rule.setRuleId(1L);
+        rule.setEnabled(true);
+        rule.setEffectiveType(CircuitBreakerRule.MENTHOD_CIRCUITBREAKER);
+        rule.setMethod(NAME);
+        rule.setFailureRateThreshold(50);
+        rule.setRingBufferSizeInClosedState(4);
+        rule.setFallbackType(FallbackTypeEnum.NULL.getId());
+        CircuitBreakerProperties properties = new CircuitBreakerProperties();
+        properties.getRules().add(rule);
+        manager = new CircuitBreakerManager(properties);
+        manager.init();
+        diagnostics = new CallDiagnostics();
+        core = new CircuitBreakerCore(manager, new FallbackMethodRegistry(), diagnostics);
+        registry = new SimpleMeterRegistry();
+        new CircuitBreakerMetrics(manager, diagnostics, properties).bindTo(registry);
+    }
+
+    @Test
+    public void testMetersPerRule() throws Exception {
+        Method method = CircuitBreakerMetricsTest.class.getMethod("failedCall");
+        for (int i = 0; i < 2; i++) {
+            core.process(method, this, new Object[0]);
+        }
+        assertEquals(1, registry.get("formula.circuitbreaker.state").tags("name", NAME, "state", "closed")
+                .gauge().value(), 0);
+        assertEquals(2, registry.get("formula.circuitbreaker.buffered.calls").tag("name", NAME)
+                .gauge().value(), 0);
+        assertEquals(2, registry.get("formula.circuitbreaker.failed.calls").tag("name", NAME)
+                .gauge().value(), 0);
+
+        for (int i = 0; i < 4; i++) {
+            core.process(method, this, new Object[0]);
+        }
+        assertEquals(1, registry.get("formula.circuitbreaker.state").tags("name", NAME, "state", "open")
+                .gauge().value(), 0);
+        assertEquals(100, registry.get("formula.circuitbreaker.failure.rate").tag("name", NAME)
+                .gauge().value(), 0);
+        assertEquals(2, registry.get("formula.circuitbreaker.calls").tags("name", NAME, "kind", "not_permitted")
+                .functionCounter().count(), 0);
+        assertEquals(6, registry.get("formula.circuitbreaker.calls").tags("name", NAME, "kind", "fallback")
+                .functionCounter().count(), 0);
+        FunctionTimer timer = registry.get("formula.circuitbreaker.call.duration").tag("name", NAME).functionTimer();
+        assertEquals(4, timer.count(), 0);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testEndpointListsRulesAndTransitions() throws Exception {
+        Method method = CircuitBreakerMetricsTest.class.getMethod("failedCall");
+        for (int i = 0; i < 5; i++) {
+            core.process(method, this, new Object[0]);
+        }
+
+        Map<String, Object> result = new CircuitBreakerEndpoint(manager, diagnostics).circuitBreakers();
+        List<CircuitBreakerDescriptor> rules = (List<CircuitBreakerDescriptor>) result.get("rules");
+        assertEquals(1, rules.size());
+        CircuitBreakerDescriptor descriptor = rules.get(0);
+        assertEquals(NAME, descriptor.getName());
+        assertEquals("OPEN", descriptor.getState());
+        assertEquals(4, descriptor.getBufferedCalls());
+        assertEquals(1L, (long) descriptor.getCalls().get("not_permitted"));
+
+        List<StateTransitionRecord> transitions = (List<StateTransitionRecord>) result.get("transitions");
+        assertEquals(1, transitions.size());
+        assertEquals("CLOSED", transitions.get(0).getFromState());
+        assertEquals("OPEN", transitions.get(0).getToState());
+    }
+
+    public String failedCall() {
+        throw new IllegalStateException("failed");
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright (c) 2018 Baidu, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baidu.formula.test.refresh;
+
+import com.baidu.formula.circuitbreaker.config.CircuitBreakerProperties;
+import com.baidu.formula.circuitbreaker.impl.CircuitBreakerManager;
+import com.baidu.formula.circuitbreaker.model.CircuitBreakerRule;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.cloud.context.environment.EnvironmentChangeEvent;
+
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+public class RuleRefreshTest {
+    private static final String NAME = "com.baidu.Demo#call";
+
+    private CircuitBreakerProperties properties;
+
+    private CircuitBreakerManager manager;
+
+    @Before
+    public void init() {
+        properties = new CircuitBreakerProperties();
+        properties.getRules().add(rule(50));
+        manager = new CircuitBreakerManager(properties);
+        manager.init();
+    }
+
+    @Test
+    public void testOpenStateKeptAfterThresholdChange() {
+        CircuitBreaker old = circuitBreaker();
+        for (int i = 0; i < 20; i++) {
+            old.onError(0, new RuntimeException());
+        }
+        assertEquals(CircuitBreaker.State.OPEN, old.getState());
+
+        refresh(rule(80));
+
+        CircuitBreaker current = circuitBreaker();
+        assertNotSame(old, current);
+        assertEquals(CircuitBreaker.State.OPEN, current.getState());
+    }
+
+    @Test
+    public void testBufferedOutcomesKeptAfterThresholdChange() {
+        recordFailureRate(circuitBreaker(), 8);
+
+        refresh(rule(45));
+
+        CircuitBreaker current = circuitBreaker();
+        assertEquals(CircuitBreaker.State.CLOSED, current.getState());
+        assertEquals(20, current.getMetrics().getNumberOfBufferedCalls());
+        assertEquals(8, current.getMetrics().getNumberOfFailedCalls());
+    }
+
+    @Test
+    public void testLoweredThresholdTripsWithBufferedOutcomes() {
+        recordFailureRate(circuitBreaker(), 8);
+
+        refresh(rule(30));
+
+        assertEquals(CircuitBreaker.State.OPEN, circuitBreaker().getState());
+    }
+
+    @Test
+    public void testUnchangedRuleKeepsCircuitBreaker() {
+        CircuitBreaker old = circuitBreaker();
+        CircuitBreakerRule rule = rule(50);
+        rule.setFallbackType(2);
+
+        refresh(rule);
+
+        assertSame(old, circuitBreaker());
+        assertSame(rule, manager.getCircuitBreakerCoalition(NAME).getRule());
+    }
+
+    private void refresh(CircuitBreakerRule rule) {
+        properties.setRules(Collections.singletonList(rule));
+        manager.circuitBreakerConfigRefresh(new EnvironmentChangeEvent(
+                Collections.singleton("formula.circuit-breaker.rules[0].failure-rate-threshold")));
+    }
+
+    private void recordFailureRate(CircuitBreaker circuitBreaker, int failed) {
+        for (int i = 0; i < 20; i++) {
+            if (i < failed) {
+                circuitBreaker.onError(0, new RuntimeException());
+            } else {
+                circuitBreaker.onSuccess(0);
+            }
+        }
+        assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.getState());
+    }
+
+    private CircuitBreaker circuitBreaker() {
+        return manager.getCircuitBreakerCoalition(NAME).getCircuitBreaker();
+    }
+
+    private CircuitBreakerRule rule(int failureRateThreshold) {
+        CircuitBreakerRule rule = new CircuitBreakerRule();
+        rule.setRuleId(1L);
+        rule.setEnabled(true);
+        rule.setEffectiveType(CircuitBreakerRule.MENTHOD_CIRCUITBREAKER);
+        rule.setMethod(NAME);
+        rule.setFailureRateThreshold(failureRateThreshold);
+        return rule;
+    }
+}
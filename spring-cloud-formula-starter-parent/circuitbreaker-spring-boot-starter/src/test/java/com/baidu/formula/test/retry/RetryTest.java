@@ -0,0 +1,194 @@
+/*
+ * Copyright (c) 2018 Baidu, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baidu.formula.test.retry;
+
+import com.baidu.formula.circuitbreaker.classifier.HttpResponseAccessor;
+import com.baidu.formula.circuitbreaker.config.CircuitBreakerProperties;
+import com.baidu.formula.circuitbreaker.impl.CircuitBreakerCore;
+import com.baidu.formula.circuitbreaker.impl.CircuitBreakerManager;
+import com.baidu.formula.circuitbreaker.model.CircuitBreakerRule;
+import com.baidu.formula.circuitbreaker.retry.Attempt;
+import com.baidu.formula.circuitbreaker.retry.RetryBudget;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class RetryTest {
+    private static final String SERVICE = "demo";
+
+    private static final String URL = "/call";
+
+    private static final Set<Integer> CLOSED = ConcurrentHashMap.newKeySet();
+
+    // 响应为尝试序号 * 1000 + 状态码
+    private static final HttpResponseAccessor<Integer> ACCESSOR = new HttpResponseAccessor<Integer>() {
+        @Override
+        public int getStatus(Integer response) {
+            return response % 1000;
+        }
+
+        @Override
+        public String getHeader(Integer response, String name) {
+            return null;
+        }
+
+        @Override
+        public void close(Integer response) {
+            CLOSED.add(response);
+        }
+    };
+
+    @Test
+    public void testRetryRecordedOnce() throws Exception {
+        CircuitBreakerRule rule = rule();
+        rule.setRetryMaxAttempts(3);
+        CircuitBreakerManager manager = manager(rule);
+        CircuitBreakerCore core = new CircuitBreakerCore(manager);
+        AtomicInteger attempts = new AtomicInteger();
+
+        Object response = core.process("GET", SERVICE, URL, null, this, new Object[0],
+                (Attempt<Integer>) i -> attempts.incrementAndGet() < 3 ? i * 1000 + 503 : i * 1000 + 200, ACCESSOR);
+
+        assertEquals(2200, response);
+        assertEquals(3, attempts.get());
+        CircuitBreaker.Metrics metrics = manager.getCircuitBreakerCoalition(rule.getRuleName()).getCircuitBreaker()
+                .getMetrics();
+        assertEquals(1, metrics.getNumberOfBufferedCalls());
+        assertEquals(0, metrics.getNumberOfFailedCalls());
+    }
+
+    @Test
+    public void testNonIdempotentNotRetried() throws Exception {
+        CircuitBreakerRule rule = rule();
+        rule.setRetryMaxAttempts(3);
+        CircuitBreakerCore core = new CircuitBreakerCore(manager(rule));
+        AtomicInteger attempts = new AtomicInteger();
+        Attempt<Integer> attempt = i -> attempts.incrementAndGet() < 3 ? i * 1000 + 503 : i * 1000 + 200;
+
+        assertEquals(503, core.process("POST", SERVICE, URL, null, this, new Object[0], attempt, ACCESSOR));
+        assertEquals(1, attempts.get());
+
+        rule.setRetryNonIdempotent(true);
+        core = new CircuitBreakerCore(manager(rule));
+        attempts.set(0);
+        assertEquals(2200, core.process("POST", SERVICE, URL, null, this, new Object[0], attempt, ACCESSOR));
+        assertEquals(3, attempts.get());
+    }
+
+    @Test
+    public void testHedgeCarriesContext() throws Exception {
+        CircuitBreakerRule rule = rule();
+        rule.setHedgeEnabled(true);
+        rule.setHedgeDelay(Duration.ofMillis(20));
+        CircuitBreakerCore core = new CircuitBreakerCore(manager(rule));
+        ThreadLocal<String> context = new ThreadLocal<>();
+        core.setTaskDecorators(Collections.singletonList(runnable -> {
+            String value = context.get();
+            return () -> {
+                context.set(value);
+                try {
+                    runnable.run();
+                } finally {
+                    context.remove();
+                }
+            };
+        }));
+        Set<String> seen = ConcurrentHashMap.newKeySet();
+
+        context.set("caller");
+        try {
+            core.process("GET", SERVICE, URL, null, this, new Object[0], (Attempt<Integer>) i -> {
+                seen.add(String.valueOf(context.get()));
+                if (i == 0) {
+                    // 首次请求超过对冲延迟, 触发在线程池中发送的对冲请求
+                    LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(200));
+                }
+                return i * 1000 + 200;
+            }, ACCESSOR);
+        } finally {
+            context.remove();
+        }
+        assertEquals(Collections.singleton("caller"), seen);
+    }
+
+    @Test
+    public void testRetryBudget() {
+        RetryBudget budget = new RetryBudget(50, 1);
+        assertTrue(budget.tryWithdraw());
+        assertFalse(budget.tryWithdraw());
+        budget.deposit();
+        assertFalse(budget.tryWithdraw());
+        budget.deposit();
+        assertTrue(budget.tryWithdraw());
+    }
+
+    @Test
+    public void testHedgeKeepsFirstResponse() throws Exception {
+        CircuitBreakerRule rule = rule();
+        rule.setHedgeEnabled(true);
+        rule.setHedgeDelay(Duration.ofMillis(20));
+        CircuitBreakerCore core = new CircuitBreakerCore(manager(rule));
+        CountDownLatch slow = new CountDownLatch(1);
+
+        Object response = core.process("GET", SERVICE, URL, null, this, new Object[0], (Attempt<Integer>) i -> {
+            // 首次请求忽略中断, 在对冲请求返回后才响应
+            while (i == 0 && slow.getCount() > 0) {
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+            }
+            return i * 1000 + 200;
+        }, ACCESSOR);
+        slow.countDown();
+
+        assertEquals(1200, response);
+        for (int i = 0; i < 100 && !CLOSED.contains(200); i++) {
+            Thread.sleep(10);
+        }
+        assertTrue(CLOSED.contains(200));
+    }
+
+    private CircuitBreakerManager manager(CircuitBreakerRule rule) {
+        CircuitBreakerProperties properties = new CircuitBreakerProperties();
+        properties.getRules().add(rule);
+        CircuitBreakerManager manager = new CircuitBreakerManager(properties);
+        manager.init();
+        return manager;
+    }
+
+    private CircuitBreakerRule rule() {
+        CircuitBreakerRule rule = new CircuitBreakerRule();
+        rule.setRuleId(1L);
+        rule.setEnabled(true);
+        rule.setEffectiveType(CircuitBreakerRule.HTTP_CIRCUITBREAKER);
+        rule.setServiceName(SERVICE);
+        // 匹配所有http方法和路径
+        rule.setEffectivePattren("*ALL_WAY*");
+        rule.setEffectiveLocation("*ALL*");
+        rule.setFailureRateThreshold(50);
+        return rule;
+    }
+}
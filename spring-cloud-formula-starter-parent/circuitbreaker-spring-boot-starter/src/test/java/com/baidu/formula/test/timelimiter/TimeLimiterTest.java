@@ -0,0 +1,142 @@
+/*
+ * Copyright (c) 2018 Baidu, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baidu.formula.test.timelimiter;
+
+import com.baidu.formula.circuitbreaker.config.CircuitBreakerProperties;
+import com.baidu.formula.circuitbreaker.impl.CircuitBreakerCore;
+import com.baidu.formula.circuitbreaker.impl.CircuitBreakerManager;
+import com.baidu.formula.circuitbreaker.model.CircuitBreakerRule;
+import org.junit.After;
+import org.junit.Test;
+
+import java.lang.reflect.Method;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class TimeLimiterTest {
+    private static final ThreadLocal<String> CONTEXT = new ThreadLocal<>();
+
+    private final CountDownLatch interrupted = new CountDownLatch(1);
+
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    private CircuitBreakerManager manager;
+
+    private CircuitBreakerCore core;
+
+    @After
+    public void destroy() {
+        release.countDown();
+        core.shutdown();
+        manager.destroy();
+    }
+
+    @Test
+    public void testTimeoutDuration() throws Exception {
+        Method method = TimeLimiterTest.class.getMethod("slowCall");
+        createCore(method, Duration.ofMillis(100), true);
+
+        long start = System.nanoTime();
+        try {
+            core.process(method, this, new Object[0]);
+            fail("call should time out");
+        } catch (TimeoutException e) {
+            // expected
+        }
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(2));
+        assertTrue(interrupted.await(5, TimeUnit.SECONDS));
+        assertEquals(1, manager.getCircuitBreakerCoalition(core.getName(method))
+                .getCircuitBreaker().getMetrics().getNumberOfFailedCalls());
+    }
+
+    @Test
+    public void testTimeLimitedCallCarriesContext() throws Exception {
+        Method method = TimeLimiterTest.class.getMethod("contextCall");
+        createCore(method, Duration.ofSeconds(5), true);
+        core.setTaskDecorators(Collections.singletonList(runnable -> {
+            String value = CONTEXT.get();
+            return () -> {
+                CONTEXT.set(value);
+                try {
+                    runnable.run();
+                } finally {
+                    CONTEXT.remove();
+                }
+            };
+        }));
+
+        CONTEXT.set("caller");
+        try {
+            assertEquals("caller", core.process(method, this, new Object[0]));
+        } finally {
+            CONTEXT.remove();
+        }
+    }
+
+    @Test
+    public void testTimeoutDurationIgnoredByDefault() throws Exception {
+        Method method = TimeLimiterTest.class.getMethod("delayedCall");
+        createCore(method, Duration.ofMillis(50), null);
+
+        assertEquals("ok", core.process(method, this, new Object[0]));
+        assertEquals(0, manager.getCircuitBreakerCoalition(core.getName(method))
+                .getCircuitBreaker().getMetrics().getNumberOfFailedCalls());
+    }
+
+    private void createCore(Method method, Duration timeout, Boolean timeLimiterEnabled) {
+        CircuitBreakerRule rule = new CircuitBreakerRule();
+        rule.setRuleId(1L);
+        rule.setEnabled(true);
+        rule.setEffectiveType(CircuitBreakerRule.MENTHOD_CIRCUITBREAKER);
+        rule.setMethod(TimeLimiterTest.class.getName() + "#" + method.getName());
+        rule.setFailureRateThreshold(50);
+        rule.setFallbackType(1);
+        rule.setTimeoutDuration(timeout);
+        rule.setTimeLimiterEnabled(timeLimiterEnabled);
+
+        CircuitBreakerProperties properties = new CircuitBreakerProperties();
+        properties.getRules().add(rule);
+        manager = new CircuitBreakerManager(properties);
+        manager.init();
+        core = new CircuitBreakerCore(manager);
+    }
+
+    public String slowCall() throws InterruptedException {
+        try {
+            release.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            interrupted.countDown();
+            throw e;
+        }
+        return "ok";
+    }
+
+    public String delayedCall() throws InterruptedException {
+        Thread.sleep(200);
+        return "ok";
+    }
+
+    public String contextCall() {
+        return CONTEXT.get();
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright (c) 2018 Baidu, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baidu.formula.test.webclient;
+
+import com.baidu.formula.circuitbreaker.autoconfigure.webclient.WebClientCircuitBreakerFilter;
+import com.baidu.formula.circuitbreaker.config.CircuitBreakerProperties;
+import com.baidu.formula.circuitbreaker.enumeration.FallbackTypeEnum;
+import com.baidu.formula.circuitbreaker.impl.CircuitBreakerCore;
+import com.baidu.formula.circuitbreaker.impl.CircuitBreakerManager;
+import com.baidu.formula.circuitbreaker.model.CircuitBreakerRule;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import org.junit.Test;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.ExchangeFunction;
+import reactor.core.publisher.Mono;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class WebClientCircuitBreakerTest {
+    private static final ClientRequest REQUEST = ClientRequest.create(HttpMethod.GET,
+            URI.create("http://demo/users")).build();
+
+    private CircuitBreakerManager manager;
+
+    private WebClientCircuitBreakerFilter filter;
+
+    @Test
+    public void testFailureResponsesOpenCircuitBreaker() {
+        CircuitBreakerRule rule = rule();
+        rule.setFallbackResult("{\"name\":\"fallback\"}");
+        init(rule);
+        AtomicInteger calls = new AtomicInteger();
+        ExchangeFunction next = request -> {
+            calls.incrementAndGet();
+            return Mono.just(ClientResponse.create(HttpStatus.SERVICE_UNAVAILABLE).build());
+        };
+
+        // 失败的响应计入熔断统计后按fallbackResult降级
+        for (int i = 0; i < 4; i++) {
+            ClientResponse response = filter.filter(REQUEST, next).block();
+            assertEquals(HttpStatus.OK, response.statusCode());
+            assertEquals("{\"name\":\"fallback\"}", response.bodyToMono(String.class).block());
+        }
+        assertEquals(CircuitBreaker.State.OPEN, circuitBreaker().getState());
+
+        ClientResponse response = filter.filter(REQUEST, next).block();
+        assertEquals(HttpStatus.OK, response.statusCode());
+        assertEquals("{\"name\":\"fallback\"}", response.bodyToMono(String.class).block());
+        assertEquals(4, calls.get());
+    }
+
+    @Test
+    public void testTimeoutRecordedAsFailure() {
+        CircuitBreakerRule rule = rule();
+        rule.setTimeoutDuration(Duration.ofMillis(50));
+        rule.setTimeLimiterEnabled(true);
+        rule.setFallbackType(FallbackTypeEnum.EXCEPTION.getId());
+        init(rule);
+        ExchangeFunction next = request -> Mono.just(ClientResponse.create(HttpStatus.OK).build())
+                .delayElement(Duration.ofSeconds(5));
+
+        try {
+            filter.filter(REQUEST, next).block();
+            fail("timeout expected");
+        } catch (RuntimeException e) {
+            assertTrue(e.getCause() instanceof TimeoutException);
+        }
+        assertEquals(1, circuitBreaker().getMetrics().getNumberOfFailedCalls());
+    }
+
+    @Test
+    public void testStaleResponseServedOnFailure() {
+        CircuitBreakerRule rule = rule();
+        rule.setFallbackType(FallbackTypeEnum.STALE_CACHE.getId());
+        init(rule);
+
+        ClientResponse fresh = filter.filter(REQUEST,
+                request -> Mono.just(ClientResponse.create(HttpStatus.OK).body("cached").build())).block();
+        assertEquals("cached", fresh.bodyToMono(String.class).block());
+
+        ClientResponse stale = filter.filter(REQUEST,
+                request -> Mono.just(ClientResponse.create(HttpStatus.BAD_GATEWAY).body("error").build())).block();
+        assertEquals(HttpStatus.OK, stale.statusCode());
+        assertEquals("cached", stale.bodyToMono(String.class).block());
+        assertEquals(1, circuitBreaker().getMetrics().getNumberOfFailedCalls());
+    }
+
+    private void init(CircuitBreakerRule rule) {
+        CircuitBreakerProperties properties = new CircuitBreakerProperties();
+        properties.getRules().add(rule);
+        manager = new CircuitBreakerManager(properties);
+        manager.init();
+        filter = new WebClientCircuitBreakerFilter(manager, new CircuitBreakerCore(manager), null);
+    }
+
+    private CircuitBreaker circuitBreaker() {
+        return manager.getCircuitBreakerCoalition("GET", "demo", "/users").getCircuitBreaker();
+    }
+
+    private CircuitBreakerRule rule() {
+        CircuitBreakerRule rule = new CircuitBreakerRule();
+        rule.setRuleId(1L);
+        rule.setEnabled(true);
+        rule.setEffectiveType(CircuitBreakerRule.HTTP_CIRCUITBREAKER);
+        rule.setServiceName("demo");
+        rule.setEffectivePattren("GET");
+        rule.setEffectiveLocation("/users");
+        rule.setFailureRateThreshold(50);
+        rule.setRingBufferSizeInClosedState(4);
+        return rule;
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright (c) 2018 Baidu, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baidu.formula.test.window;
+
+import com.baidu.formula.circuitbreaker.config.CircuitBreakerProperties;
+import com.baidu.formula.circuitbreaker.impl.CircuitBreakerCore;
+import com.baidu.formula.circuitbreaker.impl.CircuitBreakerManager;
+import com.baidu.formula.circuitbreaker.model.CircuitBreakerRule;
+import com.baidu.formula.circuitbreaker.window.CountBasedSlidingWindow;
+import com.baidu.formula.circuitbreaker.window.TimeBasedSlidingWindow;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import org.junit.Test;
+
+import java.lang.reflect.Method;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+
+import static org.junit.Assert.assertEquals;
+
+public class SlidingWindowTest {
+
+    @Test
+    public void testCountBasedWindowEvictsOldest() {
+        CountBasedSlidingWindow window = new CountBasedSlidingWindow(3);
+        window.record(true, false);
+        window.record(false, true);
+        window.record(false, false);
+        assertEquals(3, window.getNumberOfCalls());
+        assertEquals(1, window.getNumberOfFailedCalls());
+        assertEquals(1, window.getNumberOfSlowCalls());
+
+        window.record(false, false);
+        window.record(false, false);
+        assertEquals(3, window.getNumberOfCalls());
+        assertEquals(0, window.getNumberOfFailedCalls());
+        assertEquals(0, window.getNumberOfSlowCalls());
+    }
+
+    @Test
+    public void testTimeBasedWindowExpiresBuckets() {
+        MutableClock clock = new MutableClock();
+        TimeBasedSlidingWindow window = new TimeBasedSlidingWindow(10, clock);
+        window.record(true, false);
+        clock.millis = 5_000;
+        window.record(false, true);
+        assertEquals(2, window.getNumberOfCalls());
+
+        clock.millis = 10_500;
+        assertEquals(1, window.getNumberOfCalls());
+        assertEquals(0, window.getNumberOfFailedCalls());
+        assertEquals(1, window.getNumberOfSlowCalls());
+
+        clock.millis = 20_000;
+        window.record(false, false);
+        assertEquals(1, window.getNumberOfCalls());
+        assertEquals(0, window.getNumberOfSlowCalls());
+    }
+
+    @Test
+    public void testSlowCallRateOpensCircuitBreaker() throws Exception {
+        Method method = SlidingWindowTest.class.getMethod("slowCall");
+        CircuitBreakerRule rule = new CircuitBreakerRule();
+        rule.setRuleId(1L);
+        rule.setEnabled(true);
+        rule.setEffectiveType(CircuitBreakerRule.MENTHOD_CIRCUITBREAKER);
+        rule.setMethod(SlidingWindowTest.class.getName() + "#slowCall");
+        rule.setFailureRateThreshold(50);
+        rule.setSlidingWindowSize(4);
+        rule.setSlowCallDurationThreshold(Duration.ofMillis(5));
+        rule.setSlowCallRateThreshold(50);
+        CircuitBreakerProperties properties = new CircuitBreakerProperties();
+        properties.getRules().add(rule);
+        CircuitBreakerManager manager = new CircuitBreakerManager(properties);
+        manager.init();
+        CircuitBreakerCore core = new CircuitBreakerCore(manager);
+
+        for (int i = 0; i < 4; i++) {
+            core.process(method, this, new Object[0]);
+        }
+
+        assertEquals(CircuitBreaker.State.OPEN,
+                manager.getCircuitBreakerCoalition(rule.getMethod()).getCircuitBreaker().getState());
+    }
+
+    public String slowCall() throws InterruptedException {
+        Thread.sleep(10);
+        return "ok";
+    }
+
+    private static class MutableClock extends Clock {
+        private long millis;
+
+        @Override
+        public ZoneOffset getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(java.time.ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public long millis() {
+            return millis;
+        }
+
+        @Override
+        public Instant instant() {
+            return Instant.ofEpochMilli(millis);
+        }
+    }
+}
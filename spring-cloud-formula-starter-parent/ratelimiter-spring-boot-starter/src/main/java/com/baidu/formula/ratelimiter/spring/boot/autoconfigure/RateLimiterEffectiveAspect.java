@@ -83,18 +83,12 @@ public class RateLimiterEffectiveAspect implements Ordered {
             if (e instanceof BlockException) {
                 throw e;
             } else {
-                logger.error("There is some error in RateLimiter");
+                logger.error("There is some error in RateLimiter of method: {}", methodName, e);
             }
         }
 
-        // process and return
-        try {
-            return proceedingJoinPoint.proceed();
-        } catch (Throwable throwable) {
-            throwable.printStackTrace();
-            logger.error(throwable.getMessage());
-            throw throwable;
-        }
+        // process and return, exceptions of the business method are left to the caller
+        return proceedingJoinPoint.proceed();
     }
 
 }
@@ -0,0 +1,114 @@
+/*
+ * Copyright (c) 2019 Baidu, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baidu.formula.route.spring.boot.autoconfigure;
+
+import java.util.Collections;
+import java.util.List;
+
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.beans.factory.BeanFactoryAware;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.AutoConfigureAfter;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.cloud.client.loadbalancer.LoadBalanced;
+import org.springframework.cloud.client.loadbalancer.LoadBalancerAutoConfiguration;
+import org.springframework.cloud.netflix.ribbon.SpringClientFactory;
+import org.springframework.cloud.openfeign.ribbon.LoadBalancerFeignClient;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.web.client.RestTemplate;
+
+import com.baidu.formula.route.spring.boot.route.outcome.OutcomeRecordingFeignClient;
+import com.baidu.formula.route.spring.boot.route.outcome.OutcomeRecordingRestTemplateInterceptor;
+import com.baidu.formula.route.spring.boot.route.outcome.ServerOutcomeRecorder;
+import com.baidu.formula.route.spring.boot.route.property.RouteProperties;
+
+/**
+ * 记录RestTemplate和Feign对实例的调用结果, 供异常实例摘除使用
+ * 只在开启异常实例摘除时生效, 不影响未开启的应用的RestTemplate和Feign客户端
+ */
+@Configuration
+@ConditionalOnBean(SpringClientFactory.class)
+@ConditionalOnProperty(prefix = RouteProperties.PREFIX, name = "outlierDetection.enabled", havingValue = "true")
+@AutoConfigureAfter(value = {RouteAutoConfiguration.class, LoadBalancerAutoConfiguration.class},
+        name = "org.springframework.cloud.netflix.ribbon.RibbonAutoConfiguration")
+public class OutlierDetectionAutoConfiguration {
+
+    @Bean
+    public ServerOutcomeRecorder serverOutcomeRecorder(SpringClientFactory clientFactory) {
+        return new ServerOutcomeRecorder(clientFactory);
+    }
+
+    @Configuration
+    @ConditionalOnClass(RestTemplate.class)
+    static class OutcomeRestTemplateConfiguration {
+
+        @LoadBalanced
+        @Autowired(required = false)
+        private List<RestTemplate> restTemplates = Collections.emptyList();
+
+        /**
+         * 拦截器加在最后, 在负载均衡拦截器选中实例之后执行
+         */
+        @Bean
+        public SmartInitializingSingleton outcomeRestTemplateInitializer(ServerOutcomeRecorder recorder) {
+            return () -> {
+                for (RestTemplate restTemplate : restTemplates) {
+                    List<ClientHttpRequestInterceptor> interceptors = restTemplate.getInterceptors();
+                    interceptors.add(new OutcomeRecordingRestTemplateInterceptor(recorder));
+                    restTemplate.setInterceptors(interceptors);
+                }
+            };
+        }
+    }
+
+    @Configuration
+    @ConditionalOnClass(LoadBalancerFeignClient.class)
+    static class OutcomeFeignConfiguration {
+
+        @Bean
+        public static OutcomeFeignClientPostProcessor outcomeFeignClientPostProcessor() {
+            return new OutcomeFeignClientPostProcessor();
+        }
+    }
+
+    /**
+     * 包装Feign的负载均衡客户端以记录调用结果, 保留原有的客户端及其子类的行为
+     */
+    static class OutcomeFeignClientPostProcessor implements BeanPostProcessor, BeanFactoryAware {
+        private BeanFactory beanFactory;
+
+        @Override
+        public void setBeanFactory(BeanFactory beanFactory) throws BeansException {
+            this.beanFactory = beanFactory;
+        }
+
+        @Override
+        public Object postProcessAfterInitialization(Object bean, String beanName) throws BeansException {
+            if (!(bean instanceof LoadBalancerFeignClient)) {
+                return bean;
+            }
+            return OutcomeRecordingFeignClient.wrap((LoadBalancerFeignClient) bean,
+                    beanFactory.getBean(ServerOutcomeRecorder.class));
+        }
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright (c) 2019 Baidu, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baidu.formula.route.spring.boot.autoconfigure;
+
+import java.util.Collections;
+import java.util.List;
+
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.AutoConfigureAfter;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.cloud.client.loadbalancer.LoadBalanced;
+import org.springframework.cloud.client.loadbalancer.LoadBalancerAutoConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.web.client.RestTemplate;
+
+import com.baidu.formula.route.spring.boot.route.RouteMatcher;
+import com.baidu.formula.route.spring.boot.route.context.RouteContextFeignInterceptor;
+import com.baidu.formula.route.spring.boot.route.context.RouteContextFilter;
+import com.baidu.formula.route.spring.boot.route.context.RouteContextRestTemplateInterceptor;
+import com.baidu.formula.route.spring.boot.route.context.RouteContextTaskDecorator;
+
+import feign.RequestInterceptor;
+
+/**
+ * 请求级路由上下文的捕获与传递
+ * 在限流的Feign拦截器之后配置, 避免其按类型判断的ConditionalOnMissingBean被本配置的拦截器影响
+ */
+@Configuration
+@AutoConfigureAfter(value = {RouteAutoConfiguration.class, LoadBalancerAutoConfiguration.class},
+        name = "com.baidu.formula.ratelimiter.spring.boot.autoconfigure.interceptor.FeignRequestConfiguration")
+public class RouteContextAutoConfiguration {
+
+    /**
+     * 熔断的舱壁线程池、对冲请求等按类型获取TaskDecorator, 在提交的任务中传递路由上下文
+     */
+    @Bean
+    @ConditionalOnMissingBean
+    public RouteContextTaskDecorator routeContextTaskDecorator() {
+        return new RouteContextTaskDecorator();
+    }
+
+    @Configuration
+    @ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+    @ConditionalOnBean(RouteMatcher.class)
+    static class RouteContextFilterConfiguration {
+
+        @Bean
+        public FilterRegistrationBean<RouteContextFilter> routeContextFilter(RouteMatcher routeMatcher) {
+            FilterRegistrationBean<RouteContextFilter> registration =
+                    new FilterRegistrationBean<>(new RouteContextFilter(routeMatcher));
+            registration.setOrder(Ordered.HIGHEST_PRECEDENCE + 10);
+            return registration;
+        }
+    }
+
+    @Configuration
+    @ConditionalOnClass(RestTemplate.class)
+    static class RouteContextRestTemplateConfiguration {
+
+        @LoadBalanced
+        @Autowired(required = false)
+        private List<RestTemplate> restTemplates = Collections.emptyList();
+
+        @Bean
+        public SmartInitializingSingleton routeContextRestTemplateInitializer() {
+            return () -> {
+                for (RestTemplate restTemplate : restTemplates) {
+                    List<ClientHttpRequestInterceptor> interceptors = restTemplate.getInterceptors();
+                    interceptors.add(0, new RouteContextRestTemplateInterceptor());
+                    restTemplate.setInterceptors(interceptors);
+                }
+            };
+        }
+    }
+
+    @Configuration
+    @ConditionalOnClass(RequestInterceptor.class)
+    static class RouteContextFeignConfiguration {
+
+        @Bean
+        public RouteContextFeignInterceptor routeContextFeignInterceptor() {
+            return new RouteContextFeignInterceptor();
+        }
+    }
+}
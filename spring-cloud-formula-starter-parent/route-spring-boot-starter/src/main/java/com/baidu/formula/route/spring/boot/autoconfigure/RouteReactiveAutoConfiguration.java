@@ -0,0 +1,56 @@
+/*
+ * Copyright (c) 2019 Baidu, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baidu.formula.route.spring.boot.autoconfigure;
+
+import org.springframework.boot.autoconfigure.AutoConfigureAfter;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.cloud.client.discovery.DiscoveryClient;
+import org.springframework.cloud.client.discovery.composite.CompositeDiscoveryClientAutoConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import com.baidu.formula.route.spring.boot.route.RouteMatcher;
+import com.baidu.formula.route.spring.boot.route.reactive.FormulaLoadBalancerExchangeFilterFunction;
+import com.baidu.formula.route.spring.boot.route.reactive.FormulaReactiveLoadBalancerFactory;
+
+import reactor.core.publisher.Mono;
+
+/**
+ * 不依赖ribbon的响应式负载均衡, 供WebClient和响应式网关使用
+ */
+@Configuration
+@ConditionalOnClass({WebClient.class, Mono.class})
+@ConditionalOnBean({DiscoveryClient.class, RouteMatcher.class})
+@AutoConfigureAfter({RouteAutoConfiguration.class, CompositeDiscoveryClientAutoConfiguration.class})
+public class RouteReactiveAutoConfiguration {
+
+    @Bean
+    @ConditionalOnMissingBean
+    public FormulaReactiveLoadBalancerFactory formulaReactiveLoadBalancerFactory(DiscoveryClient discoveryClient,
+                                                                                 RouteMatcher routeMatcher) {
+        return new FormulaReactiveLoadBalancerFactory(discoveryClient, routeMatcher);
+    }
+
+    @Bean
+    @ConditionalOnMissingBean
+    public FormulaLoadBalancerExchangeFilterFunction formulaLoadBalancerExchangeFilterFunction(
+            FormulaReactiveLoadBalancerFactory loadBalancerFactory, RouteMatcher routeMatcher) {
+        return new FormulaLoadBalancerExchangeFilterFunction(loadBalancerFactory, routeMatcher);
+    }
+}
@@ -15,7 +15,10 @@
  */
 package com.baidu.formula.route.spring.boot.config;
 
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.cloud.client.discovery.DiscoveryClient;
 import org.springframework.cloud.netflix.ribbon.RibbonClients;
 import org.springframework.cloud.netflix.ribbon.SpringClientFactory;
 import org.springframework.context.ApplicationContext;
@@ -25,6 +28,9 @@ import org.springframework.core.env.ConfigurableEnvironment;
 
 import com.baidu.formula.route.spring.boot.route.RouteMatcher;
 import com.baidu.formula.route.spring.boot.route.listener.RouteListener;
+import com.baidu.formula.route.spring.boot.route.loadbalancer.FleetPosition;
+import com.baidu.formula.route.spring.boot.route.metadata.DefaultServerMetadataExtractor;
+import com.baidu.formula.route.spring.boot.route.metadata.ServerMetadataExtractor;
 import com.baidu.formula.route.spring.boot.route.env.RoutePropertySource;
 import com.baidu.formula.route.spring.boot.route.property.RouteProperties;
 
@@ -38,6 +44,21 @@ public class RouteConfig {
         return new RouteMatcher(routeProperties);
     }
 
+    @Bean
+    @ConditionalOnMissingBean
+    public ServerMetadataExtractor serverMetadataExtractor() {
+        return new DefaultServerMetadataExtractor();
+    }
+
+    @Bean
+    public FleetPosition fleetPosition(RouteProperties routeProperties, ObjectProvider<DiscoveryClient> discoveryClient,
+                                       ConfigurableEnvironment environment) {
+        String clientId = environment.getProperty("spring.cloud.client.ip-address") + ":"
+                + environment.getProperty("server.port", "8080");
+        return new FleetPosition(routeProperties, discoveryClient.getIfAvailable(),
+                environment.getProperty("spring.application.name"), clientId);
+    }
+
     @Bean
     public RouteListener routeListener(ApplicationContext applicationContext, SpringClientFactory springClientFactory,
                                        RouteProperties routeProperties, ConfigurableEnvironment environment,
@@ -28,6 +28,8 @@ public class RouteConstants {
 
     public static final String TAG_PLATFORM = "EM_PLATFORM";
 
+    public static final String TAG_TYPE_HEADER = "HEADER";
+
     public static final String FORMULA_DISCOVERY_CUSTOM_PLATFORM = "platformName";
 
 
@@ -0,0 +1,122 @@
+/*
+ * Copyright (c) 2019 Baidu, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baidu.formula.route.spring.boot.route;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.apache.commons.lang3.tuple.Pair;
+
+/**
+ * 按权重随机选择, 基于Walker/Vose的alias method
+ * 构造时预先计算概率表和别名表, 每次选择只需两个随机数, 时间复杂度O(1).
+ * 权重之和不需要为100, 权重为0的值不会被选中(用于摘流), 构造后不可修改.
+ * @param <T> 被选择的值
+ */
+public final class AliasMethodSampler<T> {
+    private final List<T> values;
+
+    // 第i列保留自身的概率
+    private final double[] probability;
+
+    // 第i列未保留自身时选择的值
+    private final int[] alias;
+
+    /**
+     * @param weightedValues 值及其权重, 权重不能为负, 权重之和必须大于0
+     */
+    public AliasMethodSampler(List<? extends Pair<T, ? extends Number>> weightedValues) {
+        List<T> positiveValues = new ArrayList<>(weightedValues.size());
+        List<Double> positiveWeights = new ArrayList<>(weightedValues.size());
+        double total = 0;
+        for (Pair<T, ? extends Number> pair : weightedValues) {
+            double weight = pair.getValue().doubleValue();
+            if (weight < 0 || Double.isNaN(weight) || Double.isInfinite(weight)) {
+                throw new IllegalArgumentException("weight of " + pair.getKey() + " is illegal: " + weight);
+            }
+            if (weight > 0) {
+                positiveValues.add(pair.getKey());
+                positiveWeights.add(weight);
+                total += weight;
+            }
+        }
+        if (positiveValues.isEmpty()) {
+            throw new IllegalArgumentException("sum of weights must be positive.");
+        }
+
+        int size = positiveValues.size();
+        this.values = Collections.unmodifiableList(positiveValues);
+        this.probability = new double[size];
+        this.alias = new int[size];
+
+        // 按平均权重缩放, 小于1的列由大于1的列补齐
+        double[] scaled = new double[size];
+        int[] small = new int[size];
+        int[] large = new int[size];
+        int smallSize = 0;
+        int largeSize = 0;
+        for (int i = 0; i < size; i++) {
+            scaled[i] = positiveWeights.get(i) * size / total;
+            if (scaled[i] < 1) {
+                small[smallSize++] = i;
+            } else {
+                large[largeSize++] = i;
+            }
+        }
+        while (smallSize > 0 && largeSize > 0) {
+            int less = small[--smallSize];
+            int more = large[--largeSize];
+            probability[less] = scaled[less];
+            alias[less] = more;
+            scaled[more] = (scaled[more] + scaled[less]) - 1;
+            if (scaled[more] < 1) {
+                small[smallSize++] = more;
+            } else {
+                large[largeSize++] = more;
+            }
+        }
+        // 剩余的列只因浮点误差偏离1
+        while (largeSize > 0) {
+            probability[large[--largeSize]] = 1;
+        }
+        while (smallSize > 0) {
+            probability[small[--smallSize]] = 1;
+        }
+    }
+
+    /**
+     * 按权重随机选择一个值
+     * @return
+     */
+    public T sample() {
+        if (values.size() == 1) {
+            return values.get(0);
+        }
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int column = random.nextInt(values.size());
+        return random.nextDouble() < probability[column] ? values.get(column) : values.get(alias[column]);
+    }
+
+    /**
+     * 权重大于0的值
+     * @return
+     */
+    public List<T> getValues() {
+        return values;
+    }
+}
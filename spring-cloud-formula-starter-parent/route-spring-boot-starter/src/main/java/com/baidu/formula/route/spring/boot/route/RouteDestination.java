@@ -0,0 +1,168 @@
+/*
+ * Copyright (c) 2019 Baidu, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baidu.formula.route.spring.boot.route;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.StringJoiner;
+
+import org.springframework.util.CollectionUtils;
+import org.springframework.util.StringUtils;
+
+import com.baidu.formula.engine.tag.Operation;
+import com.baidu.formula.route.spring.boot.route.property.Tag;
+
+/**
+ * 路由目标, 即目标中的标签条件, 实例满足全部条件时属于该目标
+ * 在路由规则变化时创建, 不可修改, 按条件比较是否相等
+ */
+public final class RouteDestination {
+    private final List<Condition> conditions;
+
+    // 用于日志和统计
+    private final String name;
+
+    private RouteDestination(List<Condition> conditions) {
+        this.conditions = Collections.unmodifiableList(conditions);
+        StringJoiner joiner = new StringJoiner(",");
+        for (Condition condition : conditions) {
+            joiner.add(condition.toString());
+        }
+        this.name = joiner.toString();
+    }
+
+    /**
+     * 按目标的标签创建, 未配置运算符时为EQUAL
+     * @param tags
+     * @return
+     * @throws IllegalArgumentException 标签为空, 标签的值为空或运算符不合法
+     */
+    public static RouteDestination of(List<Tag> tags) {
+        if (CollectionUtils.isEmpty(tags)) {
+            throw new IllegalArgumentException("destination tags is empty.");
+        }
+        List<Condition> conditions = new ArrayList<>(tags.size());
+        for (Tag tag : tags) {
+            if (StringUtils.isEmpty(tag.getKey()) || CollectionUtils.isEmpty(tag.getValue())) {
+                throw new IllegalArgumentException("destination tag is illegal: " + tag);
+            }
+            Operation operation = StringUtils.isEmpty(tag.getOp())
+                    ? Operation.EQUAL : Operation.valueOf(tag.getOp().toUpperCase(Locale.ROOT));
+            conditions.add(new Condition(tag.getKey(), operation, new ArrayList<>(tag.getValue())));
+        }
+        return new RouteDestination(conditions);
+    }
+
+    public List<Condition> getConditions() {
+        return conditions;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof RouteDestination)) {
+            return false;
+        }
+        return conditions.equals(((RouteDestination) o).conditions);
+    }
+
+    @Override
+    public int hashCode() {
+        return conditions.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+
+    /**
+     * 一个标签条件
+     */
+    public static final class Condition {
+        private final String key;
+
+        private final Operation operation;
+
+        private final List<String> values;
+
+        Condition(String key, Operation operation, List<String> values) {
+            this.key = key;
+            this.operation = operation;
+            this.values = Collections.unmodifiableList(values);
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        public Operation getOperation() {
+            return operation;
+        }
+
+        public List<String> getValues() {
+            return values;
+        }
+
+        /**
+         * 实例的标签值是否满足条件
+         * @param value 实例没有该标签时为null
+         * @return
+         */
+        public boolean matches(String value) {
+            return Operation.isOperationMatch(operation, values, value);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Condition)) {
+                return false;
+            }
+            Condition other = (Condition) o;
+            return key.equals(other.key) && operation == other.operation && values.equals(other.values);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * (31 * key.hashCode() + operation.hashCode()) + values.hashCode();
+        }
+
+        @Override
+        public String toString() {
+            switch (operation) {
+                case EQUAL:
+                    return key + "=" + values.get(0);
+                case NOT_EQUAL:
+                    return key + "!=" + values.get(0);
+                case IN:
+                    return key + " in " + values;
+                default:
+                    return key + " not in " + values;
+            }
+        }
+    }
+}
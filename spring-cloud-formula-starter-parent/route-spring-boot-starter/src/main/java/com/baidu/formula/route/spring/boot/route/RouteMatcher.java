@@ -17,9 +17,14 @@ package com.baidu.formula.route.spring.boot.route;
 
 import static com.baidu.formula.route.spring.boot.config.RouteConstants.DESTINATION_TYPE_WEIGHT;
 import static com.baidu.formula.route.spring.boot.config.RouteConstants.TAG_EQUAL_OPERATOR;
+import static com.baidu.formula.route.spring.boot.config.RouteConstants.TAG_TYPE_HEADER;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Set;
 
 import org.apache.commons.lang3.tuple.ImmutablePair;
 import org.apache.commons.lang3.tuple.Pair;
@@ -27,6 +32,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.util.CollectionUtils;
 
+import com.baidu.formula.route.spring.boot.route.property.Destination;
 import com.baidu.formula.route.spring.boot.route.property.DestinationWrapper;
 import com.baidu.formula.route.spring.boot.route.property.FormulaRouteProperty;
 import com.baidu.formula.route.spring.boot.route.property.RouteProperties;
@@ -36,50 +42,140 @@ import lombok.Getter;
 
 /**
  * 路由规则匹配器
+ * 路由规则变化时重新匹配并发布{@link RouteSnapshot}, 请求时只读取快照
+ * 来源标签类型为请求头的规则在请求时按{@link com.baidu.formula.route.spring.boot.route.context.RouteContext}中的请求头匹配
  */
-@Getter
 public class RouteMatcher {
     private static final Logger LOGGER = LoggerFactory.getLogger(RouteMatcher.class);
 
-    private RouteProperties routeProperties;
+    @Getter
+    private final RouteProperties routeProperties;
 
-    FormulaRouteProperty matchedFormulaRouteProperty;
+    private volatile RouteSnapshot snapshot;
+
+    // 当前权重表对应的目标及权重, 只在refresh中访问
+    private List<Pair<RouteDestination, Integer>> destinationWeights;
 
     public RouteMatcher(RouteProperties routeProperties) {
         this.routeProperties = routeProperties;
+        refresh();
+    }
+
+    /**
+     * 当前的匹配结果
+     * @return
+     */
+    public RouteSnapshot getSnapshot() {
+        return snapshot;
     }
 
     /**
-     * 路由规则是否对本实例生效
-     * @return true 路由规则匹配该实例，否则返回false.
+     * 按当前的路由规则重新匹配, 并发布新的快照
+     * @return 新的快照
      */
-    public boolean match() {
+    public synchronized RouteSnapshot refresh() {
+        RouteSnapshot newSnapshot = createSnapshot();
+        this.snapshot = newSnapshot;
+        LOGGER.info("route snapshot refreshed: {}", newSnapshot);
+        return newSnapshot;
+    }
+
+    private RouteSnapshot createSnapshot() {
         if (CollectionUtils.isEmpty(routeProperties.getRules())) {
             LOGGER.info("route rules is empty!");
-            return false;
+            return RouteSnapshot.EMPTY;
         }
-        // 开始匹配是否生效在本实例上，按照先后顺序
+        FormulaRouteProperty matched = null;
+        List<RouteSnapshot> requestRoutes = new ArrayList<>();
+        // 按照先后顺序匹配, 来源标签中的环境变量标签在这里匹配, 请求头标签在请求时匹配
         for (FormulaRouteProperty formulaRouteProperty : routeProperties.getRules()) {
-            boolean matched = true;
-            List<Tag> tags = formulaRouteProperty.getSource().getTags();
-            for (Tag tag : tags) {
-                // 获取tag在环境变量中的值
-                String envValue = System.getenv(tag.getKey());
-                if (!isMatch(tag.getOp(), tag.getValue(), envValue)) {
-                    matched = false;
-                    break;
-                }
+            if (formulaRouteProperty.getSource() == null
+                    || CollectionUtils.isEmpty(formulaRouteProperty.getSource().getTags())) {
+                LOGGER.warn("source tags of route rule {} is empty, skipped.",
+                        formulaRouteProperty.getRoutingRuleId());
+                continue;
+            }
+            List<Tag> headerTags = new ArrayList<>();
+            if (!isInstanceMatched(formulaRouteProperty, headerTags)) {
+                continue;
+            }
+            if (headerTags.isEmpty()) {
+                // 找到匹配的路由规则, 之后的规则不会生效
+                LOGGER.info("find matched route: {}", formulaRouteProperty);
+                matched = formulaRouteProperty;
+                break;
+            }
+            LOGGER.info("find matched request route: {}", formulaRouteProperty);
+            RouteSnapshot requestRoute = createRoute(formulaRouteProperty, headerTags);
+            if (requestRoute.isRoutable()) {
+                requestRoutes.add(requestRoute);
             }
+        }
+        if (matched == null && requestRoutes.isEmpty()) {
+            return RouteSnapshot.EMPTY;
+        }
+        RouteSnapshot route = matched == null ? RouteSnapshot.EMPTY : createRoute(matched, Collections.emptyList());
+        return new RouteSnapshot(route.getMatchedRoute(), route.getDestinations(),
+                Collections.emptyList(), Collections.unmodifiableList(requestRoutes), getHeaderNames());
+    }
+
+    private RouteSnapshot createRoute(FormulaRouteProperty route, List<Tag> headerTags) {
+        try {
+            // 路由对本实例生效时则检查路由是否合法
+            checkRoute(route);
+            AliasMethodSampler<RouteDestination> destinations = headerTags.isEmpty()
+                    ? createDestinations(route) : new AliasMethodSampler<>(getDestinationWeights(route));
+            return new RouteSnapshot(route, destinations, headerTags, Collections.emptyList(), Collections.emptySet());
+        } catch (RuntimeException e) {
+            LOGGER.error("route rule {} is illegal, instances will not be routed: {}",
+                    route.getRoutingRuleId(), e.getMessage());
+            return new RouteSnapshot(route, null);
+        }
+    }
 
-            if (matched) {
-                // 找到匹配的路由规则
-                this.matchedFormulaRouteProperty = formulaRouteProperty;
-                LOGGER.info("find matched route: {}" + matchedFormulaRouteProperty);
-                return true;
+    /**
+     * 来源标签中的环境变量标签是否都与本实例匹配, 请求头标签放入headerTags
+     * @param route
+     * @param headerTags
+     * @return
+     */
+    private boolean isInstanceMatched(FormulaRouteProperty route, List<Tag> headerTags) {
+        for (Tag tag : route.getSource().getTags()) {
+            if (TAG_TYPE_HEADER.equalsIgnoreCase(tag.getType())) {
+                headerTags.add(tag);
+                continue;
+            }
+            // 获取tag在环境变量中的值
+            String envValue = System.getenv(tag.getKey());
+            if (!isMatch(tag.getOp(), tag.getValue(), envValue)) {
+                return false;
             }
         }
-        return false;
+        return true;
+    }
 
+    /**
+     * 需要捕获并向下游传递的请求头, 包括配置的请求头和所有规则中的请求头标签
+     * 不只是本实例匹配的规则, 以便全链路上的下游服务按同样的请求头路由
+     */
+    private Set<String> getHeaderNames() {
+        Set<String> headerNames = new HashSet<>();
+        if (routeProperties.getContextHeaders() != null) {
+            for (String headerName : routeProperties.getContextHeaders()) {
+                headerNames.add(headerName.toLowerCase(Locale.ROOT));
+            }
+        }
+        for (FormulaRouteProperty formulaRouteProperty : routeProperties.getRules()) {
+            if (formulaRouteProperty.getSource() == null || formulaRouteProperty.getSource().getTags() == null) {
+                continue;
+            }
+            for (Tag tag : formulaRouteProperty.getSource().getTags()) {
+                if (TAG_TYPE_HEADER.equalsIgnoreCase(tag.getType())) {
+                    headerNames.add(tag.getKey().toLowerCase(Locale.ROOT));
+                }
+            }
+        }
+        return Collections.unmodifiableSet(headerNames);
     }
 
     /**
@@ -90,6 +186,10 @@ public class RouteMatcher {
      * @return
      */
     public boolean isMatch(String operator, List<String> value, String expectedValue) {
+        return isTagMatch(operator, value, expectedValue);
+    }
+
+    static boolean isTagMatch(String operator, List<String> value, String expectedValue) {
         if (TAG_EQUAL_OPERATOR.equalsIgnoreCase(operator)) {
             return value.contains(expectedValue);
         }
@@ -98,32 +198,46 @@ public class RouteMatcher {
 
     /**
      *  检查路由的规则是否满足合法
+     *  权重路由时权重不能为负且权重之和大于0, 不要求为100, 权重为0的目标不分配流量
      */
-    public void checkRoute() {
+    private void checkRoute(FormulaRouteProperty route) {
+        if (!DESTINATION_TYPE_WEIGHT.equalsIgnoreCase(route.getDestType())) {
+            throw new IllegalArgumentException("destination type is illegal: " + route.getDestType());
+        }
         int weight = 0;
-        // 权重路由时，需保证权重之和为100
-        if (DESTINATION_TYPE_WEIGHT.equalsIgnoreCase(this.matchedFormulaRouteProperty.getDestType())) {
-            for (DestinationWrapper destinationWrapper : this.matchedFormulaRouteProperty.getDestinations()) {
-                weight += destinationWrapper.getDestination().getWeight();
+        for (DestinationWrapper destinationWrapper : route.getDestinations()) {
+            if (destinationWrapper.getDestination().getWeight() < 0) {
+                throw new IllegalArgumentException("weight is illegal.");
             }
+            weight += destinationWrapper.getDestination().getWeight();
         }
-        if (weight != 100) {
+        if (weight <= 0) {
             throw new IllegalArgumentException("weight is illegal.");
         }
     }
 
-    public String getDestinationTagValue() {
-        List<Pair<String, Integer>> list = new ArrayList<>();
-        for (DestinationWrapper destinationWrapper : this.matchedFormulaRouteProperty.getDestinations()) {
-            int weight = destinationWrapper.getDestination().getWeight();
-
-            for (Tag tag : destinationWrapper.getDestination().getTags()) {
-                list.add(new ImmutablePair(tag.getValue().iterator().next(), weight));
-            }
+    /**
+     * 目标的权重表, 权重没有变化时复用当前快照的权重表
+     */
+    private AliasMethodSampler<RouteDestination> createDestinations(FormulaRouteProperty route) {
+        List<Pair<RouteDestination, Integer>> list = getDestinationWeights(route);
+        if (list.equals(destinationWeights) && snapshot != null && snapshot.getDestinations() != null) {
+            return snapshot.getDestinations();
         }
-        return new WeightRandom(list).random();
+        AliasMethodSampler<RouteDestination> destinations = new AliasMethodSampler<>(list);
+        destinationWeights = list;
+        return destinations;
     }
 
-
-
+    /**
+     * 每个目标的全部标签作为一个目标, 实例需要满足全部标签条件
+     */
+    private List<Pair<RouteDestination, Integer>> getDestinationWeights(FormulaRouteProperty route) {
+        List<Pair<RouteDestination, Integer>> list = new ArrayList<>();
+        for (DestinationWrapper destinationWrapper : route.getDestinations()) {
+            Destination destination = destinationWrapper.getDestination();
+            list.add(new ImmutablePair<>(RouteDestination.of(destination.getTags()), destination.getWeight()));
+        }
+        return list;
+    }
 }
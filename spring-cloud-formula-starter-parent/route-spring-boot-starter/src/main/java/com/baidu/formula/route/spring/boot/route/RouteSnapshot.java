@@ -0,0 +1,139 @@
+/*
+ * Copyright (c) 2019 Baidu, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baidu.formula.route.spring.boot.route;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+import com.baidu.formula.route.spring.boot.route.property.FormulaRouteProperty;
+import com.baidu.formula.route.spring.boot.route.property.Tag;
+
+/**
+ * 路由规则在本实例上的匹配结果
+ * 在配置变化时计算并整体替换, 请求时只读, 不可修改
+ */
+public final class RouteSnapshot {
+    // 没有匹配本实例的路由规则
+    public static final RouteSnapshot EMPTY = new RouteSnapshot(null, null);
+
+    // 匹配本实例的路由规则
+    private final FormulaRouteProperty matchedRoute;
+
+    // 目标的权重表, 规则不合法时为null
+    private final AliasMethodSampler<RouteDestination> destinations;
+
+    // 来源标签中的请求头标签, 只有按请求匹配的路由有
+    private final List<Tag> headerTags;
+
+    // 按请求匹配的路由, 按规则的先后顺序, 都不匹配时使用本实例匹配的路由
+    private final List<RouteSnapshot> requestRoutes;
+
+    // 需要捕获并向下游传递的请求头, 小写
+    private final Set<String> headerNames;
+
+    RouteSnapshot(FormulaRouteProperty matchedRoute, AliasMethodSampler<RouteDestination> destinations) {
+        this(matchedRoute, destinations, Collections.emptyList(), Collections.emptyList(), Collections.emptySet());
+    }
+
+    RouteSnapshot(FormulaRouteProperty matchedRoute, AliasMethodSampler<RouteDestination> destinations,
+                  List<Tag> headerTags, List<RouteSnapshot> requestRoutes, Set<String> headerNames) {
+        this.matchedRoute = matchedRoute;
+        this.destinations = destinations;
+        this.headerTags = headerTags;
+        this.requestRoutes = requestRoutes;
+        this.headerNames = headerNames;
+    }
+
+    /**
+     * 是否有路由规则匹配本实例
+     * @return
+     */
+    public boolean isMatched() {
+        return matchedRoute != null;
+    }
+
+    /**
+     * 是否需要路由, 即匹配的路由规则合法
+     * @return
+     */
+    public boolean isRoutable() {
+        return destinations != null;
+    }
+
+    public FormulaRouteProperty getMatchedRoute() {
+        return matchedRoute;
+    }
+
+    /**
+     * 基于权重选出一个目标
+     * @return
+     */
+    public RouteDestination chooseDestination() {
+        return destinations.sample();
+    }
+
+    public List<RouteSnapshot> getRequestRoutes() {
+        return requestRoutes;
+    }
+
+    public Set<String> getHeaderNames() {
+        return headerNames;
+    }
+
+    /**
+     * 按请求头选择路由, 第一个目标服务一致且请求头标签都满足的按请求匹配的路由生效
+     * @param serviceName 目标服务名
+     * @param headers     请求上下文中的请求头, key为小写
+     * @return 都不匹配时返回本身
+     */
+    public RouteSnapshot select(String serviceName, Map<String, String> headers) {
+        if (requestRoutes.isEmpty() || headers.isEmpty()) {
+            return this;
+        }
+        for (RouteSnapshot requestRoute : requestRoutes) {
+            if (requestRoute.isHeaderMatched(serviceName, headers)) {
+                return requestRoute;
+            }
+        }
+        return this;
+    }
+
+    private boolean isHeaderMatched(String serviceName, Map<String, String> headers) {
+        if (serviceName == null || !serviceName.equalsIgnoreCase(matchedRoute.getDestServiceName())) {
+            return false;
+        }
+        for (Tag tag : headerTags) {
+            String value = headers.get(tag.getKey().toLowerCase(Locale.ROOT));
+            if (!RouteMatcher.isTagMatch(tag.getOp(), tag.getValue(), value)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    AliasMethodSampler<RouteDestination> getDestinations() {
+        return destinations;
+    }
+
+    @Override
+    public String toString() {
+        return "RouteSnapshot{matchedRoute=" + matchedRoute + ", routable=" + isRoutable()
+                + ", requestRoutes=" + requestRoutes + "}";
+    }
+}
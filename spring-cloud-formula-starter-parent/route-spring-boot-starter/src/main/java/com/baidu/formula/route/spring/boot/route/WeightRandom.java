@@ -1,39 +0,0 @@
-/*
- * Copyright (c) 2019 Baidu, Inc. All Rights Reserved.
- *
- * Licensed under the Apache License, Version 2.0 (the "License");
- * you may not use this file except in compliance with the License.
- * You may obtain a copy of the License at
- *
- *     http://www.apache.org/licenses/LICENSE-2.0
- *
- * Unless required by applicable law or agreed to in writing, software
- * distributed under the License is distributed on an "AS IS" BASIS,
- * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
- * See the License for the specific language governing permissions and
- * limitations under the License.
- */
-package com.baidu.formula.route.spring.boot.route;
-
-import java.util.List;
-import java.util.SortedMap;
-import java.util.TreeMap;
-
-import org.apache.commons.lang3.tuple.Pair;
-
-public class WeightRandom<V extends Number> {
-    private TreeMap<Double, String> weightMap = new TreeMap<>();
-
-    public WeightRandom(List<Pair<String, V>> list) {
-        for (Pair<String, V> pair : list) {
-            double lastWeight = this.weightMap.size() == 0 ? 0 : this.weightMap.lastKey().doubleValue();//统一转为double
-            this.weightMap.put(pair.getValue().doubleValue() + lastWeight, pair.getKey());//权重累加
-        }
-    }
-
-    public String random() {
-        double randomWeight = this.weightMap.lastKey() * Math.random();
-        SortedMap<Double, String> tailMap = this.weightMap.tailMap(randomWeight, false);
-        return this.weightMap.get(tailMap.firstKey());
-    }
-}
@@ -0,0 +1,104 @@
+/*
+ * Copyright (c) 2019 Baidu, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baidu.formula.route.spring.boot.route.context;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+/**
+ * 请求级路由上下文
+ * 保存当前请求中参与路由的请求头, 按请求匹配路由规则并通过Feign和RestTemplate传递给下游服务.
+ * 上下文保存在线程中, 切换线程(如提交到线程池)时需要通过{@link #wrap(Runnable)}或{@link RouteContextTaskDecorator}传递.
+ */
+public final class RouteContext {
+    private static final ThreadLocal<Map<String, String>> HEADERS = new ThreadLocal<>();
+
+    private RouteContext() {
+    }
+
+    /**
+     * 当前线程的请求头, key为小写
+     * @return 没有上下文时返回空map
+     */
+    public static Map<String, String> getHeaders() {
+        Map<String, String> headers = HEADERS.get();
+        return headers == null ? Collections.emptyMap() : headers;
+    }
+
+    public static String getHeader(String name) {
+        return getHeaders().get(name.toLowerCase(Locale.ROOT));
+    }
+
+    /**
+     * 设置当前线程的请求头, 为空时清除上下文
+     * @param headers
+     */
+    public static void setHeaders(Map<String, String> headers) {
+        if (headers == null || headers.isEmpty()) {
+            HEADERS.remove();
+            return;
+        }
+        Map<String, String> copy = new HashMap<>(headers.size() * 2);
+        headers.forEach((name, value) -> copy.put(name.toLowerCase(Locale.ROOT), value));
+        HEADERS.set(Collections.unmodifiableMap(copy));
+    }
+
+    public static void clear() {
+        HEADERS.remove();
+    }
+
+    /**
+     * 在执行线程中恢复提交时的上下文, 执行后还原执行线程原来的上下文
+     * @param runnable
+     * @return
+     */
+    public static Runnable wrap(Runnable runnable) {
+        Map<String, String> captured = HEADERS.get();
+        return () -> {
+            Map<String, String> previous = HEADERS.get();
+            set(captured);
+            try {
+                runnable.run();
+            } finally {
+                set(previous);
+            }
+        };
+    }
+
+    public static <V> Callable<V> wrap(Callable<V> callable) {
+        Map<String, String> captured = HEADERS.get();
+        return () -> {
+            Map<String, String> previous = HEADERS.get();
+            set(captured);
+            try {
+                return callable.call();
+            } finally {
+                set(previous);
+            }
+        };
+    }
+
+    private static void set(Map<String, String> headers) {
+        if (headers == null) {
+            HEADERS.remove();
+        } else {
+            HEADERS.set(headers);
+        }
+    }
+}
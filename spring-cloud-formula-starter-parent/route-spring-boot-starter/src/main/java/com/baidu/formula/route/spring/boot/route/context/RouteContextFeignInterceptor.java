@@ -0,0 +1,43 @@
+/*
+ * Copyright (c) 2019 Baidu, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baidu.formula.route.spring.boot.route.context;
+
+import feign.RequestInterceptor;
+import feign.RequestTemplate;
+
+/**
+ * 将路由上下文中的请求头传递给Feign调用的下游服务, 已设置的请求头不覆盖
+ */
+public class RouteContextFeignInterceptor implements RequestInterceptor {
+
+    @Override
+    public void apply(RequestTemplate template) {
+        RouteContext.getHeaders().forEach((name, value) -> {
+            if (!containsHeader(template, name)) {
+                template.header(name, value);
+            }
+        });
+    }
+
+    private static boolean containsHeader(RequestTemplate template, String name) {
+        for (String headerName : template.headers().keySet()) {
+            if (headerName.equalsIgnoreCase(name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
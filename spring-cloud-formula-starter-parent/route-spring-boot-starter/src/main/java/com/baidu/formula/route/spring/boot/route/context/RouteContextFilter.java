@@ -0,0 +1,65 @@
+/*
+ * Copyright (c) 2019 Baidu, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baidu.formula.route.spring.boot.route.context;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import com.baidu.formula.route.spring.boot.route.RouteMatcher;
+
+/**
+ * 从请求中捕获参与路由的请求头, 放入{@link RouteContext}, 请求结束后清除
+ */
+public class RouteContextFilter extends OncePerRequestFilter {
+
+    private final RouteMatcher routeMatcher;
+
+    public RouteContextFilter(RouteMatcher routeMatcher) {
+        this.routeMatcher = routeMatcher;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        Set<String> headerNames = routeMatcher.getSnapshot().getHeaderNames();
+        if (headerNames.isEmpty()) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+        Map<String, String> headers = new HashMap<>();
+        for (String headerName : headerNames) {
+            String value = request.getHeader(headerName);
+            if (value != null) {
+                headers.put(headerName, value);
+            }
+        }
+        RouteContext.setHeaders(headers);
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            RouteContext.clear();
+        }
+    }
+}
@@ -20,7 +20,9 @@ public enum  IRuleInfo {
     RANDOM("RANDOM", "com.netflix.loadbalancer.RandomRule", "随机"),
     WEIGHT("WEIGHT", "com.netflix.loadbalancer.WeightedResponseTimeRule", "响应时间权重"),
     ROUDROBIN("ROUDROBIN", "com.netflix.loadbalancer.RoundRobinRule", "简单轮训"),
-    ZONEAVOIDANCERULE("ZONEAVOIDANCERULE", "com.netflix.loadbalancer.ZoneAvoidanceRule", "加权轮训");
+    ZONEAVOIDANCERULE("ZONEAVOIDANCERULE", "com.netflix.loadbalancer.ZoneAvoidanceRule", "加权轮训"),
+    WEIGHTED_ROUTE("WEIGHTED_ROUTE", WeightedRouteRule.class.getName(), "按请求权重路由后轮训"),
+    P2C("P2C", PowerOfTwoChoicesRule.class.getName(), "两次随机选择负载较低的实例");
 
     private String ruleName;
     private String rulePath;
@@ -32,7 +34,15 @@ public enum  IRuleInfo {
         this.des = des;
     }
 
+    /**
+     * 按名称获取负载均衡策略的类名
+     * @param ruleName
+     * @return 未配置时返回null, 沿用ribbon client自身的策略, 在获取实例列表时路由
+     */
     public static String getRulePath (String ruleName) {
+        if (ruleName == null || ruleName.trim().isEmpty()) {
+            return null;
+        }
         for (IRuleInfo iRuleInfo : IRuleInfo.values()) {
             if (iRuleInfo.ruleName.equalsIgnoreCase(ruleName)) {
                 return iRuleInfo.rulePath;
@@ -0,0 +1,179 @@
+/*
+ * Copyright (c) 2019 Baidu, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baidu.formula.route.spring.boot.route.irule;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.springframework.util.CollectionUtils;
+
+import com.netflix.client.config.IClientConfig;
+import com.netflix.loadbalancer.AbstractLoadBalancer;
+import com.netflix.loadbalancer.AbstractLoadBalancerRule;
+import com.netflix.loadbalancer.ILoadBalancer;
+import com.netflix.loadbalancer.LoadBalancerStats;
+import com.netflix.loadbalancer.Server;
+import com.netflix.loadbalancer.ServerStats;
+
+/**
+ * 两次随机选择负载较低的实例(power of two choices)
+ * 随机选出两个可用实例, 选择(进行中的请求数 + 1) * 延迟EWMA较小的一个, 降低异构集群中慢实例造成的长尾延迟.
+ * 进行中的请求数和响应时间来自ribbon为每次调用记录的实例统计, 每个实例的EWMA由统计的增量计算,
+ * 无锁更新; 延迟升高时EWMA立即跟随(peak EWMA), 降低时按衰减时间平滑. 没有后台线程.
+ */
+public class PowerOfTwoChoicesRule extends AbstractLoadBalancerRule {
+    public static final Duration DEFAULT_DECAY_TIME = Duration.ofSeconds(10);
+
+    // 没有延迟数据的实例按该延迟(ms)计算, 保证进行中的请求数仍然生效
+    private static final double MIN_LATENCY = 1;
+
+    private final long decayNanos;
+
+    private final Map<Server, ServerLoad> loads = new ConcurrentHashMap<>();
+
+    public PowerOfTwoChoicesRule() {
+        this(DEFAULT_DECAY_TIME);
+    }
+
+    public PowerOfTwoChoicesRule(Duration decayTime) {
+        this.decayNanos = decayTime.toNanos();
+    }
+
+    @Override
+    public void initWithNiwsConfig(IClientConfig clientConfig) {
+    }
+
+    @Override
+    public Server choose(Object key) {
+        ILoadBalancer lb = getLoadBalancer();
+        if (lb == null) {
+            return null;
+        }
+        List<Server> servers = lb.getReachableServers();
+        if (CollectionUtils.isEmpty(servers)) {
+            return null;
+        }
+        int size = servers.size();
+        if (size == 1) {
+            return servers.get(0);
+        }
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int first = random.nextInt(size);
+        // 第二个实例与第一个不同
+        int second = random.nextInt(size - 1);
+        if (second >= first) {
+            second++;
+        }
+        Server a = servers.get(first);
+        Server b = servers.get(second);
+        if (!(lb instanceof AbstractLoadBalancer)) {
+            return a;
+        }
+        LoadBalancerStats stats = ((AbstractLoadBalancer) lb).getLoadBalancerStats();
+        if (stats == null) {
+            return a;
+        }
+        if (loads.size() > 2 * size) {
+            // 清理已下线实例的统计
+            loads.keySet().retainAll(servers);
+        }
+        long now = System.nanoTime();
+        return getCost(a, stats, now) <= getCost(b, stats, now) ? a : b;
+    }
+
+    /**
+     * 实例的负载: (进行中的请求数 + 1) * 延迟EWMA
+     * @param server
+     * @param stats
+     * @param now
+     * @return
+     */
+    double getCost(Server server, LoadBalancerStats stats, long now) {
+        ServerStats serverStats = stats.getSingleServerStat(server);
+        double latency = loads.computeIfAbsent(server, s -> new ServerLoad()).update(serverStats, now, decayNanos);
+        int active = serverStats.getActiveRequestsCount();
+        return (active + 1) * Math.max(latency, MIN_LATENCY);
+    }
+
+    /**
+     * 实例的延迟EWMA(ms), 没有数据时返回0
+     * @param server
+     * @return
+     */
+    public double getLatency(Server server) {
+        ServerLoad load = loads.get(server);
+        return load == null ? 0 : load.state.get().ewma;
+    }
+
+    /**
+     * 单个实例的延迟EWMA, 状态不可修改, 通过CAS整体替换
+     */
+    private static class ServerLoad {
+        private final AtomicReference<State> state = new AtomicReference<>(State.EMPTY);
+
+        double update(ServerStats serverStats, long now, long decayNanos) {
+            State current = state.get();
+            long count = serverStats.getTotalRequestsCount();
+            if (count == current.count) {
+                return current.ewma;
+            }
+            double sum = serverStats.getResponseTimeAvg() * count;
+            double ewma;
+            if (count < current.count || current.count == 0) {
+                // 第一次采样或统计被重置
+                ewma = count == 0 ? 0 : sum / count;
+            } else {
+                double latency = Math.max(0, (sum - current.sum) / (count - current.count));
+                if (latency > current.ewma) {
+                    ewma = latency;
+                } else {
+                    double alpha = 1 - Math.exp(-(double) (now - current.timestamp) / decayNanos);
+                    ewma = current.ewma + alpha * (latency - current.ewma);
+                }
+            }
+            // 并发更新时只保留一个结果, 下次采样会补上另一个的增量
+            State next = new State(count, sum, ewma, now);
+            return state.compareAndSet(current, next) ? ewma : state.get().ewma;
+        }
+    }
+
+    private static class State {
+        private static final State EMPTY = new State(0, 0, 0, 0);
+
+        // 采样时ribbon统计的请求数
+        private final long count;
+
+        // 采样时ribbon统计的响应时间之和(ms)
+        private final double sum;
+
+        // 延迟EWMA(ms)
+        private final double ewma;
+
+        // 采样时间
+        private final long timestamp;
+
+        State(long count, double sum, double ewma, long timestamp) {
+            this.count = count;
+            this.sum = sum;
+            this.ewma = ewma;
+            this.timestamp = timestamp;
+        }
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright (c) 2019 Baidu, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baidu.formula.route.spring.boot.route.irule;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.util.CollectionUtils;
+
+import com.baidu.formula.route.spring.boot.route.RouteDestination;
+import com.baidu.formula.route.spring.boot.route.RouteSnapshot;
+import com.baidu.formula.route.spring.boot.route.loadbalancer.CustomIloadBalancer;
+import com.netflix.client.config.IClientConfig;
+import com.netflix.loadbalancer.AbstractLoadBalancerRule;
+import com.netflix.loadbalancer.ILoadBalancer;
+import com.netflix.loadbalancer.RoundRobinRule;
+import com.netflix.loadbalancer.Server;
+
+/**
+ * 按请求权重路由
+ * 每次选择实例时按路由权重选出目标, 再在满足目标标签条件的实例中轮询,
+ * 相比获取实例列表时路由, 流量比例不受ribbon获取实例列表频率的影响.
+ * 同时记录每个目标实际分配的请求数, 用于核对灰度比例.
+ * 多可用区时{@link CustomIloadBalancer}直接使用本规则选择实例, 不经过每个可用区的负载均衡器;
+ * 负载均衡器不是{@link CustomIloadBalancer}时退化为轮询.
+ */
+public class WeightedRouteRule extends AbstractLoadBalancerRule {
+    private final AtomicInteger position = new AtomicInteger();
+
+    private final RoundRobinRule fallbackRule = new RoundRobinRule();
+
+    // 每个目标分配的请求数, key为目标的名称
+    private final Map<String, LongAdder> chosenCounts = new ConcurrentHashMap<>();
+
+    @Override
+    public void initWithNiwsConfig(IClientConfig clientConfig) {
+    }
+
+    @Override
+    public void setLoadBalancer(ILoadBalancer lb) {
+        super.setLoadBalancer(lb);
+        fallbackRule.setLoadBalancer(lb);
+    }
+
+    @Override
+    public Server choose(Object key) {
+        ILoadBalancer lb = getLoadBalancer();
+        if (!(lb instanceof CustomIloadBalancer)) {
+            return fallbackRule.choose(key);
+        }
+        CustomIloadBalancer<?> loadBalancer = (CustomIloadBalancer<?>) lb;
+        RouteSnapshot snapshot = loadBalancer.getRouteSnapshot();
+        if (!snapshot.isRoutable()) {
+            return choose(loadBalancer.getReachableServers());
+        }
+        RouteDestination destination = snapshot.chooseDestination();
+        Server server = choose(loadBalancer.getRoutedReachableServers(destination));
+        if (server != null) {
+            chosenCounts.computeIfAbsent(destination.getName(), name -> new LongAdder()).increment();
+        }
+        return server;
+    }
+
+    private Server choose(List<Server> servers) {
+        if (CollectionUtils.isEmpty(servers)) {
+            return null;
+        }
+        int index = (position.getAndIncrement() & Integer.MAX_VALUE) % servers.size();
+        return servers.get(index);
+    }
+
+    /**
+     * 每个目标分配的请求数, key为目标的名称, 如EM_PLATFORM=canary
+     * @return
+     */
+    public Map<String, Long> getChosenCounts() {
+        Map<String, Long> counts = new HashMap<>();
+        chosenCounts.forEach((name, count) -> counts.put(name, count.sum()));
+        return counts;
+    }
+
+    /**
+     * 每个目标实际分配的请求比例, 之和为1
+     * @return 没有请求时返回空map
+     */
+    public Map<String, Double> getObservedRatios() {
+        Map<String, Long> counts = getChosenCounts();
+        long total = 0;
+        for (long count : counts.values()) {
+            total += count;
+        }
+        Map<String, Double> ratios = new HashMap<>();
+        if (total > 0) {
+            for (Map.Entry<String, Long> entry : counts.entrySet()) {
+                ratios.put(entry.getKey(), (double) entry.getValue() / total);
+            }
+        }
+        return ratios;
+    }
+
+    /**
+     * 清空统计, 如调整权重后重新核对比例
+     */
+    public void resetStatistics() {
+        chosenCounts.clear();
+    }
+}
@@ -19,30 +19,42 @@ import static com.baidu.formula.route.spring.boot.config.RouteConstants.CONFIG_N
 import static com.baidu.formula.route.spring.boot.config.RouteConstants.CONFIG_RULE_CLASS;
 import static com.baidu.formula.route.spring.boot.config.RouteConstants.ROUTE_PROPERTY_SOURCE;
 
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.BeanUtils;
 import org.springframework.beans.BeansException;
 import org.springframework.cloud.context.environment.EnvironmentChangeEvent;
 import org.springframework.cloud.netflix.ribbon.SpringClientFactory;
 import org.springframework.context.ApplicationContext;
 import org.springframework.context.ApplicationContextAware;
 import org.springframework.context.ApplicationListener;
-import org.springframework.context.event.EventListener;
 import org.springframework.core.env.ConfigurableEnvironment;
+import org.springframework.core.env.MutablePropertySources;
+import org.springframework.util.ClassUtils;
 
 import com.baidu.formula.route.spring.boot.route.RouteMatcher;
+import com.baidu.formula.route.spring.boot.route.RouteSnapshot;
 import com.baidu.formula.route.spring.boot.route.env.RoutePropertySource;
 import com.baidu.formula.route.spring.boot.route.irule.IRuleInfo;
 import com.baidu.formula.route.spring.boot.route.property.FormulaRouteProperty;
 import com.baidu.formula.route.spring.boot.route.property.RouteProperties;
 import com.google.common.collect.Maps;
+import com.netflix.client.IClientConfigAware;
+import com.netflix.loadbalancer.BaseLoadBalancer;
+import com.netflix.loadbalancer.ILoadBalancer;
 import com.netflix.loadbalancer.IRule;
 import com.netflix.loadbalancer.WeightedResponseTimeRule;
+import com.netflix.loadbalancer.ZoneAvoidanceRule;
 
 /**
  * 路由规则监听器
+ * 路由规则变化时重新匹配, 只替换受影响的目标服务的负载均衡策略, 不销毁其他ribbon client
  */
 public class RouteListener implements ApplicationListener<EnvironmentChangeEvent>, ApplicationContextAware {
     private static final Logger LOGGER = LoggerFactory.getLogger(RouteListener.class);
@@ -57,6 +69,9 @@ public class RouteListener implements ApplicationListener<EnvironmentChangeEvent
 
     private RouteMatcher routeMatcher;
 
+    // 当前路由规则配置的负载均衡策略, 目标服务 -> IRule类名
+    private volatile Map<String, String> ruleOverrides = Collections.emptyMap();
+
     public RouteListener(ApplicationContext applicationContext, SpringClientFactory springClientFactory,
                          RouteProperties routeProperties, ConfigurableEnvironment configurableEnvironment,
                          RouteMatcher routeMatcher) {
@@ -77,40 +92,137 @@ public class RouteListener implements ApplicationListener<EnvironmentChangeEvent
      * @param event
      */
     @Override
-    @EventListener(EnvironmentChangeEvent.class)
-    public void onApplicationEvent(EnvironmentChangeEvent event) {
+    public synchronized void onApplicationEvent(EnvironmentChangeEvent event) {
+        if (!isRouteChanged(event.getKeys())) {
+            LOGGER.debug("environment change does not touch route rules.");
+            return;
+        }
         try {
-            LOGGER.info("environment change.");
-            Map<String, Object> propertySource = Maps.newHashMap();
-            if (!routeMatcher.match()) {
-                LOGGER.info("this route rules does not match this instance.");
-                return;
+            LOGGER.info("route rules change.");
+            // 重新匹配并发布路由快照, 请求时不再匹配
+            RouteSnapshot snapshot = routeMatcher.refresh();
+            Map<String, String> overrides = Maps.newHashMap();
+            // 按请求匹配的路由在本实例匹配的路由之前, 同一目标服务以先匹配的规则为准
+            for (RouteSnapshot requestRoute : snapshot.getRequestRoutes()) {
+                putRule(overrides, requestRoute.getMatchedRoute());
             }
-            // 多条路由规则已先后顺序进行匹配
-            FormulaRouteProperty formulaRouteProperty = routeMatcher.getMatchedFormulaRouteProperty();
-            // 获取新的负载均衡策略
-            String iRuleName = formulaRouteProperty.getLoadbalance();
-            String destServiceName = formulaRouteProperty.getDestServiceName();
-            IRule oldRule = springClientFactory.getInstance(destServiceName, IRule.class);
-            if (oldRule instanceof WeightedResponseTimeRule) {
-                // 关闭线程池
-                ((WeightedResponseTimeRule) oldRule).shutdown();
+            if (snapshot.isMatched()) {
+                // 多条路由规则已先后顺序进行匹配
+                putRule(overrides, snapshot.getMatchedRoute());
+            } else if (snapshot.getRequestRoutes().isEmpty()) {
+                LOGGER.info("this route rules does not match this instance.");
             }
-            // 清理ribbon 中 所有的client的负载均衡器配置，更改环境变量值，等待下次重新加载client的负载均衡配置
-            springClientFactory.destroy();
-
-            // 按照ribbon的规范，配置IRule
-            String configClientRule = destServiceName + "." + CONFIG_NAMESPACE + "." + CONFIG_RULE_CLASS;
 
-            propertySource.put(configClientRule, IRuleInfo.getRulePath(iRuleName));
-            // 加入至环境变量中
-            this.configurableEnvironment.getPropertySources().addFirst(new RoutePropertySource(ROUTE_PROPERTY_SOURCE,
-                    propertySource));
+            Map<String, String> previous = ruleOverrides;
+            replacePropertySource(overrides);
+            ruleOverrides = overrides;
+
+            // 只替换负载均衡策略变化的服务
+            Set<String> services = new HashSet<>(previous.keySet());
+            services.addAll(overrides.keySet());
+            for (String destServiceName : services) {
+                if (!Objects.equals(previous.get(destServiceName), overrides.get(destServiceName))) {
+                    replaceRule(destServiceName);
+                }
+            }
         } catch (Exception e) {
             LOGGER.error("refresh route rule exception: {}", e);
         }
+    }
 
+    /**
+     * 获取新的负载均衡策略, 未配置负载均衡策略时值为null, 不覆盖client自身的策略
+     */
+    private void putRule(Map<String, String> overrides, FormulaRouteProperty formulaRouteProperty) {
+        if (!overrides.containsKey(formulaRouteProperty.getDestServiceName())) {
+            overrides.put(formulaRouteProperty.getDestServiceName(),
+                    IRuleInfo.getRulePath(formulaRouteProperty.getLoadbalance()));
+        }
     }
 
-}
+    private boolean isRouteChanged(Set<String> keys) {
+        if (keys == null) {
+            return false;
+        }
+        for (String key : keys) {
+            if (key.startsWith(RouteProperties.PREFIX + ".")) {
+                return true;
+            }
+        }
+        return false;
+    }
 
+    /**
+     * 按照ribbon的规范配置IRule, 替换而不是叠加路由的配置源, 未创建的client创建时读取新配置
+     * @param overrides
+     */
+    private void replacePropertySource(Map<String, String> overrides) {
+        Map<String, Object> propertySource = Maps.newHashMap();
+        overrides.forEach((destServiceName, rulePath) -> {
+            if (rulePath != null) {
+                propertySource.put(getRuleKey(destServiceName), rulePath);
+            }
+        });
+        RoutePropertySource routePropertySource = new RoutePropertySource(ROUTE_PROPERTY_SOURCE, propertySource);
+        MutablePropertySources propertySources = this.configurableEnvironment.getPropertySources();
+        if (propertySources.contains(ROUTE_PROPERTY_SOURCE)) {
+            propertySources.replace(ROUTE_PROPERTY_SOURCE, routePropertySource);
+        } else {
+            propertySources.addFirst(routePropertySource);
+        }
+    }
+
+    /**
+     * 替换已创建的client的负载均衡策略, 保留实例列表和连接
+     * @param destServiceName
+     */
+    private void replaceRule(String destServiceName) throws ClassNotFoundException {
+        if (!springClientFactory.getContextNames().contains(destServiceName)) {
+            return;
+        }
+        ILoadBalancer loadBalancer = springClientFactory.getLoadBalancer(destServiceName);
+        if (!(loadBalancer instanceof BaseLoadBalancer)) {
+            LOGGER.warn("load balancer of {} does not support changing rule: {}", destServiceName, loadBalancer);
+            return;
+        }
+        IRule clientRule = springClientFactory.getInstance(destServiceName, IRule.class);
+        IRule newRule = createRule(destServiceName, clientRule);
+        BaseLoadBalancer baseLoadBalancer = (BaseLoadBalancer) loadBalancer;
+        IRule oldRule = baseLoadBalancer.getRule();
+        baseLoadBalancer.setRule(newRule);
+        if (oldRule instanceof WeightedResponseTimeRule && oldRule != clientRule) {
+            // 关闭线程池, client自身的策略由ribbon client的容器管理, 恢复时仍需使用
+            ((WeightedResponseTimeRule) oldRule).shutdown();
+        }
+        LOGGER.info("rule of {} is changed from {} to {}.", destServiceName,
+                oldRule == null ? null : oldRule.getClass().getName(), newRule.getClass().getName());
+    }
+
+    /**
+     * 按当前环境中的配置创建IRule, 没有配置时恢复client自身的策略(ribbon client容器中的IRule)
+     * @param destServiceName
+     * @param clientRule
+     * @return
+     */
+    private IRule createRule(String destServiceName, IRule clientRule) throws ClassNotFoundException {
+        String rulePath = configurableEnvironment.getProperty(getRuleKey(destServiceName));
+        if (rulePath == null && clientRule != null) {
+            return clientRule;
+        }
+        IRule rule;
+        if (rulePath == null) {
+            rule = new ZoneAvoidanceRule();
+        } else {
+            Class<?> ruleClass = ClassUtils.forName(rulePath, applicationContext.getClassLoader());
+            rule = (IRule) BeanUtils.instantiateClass(ruleClass);
+        }
+        if (rule instanceof IClientConfigAware) {
+            ((IClientConfigAware) rule).initWithNiwsConfig(springClientFactory.getClientConfig(destServiceName));
+        }
+        return rule;
+    }
+
+    private static String getRuleKey(String destServiceName) {
+        return destServiceName + "." + CONFIG_NAMESPACE + "." + CONFIG_RULE_CLASS;
+    }
+}
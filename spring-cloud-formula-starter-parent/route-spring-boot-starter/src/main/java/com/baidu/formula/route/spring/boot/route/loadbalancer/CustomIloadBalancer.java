@@ -18,21 +18,22 @@ package com.baidu.formula.route.spring.boot.route.loadbalancer;
 import static com.baidu.formula.route.spring.boot.config.RouteConstants.FORMULA_DISCOVERY_CUSTOM_PLATFORM;
 import static com.baidu.formula.route.spring.boot.config.RouteConstants.TAG_PLATFORM;
 
-import java.util.Iterator;
+import java.util.Collections;
 import java.util.List;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.util.CollectionUtils;
-import org.springframework.util.StringUtils;
 
-import com.baidu.formula.route.spring.boot.model.discovery.FormulaDiscoveryServer;
+import com.baidu.formula.route.spring.boot.route.RouteDestination;
 import com.baidu.formula.route.spring.boot.route.RouteMatcher;
-import com.fasterxml.jackson.databind.DeserializationFeature;
-import com.fasterxml.jackson.databind.JavaType;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.google.common.collect.Lists;
+import com.baidu.formula.route.spring.boot.route.RouteSnapshot;
+import com.baidu.formula.route.spring.boot.route.context.RouteContext;
+import com.baidu.formula.route.spring.boot.route.irule.WeightedRouteRule;
+import com.baidu.formula.route.spring.boot.route.metadata.DefaultServerMetadataExtractor;
+import com.baidu.formula.route.spring.boot.route.metadata.ServerMetadataExtractor;
+import com.baidu.formula.route.spring.boot.route.property.RouteProperties;
 import com.netflix.client.config.IClientConfig;
 import com.netflix.loadbalancer.IPing;
 import com.netflix.loadbalancer.IRule;
@@ -48,56 +49,165 @@ public class CustomIloadBalancer<T extends Server> extends ZoneAwareLoadBalancer
     @Autowired
     private RouteMatcher routeMatcher;
 
-    private static ObjectMapper objectMapper = new ObjectMapper();
+    @Autowired
+    private RouteProperties routeProperties;
 
-    static {
-        objectMapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
-    }
+    @Autowired(required = false)
+    private ServerMetadataExtractor metadataExtractor = new DefaultServerMetadataExtractor();
+
+    @Autowired(required = false)
+    private FleetPosition fleetPosition;
+
+    // 异常实例摘除, 父类构造时为null
+    private final OutlierDetector outlierDetector;
+
+    // 路由结果缓存, 父类构造时为null
+    private final RoutedListCache routedListCache;
 
+    // 确定性子集, 父类构造时为null
+    private final DeterministicSubsetter subsetter;
 
     public CustomIloadBalancer(IClientConfig config, IRule rule, IPing ping, ServerList serverList,
                                ServerListFilter serverListFilter, ServerListUpdater serverListUpdater) {
         super(config, rule, ping, serverList,
                 serverListFilter, serverListUpdater);
+        this.outlierDetector = new OutlierDetector(getName());
+        this.routedListCache = new RoutedListCache();
+        this.subsetter = new DeterministicSubsetter();
     }
 
+    /**
+     * 按请求路由时由本负载均衡器的规则直接选择实例
+     * 多可用区时父类为每个可用区克隆规则并使用普通的负载均衡器, 克隆的规则无法路由, 因此不再按可用区选择
+     * @param key
+     * @return
+     */
+    @Override
+    public Server chooseServer(Object key) {
+        if (!isRoutedByRule()) {
+            return super.chooseServer(key);
+        }
+        try {
+            return getRule().choose(key);
+        } catch (Exception e) {
+            LOGGER.warn("LoadBalancer [{}]: Error choosing server for key {}", getName(), key, e);
+            return null;
+        }
+    }
+
+    /**
+     * 直接使用父类的列表而不是其不可修改的视图, 保证列表未变化时路由结果可以命中缓存
+     * 先路由和取子集再摘除异常实例, 摘除结果变化时路由和子集的结果仍可以命中缓存
+     * 按请求路由时由{@link WeightedRouteRule}路由, 这里不再路由
+     */
     @Override
     public List<Server> getAllServers() {
-        List<Server> allServerList =  super.getAllServers();
-        return route(allServerList);
+        if (isRoutedByRule()) {
+            return Collections.unmodifiableList(subset(allServerList));
+        }
+        return Collections.unmodifiableList(subset(route(allServerList)));
     }
 
     @Override
     public List<Server> getReachableServers() {
-        List<Server> upServerList = super.getReachableServers();
-        return route(upServerList);
+        if (isRoutedByRule()) {
+            return Collections.unmodifiableList(eject(subset(upServerList)));
+        }
+        return Collections.unmodifiableList(eject(subset(route(upServerList))));
+    }
+
+    /**
+     * 按指定的目标路由可用实例, 供按请求路由的规则使用
+     * @param destination
+     * @return
+     */
+    public List<Server> getRoutedReachableServers(RouteDestination destination) {
+        List<Server> list = upServerList;
+        if (CollectionUtils.isEmpty(list)) {
+            return list;
+        }
+        return eject(subset(getRoutedList(list, destination)));
+    }
+
+    /**
+     * 当前请求的路由匹配结果, 按请求上下文中的请求头选择按请求匹配的路由
+     * @return
+     */
+    public RouteSnapshot getRouteSnapshot() {
+        if (routeMatcher == null) {
+            return RouteSnapshot.EMPTY;
+        }
+        return routeMatcher.getSnapshot().select(getName(), RouteContext.getHeaders());
+    }
+
+    private boolean isRoutedByRule() {
+        return getRule() instanceof WeightedRouteRule;
+    }
+
+    /**
+     * 摘除异常实例, 按服务的全部可用实例检测
+     * @param list
+     * @return
+     */
+    public List<Server> eject(List<Server> list) {
+        if (outlierDetector == null || routeProperties == null) {
+            return list;
+        }
+        return outlierDetector.filter(list, upServerList, getLoadBalancerStats(),
+                routeProperties.getOutlierDetection());
+    }
+
+    /**
+     * 记录客户端对实例的一次调用结果, 供异常实例摘除使用
+     * @param server 调用的实例, 按host:port区分
+     * @param success 5xx响应和异常为失败
+     */
+    public void recordOutcome(Server server, boolean success) {
+        if (outlierDetector == null || routeProperties == null
+                || !Boolean.TRUE.equals(routeProperties.getOutlierDetection().getEnabled())) {
+            return;
+        }
+        outlierDetector.recordOutcome(server, success);
+    }
+
+    public OutlierDetector getOutlierDetector() {
+        return outlierDetector;
+    }
+
+    /**
+     * 开启确定性子集时只保留本实例的子集
+     * @param list 路由后的实例列表
+     * @return
+     */
+    public List<Server> subset(List<Server> list) {
+        if (subsetter == null || fleetPosition == null || routeProperties == null
+                || !Boolean.TRUE.equals(routeProperties.getSubset().getEnabled()) || CollectionUtils.isEmpty(list)) {
+            return list;
+        }
+        return subsetter.subset(list, fleetPosition.get(), routeProperties.getSubset().getSize());
     }
 
     /**
      * 路由
+     * 结果按列表的引用缓存, 调用方不能原地修改传入的列表
      * @param list
      * @return
      */
     public List<Server> route(List<Server> list) {
         try {
             if (CollectionUtils.isEmpty(list)) {
-                LOGGER.info("instance list is empty.");
+                LOGGER.debug("instance list is empty.");
                 return list;
             }
-            LOGGER.info("route info : {}", routeMatcher.getRouteProperties());
-            if (!routeMatcher.match()) {
-                LOGGER.info("route does not match this instance.");
+            // 只读取配置变化时计算好的匹配结果
+            RouteSnapshot snapshot = getRouteSnapshot();
+            if (!snapshot.isRoutable()) {
                 return list;
             }
-            // 路由对本实例生效时则检查路由是否合法
-            routeMatcher.checkRoute();
-            // 基于权重选出一个标签对应值
-            String tagValue = routeMatcher.getDestinationTagValue();
-            // 标签对应的key
-            String tagKey = routeMatcher.getRouteProperties().getDestinationTagKey();
+            // 基于权重选出一个目标
+            RouteDestination destination = snapshot.chooseDestination();
             // 实现路由功能
-            List<Server> routedList = getRoutedList(list, tagKey, tagValue);
-            return routedList;
+            return getRoutedList(list, destination);
         } catch (Exception e) {
             LOGGER.error("route exception: {}", e);
             return list;
@@ -105,38 +215,35 @@ public class CustomIloadBalancer<T extends Server> extends ZoneAwareLoadBalancer
     }
 
 
-    public List<Server> getRoutedList(List<Server> list, String tagKey, String expectedTagValue)
-            throws Exception {
-        if (TAG_PLATFORM.equalsIgnoreCase(tagKey)) {
-            List<Server> resultServerList = Lists.newArrayList(list);
-
-            // 对接天路注册中心
-            JavaType javaType = getCollectionType(List.class, FormulaDiscoveryServer.class);
-            String value = objectMapper.writeValueAsString(resultServerList);
-            List<FormulaDiscoveryServer> serverList = objectMapper.readValue(value, javaType);
-
-            Iterator<Server> iterator1 = resultServerList.iterator();
-            Iterator<FormulaDiscoveryServer> iterator2 = serverList.iterator();
-            while(iterator2.hasNext()) {
-                FormulaDiscoveryServer formulaDiscoveryServer = iterator2.next();
-                iterator1.next();
-                // 平台（部署组信息）
-                String platformName = formulaDiscoveryServer.getInstance().getCustoms().get(
-                        FORMULA_DISCOVERY_CUSTOM_PLATFORM);
-                // 不符合条件的移出掉
-                if (StringUtils.isEmpty(platformName) || !platformName.equals(expectedTagValue)) {
-                    iterator1.remove();
-                }
-            }
-            // TODO 是否对路由后的实例列表为0时做特殊处理
-            return resultServerList;
+    /**
+     * 按目标路由, 同一列表按目标缓存结果, 未命中时通过列表的标签索引求交集
+     * @param list
+     * @param destination
+     * @return
+     */
+    public List<Server> getRoutedList(List<Server> list, RouteDestination destination) {
+        if (routedListCache == null) {
+            return new ServerTagIndex<>(list, this::getMetadata).filter(destination);
         }
-        return list;
+        return routedListCache.get(list, destination, () -> routedListCache
+                .getIndex(list, servers -> new ServerTagIndex<>(servers, this::getMetadata)).filter(destination));
     }
 
+    /**
+     * 读取实例的标签值, 部署组标签读取天路注册中心实例的部署组信息, 其他标签按同名的元数据读取
+     * @param server
+     * @param tagKey
+     * @return
+     */
+    private String getMetadata(Server server, String tagKey) {
+        if (TAG_PLATFORM.equalsIgnoreCase(tagKey)) {
+            return metadataExtractor.getMetadata(server, FORMULA_DISCOVERY_CUSTOM_PLATFORM);
+        }
+        return metadataExtractor.getMetadata(server, tagKey);
+    }
 
-    public JavaType getCollectionType(Class<?> collectionClass, Class<?>... elementClasses) {
-        return objectMapper.getTypeFactory().constructParametricType(collectionClass, elementClasses);
+    public RoutedListCache getRoutedListCache() {
+        return routedListCache;
     }
 }
 
@@ -0,0 +1,109 @@
+/*
+ * Copyright (c) 2019 Baidu, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baidu.formula.route.spring.boot.route.loadbalancer;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.baidu.formula.route.spring.boot.route.loadbalancer.FleetPosition.Position;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+import com.netflix.loadbalancer.Server;
+
+/**
+ * 确定性子集
+ * 所有客户端把实例按实例id的hash排成同样的环, 客户端从自己在环上的位置开始取连续的实例, 至少取size个,
+ * 并覆盖到下一个客户端的位置, 因此每个实例都有客户端调用. 实例增减时环上只插入或删除一个位置,
+ * 每个客户端的子集最多变化两个实例; 客户端的位置与客户端数量无关, 客户端增减时只有环上前一个客户端的子集变化.
+ * 结果按列表的引用缓存, 与{@link RoutedListCache}一样要求调用方不能原地修改传入的列表.
+ */
+public class DeterministicSubsetter {
+    private static final int MAX_SIZE = 32;
+
+    private static final HashFunction HASH = Hashing.murmur3_32();
+
+    private static final Comparator<Server> RING_ORDER = Comparator
+            .comparingInt((Server server) -> HASH.hashString(server.getId(), StandardCharsets.UTF_8).asInt())
+            .thenComparing(Server::getId);
+
+    private final Map<RoutedListCache.ListKey, Entry> cache = new ConcurrentHashMap<>();
+
+    /**
+     * 本客户端的子集
+     * @param servers  路由后的实例列表
+     * @param position 本客户端的位置
+     * @param size     子集大小
+     * @return 实例数不超过子集大小时返回原列表
+     */
+    public List<Server> subset(List<Server> servers, Position position, int size) {
+        int count = servers.size();
+        // 覆盖到下一个客户端起点所需的实例数
+        int covered = (int) Math.ceil((position.getOffset() + position.getSpan()) * count) - start(position, count);
+        int width = Math.max(size, covered);
+        if (width <= 0 || count <= width) {
+            return servers;
+        }
+        RoutedListCache.ListKey key = new RoutedListCache.ListKey(servers);
+        Entry entry = cache.get(key);
+        if (entry == null || entry.position != position || entry.width != width) {
+            entry = new Entry(position, width, compute(servers, position, width));
+            if (cache.size() >= MAX_SIZE) {
+                cache.clear();
+            }
+            cache.put(key, entry);
+        }
+        return entry.subset;
+    }
+
+    private static List<Server> compute(List<Server> servers, Position position, int width) {
+        List<Server> ring = new ArrayList<>(servers);
+        ring.sort(RING_ORDER);
+        int count = ring.size();
+        int start = start(position, count);
+        List<Server> subset = new ArrayList<>(width);
+        for (int i = 0; i < width; i++) {
+            subset.add(ring.get((start + i) % count));
+        }
+        return Collections.unmodifiableList(subset);
+    }
+
+    private static int start(Position position, int count) {
+        return Math.min((int) (position.getOffset() * count), count - 1);
+    }
+
+    public void clear() {
+        cache.clear();
+    }
+
+    private static class Entry {
+        private final Position position;
+
+        private final int width;
+
+        private final List<Server> subset;
+
+        Entry(Position position, int width, List<Server> subset) {
+            this.position = position;
+            this.width = width;
+            this.subset = subset;
+        }
+    }
+}
@@ -0,0 +1,190 @@
+/*
+ * Copyright (c) 2019 Baidu, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baidu.formula.route.spring.boot.route.loadbalancer;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.client.discovery.DiscoveryClient;
+import org.springframework.util.CollectionUtils;
+import org.springframework.util.StringUtils;
+
+import com.baidu.formula.route.spring.boot.route.property.RouteProperties;
+import com.baidu.formula.route.spring.boot.route.property.Subset;
+import com.google.common.hash.Hashing;
+
+/**
+ * 本实例在本服务所有实例中的位置, 用于确定性子集, 所有目标服务的负载均衡器共用
+ * 配置了序号和实例数时按序号/实例数确定位置; 否则按本实例标识(ip:port)的hash确定环上的位置,
+ * 该位置与本服务的实例数无关, 本服务扩缩容时不移动, 注册中心中的本服务实例只用于计算到下一个实例位置的距离;
+ * 与异常实例摘除一样在调用时按刷新间隔惰性刷新, 不需要后台线程.
+ */
+public class FleetPosition {
+    private static final Logger LOGGER = LoggerFactory.getLogger(FleetPosition.class);
+
+    private final RouteProperties routeProperties;
+
+    // 可以为null
+    private final DiscoveryClient discoveryClient;
+
+    private final String serviceName;
+
+    // 未配置clientId时的本实例标识
+    private final String defaultClientId;
+
+    private final AtomicLong nextRefresh = new AtomicLong(System.nanoTime());
+
+    private volatile Position position;
+
+    public FleetPosition(RouteProperties routeProperties, DiscoveryClient discoveryClient, String serviceName,
+                         String defaultClientId) {
+        this.routeProperties = routeProperties;
+        this.discoveryClient = discoveryClient;
+        this.serviceName = serviceName;
+        this.defaultClientId = defaultClientId;
+    }
+
+    /**
+     * 当前位置, 到达刷新间隔时重新计算, 位置不变时返回同一对象
+     * @return
+     */
+    public Position get() {
+        Subset subset = routeProperties.getSubset();
+        long now = System.nanoTime();
+        long next = nextRefresh.get();
+        Position current = position;
+        if (current == null || now - next >= 0
+                && nextRefresh.compareAndSet(next, now + subset.getRefreshInterval().toNanos())) {
+            Position refreshed = locate(subset);
+            if (!refreshed.equals(current)) {
+                LOGGER.info("position of this instance in fleet changed from {} to {}.", current, refreshed);
+                position = refreshed;
+                current = refreshed;
+            }
+        }
+        return current;
+    }
+
+    private Position locate(Subset subset) {
+        Integer clientIndex = subset.getClientIndex();
+        Integer clientCount = subset.getClientCount();
+        if (clientIndex != null && clientCount != null && clientCount > 0
+                && clientIndex >= 0 && clientIndex < clientCount) {
+            return new Position((double) clientIndex / clientCount, 1.0 / clientCount);
+        }
+        String clientId = StringUtils.isEmpty(subset.getClientId()) ? defaultClientId : subset.getClientId();
+        Position discovered = discover(clientId);
+        if (discovered != null) {
+            return discovered;
+        }
+        // 找不到本实例时不知道下一个实例的位置, 只取size个实例
+        return new Position(coordinate(clientId), 0);
+    }
+
+    /**
+     * 实例标识在环上的位置, 取值[0, 1)
+     */
+    static double coordinate(String clientId) {
+        long hash = Hashing.murmur3_32().hashString(clientId, StandardCharsets.UTF_8).asInt() & 0xFFFFFFFFL;
+        return (double) hash / (1L << 32);
+    }
+
+    private Position discover(String clientId) {
+        if (discoveryClient == null || StringUtils.isEmpty(serviceName)) {
+            return null;
+        }
+        try {
+            List<ServiceInstance> instances = discoveryClient.getInstances(serviceName);
+            if (CollectionUtils.isEmpty(instances)) {
+                return null;
+            }
+            double offset = coordinate(clientId);
+            boolean found = false;
+            // 到环上下一个实例位置的距离, 只有本实例时为整个环
+            double span = 1;
+            for (ServiceInstance instance : instances) {
+                String id = instance.getHost() + ":" + instance.getPort();
+                if (id.equals(clientId)) {
+                    found = true;
+                    continue;
+                }
+                double distance = coordinate(id) - offset;
+                if (distance <= 0) {
+                    distance += 1;
+                }
+                span = Math.min(span, distance);
+            }
+            if (!found) {
+                LOGGER.debug("instance {} is not found in {}.", clientId, serviceName);
+                return null;
+            }
+            return new Position(offset, span);
+        } catch (Exception e) {
+            LOGGER.warn("get instances of {} exception: {}", serviceName, e.getMessage());
+            // 保留当前位置
+            return position;
+        }
+    }
+
+    /**
+     * 在环上的位置, 取值[0, 1)
+     */
+    public static final class Position {
+        private final double offset;
+
+        // 到环上下一个客户端位置的距离, 子集至少覆盖这一段, 未知时为0
+        private final double span;
+
+        Position(double offset, double span) {
+            this.offset = offset;
+            this.span = span;
+        }
+
+        public double getOffset() {
+            return offset;
+        }
+
+        public double getSpan() {
+            return span;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Position)) {
+                return false;
+            }
+            Position other = (Position) o;
+            return offset == other.offset && span == other.span;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * Double.hashCode(offset) + Double.hashCode(span);
+        }
+
+        @Override
+        public String toString() {
+            return "Position{offset=" + offset + ", span=" + span + "}";
+        }
+    }
+}
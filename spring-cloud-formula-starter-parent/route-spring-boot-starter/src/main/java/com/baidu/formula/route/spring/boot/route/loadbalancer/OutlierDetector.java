@@ -0,0 +1,235 @@
+/*
+ * Copyright (c) 2019 Baidu, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baidu.formula.route.spring.boot.route.loadbalancer;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.util.CollectionUtils;
+
+import com.baidu.formula.route.spring.boot.route.property.OutlierDetection;
+import com.netflix.loadbalancer.LoadBalancerStats;
+import com.netflix.loadbalancer.Server;
+import com.netflix.loadbalancer.ServerStats;
+
+/**
+ * 异常实例摘除
+ * 按客户端记录的调用结果(5xx响应和异常记为失败)统计实例的连续失败次数, 按ribbon记录的近期平均响应时间比较实例的响应时间,
+ * 摘除连续失败或响应时间明显高于其他实例的实例, 避免单个异常实例导致整个服务的熔断器打开.
+ * ribbon的连续失败次数只统计连接异常, 且任何响应(包括5xx)都会将其清零, 因此不用于判断失败.
+ * 同一实例每次被摘除的时长翻倍, 恢复正常后逐步减少.
+ */
+public class OutlierDetector {
+    private static final Logger LOGGER = LoggerFactory.getLogger(OutlierDetector.class);
+
+    private final String name;
+
+    private final Map<Server, EndpointState> states = new ConcurrentHashMap<>();
+
+    private final AtomicLong nextEvaluation;
+
+    // 时钟, 单位纳秒
+    private final LongSupplier clock;
+
+    // 当前被摘除的实例
+    private volatile Set<Server> ejected = Collections.emptySet();
+
+    public OutlierDetector(String name) {
+        this(name, System::nanoTime);
+    }
+
+    public OutlierDetector(String name, LongSupplier clock) {
+        this.name = name;
+        this.clock = clock;
+        this.nextEvaluation = new AtomicLong(clock.getAsLong());
+    }
+
+    /**
+     * 记录一次调用的结果, 成功后连续失败次数清零
+     * @param server 调用的实例, 按host:port区分
+     * @param success 5xx响应和异常为失败
+     */
+    public void recordOutcome(Server server, boolean success) {
+        EndpointState state = states.computeIfAbsent(server, key -> new EndpointState());
+        if (success) {
+            if (state.consecutiveFailures.get() != 0) {
+                state.consecutiveFailures.set(0);
+            }
+        } else {
+            state.consecutiveFailures.incrementAndGet();
+        }
+    }
+
+    /**
+     * 过滤被摘除的实例, 到达检测间隔时重新检测
+     * @param servers
+     * @param stats
+     * @param config
+     * @return
+     */
+    public List<Server> filter(List<Server> servers, LoadBalancerStats stats, OutlierDetection config) {
+        return filter(servers, servers, stats, config);
+    }
+
+    /**
+     * 过滤被摘除的实例, 到达检测间隔时在全部实例中重新检测
+     * 路由和子集的结果只是全部实例的一部分, 按全部实例检测避免不同路由结果之间互相覆盖摘除状态
+     * @param servers 需要过滤的实例
+     * @param population 服务的全部可用实例, 摘除比例按其计算
+     * @param stats
+     * @param config
+     * @return
+     */
+    public List<Server> filter(List<Server> servers, List<Server> population, LoadBalancerStats stats,
+                               OutlierDetection config) {
+        if (config == null || !Boolean.TRUE.equals(config.getEnabled()) || stats == null
+                || CollectionUtils.isEmpty(servers) || CollectionUtils.isEmpty(population)) {
+            return servers;
+        }
+        long now = clock.getAsLong();
+        long next = nextEvaluation.get();
+        if (now - next >= 0 && nextEvaluation.compareAndSet(next, now + config.getInterval().toNanos())) {
+            evaluate(population, stats, config, now);
+        }
+        Set<Server> current = ejected;
+        if (current.isEmpty()) {
+            return servers;
+        }
+        List<Server> result = new ArrayList<>(servers.size());
+        for (Server server : servers) {
+            if (!current.contains(server)) {
+                result.add(server);
+            }
+        }
+        return result;
+    }
+
+    public Set<Server> getEjectedServers() {
+        return ejected;
+    }
+
+    private synchronized void evaluate(List<Server> servers, LoadBalancerStats stats, OutlierDetection config,
+                                       long now) {
+        Set<Server> result = new HashSet<>();
+        List<Server> outliers = new ArrayList<>();
+        double medianLatency = getMedianLatency(servers, stats, config);
+        long baseEjectionTime = config.getBaseEjectionTime().toNanos();
+        for (Server server : servers) {
+            EndpointState state = states.computeIfAbsent(server, key -> new EndpointState());
+            ServerStats serverStats = stats.getSingleServerStat(server);
+            if (state.ejected) {
+                if (state.ejectedUntil - now > 0) {
+                    result.add(server);
+                    continue;
+                }
+                // 摘除到期, 之前的统计不再参与检测
+                state.ejected = false;
+                state.returnedAt = now;
+                state.consecutiveFailures.set(0);
+                state.requestBaseline = serverStats.getTotalRequestsCount();
+                LOGGER.info("instance {} of {} is returned after ejection.", server.getId(), name);
+            }
+
+            if (state.consecutiveFailures.get() >= config.getConsecutiveFailures()
+                    || isLatencyOutlier(serverStats, state, medianLatency, config)) {
+                outliers.add(server);
+            } else if (state.ejectionCount > 0 && now - state.returnedAt > baseEjectionTime) {
+                state.ejectionCount--;
+                state.returnedAt = now;
+            }
+        }
+
+        int maxEjected = servers.size() * config.getMaxEjectionPercent() / 100;
+        for (Server server : outliers) {
+            if (result.size() >= maxEjected) {
+                LOGGER.info("instance {} of {} is an outlier, but max ejection percent is reached.",
+                        server.getId(), name);
+                continue;
+            }
+            EndpointState state = states.get(server);
+            long ejectionTime = Math.min(baseEjectionTime << Math.min(state.ejectionCount, 20),
+                    config.getMaxEjectionTime().toNanos());
+            state.ejected = true;
+            state.ejectedUntil = now + ejectionTime;
+            state.ejectionCount++;
+            result.add(server);
+            LOGGER.warn("instance {} of {} is ejected for {} ms.", server.getId(), name, ejectionTime / 1000000);
+        }
+        states.keySet().retainAll(servers);
+        ejected = result.isEmpty() ? Collections.emptySet() : Collections.unmodifiableSet(result);
+    }
+
+    private boolean isLatencyOutlier(ServerStats serverStats, EndpointState state, double medianLatency,
+                                     OutlierDetection config) {
+        return medianLatency > 0 && config.getLatencyFactor() > 0
+                && serverStats.getTotalRequestsCount() - state.requestBaseline >= config.getMinimumRequests()
+                && serverStats.getResponseTimePercentileNumValues() >= config.getMinimumRequests()
+                && serverStats.getResponseTimeAvgRecent() > medianLatency * config.getLatencyFactor();
+    }
+
+    /**
+     * 未被摘除且调用数足够的实例近期平均响应时间的中位数, 实例数不足时返回0
+     */
+    private double getMedianLatency(List<Server> servers, LoadBalancerStats stats, OutlierDetection config) {
+        if (config.getLatencyFactor() <= 0) {
+            return 0;
+        }
+        List<Double> latencies = new ArrayList<>(servers.size());
+        for (Server server : servers) {
+            EndpointState state = states.get(server);
+            ServerStats serverStats = stats.getSingleServerStat(server);
+            if ((state == null || !state.ejected)
+                    && serverStats.getResponseTimePercentileNumValues() >= config.getMinimumRequests()) {
+                latencies.add(serverStats.getResponseTimeAvgRecent());
+            }
+        }
+        if (latencies.size() < 2) {
+            return 0;
+        }
+        Collections.sort(latencies);
+        return latencies.get((latencies.size() - 1) / 2);
+    }
+
+    private static class EndpointState {
+        // 是否被摘除
+        private boolean ejected;
+
+        // 摘除结束时间
+        private long ejectedUntil;
+
+        // 摘除次数, 决定下次摘除时长
+        private int ejectionCount;
+
+        // 恢复时间, 恢复正常一段时间后减少摘除次数
+        private long returnedAt;
+
+        // 客户端记录的连续失败次数, 摘除恢复时清零
+        private final AtomicInteger consecutiveFailures = new AtomicInteger();
+
+        // 恢复时已有的调用数
+        private long requestBaseline;
+    }
+}
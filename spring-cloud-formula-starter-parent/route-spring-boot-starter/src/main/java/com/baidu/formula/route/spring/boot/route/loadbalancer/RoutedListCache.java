@@ -0,0 +1,142 @@
+/*
+ * Copyright (c) 2019 Baidu, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baidu.formula.route.spring.boot.route.loadbalancer;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import com.baidu.formula.route.spring.boot.route.RouteDestination;
+import com.netflix.loadbalancer.Server;
+
+/**
+ * 路由结果缓存
+ * ribbon在实例列表变化时整体替换列表而不是原地修改, 因此以列表的引用作为列表的版本:
+ * 同一版本的列表按同一目标路由的结果不变, 路由只需一次hash查找;
+ * 未命中时使用同一版本列表的{@link ServerTagIndex}计算.
+ */
+public class RoutedListCache {
+    // 列表每次刷新都会产生新版本, 超过上限时清空旧版本的结果
+    private static final int MAX_SIZE = 32;
+
+    private final Map<Key, List<Server>> cache = new ConcurrentHashMap<>();
+
+    // 列表引用 -> 标签索引
+    private final Map<ListKey, ServerTagIndex<Server>> indexes = new ConcurrentHashMap<>();
+
+    /**
+     * 获取路由结果, 不存在时计算并缓存
+     * @param servers     路由前的实例列表
+     * @param destination 路由目标
+     * @param loader      计算路由结果
+     * @return 不可修改的路由结果
+     */
+    public List<Server> get(List<Server> servers, RouteDestination destination, Supplier<List<Server>> loader) {
+        Key key = new Key(servers, destination);
+        List<Server> routed = cache.get(key);
+        if (routed == null) {
+            routed = Collections.unmodifiableList(loader.get());
+            if (cache.size() >= MAX_SIZE) {
+                cache.clear();
+            }
+            cache.put(key, routed);
+        }
+        return routed;
+    }
+
+    /**
+     * 获取列表的标签索引, 不存在时创建并缓存
+     * @param servers 实例列表
+     * @param factory 创建索引
+     * @return
+     */
+    public ServerTagIndex<Server> getIndex(List<Server> servers,
+                                           Function<List<Server>, ServerTagIndex<Server>> factory) {
+        ListKey key = new ListKey(servers);
+        ServerTagIndex<Server> index = indexes.get(key);
+        if (index == null) {
+            index = factory.apply(servers);
+            if (indexes.size() >= MAX_SIZE) {
+                indexes.clear();
+            }
+            indexes.put(key, index);
+        }
+        return index;
+    }
+
+    public void clear() {
+        cache.clear();
+        indexes.clear();
+    }
+
+    public int size() {
+        return cache.size();
+    }
+
+    private static class Key {
+        private final List<Server> servers;
+
+        private final RouteDestination destination;
+
+        Key(List<Server> servers, RouteDestination destination) {
+            this.servers = servers;
+            this.destination = destination;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            // 列表按引用比较
+            return servers == other.servers && Objects.equals(destination, other.destination);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * System.identityHashCode(servers) + Objects.hashCode(destination);
+        }
+    }
+
+    /**
+     * 按引用比较的列表key
+     */
+    static class ListKey {
+        private final List<Server> servers;
+
+        ListKey(List<Server> servers) {
+            this.servers = servers;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof ListKey && servers == ((ListKey) o).servers;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(servers);
+        }
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright (c) 2019 Baidu, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baidu.formula.route.spring.boot.route.loadbalancer;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiFunction;
+
+import com.baidu.formula.route.spring.boot.route.RouteDestination;
+import com.baidu.formula.route.spring.boot.route.RouteDestination.Condition;
+
+/**
+ * 一个实例列表的标签倒排索引: 标签key -> 标签值 -> 实例位置
+ * 每个标签key在第一次使用时读取全部实例的元数据建立索引, 之后按目标路由只需位图的交并运算.
+ * 列表不可修改, 与{@link RoutedListCache}一样按列表的引用缓存.
+ * @param <T> 实例类型, ribbon的Server或Spring Cloud的ServiceInstance
+ */
+public class ServerTagIndex<T> {
+    private final List<T> servers;
+
+    // 读取实例的标签值
+    private final BiFunction<T, String, String> metadataReader;
+
+    private final Map<String, Map<String, BitSet>> index = new ConcurrentHashMap<>();
+
+    public ServerTagIndex(List<T> servers, BiFunction<T, String, String> metadataReader) {
+        this.servers = servers;
+        this.metadataReader = metadataReader;
+    }
+
+    /**
+     * 满足目标全部标签条件的实例, 保持列表中的顺序
+     * @param destination
+     * @return
+     */
+    public List<T> filter(RouteDestination destination) {
+        BitSet matched = null;
+        for (Condition condition : destination.getConditions()) {
+            BitSet bits = match(condition);
+            if (matched == null) {
+                matched = bits;
+            } else {
+                matched.and(bits);
+            }
+            if (matched.isEmpty()) {
+                break;
+            }
+        }
+        if (matched == null) {
+            return new ArrayList<>(servers);
+        }
+        List<T> result = new ArrayList<>(matched.cardinality());
+        for (int i = matched.nextSetBit(0); i >= 0; i = matched.nextSetBit(i + 1)) {
+            result.add(servers.get(i));
+        }
+        return result;
+    }
+
+    /**
+     * 满足一个条件的实例, 返回新的位图, 可以修改
+     */
+    private BitSet match(Condition condition) {
+        Map<String, BitSet> values = index.computeIfAbsent(condition.getKey(), this::buildIndex);
+        BitSet bits = new BitSet(servers.size());
+        switch (condition.getOperation()) {
+            case EQUAL:
+            case NOT_EQUAL:
+                or(bits, values.get(condition.getValues().get(0)));
+                break;
+            default:
+                for (String value : condition.getValues()) {
+                    or(bits, values.get(value));
+                }
+        }
+        switch (condition.getOperation()) {
+            case NOT_EQUAL:
+            case NOT_IN:
+                // 没有该标签的实例也满足不等条件
+                bits.flip(0, servers.size());
+                break;
+            default:
+        }
+        return bits;
+    }
+
+    private static void or(BitSet bits, BitSet other) {
+        if (other != null) {
+            bits.or(other);
+        }
+    }
+
+    private Map<String, BitSet> buildIndex(String tagKey) {
+        Map<String, BitSet> values = new HashMap<>();
+        for (int i = 0; i < servers.size(); i++) {
+            String value = metadataReader.apply(servers.get(i), tagKey);
+            if (value != null) {
+                values.computeIfAbsent(value, v -> new BitSet(servers.size())).set(i);
+            }
+        }
+        return values;
+    }
+
+    public List<T> getServers() {
+        return servers;
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright (c) 2019 Baidu, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baidu.formula.route.spring.boot.route.metadata;
+
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.util.ReflectionUtils;
+
+import com.netflix.loadbalancer.Server;
+
+/**
+ * 默认的实例元数据读取
+ * {@link FormulaServer}直接读取元数据; 其他实例按天路注册中心的结构读取instance.customs,
+ * 即{@link com.baidu.formula.route.spring.boot.model.discovery.FormulaDiscoveryServer}对应的结构,
+ * 读取方法按实例类型缓存, 不支持的类型返回null.
+ */
+public class DefaultServerMetadataExtractor implements ServerMetadataExtractor {
+    private static final Logger LOGGER = LoggerFactory.getLogger(DefaultServerMetadataExtractor.class);
+
+    private static final String INSTANCE_GETTER = "getInstance";
+
+    private static final String CUSTOMS_GETTER = "getCustoms";
+
+    private static final CustomsAccessor UNSUPPORTED = new CustomsAccessor(null);
+
+    private final Map<Class<?>, CustomsAccessor> accessors = new ConcurrentHashMap<>();
+
+    @Override
+    public String getMetadata(Server server, String key) {
+        if (server == null) {
+            return null;
+        }
+        if (server instanceof FormulaServer) {
+            Map<String, String> metadata = ((FormulaServer) server).getMetadata();
+            return metadata == null ? null : metadata.get(key);
+        }
+        Map<?, ?> customs = accessors.computeIfAbsent(server.getClass(), this::createAccessor).getCustoms(server);
+        if (customs == null) {
+            return null;
+        }
+        Object value = customs.get(key);
+        return value == null ? null : value.toString();
+    }
+
+    private CustomsAccessor createAccessor(Class<?> serverClass) {
+        Method instanceGetter = ReflectionUtils.findMethod(serverClass, INSTANCE_GETTER);
+        if (instanceGetter == null) {
+            LOGGER.info("server type {} does not provide metadata.", serverClass.getName());
+            return UNSUPPORTED;
+        }
+        ReflectionUtils.makeAccessible(instanceGetter);
+        return new CustomsAccessor(instanceGetter);
+    }
+
+    private static class CustomsAccessor {
+        private final Method instanceGetter;
+
+        // instance的类型通常只有一种, 缓存最近一次的读取方法
+        private volatile Method customsGetter;
+
+        CustomsAccessor(Method instanceGetter) {
+            this.instanceGetter = instanceGetter;
+        }
+
+        Map<?, ?> getCustoms(Server server) {
+            if (instanceGetter == null) {
+                return null;
+            }
+            Object instance = ReflectionUtils.invokeMethod(instanceGetter, server);
+            if (instance == null) {
+                return null;
+            }
+            Method getter = customsGetter;
+            if (getter == null || !getter.getDeclaringClass().isInstance(instance)) {
+                getter = ReflectionUtils.findMethod(instance.getClass(), CUSTOMS_GETTER);
+                if (getter == null || !Map.class.isAssignableFrom(getter.getReturnType())) {
+                    return null;
+                }
+                ReflectionUtils.makeAccessible(getter);
+                customsGetter = getter;
+            }
+            return (Map<?, ?>) ReflectionUtils.invokeMethod(getter, instance);
+        }
+    }
+}
@@ -0,0 +1,31 @@
+/*
+ * Copyright (c) 2019 Baidu, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baidu.formula.route.spring.boot.route.metadata;
+
+import java.util.Map;
+
+/**
+ * 可直接提供元数据的实例
+ * 注册中心的Server实现该接口后, 路由时直接读取元数据, 不再通过反射解析
+ */
+public interface FormulaServer {
+
+    /**
+     * 实例的元数据, 如部署组信息
+     * @return 不存在时返回空map
+     */
+    Map<String, String> getMetadata();
+}
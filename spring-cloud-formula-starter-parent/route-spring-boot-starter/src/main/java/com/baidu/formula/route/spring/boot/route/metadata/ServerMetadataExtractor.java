@@ -0,0 +1,33 @@
+/*
+ * Copyright (c) 2019 Baidu, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baidu.formula.route.spring.boot.route.metadata;
+
+import com.netflix.loadbalancer.Server;
+
+/**
+ * 实例元数据读取, 对接不同注册中心的扩展点
+ * 注册为bean即可替换默认实现{@link DefaultServerMetadataExtractor}
+ */
+public interface ServerMetadataExtractor {
+
+    /**
+     * 读取实例的元数据
+     * @param server 实例
+     * @param key    元数据的key
+     * @return 不存在时返回null
+     */
+    String getMetadata(Server server, String key);
+}
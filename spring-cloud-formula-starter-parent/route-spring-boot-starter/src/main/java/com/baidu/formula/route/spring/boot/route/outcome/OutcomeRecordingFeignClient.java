@@ -0,0 +1,113 @@
+/*
+ * Copyright (c) 2019 Baidu, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baidu.formula.route.spring.boot.route.outcome;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.net.URI;
+
+import org.aopalliance.intercept.MethodInterceptor;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.aop.support.NameMatchMethodPointcutAdvisor;
+import org.springframework.cloud.openfeign.ribbon.LoadBalancerFeignClient;
+import org.springframework.util.ReflectionUtils;
+
+import feign.Client;
+import feign.Request;
+import feign.Response;
+
+/**
+ * 记录Feign对实例的调用结果
+ * 负载均衡后在同一线程中以选中实例的地址调用delegate, 因此在负载均衡客户端的execute中记录服务名,
+ * 在delegate中记录实例和结果, ribbon的每次重试都会单独记录.
+ * 包装已有的负载均衡客户端而不是重新创建, 保留其子类(如sleuth的TraceLoadBalancerFeignClient)的行为
+ */
+public class OutcomeRecordingFeignClient implements Client {
+    private static final ThreadLocal<String> SERVICE_ID = new ThreadLocal<>();
+
+    private static final Field DELEGATE = ReflectionUtils.findField(LoadBalancerFeignClient.class, "delegate");
+
+    private final Client delegate;
+
+    private final ServerOutcomeRecorder recorder;
+
+    OutcomeRecordingFeignClient(Client delegate, ServerOutcomeRecorder recorder) {
+        this.delegate = delegate;
+        this.recorder = recorder;
+    }
+
+    /**
+     * 包装负载均衡客户端: 将其delegate替换为记录调用结果的客户端, 并代理其execute记录服务名
+     * @param client 已有的负载均衡客户端
+     * @param recorder
+     * @return 与原客户端类型相同的代理, 其他方法直接调用原客户端
+     */
+    public static LoadBalancerFeignClient wrap(LoadBalancerFeignClient client, ServerOutcomeRecorder recorder) {
+        if (client.getDelegate() instanceof OutcomeRecordingFeignClient) {
+            return client;
+        }
+        ReflectionUtils.makeAccessible(DELEGATE);
+        ReflectionUtils.setField(DELEGATE, client, new OutcomeRecordingFeignClient(client.getDelegate(), recorder));
+
+        NameMatchMethodPointcutAdvisor advisor = new NameMatchMethodPointcutAdvisor(
+                (MethodInterceptor) invocation -> execute((Request) invocation.getArguments()[0], invocation::proceed));
+        advisor.setMappedName("execute");
+        ProxyFactory proxyFactory = new ProxyFactory(client);
+        proxyFactory.setProxyTargetClass(true);
+        proxyFactory.addAdvisor(advisor);
+        return (LoadBalancerFeignClient) proxyFactory.getProxy(client.getClass().getClassLoader());
+    }
+
+    private static Object execute(Request request, Invocation invocation) throws Throwable {
+        String previous = SERVICE_ID.get();
+        SERVICE_ID.set(URI.create(request.url()).getHost());
+        try {
+            return invocation.proceed();
+        } finally {
+            if (previous == null) {
+                SERVICE_ID.remove();
+            } else {
+                SERVICE_ID.set(previous);
+            }
+        }
+    }
+
+    @Override
+    public Response execute(Request request, Request.Options options) throws IOException {
+        String serviceId = SERVICE_ID.get();
+        if (serviceId == null) {
+            return delegate.execute(request, options);
+        }
+        URI uri = URI.create(request.url());
+        Response response;
+        try {
+            response = delegate.execute(request, options);
+        } catch (IOException | RuntimeException e) {
+            recorder.record(serviceId, uri.getHost(), uri.getPort(), false);
+            throw e;
+        }
+        recorder.record(serviceId, uri.getHost(), uri.getPort(), ServerOutcomeRecorder.isSuccess(response.status()));
+        return response;
+    }
+
+    public Client getDelegate() {
+        return delegate;
+    }
+
+    private interface Invocation {
+        Object proceed() throws Throwable;
+    }
+}
@@ -0,0 +1,57 @@
+/*
+ * Copyright (c) 2019 Baidu, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baidu.formula.route.spring.boot.route.outcome;
+
+import java.io.IOException;
+import java.net.URI;
+
+import org.springframework.cloud.client.loadbalancer.ServiceRequestWrapper;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+
+/**
+ * 记录RestTemplate对实例的调用结果
+ * 需配置在负载均衡拦截器之后, 此时请求已被替换为选中实例的地址, 原请求的host为服务名
+ */
+public class OutcomeRecordingRestTemplateInterceptor implements ClientHttpRequestInterceptor {
+    private final ServerOutcomeRecorder recorder;
+
+    public OutcomeRecordingRestTemplateInterceptor(ServerOutcomeRecorder recorder) {
+        this.recorder = recorder;
+    }
+
+    @Override
+    public ClientHttpResponse intercept(HttpRequest request, byte[] body, ClientHttpRequestExecution execution)
+            throws IOException {
+        if (!(request instanceof ServiceRequestWrapper)) {
+            return execution.execute(request, body);
+        }
+        String serviceId = ((ServiceRequestWrapper) request).getRequest().getURI().getHost();
+        URI uri = request.getURI();
+        ClientHttpResponse response;
+        try {
+            response = execution.execute(request, body);
+        } catch (IOException | RuntimeException e) {
+            recorder.record(serviceId, uri.getHost(), uri.getPort(), false);
+            throw e;
+        }
+        recorder.record(serviceId, uri.getHost(), uri.getPort(),
+                ServerOutcomeRecorder.isSuccess(response.getRawStatusCode()));
+        return response;
+    }
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright (c) 2019 Baidu, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baidu.formula.route.spring.boot.route.outcome;
+
+import org.springframework.cloud.netflix.ribbon.SpringClientFactory;
+
+import com.baidu.formula.route.spring.boot.route.loadbalancer.CustomIloadBalancer;
+import com.netflix.loadbalancer.ILoadBalancer;
+import com.netflix.loadbalancer.Server;
+
+/**
+ * 将客户端对实例的调用结果记录到对应服务的负载均衡器, 供异常实例摘除使用
+ * 与熔断默认的判断一致, 5xx响应和异常记为失败
+ */
+public class ServerOutcomeRecorder {
+    private final SpringClientFactory clientFactory;
+
+    public ServerOutcomeRecorder(SpringClientFactory clientFactory) {
+        this.clientFactory = clientFactory;
+    }
+
+    /**
+     * 记录一次调用结果, 服务的负载均衡器尚未创建时忽略
+     * @param serviceId 服务名
+     * @param host 实例地址
+     * @param port 实例端口
+     * @param success 是否成功
+     */
+    public void record(String serviceId, String host, int port, boolean success) {
+        if (serviceId == null || host == null || !clientFactory.getContextNames().contains(serviceId)) {
+            return;
+        }
+        ILoadBalancer loadBalancer = clientFactory.getLoadBalancer(serviceId);
+        if (loadBalancer instanceof CustomIloadBalancer) {
+            ((CustomIloadBalancer) loadBalancer).recordOutcome(new Server(host, port), success);
+        }
+    }
+
+    /**
+     * 按响应状态码判断调用是否成功
+     */
+    public static boolean isSuccess(int status) {
+        return status < 500;
+    }
+}
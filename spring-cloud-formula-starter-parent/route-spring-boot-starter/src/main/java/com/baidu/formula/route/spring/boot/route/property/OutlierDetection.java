@@ -0,0 +1,50 @@
+/*
+ * Copyright (c) 2019 Baidu, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baidu.formula.route.spring.boot.route.property;
+
+import java.time.Duration;
+
+import lombok.Data;
+
+/**
+ * 异常实例摘除配置
+ */
+@Data
+public class OutlierDetection {
+    // 是否开启异常实例摘除
+    private Boolean enabled = false;
+
+    // 连续失败(5xx响应或异常)多少次后摘除实例
+    private Integer consecutiveFailures = 5;
+
+    // 平均响应时间超过其他实例中位数的倍数时摘除实例, 小于等于0时不按响应时间摘除
+    private Double latencyFactor = 3.0;
+
+    // 按响应时间摘除时, 实例至少需要的调用数
+    private Integer minimumRequests = 20;
+
+    // 检测间隔
+    private Duration interval = Duration.ofSeconds(1);
+
+    // 第一次摘除的时长, 之后每次摘除时长翻倍
+    private Duration baseEjectionTime = Duration.ofSeconds(30);
+
+    // 最长摘除时长
+    private Duration maxEjectionTime = Duration.ofMinutes(5);
+
+    // 最多摘除的实例比例
+    private Integer maxEjectionPercent = 50;
+}
@@ -15,6 +15,7 @@
  */
 package com.baidu.formula.route.spring.boot.route.property;
 
+import java.util.ArrayList;
 import java.util.List;
 
 import org.springframework.boot.context.properties.ConfigurationProperties;
@@ -30,6 +31,15 @@ public class RouteProperties {
     // 路由信息
     private List<FormulaRouteProperty> rules;
 
+    // 异常实例摘除
+    private OutlierDetection outlierDetection = new OutlierDetection();
+
+    // 确定性子集
+    private Subset subset = new Subset();
+
+    // 按请求路由时需要捕获并向下游传递的请求头, 路由规则中类型为请求头的来源标签会自动加入
+    private List<String> contextHeaders = new ArrayList<>();
+
 
     /**
      * 获取destination中tag的类型
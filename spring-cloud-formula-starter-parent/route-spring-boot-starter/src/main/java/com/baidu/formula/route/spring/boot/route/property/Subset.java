@@ -0,0 +1,44 @@
+/*
+ * Copyright (c) 2019 Baidu, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baidu.formula.route.spring.boot.route.property;
+
+import java.time.Duration;
+
+import lombok.Data;
+
+/**
+ * 确定性子集配置
+ */
+@Data
+public class Subset {
+    // 是否开启子集, 开启后每个客户端实例只调用目标服务的一部分实例
+    private Boolean enabled = false;
+
+    // 每个客户端实例调用的实例数, 客户端实例较少时自动增大以保证每个实例都有调用
+    private Integer size = 10;
+
+    // 本实例的标识, 按注册中心查找本实例时为ip:port, 未配置时为spring.cloud.client.ip-address:server.port
+    private String clientId;
+
+    // 本实例在本服务所有实例中的序号, 与clientCount同时配置时不再从注册中心查找
+    private Integer clientIndex;
+
+    // 本服务的实例数
+    private Integer clientCount;
+
+    // 从注册中心刷新本实例位置的间隔
+    private Duration refreshInterval = Duration.ofSeconds(30);
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright (c) 2019 Baidu, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baidu.formula.route.spring.boot.route.reactive;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.cloud.client.ServiceInstance;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * 缓存被包装的实例列表, 到达刷新间隔后重新获取; 获取失败时继续使用缓存的列表.
+ * 实例未变化时保留原来的列表, 与ribbon整体替换实例列表一样以列表的引用作为版本.
+ */
+public class CachingServiceInstanceListSupplier implements ServiceInstanceListSupplier {
+    private static final Logger LOGGER = LoggerFactory.getLogger(CachingServiceInstanceListSupplier.class);
+
+    private final ServiceInstanceListSupplier delegate;
+
+    private final long refreshIntervalNanos;
+
+    private volatile Cached cached;
+
+    public CachingServiceInstanceListSupplier(ServiceInstanceListSupplier delegate, Duration refreshInterval) {
+        this.delegate = delegate;
+        this.refreshIntervalNanos = refreshInterval.toNanos();
+    }
+
+    @Override
+    public String getServiceId() {
+        return delegate.getServiceId();
+    }
+
+    @Override
+    public Flux<List<ServiceInstance>> get() {
+        Cached current = cached;
+        if (current != null && System.nanoTime() - current.expireAt < 0) {
+            return Flux.just(current.instances);
+        }
+        return delegate.get().next()
+                .map(this::update)
+                .onErrorResume(e -> {
+                    if (current == null) {
+                        return Mono.error(e);
+                    }
+                    LOGGER.warn("get instances of {} exception, cached instances are used: {}",
+                            getServiceId(), e.getMessage());
+                    return Mono.just(current.instances);
+                })
+                .flux();
+    }
+
+    private List<ServiceInstance> update(List<ServiceInstance> instances) {
+        Cached current = cached;
+        List<ServiceInstance> list = current != null && current.instances.equals(instances)
+                ? current.instances : Collections.unmodifiableList(new ArrayList<>(instances));
+        cached = new Cached(list, System.nanoTime() + refreshIntervalNanos);
+        return list;
+    }
+
+    private static class Cached {
+        private final List<ServiceInstance> instances;
+
+        private final long expireAt;
+
+        Cached(List<ServiceInstance> instances, long expireAt) {
+            this.instances = instances;
+            this.expireAt = expireAt;
+        }
+    }
+}
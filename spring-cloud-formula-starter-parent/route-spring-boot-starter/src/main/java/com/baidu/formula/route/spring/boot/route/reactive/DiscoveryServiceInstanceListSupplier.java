@@ -0,0 +1,53 @@
+/*
+ * Copyright (c) 2019 Baidu, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baidu.formula.route.spring.boot.route.reactive;
+
+import java.util.Collections;
+import java.util.List;
+
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.client.discovery.DiscoveryClient;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * 从注册中心获取实例列表, DiscoveryClient是阻塞的, 在elastic线程池中调用
+ */
+public class DiscoveryServiceInstanceListSupplier implements ServiceInstanceListSupplier {
+    private final DiscoveryClient discoveryClient;
+
+    private final String serviceId;
+
+    public DiscoveryServiceInstanceListSupplier(DiscoveryClient discoveryClient, String serviceId) {
+        this.discoveryClient = discoveryClient;
+        this.serviceId = serviceId;
+    }
+
+    @Override
+    public String getServiceId() {
+        return serviceId;
+    }
+
+    @Override
+    public Flux<List<ServiceInstance>> get() {
+        return Mono.fromCallable(() -> {
+            List<ServiceInstance> instances = discoveryClient.getInstances(serviceId);
+            return instances == null ? Collections.<ServiceInstance>emptyList() : instances;
+        }).subscribeOn(Schedulers.elastic()).flux();
+    }
+}
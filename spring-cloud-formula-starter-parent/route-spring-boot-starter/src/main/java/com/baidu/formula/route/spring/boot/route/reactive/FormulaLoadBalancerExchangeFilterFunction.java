@@ -0,0 +1,118 @@
+/*
+ * Copyright (c) 2019 Baidu, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baidu.formula.route.spring.boot.route.reactive;
+
+import java.net.URI;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.ExchangeFilterFunction;
+import org.springframework.web.reactive.function.client.ExchangeFunction;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import com.baidu.formula.route.spring.boot.route.RouteMatcher;
+import com.baidu.formula.route.spring.boot.route.context.RouteContext;
+
+import reactor.core.publisher.Mono;
+
+/**
+ * WebClient的负载均衡过滤器, 把url中的服务名替换为按路由规则选出的实例
+ * 按请求路由时使用请求中的请求头, 请求中没有的请求头从{@link RouteContext}中补充并传递给下游服务.
+ * 没有可用实例时返回503.
+ */
+public class FormulaLoadBalancerExchangeFilterFunction implements ExchangeFilterFunction {
+    private static final Logger LOGGER = LoggerFactory.getLogger(FormulaLoadBalancerExchangeFilterFunction.class);
+
+    private final FormulaReactiveLoadBalancerFactory loadBalancerFactory;
+
+    private final RouteMatcher routeMatcher;
+
+    public FormulaLoadBalancerExchangeFilterFunction(FormulaReactiveLoadBalancerFactory loadBalancerFactory,
+                                                     RouteMatcher routeMatcher) {
+        this.loadBalancerFactory = loadBalancerFactory;
+        this.routeMatcher = routeMatcher;
+    }
+
+    @Override
+    public Mono<ClientResponse> filter(ClientRequest request, ExchangeFunction next) {
+        URI original = request.url();
+        String serviceId = original.getHost();
+        if (serviceId == null) {
+            LOGGER.warn("request url {} does not contain a service name.", original);
+            return Mono.just(ClientResponse.create(HttpStatus.BAD_REQUEST).build());
+        }
+        // 在调用线程中读取路由上下文
+        Map<String, String> contextHeaders = RouteContext.getHeaders();
+        Map<String, String> headers = getRouteHeaders(request.headers(), contextHeaders);
+        // 只有没有选出实例时返回503, 下游返回空时原样传递
+        return loadBalancerFactory.getLoadBalancer(serviceId).choose(headers)
+                .map(instance -> exchange(request, next, instance, contextHeaders))
+                .switchIfEmpty(Mono.fromSupplier(() -> {
+                    LOGGER.warn("no instance available for {}", serviceId);
+                    return Mono.just(ClientResponse.create(HttpStatus.SERVICE_UNAVAILABLE).build());
+                }))
+                .flatMap(Function.identity());
+    }
+
+    private Mono<ClientResponse> exchange(ClientRequest request, ExchangeFunction next, ServiceInstance instance,
+                                          Map<String, String> contextHeaders) {
+        return next.exchange(ClientRequest.from(request)
+                .url(reconstructUri(instance, request.url()))
+                .headers(httpHeaders -> contextHeaders.forEach((name, value) -> {
+                    if (!httpHeaders.containsKey(name)) {
+                        httpHeaders.add(name, value);
+                    }
+                }))
+                .build());
+    }
+
+    /**
+     * 参与路由的请求头, 请求中的请求头优先
+     */
+    private Map<String, String> getRouteHeaders(HttpHeaders requestHeaders, Map<String, String> contextHeaders) {
+        Set<String> headerNames = routeMatcher.getSnapshot().getHeaderNames();
+        if (headerNames.isEmpty()) {
+            return contextHeaders;
+        }
+        Map<String, String> headers = new HashMap<>(contextHeaders);
+        for (String headerName : headerNames) {
+            String value = requestHeaders.getFirst(headerName);
+            if (value != null) {
+                headers.put(headerName, value);
+            }
+        }
+        return headers;
+    }
+
+    private static URI reconstructUri(ServiceInstance instance, URI original) {
+        String scheme = instance.isSecure() ? "https" : "http";
+        return UriComponentsBuilder.fromUri(original)
+                .scheme(scheme)
+                .host(instance.getHost())
+                .port(instance.getPort())
+                .build(true)
+                .toUri();
+    }
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright (c) 2019 Baidu, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baidu.formula.route.spring.boot.route.reactive;
+
+import static com.baidu.formula.route.spring.boot.config.RouteConstants.FORMULA_DISCOVERY_CUSTOM_PLATFORM;
+import static com.baidu.formula.route.spring.boot.config.RouteConstants.TAG_PLATFORM;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.cloud.client.ServiceInstance;
+
+import com.baidu.formula.route.spring.boot.route.RouteDestination;
+import com.baidu.formula.route.spring.boot.route.RouteMatcher;
+import com.baidu.formula.route.spring.boot.route.RouteSnapshot;
+import com.baidu.formula.route.spring.boot.route.loadbalancer.ServerTagIndex;
+
+import reactor.core.publisher.Mono;
+
+/**
+ * 不依赖ribbon的响应式负载均衡器, 按与{@link com.baidu.formula.route.spring.boot.route.loadbalancer.CustomIloadBalancer}
+ * 相同的路由规则选择实例: 按请求头选择路由, 按权重选出目标, 在满足目标标签条件的实例中轮询.
+ * 路由只读取{@link RouteSnapshot}, 路由结果按实例列表的引用缓存在不可修改的{@link RoutedInstances}中.
+ */
+public class FormulaReactiveLoadBalancer {
+    private final String serviceId;
+
+    private final ServiceInstanceListSupplier supplier;
+
+    private final RouteMatcher routeMatcher;
+
+    private final AtomicInteger position = new AtomicInteger();
+
+    private volatile RoutedInstances routedInstances;
+
+    public FormulaReactiveLoadBalancer(String serviceId, ServiceInstanceListSupplier supplier,
+                                       RouteMatcher routeMatcher) {
+        this.serviceId = serviceId;
+        this.supplier = supplier;
+        this.routeMatcher = routeMatcher;
+    }
+
+    /**
+     * 选择实例
+     * @param headers 参与路由的请求头, key为小写
+     * @return 没有可用实例时为空
+     */
+    public Mono<ServiceInstance> choose(Map<String, String> headers) {
+        return supplier.get().next().flatMap(instances -> Mono.justOrEmpty(choose(instances, headers)));
+    }
+
+    /**
+     * 在给定的实例列表中选择实例
+     * @param instances
+     * @param headers
+     * @return 没有可用实例时返回null
+     */
+    public ServiceInstance choose(List<ServiceInstance> instances, Map<String, String> headers) {
+        if (instances.isEmpty()) {
+            return null;
+        }
+        List<ServiceInstance> candidates = instances;
+        RouteSnapshot snapshot = routeMatcher.getSnapshot().select(serviceId, headers);
+        if (snapshot.isRoutable() && serviceId.equalsIgnoreCase(snapshot.getMatchedRoute().getDestServiceName())) {
+            candidates = getRoutedInstances(instances).get(snapshot.chooseDestination());
+        }
+        if (candidates.isEmpty()) {
+            return null;
+        }
+        int index = (position.getAndIncrement() & Integer.MAX_VALUE) % candidates.size();
+        return candidates.get(index);
+    }
+
+    private RoutedInstances getRoutedInstances(List<ServiceInstance> instances) {
+        RoutedInstances current = routedInstances;
+        if (current == null || current.instances != instances) {
+            current = new RoutedInstances(instances);
+            routedInstances = current;
+        }
+        return current;
+    }
+
+    public String getServiceId() {
+        return serviceId;
+    }
+
+    /**
+     * 读取实例的标签值, 部署组标签读取部署组信息, 其他标签按同名的元数据读取
+     */
+    private static String getMetadata(ServiceInstance instance, String tagKey) {
+        Map<String, String> metadata = instance.getMetadata();
+        if (metadata == null) {
+            return null;
+        }
+        return metadata.get(TAG_PLATFORM.equalsIgnoreCase(tagKey) ? FORMULA_DISCOVERY_CUSTOM_PLATFORM : tagKey);
+    }
+
+    /**
+     * 一个版本的实例列表及其按目标的路由结果
+     */
+    private static final class RoutedInstances {
+        private final List<ServiceInstance> instances;
+
+        private final ServerTagIndex<ServiceInstance> index;
+
+        private final Map<RouteDestination, List<ServiceInstance>> routed = new ConcurrentHashMap<>();
+
+        RoutedInstances(List<ServiceInstance> instances) {
+            this.instances = instances;
+            this.index = new ServerTagIndex<>(instances, FormulaReactiveLoadBalancer::getMetadata);
+        }
+
+        List<ServiceInstance> get(RouteDestination destination) {
+            return routed.computeIfAbsent(destination, index::filter);
+        }
+    }
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright (c) 2019 Baidu, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baidu.formula.route.spring.boot.route.reactive;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.cloud.client.discovery.DiscoveryClient;
+
+import com.baidu.formula.route.spring.boot.route.RouteMatcher;
+
+/**
+ * 按服务名创建并缓存响应式负载均衡器
+ * 实例列表从注册中心获取并按刷新间隔缓存, 默认与ribbon刷新实例列表的间隔一致
+ */
+public class FormulaReactiveLoadBalancerFactory {
+    public static final Duration DEFAULT_REFRESH_INTERVAL = Duration.ofSeconds(30);
+
+    private final DiscoveryClient discoveryClient;
+
+    private final RouteMatcher routeMatcher;
+
+    private final Duration refreshInterval;
+
+    private final Map<String, FormulaReactiveLoadBalancer> loadBalancers = new ConcurrentHashMap<>();
+
+    public FormulaReactiveLoadBalancerFactory(DiscoveryClient discoveryClient, RouteMatcher routeMatcher) {
+        this(discoveryClient, routeMatcher, DEFAULT_REFRESH_INTERVAL);
+    }
+
+    public FormulaReactiveLoadBalancerFactory(DiscoveryClient discoveryClient, RouteMatcher routeMatcher,
+                                              Duration refreshInterval) {
+        this.discoveryClient = discoveryClient;
+        this.routeMatcher = routeMatcher;
+        this.refreshInterval = refreshInterval;
+    }
+
+    public FormulaReactiveLoadBalancer getLoadBalancer(String serviceId) {
+        return loadBalancers.computeIfAbsent(serviceId, this::create);
+    }
+
+    private FormulaReactiveLoadBalancer create(String serviceId) {
+        ServiceInstanceListSupplier supplier = new CachingServiceInstanceListSupplier(
+                new DiscoveryServiceInstanceListSupplier(discoveryClient, serviceId), refreshInterval);
+        return new FormulaReactiveLoadBalancer(serviceId, supplier, routeMatcher);
+    }
+}
@@ -0,0 +1,33 @@
+/*
+ * Copyright (c) 2019 Baidu, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baidu.formula.route.spring.boot.route.reactive;
+
+import java.util.List;
+
+import org.springframework.cloud.client.ServiceInstance;
+
+import reactor.core.publisher.Flux;
+
+/**
+ * 提供一个服务的实例列表, 可以层层包装, 如从注册中心获取后再缓存
+ * 返回的列表不可修改, 实例未变化时应返回同一列表, 以便按列表的引用缓存路由结果
+ */
+public interface ServiceInstanceListSupplier {
+
+    String getServiceId();
+
+    Flux<List<ServiceInstance>> get();
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright (c) 2019 Baidu, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baidu.formula.route.spring.boot.autoconfigure;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+import org.springframework.boot.autoconfigure.AutoConfigurations;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+import org.springframework.cloud.netflix.ribbon.SpringClientFactory;
+import org.springframework.cloud.openfeign.ribbon.LoadBalancerFeignClient;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import com.baidu.formula.route.spring.boot.route.outcome.OutcomeRecordingFeignClient;
+import com.baidu.formula.route.spring.boot.route.outcome.ServerOutcomeRecorder;
+
+import feign.Client;
+import feign.Request;
+import feign.Response;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+public class OutlierDetectionAutoConfigurationTest {
+    private final ApplicationContextRunner contextRunner = new ApplicationContextRunner()
+            .withConfiguration(AutoConfigurations.of(OutlierDetectionAutoConfiguration.class))
+            .withUserConfiguration(FeignConfiguration.class);
+
+    @Test
+    public void testDisabledByDefault() {
+        contextRunner.run(context -> {
+            assertFalse(context.containsBean("serverOutcomeRecorder"));
+            LoadBalancerFeignClient client = context.getBean(LoadBalancerFeignClient.class);
+            assertSame(TracingFeignClient.class, client.getClass());
+            assertFalse(client.getDelegate() instanceof OutcomeRecordingFeignClient);
+        });
+    }
+
+    @Test
+    public void testWrapsExistingClient() {
+        contextRunner.withPropertyValues("formula.route.outlierDetection.enabled=true").run(context -> {
+            assertTrue(context.containsBean("serverOutcomeRecorder"));
+            LoadBalancerFeignClient client = context.getBean(LoadBalancerFeignClient.class);
+            // 保留子类的行为
+            assertTrue(client instanceof TracingFeignClient);
+            assertTrue(client.getDelegate() instanceof OutcomeRecordingFeignClient);
+        });
+    }
+
+    @Test
+    public void testRecordsOutcomeOfChosenInstance() throws IOException {
+        ServerOutcomeRecorder recorder = mock(ServerOutcomeRecorder.class);
+        TracingFeignClient target = new TracingFeignClient((request, options) -> response(503));
+        LoadBalancerFeignClient client = OutcomeRecordingFeignClient.wrap(target, recorder);
+
+        Response response = client.execute(request("http://demo/users"), new Request.Options());
+
+        assertEquals(503, response.status());
+        assertEquals(Collections.singletonList("http://demo/users"), target.traced);
+        verify(recorder).record("demo", "10.0.0.1", 8080, false);
+        // 不在负载均衡客户端中调用delegate时不记录
+        client.getDelegate().execute(request("http://10.0.0.1:8080/users"), new Request.Options());
+        verify(recorder).record("demo", "10.0.0.1", 8080, false);
+    }
+
+    private static Request request(String url) {
+        return Request.create("GET", url, Collections.emptyMap(), null, null);
+    }
+
+    private static Response response(int status) {
+        return Response.builder().status(status).headers(Collections.emptyMap()).build();
+    }
+
+    @Configuration
+    static class FeignConfiguration {
+        @Bean
+        public SpringClientFactory springClientFactory() {
+            return new SpringClientFactory();
+        }
+
+        @Bean
+        public LoadBalancerFeignClient feignClient() {
+            return new TracingFeignClient((request, options) -> response(200));
+        }
+    }
+
+    /**
+     * 模拟sleuth等继承负载均衡客户端的实现, 以选中实例的地址调用delegate
+     */
+    static class TracingFeignClient extends LoadBalancerFeignClient {
+        final List<String> traced = new ArrayList<>();
+
+        TracingFeignClient(Client delegate) {
+            super(delegate, null, null);
+        }
+
+        @Override
+        public Response execute(Request request, Request.Options options) throws IOException {
+            traced.add(request.url());
+            return getDelegate().execute(request("http://10.0.0.1:8080/users"), options);
+        }
+    }
+}
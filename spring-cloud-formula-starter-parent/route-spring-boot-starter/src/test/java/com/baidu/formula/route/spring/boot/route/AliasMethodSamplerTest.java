@@ -0,0 +1,88 @@
+/*
+ * Copyright (c) 2019 Baidu, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baidu.formula.route.spring.boot.route;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.commons.lang3.tuple.ImmutablePair;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+public class AliasMethodSamplerTest {
+    private static final int SAMPLES = 200000;
+
+    @Test
+    public void testDistribution() {
+        AliasMethodSampler<String> sampler = new AliasMethodSampler<>(Arrays.asList(
+                ImmutablePair.of("a", 50), ImmutablePair.of("b", 30), ImmutablePair.of("c", 15),
+                ImmutablePair.of("d", 5)));
+        Map<String, Integer> counts = sample(sampler);
+
+        assertEquals(0.50, ratio(counts, "a"), 0.01);
+        assertEquals(0.30, ratio(counts, "b"), 0.01);
+        assertEquals(0.15, ratio(counts, "c"), 0.01);
+        assertEquals(0.05, ratio(counts, "d"), 0.01);
+    }
+
+    @Test
+    public void testWeightsNeedNotSumTo100() {
+        AliasMethodSampler<String> sampler = new AliasMethodSampler<>(Arrays.asList(
+                ImmutablePair.of("a", 1), ImmutablePair.of("b", 3)));
+        Map<String, Integer> counts = sample(sampler);
+
+        assertEquals(0.25, ratio(counts, "a"), 0.01);
+        assertEquals(0.75, ratio(counts, "b"), 0.01);
+    }
+
+    @Test
+    public void testZeroWeightNeverSampled() {
+        AliasMethodSampler<String> sampler = new AliasMethodSampler<>(Arrays.asList(
+                ImmutablePair.of("a", 0), ImmutablePair.of("b", 100), ImmutablePair.of("c", 0)));
+        Map<String, Integer> counts = sample(sampler);
+
+        assertEquals(Collections.singletonList("b"), sampler.getValues());
+        assertEquals(SAMPLES, (int) counts.get("b"));
+        assertFalse(counts.containsKey("a"));
+        assertFalse(counts.containsKey("c"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testAllZeroWeights() {
+        new AliasMethodSampler<>(Arrays.asList(ImmutablePair.of("a", 0), ImmutablePair.of("b", 0)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNegativeWeight() {
+        new AliasMethodSampler<>(Arrays.asList(ImmutablePair.of("a", -1), ImmutablePair.of("b", 2)));
+    }
+
+    private static Map<String, Integer> sample(AliasMethodSampler<String> sampler) {
+        Map<String, Integer> counts = new HashMap<>();
+        for (int i = 0; i < SAMPLES; i++) {
+            counts.merge(sampler.sample(), 1, Integer::sum);
+        }
+        return counts;
+    }
+
+    private static double ratio(Map<String, Integer> counts, String value) {
+        return counts.getOrDefault(value, 0) / (double) SAMPLES;
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright (c) 2019 Baidu, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baidu.formula.route.spring.boot.route;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import com.baidu.formula.route.spring.boot.route.property.Destination;
+import com.baidu.formula.route.spring.boot.route.property.DestinationWrapper;
+import com.baidu.formula.route.spring.boot.route.property.FormulaRouteProperty;
+import com.baidu.formula.route.spring.boot.route.property.RouteProperties;
+import com.baidu.formula.route.spring.boot.route.property.Source;
+import com.baidu.formula.route.spring.boot.route.property.Tag;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class RouteMatcherTest {
+    // 测试进程中一定存在的环境变量, 用于匹配本实例
+    private static final Map.Entry<String, String> ENV = System.getenv().entrySet().iterator().next();
+
+    @Test
+    public void testNoRules() {
+        RouteMatcher matcher = new RouteMatcher(new RouteProperties());
+        assertSame(RouteSnapshot.EMPTY, matcher.getSnapshot());
+        assertFalse(matcher.getSnapshot().isMatched());
+    }
+
+    @Test
+    public void testFirstMatchedRuleWins() {
+        RouteProperties properties = new RouteProperties();
+        properties.setRules(Arrays.asList(
+                rule(1, tag("FORMULA_ROUTE_TEST_ABSENT", "x"), 100, "v0"),
+                rule(2, tag(ENV.getKey(), ENV.getValue()), 100, "v1"),
+                rule(3, tag(ENV.getKey(), ENV.getValue()), 100, "v2")));
+        RouteSnapshot snapshot = new RouteMatcher(properties).getSnapshot();
+
+        assertTrue(snapshot.isMatched());
+        assertTrue(snapshot.isRoutable());
+        assertEquals(2, snapshot.getMatchedRoute().getRoutingRuleId());
+        assertEquals("version=v1", snapshot.chooseDestination().getName());
+    }
+
+    @Test
+    public void testIllegalRuleNotRoutable() {
+        RouteProperties properties = new RouteProperties();
+        properties.setRules(Collections.singletonList(rule(1, tag(ENV.getKey(), ENV.getValue()), 0, "v1")));
+        RouteSnapshot snapshot = new RouteMatcher(properties).getSnapshot();
+
+        assertTrue(snapshot.isMatched());
+        assertFalse(snapshot.isRoutable());
+    }
+
+    @Test
+    public void testRefreshReusesUnchangedWeights() {
+        RouteProperties properties = new RouteProperties();
+        List<FormulaRouteProperty> rules = new ArrayList<>();
+        rules.add(rule(1, tag(ENV.getKey(), ENV.getValue()), 100, "v1"));
+        properties.setRules(rules);
+        RouteMatcher matcher = new RouteMatcher(properties);
+        RouteSnapshot first = matcher.getSnapshot();
+
+        RouteSnapshot second = matcher.refresh();
+        assertNotSame(first, second);
+        assertSame(first.getDestinations(), second.getDestinations());
+
+        rules.set(0, rule(1, tag(ENV.getKey(), ENV.getValue()), 100, "v2"));
+        RouteSnapshot third = matcher.refresh();
+        assertNotSame(first.getDestinations(), third.getDestinations());
+        assertEquals("version=v2", third.chooseDestination().getName());
+    }
+
+    static FormulaRouteProperty rule(int id, Tag sourceTag, int weight, String version) {
+        Source source = new Source();
+        source.setTags(Collections.singletonList(sourceTag));
+        Destination destination = new Destination();
+        destination.setTags(Collections.singletonList(tag("version", version)));
+        destination.setWeight(weight);
+        DestinationWrapper wrapper = new DestinationWrapper();
+        wrapper.setDestination(destination);
+        FormulaRouteProperty rule = new FormulaRouteProperty();
+        rule.setRoutingRuleId(id);
+        rule.setSource(source);
+        rule.setDestServiceName("demo");
+        rule.setDestType("WEIGHT");
+        rule.setDestinations(new ArrayList<>(Collections.singletonList(wrapper)));
+        return rule;
+    }
+
+    static Tag tag(String key, String value) {
+        Tag tag = new Tag();
+        tag.setKey(key);
+        tag.setOp("EQUAL");
+        tag.setValue(Collections.singletonList(value));
+        return tag;
+    }
+}
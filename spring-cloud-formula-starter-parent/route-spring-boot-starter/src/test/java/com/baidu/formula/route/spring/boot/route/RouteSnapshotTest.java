@@ -0,0 +1,125 @@
+/*
+ * Copyright (c) 2019 Baidu, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baidu.formula.route.spring.boot.route;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.baidu.formula.route.spring.boot.route.context.RouteContext;
+import com.baidu.formula.route.spring.boot.route.property.FormulaRouteProperty;
+import com.baidu.formula.route.spring.boot.route.property.RouteProperties;
+import com.baidu.formula.route.spring.boot.route.property.Tag;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class RouteSnapshotTest {
+    // 测试进程中一定存在的环境变量, 用于匹配本实例
+    private static final Map.Entry<String, String> ENV = System.getenv().entrySet().iterator().next();
+
+    private RouteSnapshot snapshot;
+
+    @Before
+    public void setUp() {
+        FormulaRouteProperty canary = RouteMatcherTest.rule(1, headerTag("X-Canary", "true"), 100, "canary");
+        FormulaRouteProperty beta = RouteMatcherTest.rule(2, headerTag("X-User", "beta"), 100, "beta");
+        FormulaRouteProperty other = RouteMatcherTest.rule(3, headerTag("X-Canary", "true"), 100, "other");
+        other.setDestServiceName("other");
+        FormulaRouteProperty stable = RouteMatcherTest.rule(4, RouteMatcherTest.tag(ENV.getKey(), ENV.getValue()),
+                100, "stable");
+        RouteProperties properties = new RouteProperties();
+        properties.setRules(Arrays.asList(canary, beta, other, stable));
+        properties.setContextHeaders(Collections.singletonList("X-Trace-Id"));
+        snapshot = new RouteMatcher(properties).getSnapshot();
+    }
+
+    @Test
+    public void testSelectByHeader() {
+        assertEquals(3, snapshot.getRequestRoutes().size());
+        assertEquals("version=canary", choose("demo", headers("x-canary", "true")));
+        assertEquals("version=beta", choose("demo", headers("x-user", "beta")));
+        // 按规则的先后顺序, 先匹配的生效
+        Map<String, String> both = headers("x-canary", "true");
+        both.put("x-user", "beta");
+        assertEquals("version=canary", choose("demo", both));
+        // 目标服务名忽略大小写
+        assertEquals("version=canary", choose("DEMO", headers("x-canary", "true")));
+    }
+
+    @Test
+    public void testFallsBackToInstanceRoute() {
+        assertSame(snapshot, snapshot.select("demo", Collections.emptyMap()));
+        assertSame(snapshot, snapshot.select("demo", headers("x-canary", "false")));
+        assertSame(snapshot, snapshot.select("unknown", headers("x-canary", "true")));
+        assertEquals("version=stable", snapshot.chooseDestination().getName());
+        assertEquals("version=other", choose("other", headers("x-canary", "true")));
+    }
+
+    @Test
+    public void testHeaderNames() {
+        assertEquals(new HashSet<>(Arrays.asList("x-canary", "x-user", "x-trace-id")), snapshot.getHeaderNames());
+        assertTrue(snapshot.getRequestRoutes().get(0).getHeaderNames().isEmpty());
+    }
+
+    @Test
+    public void testHeaderKeysIgnoreDefaultLocale() {
+        Locale locale = Locale.getDefault();
+        // 土耳其语中大写I转为无点的ı
+        Locale.setDefault(new Locale("tr", "TR"));
+        try {
+            RouteProperties properties = new RouteProperties();
+            properties.setRules(Collections.singletonList(
+                    RouteMatcherTest.rule(1, headerTag("X-User-ID", "1"), 100, "canary")));
+            RouteSnapshot turkish = new RouteMatcher(properties).getSnapshot();
+            assertEquals(Collections.singleton("x-user-id"), turkish.getHeaderNames());
+
+            RouteContext.setHeaders(headers("X-User-ID", "1"));
+            try {
+                assertEquals("1", RouteContext.getHeader("X-USER-ID"));
+                assertEquals("version=canary", turkish.select("demo", RouteContext.getHeaders())
+                        .chooseDestination().getName());
+            } finally {
+                RouteContext.clear();
+            }
+        } finally {
+            Locale.setDefault(locale);
+        }
+    }
+
+    private String choose(String serviceName, Map<String, String> headers) {
+        return snapshot.select(serviceName, headers).chooseDestination().getName();
+    }
+
+    private static Map<String, String> headers(String name, String value) {
+        Map<String, String> headers = new HashMap<>();
+        headers.put(name, value);
+        return headers;
+    }
+
+    private static Tag headerTag(String key, String value) {
+        Tag tag = RouteMatcherTest.tag(key, value);
+        tag.setType("HEADER");
+        return tag;
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright (c) 2019 Baidu, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baidu.formula.route.spring.boot.route.irule;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.netflix.loadbalancer.BaseLoadBalancer;
+import com.netflix.loadbalancer.Server;
+import com.netflix.loadbalancer.ServerStats;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+public class PowerOfTwoChoicesRuleTest {
+    private final List<Server> servers = Arrays.asList(new Server("10.0.0.1", 8080), new Server("10.0.0.2", 8080),
+            new Server("10.0.0.3", 8080));
+
+    private final PowerOfTwoChoicesRule rule = new PowerOfTwoChoicesRule();
+
+    private BaseLoadBalancer loadBalancer;
+
+    @Before
+    public void setUp() {
+        loadBalancer = new BaseLoadBalancer();
+        loadBalancer.addServers(servers);
+        loadBalancer.setRule(rule);
+    }
+
+    @Test
+    public void testPrefersFewerActiveRequests() {
+        Server busy = servers.get(0);
+        ServerStats stats = loadBalancer.getLoadBalancerStats().getSingleServerStat(busy);
+        for (int i = 0; i < 5; i++) {
+            stats.incrementActiveRequestsCount();
+        }
+
+        // 两次随机选择总有一个空闲实例, 负载高的实例不会被选中
+        for (int i = 0; i < 1000; i++) {
+            assertNotEquals(busy, rule.choose(null));
+        }
+    }
+
+    @Test
+    public void testPrefersLowerLatency() {
+        for (Server server : servers) {
+            record(server, server == servers.get(2) ? 200 : 10, 20);
+        }
+
+        for (int i = 0; i < 1000; i++) {
+            assertNotEquals(servers.get(2), rule.choose(null));
+        }
+        assertEquals(200, rule.getLatency(servers.get(2)), 0.001);
+    }
+
+    @Test
+    public void testLatencyRisesImmediately() {
+        Server server = servers.get(0);
+        record(server, 10, 20);
+        rule.getCost(server, loadBalancer.getLoadBalancerStats(), System.nanoTime());
+        assertEquals(10, rule.getLatency(server), 0.001);
+
+        // 延迟升高时立即跟随
+        record(server, 100, 1);
+        rule.getCost(server, loadBalancer.getLoadBalancerStats(), System.nanoTime());
+        assertEquals(100, rule.getLatency(server), 0.001);
+
+        // 延迟降低时按衰减时间平滑
+        record(server, 10, 1);
+        rule.getCost(server, loadBalancer.getLoadBalancerStats(), System.nanoTime());
+        assertTrue(rule.getLatency(server) > 10);
+    }
+
+    @Test
+    public void testSingleServer() {
+        BaseLoadBalancer single = new BaseLoadBalancer();
+        single.addServers(servers.subList(0, 1));
+        PowerOfTwoChoicesRule singleRule = new PowerOfTwoChoicesRule();
+        single.setRule(singleRule);
+        assertEquals(servers.get(0), singleRule.choose(null));
+    }
+
+    private void record(Server server, double latency, int count) {
+        ServerStats stats = loadBalancer.getLoadBalancerStats().getSingleServerStat(server);
+        for (int i = 0; i < count; i++) {
+            stats.incrementNumRequests();
+            stats.noteResponseTime(latency);
+        }
+    }
+}
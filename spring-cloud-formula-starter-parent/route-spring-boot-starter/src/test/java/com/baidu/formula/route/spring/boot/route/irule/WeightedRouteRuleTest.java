@@ -0,0 +1,231 @@
+/*
+ * Copyright (c) 2019 Baidu, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baidu.formula.route.spring.boot.route.irule;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Test;
+import org.springframework.cloud.netflix.ribbon.StaticServerList;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.baidu.formula.route.spring.boot.route.RouteMatcher;
+import com.baidu.formula.route.spring.boot.route.loadbalancer.CustomIloadBalancer;
+import com.baidu.formula.route.spring.boot.route.metadata.FormulaServer;
+import com.baidu.formula.route.spring.boot.route.property.Destination;
+import com.baidu.formula.route.spring.boot.route.property.DestinationWrapper;
+import com.baidu.formula.route.spring.boot.route.property.FormulaRouteProperty;
+import com.baidu.formula.route.spring.boot.route.property.RouteProperties;
+import com.baidu.formula.route.spring.boot.route.property.Source;
+import com.baidu.formula.route.spring.boot.route.property.Tag;
+import com.netflix.client.config.DefaultClientConfigImpl;
+import com.netflix.loadbalancer.DummyPing;
+import com.netflix.loadbalancer.Server;
+import com.netflix.loadbalancer.ServerListUpdater;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class WeightedRouteRuleTest {
+    private static final String SERVICE = "demo";
+
+    private static final int REQUESTS = 20000;
+
+    // 测试进程中一定存在的环境变量, 用于匹配本实例
+    private static final Map.Entry<String, String> ENV = System.getenv().entrySet().iterator().next();
+
+    private final List<Server> servers = Arrays.asList(server("10.0.0.1", "v1"), server("10.0.0.2", "v1"),
+            server("10.0.0.3", "v2"));
+
+    @Test
+    public void testObservedRatios() {
+        WeightedRouteRule rule = new WeightedRouteRule();
+        createLoadBalancer(rule, Collections.singletonList(route(80, 20)));
+
+        for (int i = 0; i < REQUESTS; i++) {
+            Server server = rule.choose(null);
+            assertTrue(server instanceof TestServer);
+        }
+
+        Map<String, Double> ratios = rule.getObservedRatios();
+        assertEquals(0.8, ratios.get("version=v1"), 0.02);
+        assertEquals(0.2, ratios.get("version=v2"), 0.02);
+        Map<String, Long> counts = rule.getChosenCounts();
+        assertEquals(REQUESTS, counts.get("version=v1") + counts.get("version=v2"));
+
+        rule.resetStatistics();
+        assertTrue(rule.getObservedRatios().isEmpty());
+    }
+
+    @Test
+    public void testChosenServerMatchesDestination() {
+        WeightedRouteRule rule = new WeightedRouteRule();
+        createLoadBalancer(rule, Collections.singletonList(route(0, 100)));
+
+        for (int i = 0; i < 100; i++) {
+            assertEquals("v2", ((TestServer) rule.choose(null)).getMetadata().get("version"));
+        }
+        assertEquals(1.0, rule.getObservedRatios().get("version=v2"), 0);
+    }
+
+    @Test
+    public void testRoundRobinWithoutRoute() {
+        WeightedRouteRule rule = new WeightedRouteRule();
+        createLoadBalancer(rule, null);
+
+        List<Server> chosen = new ArrayList<>();
+        for (int i = 0; i < servers.size(); i++) {
+            chosen.add(rule.choose(null));
+        }
+        assertEquals(servers.size(), chosen.stream().distinct().count());
+        assertTrue(rule.getChosenCounts().isEmpty());
+    }
+
+    @Test
+    public void testRoutesAcrossZones() {
+        // zone-c的实例熔断后不可用, 父类按可用区选择每个可用区的负载均衡器
+        Server tripped = server("10.0.0.5", "v1", "zone-c");
+        List<Server> zoned = Arrays.asList(server("10.0.0.1", "v1", "zone-a"), server("10.0.0.2", "v1", "zone-b"),
+                server("10.0.0.3", "v2", "zone-a"), server("10.0.0.4", "v2", "zone-b"), tripped);
+        WeightedRouteRule rule = new WeightedRouteRule();
+        CustomIloadBalancer<Server> loadBalancer = createLoadBalancer(rule, Collections.singletonList(route(0, 100)),
+                zoned);
+        // 父类构造时创建的可用区负载均衡器会被字段初始化覆盖, 再次更新实例列表时才会填充
+        loadBalancer.updateListOfServers();
+        for (int i = 0; i < 5; i++) {
+            loadBalancer.getLoadBalancerStats().getSingleServerStat(tripped)
+                    .incrementSuccessiveConnectionFailureCount();
+        }
+        assertTrue(loadBalancer.getLoadBalancerStats().getSingleServerStat(tripped).isCircuitBreakerTripped());
+        assertEquals(3, loadBalancer.getLoadBalancerStats().getAvailableZones().size());
+
+        Set<Server> chosen = new HashSet<>();
+        for (int i = 0; i < 100; i++) {
+            Server server = loadBalancer.chooseServer(null);
+            assertEquals("v2", ((TestServer) server).getMetadata().get("version"));
+            chosen.add(server);
+        }
+        assertEquals(2, chosen.size());
+        assertEquals(100L, (long) rule.getChosenCounts().get("version=v2"));
+    }
+
+    private void createLoadBalancer(WeightedRouteRule rule, List<FormulaRouteProperty> rules) {
+        createLoadBalancer(rule, rules, servers);
+    }
+
+    private CustomIloadBalancer<Server> createLoadBalancer(WeightedRouteRule rule, List<FormulaRouteProperty> rules,
+                                                           List<Server> servers) {
+        DefaultClientConfigImpl config = new DefaultClientConfigImpl();
+        config.loadDefaultValues();
+        config.setClientName(SERVICE);
+        CustomIloadBalancer<Server> loadBalancer = new CustomIloadBalancer<>(config, rule, new DummyPing(),
+                new StaticServerList<>(servers.toArray(new Server[0])), null, new NoOpServerListUpdater());
+        RouteProperties properties = new RouteProperties();
+        properties.setRules(rules);
+        ReflectionTestUtils.setField(loadBalancer, "routeProperties", properties);
+        ReflectionTestUtils.setField(loadBalancer, "routeMatcher", new RouteMatcher(properties));
+        return loadBalancer;
+    }
+
+    private static FormulaRouteProperty route(int v1Weight, int v2Weight) {
+        Source source = new Source();
+        source.setTags(Collections.singletonList(tag(ENV.getKey(), ENV.getValue())));
+        FormulaRouteProperty route = new FormulaRouteProperty();
+        route.setRoutingRuleId(1);
+        route.setSource(source);
+        route.setDestServiceName(SERVICE);
+        route.setDestType("WEIGHT");
+        route.setDestinations(Arrays.asList(destination("v1", v1Weight), destination("v2", v2Weight)));
+        return route;
+    }
+
+    private static DestinationWrapper destination(String version, int weight) {
+        Destination destination = new Destination();
+        destination.setTags(Collections.singletonList(tag("version", version)));
+        destination.setWeight(weight);
+        DestinationWrapper wrapper = new DestinationWrapper();
+        wrapper.setDestination(destination);
+        return wrapper;
+    }
+
+    private static Tag tag(String key, String value) {
+        Tag tag = new Tag();
+        tag.setKey(key);
+        tag.setOp("EQUAL");
+        tag.setValue(Collections.singletonList(value));
+        return tag;
+    }
+
+    private static Server server(String host, String version) {
+        return new TestServer(host, Collections.singletonMap("version", version));
+    }
+
+    private static Server server(String host, String version, String zone) {
+        Server server = server(host, version);
+        server.setZone(zone);
+        return server;
+    }
+
+    private static class TestServer extends Server implements FormulaServer {
+        private final Map<String, String> metadata;
+
+        TestServer(String host, Map<String, String> metadata) {
+            super(host, 8080);
+            this.metadata = metadata;
+        }
+
+        @Override
+        public Map<String, String> getMetadata() {
+            return metadata;
+        }
+    }
+
+    private static class NoOpServerListUpdater implements ServerListUpdater {
+        @Override
+        public void start(UpdateAction updateAction) {
+        }
+
+        @Override
+        public void stop() {
+        }
+
+        @Override
+        public String getLastUpdate() {
+            return new Date().toString();
+        }
+
+        @Override
+        public long getDurationSinceLastUpdateMs() {
+            return 0;
+        }
+
+        @Override
+        public int getNumberMissedCycles() {
+            return 0;
+        }
+
+        @Override
+        public int getCoreThreads() {
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,189 @@
+/*
+ * Copyright (c) 2019 Baidu, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baidu.formula.route.spring.boot.route.listener;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.cloud.context.environment.EnvironmentChangeEvent;
+import org.springframework.cloud.netflix.ribbon.SpringClientFactory;
+import org.springframework.context.ApplicationContext;
+import org.springframework.core.env.StandardEnvironment;
+
+import com.baidu.formula.route.spring.boot.route.RouteMatcher;
+import com.baidu.formula.route.spring.boot.route.RouteSnapshot;
+import com.baidu.formula.route.spring.boot.route.irule.PowerOfTwoChoicesRule;
+import com.baidu.formula.route.spring.boot.route.property.Destination;
+import com.baidu.formula.route.spring.boot.route.property.DestinationWrapper;
+import com.baidu.formula.route.spring.boot.route.property.FormulaRouteProperty;
+import com.baidu.formula.route.spring.boot.route.property.RouteProperties;
+import com.baidu.formula.route.spring.boot.route.property.Source;
+import com.baidu.formula.route.spring.boot.route.property.Tag;
+import com.netflix.client.config.DefaultClientConfigImpl;
+import com.netflix.loadbalancer.BaseLoadBalancer;
+import com.netflix.loadbalancer.IRule;
+import com.netflix.loadbalancer.RoundRobinRule;
+import com.netflix.loadbalancer.ZoneAvoidanceRule;
+
+public class RouteListenerTest {
+    // 测试进程中一定存在的环境变量, 用于匹配本实例
+    private static final Map.Entry<String, String> ENV = System.getenv().entrySet().iterator().next();
+
+    private static final String RULE_KEY = "demo.ribbon.NFLoadBalancerRuleClassName";
+
+    private final RouteProperties routeProperties = new RouteProperties();
+
+    private final List<FormulaRouteProperty> rules = new ArrayList<>();
+
+    private final StandardEnvironment environment = new StandardEnvironment();
+
+    private final BaseLoadBalancer demo = new BaseLoadBalancer();
+
+    private final BaseLoadBalancer other = new BaseLoadBalancer();
+
+    // ribbon client容器中的IRule, 即client自身的策略
+    private final IRule demoClientRule = new RoundRobinRule();
+
+    private RouteMatcher routeMatcher;
+
+    private RouteListener listener;
+
+    @Before
+    public void setUp() {
+        routeProperties.setRules(rules);
+        routeMatcher = new RouteMatcher(routeProperties);
+        demo.setRule(demoClientRule);
+        other.setRule(new RoundRobinRule());
+
+        ApplicationContext applicationContext = mock(ApplicationContext.class);
+        when(applicationContext.getClassLoader()).thenReturn(getClass().getClassLoader());
+        SpringClientFactory clientFactory = mock(SpringClientFactory.class);
+        when(clientFactory.getContextNames()).thenReturn(new HashSet<>(Arrays.asList("demo", "other")));
+        when(clientFactory.getLoadBalancer("demo")).thenReturn(demo);
+        when(clientFactory.getLoadBalancer("other")).thenReturn(other);
+        when(clientFactory.getClientConfig(anyString())).thenReturn(new DefaultClientConfigImpl());
+        when(clientFactory.getInstance("demo", IRule.class)).thenReturn(demoClientRule);
+        listener = new RouteListener(applicationContext, clientFactory, routeProperties, environment, routeMatcher);
+    }
+
+    @Test
+    public void testIgnoresForeignKeys() {
+        rules.add(route("P2C"));
+        RouteSnapshot snapshot = routeMatcher.getSnapshot();
+        IRule rule = demo.getRule();
+
+        listener.onApplicationEvent(new EnvironmentChangeEvent(Collections.singleton("spring.application.name")));
+        listener.onApplicationEvent(new EnvironmentChangeEvent(Collections.singleton("formula.routes")));
+
+        assertSame(snapshot, routeMatcher.getSnapshot());
+        assertSame(rule, demo.getRule());
+        assertNull(environment.getProperty(RULE_KEY));
+    }
+
+    @Test
+    public void testSwapsOnlyChangedRule() {
+        IRule otherRule = other.getRule();
+        rules.add(route("P2C"));
+        listener.onApplicationEvent(changed());
+
+        assertTrue(routeMatcher.getSnapshot().isMatched());
+        assertTrue(demo.getRule() instanceof PowerOfTwoChoicesRule);
+        assertSame(demo, demo.getRule().getLoadBalancer());
+        assertEquals(PowerOfTwoChoicesRule.class.getName(), environment.getProperty(RULE_KEY));
+        assertSame(otherRule, other.getRule());
+
+        // 负载均衡策略不变时不替换IRule
+        IRule demoRule = demo.getRule();
+        rules.set(0, route("p2c"));
+        listener.onApplicationEvent(changed());
+        assertSame(demoRule, demo.getRule());
+
+        // 未配置负载均衡策略时不覆盖client自身的策略, 在获取实例列表时路由
+        rules.set(0, route(null));
+        listener.onApplicationEvent(changed());
+        assertSame(demoClientRule, demo.getRule());
+        assertNull(environment.getProperty(RULE_KEY));
+        assertSame(otherRule, other.getRule());
+    }
+
+    @Test
+    public void testRestoresClientRuleWhenRouteRemoved() {
+        rules.add(route("P2C"));
+        listener.onApplicationEvent(changed());
+
+        rules.clear();
+        listener.onApplicationEvent(changed());
+        assertSame(demoClientRule, demo.getRule());
+        assertSame(demo, demo.getRule().getLoadBalancer());
+        assertNull(environment.getProperty(RULE_KEY));
+    }
+
+    @Test
+    public void testRestoresZoneAvoidanceRuleWithoutClientRule() {
+        rules.add(route("P2C"));
+        rules.get(0).setDestServiceName("other");
+        listener.onApplicationEvent(changed());
+        assertTrue(other.getRule() instanceof PowerOfTwoChoicesRule);
+
+        rules.clear();
+        listener.onApplicationEvent(changed());
+        assertTrue(other.getRule() instanceof ZoneAvoidanceRule);
+    }
+
+    private static EnvironmentChangeEvent changed() {
+        return new EnvironmentChangeEvent(Collections.singleton("formula.route.rules[0].loadbalance"));
+    }
+
+    private static FormulaRouteProperty route(String loadbalance) {
+        Source source = new Source();
+        source.setTags(Collections.singletonList(tag(ENV.getKey(), ENV.getValue())));
+        Destination destination = new Destination();
+        destination.setTags(Collections.singletonList(tag("version", "v1")));
+        destination.setWeight(100);
+        DestinationWrapper wrapper = new DestinationWrapper();
+        wrapper.setDestination(destination);
+        FormulaRouteProperty route = new FormulaRouteProperty();
+        route.setRoutingRuleId(1);
+        route.setSource(source);
+        route.setDestServiceName("demo");
+        route.setDestType("WEIGHT");
+        route.setDestinations(Collections.singletonList(wrapper));
+        route.setLoadbalance(loadbalance);
+        return route;
+    }
+
+    private static Tag tag(String key, String value) {
+        Tag tag = new Tag();
+        tag.setKey(key);
+        tag.setOp("EQUAL");
+        tag.setValue(Collections.singletonList(value));
+        return tag;
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright (c) 2019 Baidu, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baidu.formula.route.spring.boot.route.loadbalancer;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Test;
+import org.springframework.cloud.client.DefaultServiceInstance;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.client.discovery.DiscoveryClient;
+
+import com.baidu.formula.route.spring.boot.route.loadbalancer.FleetPosition.Position;
+import com.baidu.formula.route.spring.boot.route.property.RouteProperties;
+import com.netflix.loadbalancer.Server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class DeterministicSubsetterTest {
+    private static final String SERVICE = "caller";
+
+    private static final int SIZE = 3;
+
+    private final List<Server> servers = new ArrayList<>();
+
+    private final List<ServiceInstance> clients = new ArrayList<>();
+
+    private final DiscoveryClient discoveryClient = new DiscoveryClient() {
+        @Override
+        public String description() {
+            return "test";
+        }
+
+        @Override
+        public List<ServiceInstance> getInstances(String serviceId) {
+            return new ArrayList<>(clients);
+        }
+
+        @Override
+        public List<String> getServices() {
+            return Collections.singletonList(SERVICE);
+        }
+    };
+
+    private final DeterministicSubsetter subsetter = new DeterministicSubsetter();
+
+    @Test
+    public void testEveryServerCovered() {
+        createFleet(40, 30);
+        Map<String, List<Server>> subsets = subsets();
+        Set<Server> covered = new HashSet<>();
+        subsets.values().forEach(covered::addAll);
+        assertEquals(new HashSet<>(servers), covered);
+        for (List<Server> subset : subsets.values()) {
+            assertTrue(subset.size() >= SIZE);
+        }
+    }
+
+    @Test
+    public void testClientChurn() {
+        createFleet(40, 30);
+        Map<String, List<Server>> before = subsets();
+
+        // 增加客户端时只有环上前一个客户端的子集缩小
+        clients.add(new DefaultServiceInstance(SERVICE, "10.1.0.100", 8080, false));
+        Map<String, List<Server>> added = subsets();
+        assertChangedAtMostOne(before, added);
+        Set<Server> covered = new HashSet<>();
+        added.values().forEach(covered::addAll);
+        assertEquals(new HashSet<>(servers), covered);
+
+        // 减少客户端时只有环上前一个客户端的子集扩大
+        clients.remove(0);
+        Map<String, List<Server>> removed = subsets();
+        assertChangedAtMostOne(added, removed);
+        covered.clear();
+        removed.values().forEach(covered::addAll);
+        assertEquals(new HashSet<>(servers), covered);
+    }
+
+    @Test
+    public void testServerChurn() {
+        createFleet(40, 30);
+        Map<String, List<Server>> before = subsets();
+        servers.remove(7);
+        Map<String, List<Server>> after = subsets();
+        for (Map.Entry<String, List<Server>> entry : after.entrySet()) {
+            Set<Server> changed = new HashSet<>(entry.getValue());
+            changed.removeAll(before.get(entry.getKey()));
+            assertTrue(changed.size() <= 1);
+        }
+    }
+
+    private void assertChangedAtMostOne(Map<String, List<Server>> before, Map<String, List<Server>> after) {
+        int changed = 0;
+        for (Map.Entry<String, List<Server>> entry : after.entrySet()) {
+            List<Server> previous = before.get(entry.getKey());
+            if (previous != null && !previous.equals(entry.getValue())) {
+                changed++;
+            }
+        }
+        assertTrue("changed clients: " + changed, changed <= 1);
+    }
+
+    private void createFleet(int serverCount, int clientCount) {
+        for (int i = 0; i < serverCount; i++) {
+            servers.add(new Server("10.0.0." + i, 8080));
+        }
+        for (int i = 0; i < clientCount; i++) {
+            clients.add(new DefaultServiceInstance(SERVICE, "10.1.0." + i, 8080, false));
+        }
+    }
+
+    private Map<String, List<Server>> subsets() {
+        List<Server> list = new ArrayList<>(servers);
+        Map<String, List<Server>> subsets = new HashMap<>();
+        for (ServiceInstance client : clients) {
+            String clientId = client.getHost() + ":" + client.getPort();
+            RouteProperties properties = new RouteProperties();
+            properties.getSubset().setEnabled(true);
+            properties.getSubset().setSize(SIZE);
+            Position position = new FleetPosition(properties, discoveryClient, SERVICE, clientId).get();
+            subsets.put(clientId, subsetter.subset(list, position, SIZE));
+        }
+        return subsets;
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright (c) 2019 Baidu, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baidu.formula.route.spring.boot.route.loadbalancer;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.baidu.formula.route.spring.boot.route.property.OutlierDetection;
+import com.netflix.loadbalancer.LoadBalancerStats;
+import com.netflix.loadbalancer.Server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class OutlierDetectorTest {
+    private final AtomicLong clock = new AtomicLong();
+
+    private final LoadBalancerStats stats = new LoadBalancerStats("demo");
+
+    private final List<Server> servers = Arrays.asList(new Server("10.0.0.1", 8080), new Server("10.0.0.2", 8080),
+            new Server("10.0.0.3", 8080), new Server("10.0.0.4", 8080));
+
+    private OutlierDetection config;
+
+    private OutlierDetector detector;
+
+    @Before
+    public void setUp() {
+        config = new OutlierDetection();
+        config.setEnabled(true);
+        config.setConsecutiveFailures(5);
+        config.setBaseEjectionTime(Duration.ofSeconds(30));
+        config.setMaxEjectionPercent(50);
+        detector = new OutlierDetector("demo", clock::get);
+    }
+
+    @Test
+    public void testServerErrorsEjectInstance() {
+        Server server = servers.get(0);
+        recordFailures(server, 4);
+        assertEquals(servers, filterAt(0));
+
+        // 成功调用后连续失败次数清零
+        detector.recordOutcome(server, true);
+        recordFailures(server, 4);
+        assertEquals(servers, filterAt(1));
+
+        detector.recordOutcome(server, false);
+        List<Server> result = filterAt(2);
+        assertEquals(3, result.size());
+        assertFalse(result.contains(server));
+    }
+
+    @Test
+    public void testEjectionTimeGrowsExponentially() {
+        Server server = servers.get(0);
+        recordFailures(server, 5);
+        assertFalse(filterAt(0).contains(server));
+        assertFalse(filterAt(29).contains(server));
+        assertTrue(filterAt(30).contains(server));
+
+        // 第二次摘除时长翻倍
+        recordFailures(server, 5);
+        assertFalse(filterAt(31).contains(server));
+        assertFalse(filterAt(90).contains(server));
+        assertTrue(filterAt(91).contains(server));
+
+        recordFailures(server, 5);
+        assertFalse(filterAt(92).contains(server));
+        assertFalse(filterAt(211).contains(server));
+        assertTrue(filterAt(212).contains(server));
+    }
+
+    @Test
+    public void testMaxEjectionPercent() {
+        for (int i = 0; i < 3; i++) {
+            recordFailures(servers.get(i), 5);
+        }
+        List<Server> result = filterAt(0);
+        assertEquals(2, result.size());
+        assertEquals(2, detector.getEjectedServers().size());
+        assertTrue(result.contains(servers.get(3)));
+    }
+
+    @Test
+    public void testRoutedListsShareEjection() {
+        Server server = servers.get(0);
+        recordFailures(server, 5);
+        List<Server> routed = servers.subList(2, 4);
+        clock.set(0);
+        assertEquals(routed, detector.filter(routed, servers, stats, config));
+
+        // 按其他路由结果检测时不清除已摘除的实例
+        clock.set(TimeUnit.SECONDS.toNanos(1));
+        assertEquals(routed, detector.filter(routed, servers, stats, config));
+        assertFalse(filterAt(2).contains(server));
+    }
+
+    private void recordFailures(Server server, int count) {
+        for (int i = 0; i < count; i++) {
+            detector.recordOutcome(server, false);
+        }
+    }
+
+    private List<Server> filterAt(long seconds) {
+        clock.set(TimeUnit.SECONDS.toNanos(seconds));
+        return detector.filter(servers, stats, config);
+    }
+}
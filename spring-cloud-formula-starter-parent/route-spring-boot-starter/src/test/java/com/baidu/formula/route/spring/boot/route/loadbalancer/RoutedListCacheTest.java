@@ -0,0 +1,105 @@
+/*
+ * Copyright (c) 2019 Baidu, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baidu.formula.route.spring.boot.route.loadbalancer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import com.baidu.formula.route.spring.boot.route.RouteDestination;
+import com.baidu.formula.route.spring.boot.route.property.Tag;
+import com.netflix.loadbalancer.Server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+public class RoutedListCacheTest {
+    private final RoutedListCache cache = new RoutedListCache();
+
+    private final AtomicInteger loads = new AtomicInteger();
+
+    @Test
+    public void testHitOnSameListAndDestination() {
+        List<Server> servers = servers();
+        List<Server> first = cache.get(servers, destination("v1"), () -> load(servers));
+        // 条件相同的目标是同一个key
+        List<Server> second = cache.get(servers, destination("v1"), () -> load(servers));
+
+        assertSame(first, second);
+        assertEquals(1, loads.get());
+        assertEquals(1, cache.size());
+
+        cache.get(servers, destination("v2"), () -> load(servers));
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    public void testMissOnNewListVersion() {
+        List<Server> servers = servers();
+        List<Server> first = cache.get(servers, destination("v1"), () -> load(servers));
+
+        // ribbon刷新时替换列表, 内容相同的新列表也是新版本
+        List<Server> refreshed = new ArrayList<>(servers);
+        List<Server> second = cache.get(refreshed, destination("v1"), () -> load(refreshed));
+
+        assertNotSame(first, second);
+        assertEquals(first, second);
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    public void testIndexCachedPerList() {
+        List<Server> servers = servers();
+        ServerTagIndex<Server> index = cache.getIndex(servers, this::index);
+        assertSame(index, cache.getIndex(servers, this::index));
+        assertNotSame(index, cache.getIndex(new ArrayList<>(servers), this::index));
+
+        cache.clear();
+        assertNotSame(index, cache.getIndex(servers, this::index));
+        assertEquals(0, cache.size());
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testResultUnmodifiable() {
+        List<Server> servers = servers();
+        cache.get(servers, destination("v1"), () -> load(servers)).clear();
+    }
+
+    private List<Server> load(List<Server> servers) {
+        loads.incrementAndGet();
+        return new ArrayList<>(servers.subList(0, 1));
+    }
+
+    private ServerTagIndex<Server> index(List<Server> servers) {
+        return new ServerTagIndex<>(servers, (server, key) -> null);
+    }
+
+    private static List<Server> servers() {
+        return Arrays.asList(new Server("10.0.0.1", 8080), new Server("10.0.0.2", 8080));
+    }
+
+    private static RouteDestination destination(String version) {
+        Tag tag = new Tag();
+        tag.setKey("version");
+        tag.setValue(Collections.singletonList(version));
+        return RouteDestination.of(Collections.singletonList(tag));
+    }
+}
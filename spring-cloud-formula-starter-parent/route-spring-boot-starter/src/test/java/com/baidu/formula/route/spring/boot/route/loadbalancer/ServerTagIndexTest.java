@@ -0,0 +1,112 @@
+/*
+ * Copyright (c) 2019 Baidu, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baidu.formula.route.spring.boot.route.loadbalancer;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import com.baidu.formula.route.spring.boot.route.RouteDestination;
+import com.baidu.formula.route.spring.boot.route.property.Tag;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ServerTagIndexTest {
+    // 实例 -> 元数据, a没有zone标签
+    private static final Map<String, Map<String, String>> METADATA = new HashMap<>();
+
+    static {
+        METADATA.put("a", metadata("v1", null));
+        METADATA.put("b", metadata("v2", "bj"));
+        METADATA.put("c", metadata("v1", "gz"));
+        METADATA.put("d", metadata("v3", "bj"));
+    }
+
+    private final AtomicInteger reads = new AtomicInteger();
+
+    private final ServerTagIndex<String> index = new ServerTagIndex<>(Arrays.asList("a", "b", "c", "d"),
+            (server, key) -> {
+                reads.incrementAndGet();
+                return METADATA.get(server).get(key);
+            });
+
+    @Test
+    public void testEqual() {
+        assertEquals(Arrays.asList("a", "c"), index.filter(destination(tag("version", "EQUAL", "v1"))));
+        // 未配置运算符时为EQUAL
+        assertEquals(Arrays.asList("b", "d"), index.filter(destination(tag("zone", null, "bj"))));
+        assertTrue(index.filter(destination(tag("version", "EQUAL", "v9"))).isEmpty());
+    }
+
+    @Test
+    public void testNotEqual() {
+        assertEquals(Arrays.asList("b", "d"), index.filter(destination(tag("version", "NOT_EQUAL", "v1"))));
+        // 没有该标签的实例满足不等条件
+        assertEquals(Arrays.asList("a", "c"), index.filter(destination(tag("zone", "NOT_EQUAL", "bj"))));
+    }
+
+    @Test
+    public void testInAndNotIn() {
+        assertEquals(Arrays.asList("b", "c", "d"), index.filter(destination(tag("zone", "IN", "bj", "gz"))));
+        assertEquals(Collections.singletonList("a"), index.filter(destination(tag("zone", "NOT_IN", "bj", "gz"))));
+        assertEquals(Arrays.asList("b", "d"), index.filter(destination(tag("version", "NOT_IN", "v1", "v9"))));
+    }
+
+    @Test
+    public void testMissingKey() {
+        assertTrue(index.filter(destination(tag("group", "EQUAL", "x"))).isEmpty());
+        assertTrue(index.filter(destination(tag("group", "IN", "x", "y"))).isEmpty());
+        assertEquals(Arrays.asList("a", "b", "c", "d"), index.filter(destination(tag("group", "NOT_EQUAL", "x"))));
+        assertEquals(Arrays.asList("a", "b", "c", "d"), index.filter(destination(tag("group", "NOT_IN", "x"))));
+    }
+
+    @Test
+    public void testAllConditionsAndIndexBuiltOncePerKey() {
+        RouteDestination destination = destination(tag("version", "EQUAL", "v1"), tag("zone", "NOT_EQUAL", "gz"));
+        assertEquals(Collections.singletonList("a"), index.filter(destination));
+        assertEquals(8, reads.get());
+
+        index.filter(destination(tag("version", "IN", "v2", "v3"), tag("zone", "EQUAL", "bj")));
+        assertEquals(8, reads.get());
+    }
+
+    private static RouteDestination destination(Tag... tags) {
+        return RouteDestination.of(Arrays.asList(tags));
+    }
+
+    private static Tag tag(String key, String op, String... values) {
+        Tag tag = new Tag();
+        tag.setKey(key);
+        tag.setOp(op);
+        tag.setValue(Arrays.asList(values));
+        return tag;
+    }
+
+    private static Map<String, String> metadata(String version, String zone) {
+        Map<String, String> metadata = new HashMap<>();
+        metadata.put("version", version);
+        if (zone != null) {
+            metadata.put("zone", zone);
+        }
+        return metadata;
+    }
+}
@@ -0,0 +1,224 @@
+/*
+ * Copyright (c) 2019 Baidu, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baidu.formula.route.spring.boot.route.reactive;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+import org.springframework.cloud.client.DefaultServiceInstance;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.client.discovery.DiscoveryClient;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.ExchangeFunction;
+
+import com.baidu.formula.route.spring.boot.route.RouteMatcher;
+import com.baidu.formula.route.spring.boot.route.property.Destination;
+import com.baidu.formula.route.spring.boot.route.property.DestinationWrapper;
+import com.baidu.formula.route.spring.boot.route.property.FormulaRouteProperty;
+import com.baidu.formula.route.spring.boot.route.property.RouteProperties;
+import com.baidu.formula.route.spring.boot.route.property.Source;
+import com.baidu.formula.route.spring.boot.route.property.Tag;
+
+import reactor.core.publisher.Mono;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class FormulaReactiveLoadBalancerTest {
+    private static final String SERVICE = "demo";
+
+    // 测试进程中一定存在的环境变量, 用于匹配本实例
+    private static final Map.Entry<String, String> ENV = System.getenv().entrySet().iterator().next();
+
+    private final List<ServiceInstance> instances = new ArrayList<>(Arrays.asList(
+            instance("10.0.0.1", "v1"), instance("10.0.0.2", "v1"), instance("10.0.0.3", "canary")));
+
+    private final DiscoveryClient discoveryClient = new DiscoveryClient() {
+        @Override
+        public String description() {
+            return "test";
+        }
+
+        @Override
+        public List<ServiceInstance> getInstances(String serviceId) {
+            return SERVICE.equals(serviceId) ? new ArrayList<>(instances) : Collections.emptyList();
+        }
+
+        @Override
+        public List<String> getServices() {
+            return Collections.singletonList(SERVICE);
+        }
+    };
+
+    @Test
+    public void testRoundRobinInRoutedDestination() {
+        FormulaReactiveLoadBalancer loadBalancer = new FormulaReactiveLoadBalancerFactory(discoveryClient,
+                matcher(route(tag(ENV.getKey(), ENV.getValue()), "v1"))).getLoadBalancer(SERVICE);
+
+        Set<String> hosts = new HashSet<>();
+        for (int i = 0; i < 10; i++) {
+            ServiceInstance instance = loadBalancer.choose(Collections.emptyMap()).block();
+            assertEquals("v1", instance.getMetadata().get("version"));
+            hosts.add(instance.getHost());
+        }
+        assertEquals(new HashSet<>(Arrays.asList("10.0.0.1", "10.0.0.2")), hosts);
+    }
+
+    @Test
+    public void testHeaderRoute() {
+        Tag header = tag("X-Canary", "true");
+        header.setType("HEADER");
+        FormulaReactiveLoadBalancer loadBalancer = new FormulaReactiveLoadBalancerFactory(discoveryClient,
+                matcher(route(header, "canary"))).getLoadBalancer(SERVICE);
+
+        for (int i = 0; i < 5; i++) {
+            assertEquals("10.0.0.3", loadBalancer.choose(Collections.singletonMap("x-canary", "true"))
+                    .block().getHost());
+        }
+        // 请求头不匹配时不路由
+        Set<String> hosts = new HashSet<>();
+        for (int i = 0; i < 3; i++) {
+            hosts.add(loadBalancer.choose(Collections.emptyMap()).block().getHost());
+        }
+        assertEquals(3, hosts.size());
+    }
+
+    @Test
+    public void testNoInstance() {
+        FormulaReactiveLoadBalancer loadBalancer = new FormulaReactiveLoadBalancerFactory(discoveryClient,
+                matcher(route(tag(ENV.getKey(), ENV.getValue()), "v2"))).getLoadBalancer(SERVICE);
+        // 目标没有实例
+        assertNull(loadBalancer.choose(Collections.emptyMap()).block());
+        assertNull(loadBalancer.choose(Collections.emptyList(), Collections.emptyMap()));
+    }
+
+    @Test
+    public void testCachedListKeepsVersion() {
+        ServiceInstanceListSupplier supplier = new CachingServiceInstanceListSupplier(
+                new DiscoveryServiceInstanceListSupplier(discoveryClient, SERVICE), Duration.ZERO);
+        List<ServiceInstance> first = supplier.get().blockFirst();
+        // 实例未变化时返回同一列表
+        assertSame(first, supplier.get().blockFirst());
+
+        instances.remove(0);
+        List<ServiceInstance> second = supplier.get().blockFirst();
+        assertEquals(2, second.size());
+    }
+
+    @Test
+    public void testFilterRewritesUrl() {
+        FormulaLoadBalancerExchangeFilterFunction filter = filter(route(tag(ENV.getKey(), ENV.getValue()), "canary"));
+        AtomicReference<ClientRequest> exchanged = new AtomicReference<>();
+        ExchangeFunction next = request -> {
+            exchanged.set(request);
+            return Mono.just(ClientResponse.create(HttpStatus.OK).build());
+        };
+
+        ClientResponse response = filter.filter(request("http://demo/users?id=1"), next).block();
+        assertEquals(HttpStatus.OK, response.statusCode());
+        assertEquals(URI.create("http://10.0.0.3:8080/users?id=1"), exchanged.get().url());
+    }
+
+    @Test
+    public void testFilterRejectsUrlWithoutServiceName() {
+        FormulaLoadBalancerExchangeFilterFunction filter = filter(null);
+        ClientResponse response = filter.filter(request("/users"), request -> {
+            throw new AssertionError("should not be exchanged");
+        }).block();
+        assertEquals(HttpStatus.BAD_REQUEST, response.statusCode());
+    }
+
+    @Test
+    public void testFilterReturns503WithoutInstance() {
+        FormulaLoadBalancerExchangeFilterFunction filter = filter(null);
+        ClientResponse response = filter.filter(request("http://unknown/users"), request -> {
+            throw new AssertionError("should not be exchanged");
+        }).block();
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE, response.statusCode());
+    }
+
+    @Test
+    public void testFilterPassesEmptyExchange() {
+        FormulaLoadBalancerExchangeFilterFunction filter = filter(null);
+        AtomicInteger exchanges = new AtomicInteger();
+        ClientResponse response = filter.filter(request("http://demo/users"), request -> {
+            exchanges.incrementAndGet();
+            return Mono.empty();
+        }).block();
+        // 下游返回空时不作为没有实例处理
+        assertNull(response);
+        assertEquals(1, exchanges.get());
+    }
+
+    private FormulaLoadBalancerExchangeFilterFunction filter(FormulaRouteProperty route) {
+        RouteMatcher matcher = matcher(route);
+        return new FormulaLoadBalancerExchangeFilterFunction(
+                new FormulaReactiveLoadBalancerFactory(discoveryClient, matcher), matcher);
+    }
+
+    private static ClientRequest request(String url) {
+        return ClientRequest.create(HttpMethod.GET, URI.create(url)).build();
+    }
+
+    private static RouteMatcher matcher(FormulaRouteProperty route) {
+        RouteProperties properties = new RouteProperties();
+        properties.setRules(route == null ? null : Collections.singletonList(route));
+        return new RouteMatcher(properties);
+    }
+
+    private static FormulaRouteProperty route(Tag sourceTag, String version) {
+        Source source = new Source();
+        source.setTags(Collections.singletonList(sourceTag));
+        Destination destination = new Destination();
+        destination.setTags(Collections.singletonList(tag("version", version)));
+        destination.setWeight(100);
+        DestinationWrapper wrapper = new DestinationWrapper();
+        wrapper.setDestination(destination);
+        FormulaRouteProperty route = new FormulaRouteProperty();
+        route.setRoutingRuleId(1);
+        route.setSource(source);
+        route.setDestServiceName(SERVICE);
+        route.setDestType("WEIGHT");
+        route.setDestinations(Collections.singletonList(wrapper));
+        return route;
+    }
+
+    private static Tag tag(String key, String value) {
+        Tag tag = new Tag();
+        tag.setKey(key);
+        tag.setOp("EQUAL");
+        tag.setValue(Collections.singletonList(value));
+        return tag;
+    }
+
+    private static ServiceInstance instance(String host, String version) {
+        return new DefaultServiceInstance(SERVICE, host, 8080, false, Collections.singletonMap("version", version));
+    }
+}